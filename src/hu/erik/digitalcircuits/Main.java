@@ -3,7 +3,16 @@ package hu.erik.digitalcircuits;
 import hu.erik.digitalcircuits.cli.*;
 import hu.erik.digitalcircuits.devices.*;
 import hu.erik.digitalcircuits.errors.NoMorePinException;
+import hu.erik.digitalcircuits.utils.AsyncConsoleSink;
 import hu.erik.digitalcircuits.utils.Printer;
+import hu.erik.digitalcircuits.utils.TemplateCache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 public class Main {
     public static void kotelezoFeladat() {
@@ -56,19 +65,58 @@ public class Main {
     }
 
     /**
-     * Application entry point.
+     * Application entry point. Without arguments the commands are typed in.<br>
+     *
+     * Arguments:<br>
+     * --script {@literal <}file{@literal >}   runs the commands of the file, "-" reads them from the standard input<br>
+     * --quiet                   prints only the errors of the script
      *
      * @param args arguments
      */
     public static void main(String[] args) {
+        Printer.setSink(new AsyncConsoleSink(System.out, System.err));
+        String script = null;
+        boolean quiet = false;
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("--script") && i + 1 < args.length) {
+                script = args[++i];
+            } else if(args[i].equals("--quiet")) {
+                quiet = true;
+            } else {
+                Printer.printErr("Invalid argument: " + args[i] + "! Usage: [--script <file | -> [--quiet]]");
+                Printer.flush();
+                System.exit(2);
+            }
+        }
+
         //kotelezoFeladat();
         CliController cliController = new CliController();
+        TemplateCache cache = new TemplateCache();
         cliController.addCommands(true,
-                new ConnectCmd(), new CreateCmd(), new DeviceCmd(),
+                new ConnectCmd(), new CreateCmd(), new DeviceCmd(cache),
                 new DeviceTypesCmd(), new DisconnectCmd(),
-                new HelpCmd(), new ListCmd(), new ShowCmd()
+                new HelpCmd(), new ListCmd(), new ShowCmd(),
+                new EngineCmd(), new SimulateCmd(), new TruthTableCmd(),
+                new DelayCmd(), new TimingCmd(), new CycleCmd(), new OptimizeCmd(),
+                new CacheCmd(cache), new ImportCmd(), new GenerateCmd(), new RecordCmd(), new StatsCmd()
         );
         cliController.addCommands(false, new DeleteCmd());
-        cliController.listen();
+        if(script == null) {
+            cliController.listen();
+            Printer.flush();
+            return;
+        }
+
+        long errors;
+        try(BufferedReader reader = script.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedReader(Paths.get(script), StandardCharsets.UTF_8)) {
+            errors = cliController.runScript(reader, script.equals("-") ? "<stdin>" : script, quiet);
+        } catch (IOException err) {
+            Printer.printErr("Something went wrong with the script file handling!");
+            errors = 1;
+        }
+        Printer.flush();
+        if(errors > 0) System.exit(1);
     }
 }
@@ -0,0 +1,253 @@
+package hu.erik.digitalcircuits.benchmark;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Small benchmark harness which measures the average time of an operation, like the
+ * average time mode of JMH.<br>
+ * Every benchmark runs warmup iterations first, then measured iterations. An iteration calls
+ * the operation until the iteration time is over, and its score is the average time of one
+ * operation. The result is the mean of the measured iterations with its 99.9% confidence
+ * interval. The results can be written in the CSV format of JMH, so they can be compared
+ * with the same tools across versions.
+ */
+public class BenchmarkRunner {
+    /**
+     * Operation to measure.
+     */
+    @FunctionalInterface
+    public interface Operation {
+        /**
+         * Runs the operation once.
+         *
+         * @return              any value computed by the operation, so it can't be optimized away
+         * @throws Exception    If the operation fails. Stops the benchmark.
+         */
+        long run() throws Exception;
+    }
+
+    /**
+     * Number of warmup iterations of every benchmark.
+     */
+    private final int warmupIterations;
+    /**
+     * Number of measured iterations of every benchmark.
+     */
+    private final int measuredIterations;
+    /**
+     * Length of an iteration in nanoseconds.
+     */
+    private final long iterationNanos;
+    /**
+     * Only the benchmarks whose name contains a match of this pattern are run.
+     */
+    private final Pattern filter;
+    /**
+     * Results of the finished benchmarks, in the order they ran.
+     */
+    private final List<Result> results;
+    /**
+     * Sum of the values returned by the operations, so their work can't be optimized away.
+     */
+    private long sink;
+
+    /**
+     * Constructor to setup the iterations.
+     *
+     * @param warmupIterations      number of warmup iterations of every benchmark
+     * @param measuredIterations    number of measured iterations of every benchmark
+     * @param iterationMillis       length of an iteration in milliseconds
+     * @param filter                regular expression of the benchmarks to run, or null to run every benchmark
+     */
+    public BenchmarkRunner(int warmupIterations, int measuredIterations, long iterationMillis, String filter) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = Math.max(1, measuredIterations);
+        this.iterationNanos = iterationMillis * 1_000_000;
+        this.filter = filter == null ? null : Pattern.compile(filter);
+        this.results = new ArrayList<>();
+    }
+
+    /**
+     * Checks whether a benchmark has to run, so its setup can be skipped otherwise.
+     *
+     * @param name  name of the benchmark
+     * @return      true if the benchmark is selected by the filter
+     */
+    public boolean isSelected(String name) {
+        return filter == null || filter.matcher(name).find();
+    }
+
+    /**
+     * Measures an operation, prints and stores its result.
+     *
+     * @param name              name of the benchmark
+     * @param params            parameters of the benchmark, like the size of the circuit
+     * @param opsPerInvocation  number of operations done by one call, the score is divided by it
+     * @param operation         the operation
+     * @throws Exception        If the operation fails.
+     */
+    public void run(String name, Map<String, String> params, int opsPerInvocation, Operation operation) throws Exception {
+        if(!isSelected(name)) return;
+        System.gc();
+        for(int i = 0; i < warmupIterations; i++) iteration(opsPerInvocation, operation);
+        double[] scores = new double[measuredIterations];
+        for(int i = 0; i < measuredIterations; i++) scores[i] = iteration(opsPerInvocation, operation);
+
+        Result result = new Result(name, params, scores);
+        results.add(result);
+        System.out.printf(Locale.ROOT, "%-32s %-30s %14.3f +- %10.3f ns/op%n",
+                name, params.toString(), result.mean(), result.error());
+    }
+
+    /**
+     * Runs one iteration: calls the operation until the iteration time is over.
+     *
+     * @param opsPerInvocation  number of operations done by one call
+     * @param operation         the operation
+     * @return                  average time of an operation in nanoseconds
+     * @throws Exception        If the operation fails.
+     */
+    private double iteration(int opsPerInvocation, Operation operation) throws Exception {
+        long calls = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            sink += operation.run();
+            calls++;
+            now = System.nanoTime();
+        } while(now - start < iterationNanos);
+        return (double) (now - start) / calls / opsPerInvocation;
+    }
+
+    /**
+     * Writes the results in the CSV format of JMH: one line for every benchmark,
+     * with a column for every parameter used by any of the benchmarks.
+     *
+     * @param file          the CSV file
+     * @throws IOException  If the write fails.
+     */
+    public void writeCsv(Path file) throws IOException {
+        Set<String> paramNames = new LinkedHashSet<>();
+        for(Result result : results) paramNames.addAll(result.params.keySet());
+
+        try(PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            StringBuilder header = new StringBuilder("\"Benchmark\",\"Mode\",\"Threads\",\"Samples\",\"Score\",\"Score Error (99.9%)\",\"Unit\"");
+            for(String param : paramNames) header.append(",\"Param: ").append(param).append('"');
+            writer.println(header);
+            for(Result result : results) {
+                StringBuilder line = new StringBuilder();
+                line.append('"').append(result.name).append("\",\"avgt\",1,").append(result.scores.length)
+                        .append(',').append(String.format(Locale.ROOT, "%.6f", result.mean()))
+                        .append(',').append(String.format(Locale.ROOT, "%.6f", result.error()))
+                        .append(",\"ns/op\"");
+                for(String param : paramNames) line.append(',').append(result.params.getOrDefault(param, ""));
+                writer.println(line);
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the values returned by the operations.
+     *
+     * @return the sum, which has no meaning
+     */
+    public long getSink() {
+        return sink;
+    }
+
+    /**
+     * Result of a benchmark.
+     */
+    private static class Result {
+        /**
+         * The 0.9995 quantiles of the Student's t-distribution for 1 to 4 degrees of freedom.
+         */
+        private static final double[] SMALL_QUANTILES = {636.619, 31.599, 12.924, 8.610};
+
+        /**
+         * Name of the benchmark.
+         */
+        private final String name;
+        /**
+         * Parameters of the benchmark.
+         */
+        private final Map<String, String> params;
+        /**
+         * Score of every measured iteration in nanoseconds per operation.
+         */
+        private final double[] scores;
+
+        /**
+         * Constructor to store the result.
+         *
+         * @param name      name of the benchmark
+         * @param params    parameters of the benchmark
+         * @param scores    score of every measured iteration
+         */
+        private Result(String name, Map<String, String> params, double[] scores) {
+            this.name = name;
+            this.params = new LinkedHashMap<>(params);
+            this.scores = scores;
+        }
+
+        /**
+         * Returns the mean of the scores.
+         *
+         * @return the mean in nanoseconds per operation
+         */
+        private double mean() {
+            double sum = 0;
+            for(double score : scores) sum += score;
+            return sum / scores.length;
+        }
+
+        /**
+         * Returns the half width of the 99.9% confidence interval of the mean,
+         * computed with the Student's t-distribution like JMH does.
+         *
+         * @return the error in nanoseconds per operation, NaN with only one iteration
+         */
+        private double error() {
+            int n = scores.length;
+            if(n < 2) return Double.NaN;
+            double mean = mean();
+            double squares = 0;
+            for(double score : scores) squares += (score - mean) * (score - mean);
+            double deviation = Math.sqrt(squares / (n - 1));
+            return studentQuantile(n - 1) * deviation / Math.sqrt(n);
+        }
+
+        /**
+         * Returns the 0.9995 quantile of the Student's t-distribution. Above 4 degrees of freedom it is
+         * approximated with the Cornish-Fisher expansion around the normal quantile, within 0.5%.
+         *
+         * @param freedom   degrees of freedom
+         * @return          the quantile
+         */
+        private static double studentQuantile(int freedom) {
+            if(freedom <= SMALL_QUANTILES.length) return SMALL_QUANTILES[freedom - 1];
+            double z = 3.2905267314919;
+            double v = freedom;
+            double z3 = z * z * z;
+            double z5 = z3 * z * z;
+            double z7 = z5 * z * z;
+            double z9 = z7 * z * z;
+            return z + (z3 + z) / (4 * v)
+                    + (5 * z5 + 16 * z3 + 3 * z) / (96 * v * v)
+                    + (3 * z7 + 19 * z5 + 17 * z3 - 15 * z) / (384 * v * v * v)
+                    + (79 * z9 + 776 * z7 + 1482 * z5 - 1920 * z3 - 945 * z) / (92160 * v * v * v * v);
+        }
+    }
+}
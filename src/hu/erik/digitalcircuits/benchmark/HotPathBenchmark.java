@@ -0,0 +1,433 @@
+package hu.erik.digitalcircuits.benchmark;
+
+import hu.erik.digitalcircuits.cli.DeviceBundle;
+import hu.erik.digitalcircuits.cli.DeviceMap;
+import hu.erik.digitalcircuits.cli.DeviceType;
+import hu.erik.digitalcircuits.devices.AndGate;
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.devices.Device;
+import hu.erik.digitalcircuits.devices.Inverter;
+import hu.erik.digitalcircuits.devices.Junction;
+import hu.erik.digitalcircuits.devices.NandGate;
+import hu.erik.digitalcircuits.devices.PowerSource;
+import hu.erik.digitalcircuits.devices.Switch;
+import hu.erik.digitalcircuits.errors.DeviceNotExistsException;
+import hu.erik.digitalcircuits.simulation.CircuitInstance;
+import hu.erik.digitalcircuits.simulation.CircuitTemplate;
+import hu.erik.digitalcircuits.simulation.DelayModel;
+import hu.erik.digitalcircuits.simulation.LevelizedEngine;
+import hu.erik.digitalcircuits.simulation.Simulation;
+import hu.erik.digitalcircuits.simulation.TimedSimulator;
+import hu.erik.digitalcircuits.simulation.WorklistEngine;
+import hu.erik.digitalcircuits.utils.FileHandler;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the hot paths of the simulator on circuits of different sizes:
+ * the propagation after a switch toggle on chain, tree and reconvergent circuits with both engines,
+ * the timed simulation of nested boxes and of instances,
+ * the connection methods, the DeviceMap lookups and queries, and saving and loading a circuit.<br>
+ * Every result is the average time of one operation in nanoseconds, and they can be written
+ * into a CSV file in the format of JMH, to compare them across versions.<br>
+ *
+ * Usage: HotPathBenchmark [--sizes 100,10000] [--warmup 3] [--iterations 5] [--time 500]
+ * [--filter regex] [--csv file]
+ */
+public final class HotPathBenchmark {
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private HotPathBenchmark() {}
+
+    /**
+     * Runs the selected benchmarks with every size.
+     *
+     * @param args          options, see the usage
+     * @throws Exception    If a benchmark fails.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("--sizes", "100,10000");
+        options.put("--warmup", "3");
+        options.put("--iterations", "5");
+        options.put("--time", "500");
+        options.put("--filter", null);
+        options.put("--csv", null);
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            if(!options.containsKey(args[i])) throw new IllegalArgumentException("Unknown option: " + args[i]);
+            options.put(args[i], args[i + 1]);
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner(
+                Integer.parseInt(options.get("--warmup")),
+                Integer.parseInt(options.get("--iterations")),
+                Long.parseLong(options.get("--time")),
+                options.get("--filter"));
+        Path directory = Files.createTempDirectory("circuit-benchmark");
+        try {
+            for(String size : options.get("--sizes").split(",")) {
+                int devices = Integer.parseInt(size.trim());
+                propagation(runner, devices);
+                timing(runner, devices);
+                connection(runner, devices);
+                deviceMap(runner, devices);
+                persistence(runner, devices, directory);
+            }
+        } finally {
+            Simulation.setEngine(new WorklistEngine());
+            try(var files = Files.list(directory)) {
+                for(Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+
+        if(options.get("--csv") != null) {
+            runner.writeCsv(Paths.get(options.get("--csv")));
+            System.out.println("Results written to " + options.get("--csv"));
+        }
+        System.out.println("(" + runner.getSink() + ")");
+    }
+
+    /**
+     * Measures a switch toggle on a chain of inverters, on a fanout tree of junctions and inverters,
+     * and on a chain of reconvergent stages, with both propagation engines.
+     *
+     * @param runner        the harness
+     * @param devices       number of devices in the circuits
+     * @throws Exception    If a benchmark fails.
+     */
+    private static void propagation(BenchmarkRunner runner, int devices) throws Exception {
+        String[] names = {"propagation.chain", "propagation.tree", "propagation.reconvergent"};
+        for(int circuit = 0; circuit < names.length; circuit++) {
+            if(!runner.isSelected(names[circuit])) continue;
+            Simulation.setEngine(new WorklistEngine());
+            PowerSource power = new PowerSource();
+            Switch input = new Switch();
+            power.connect(input);
+            Device output;
+            boolean inverting;
+            if(circuit == 0) {
+                output = chain(input, devices);
+                inverting = devices % 2 == 1;
+            } else if(circuit == 1) {
+                output = tree(input, devices);
+                inverting = true;
+            } else {
+                output = reconvergent(input, devices);
+                inverting = false;
+            }
+
+            for(String engine : new String[] {"worklist", "levelized"}) {
+                if(engine.equals("levelized")) {
+                    LevelizedEngine levelized = new LevelizedEngine();
+                    levelized.compile(List.of(power));
+                    Simulation.setEngine(levelized);
+                }
+                input.off();
+                input.on();
+                if(output.outputPins()[0].getSignal() == inverting) {
+                    throw new IllegalStateException(names[circuit] + " computed a wrong output with " + engine + "!");
+                }
+                runner.run(names[circuit], params(devices, engine), 1, () -> {
+                    if(input.isOn()) input.off();
+                    else input.on();
+                    return output.outputPins()[0].getSignal() ? 1 : 0;
+                });
+            }
+        }
+        Simulation.setEngine(new WorklistEngine());
+    }
+
+    /**
+     * Measures the timed simulation of a chain of nand stages, once with every stage in a nested box
+     * and once with every stage as an instance of the same box. Both must settle at the same time,
+     * because the inlined template nodes get the delay of their gate type.
+     *
+     * @param runner        the harness
+     * @param devices       number of devices in the circuits, every stage has five
+     * @throws Exception    If a benchmark fails.
+     */
+    private static void timing(BenchmarkRunner runner, int devices) throws Exception {
+        if(!runner.isSelected("timing")) return;
+        int stages = Math.max(1, devices / 5);
+        DelayModel model = new DelayModel();
+        model.setDelay("nandgate", 5);
+        CircuitTemplate template = CircuitTemplate.of(nandStage());
+        Device[] nested = new Device[stages];
+        Device[] instances = new Device[stages];
+        for(int i = 0; i < stages; i++) {
+            nested[i] = nandStage();
+            instances[i] = new CircuitInstance(template);
+        }
+        TimedSimulator nestedSimulator = TimedSimulator.of(stageChain(nested), model);
+        TimedSimulator instanceSimulator = TimedSimulator.of(stageChain(instances), model);
+
+        for(TimedSimulator simulator : new TimedSimulator[] {nestedSimulator, instanceSimulator}) {
+            simulator.setInput(0, true);
+            simulator.setInput(1, true);
+            simulator.settle();
+        }
+        if(nestedSimulator.getTime() != instanceSimulator.getTime()
+                || nestedSimulator.getOutput(0) != instanceSimulator.getOutput(0)) {
+            throw new IllegalStateException("Instances settled at " + instanceSimulator.getTime()
+                    + " instead of " + nestedSimulator.getTime() + " like the nested boxes!");
+        }
+
+        String[] names = {"timing.nested", "timing.instance"};
+        TimedSimulator[] simulators = {nestedSimulator, instanceSimulator};
+        for(int i = 0; i < names.length; i++) {
+            TimedSimulator simulator = simulators[i];
+            boolean[] value = {true};
+            runner.run(names[i], params(devices, null), 1, () -> {
+                value[0] = !value[0];
+                simulator.setInput(0, value[0]);
+                return simulator.settle();
+            });
+        }
+    }
+
+    /**
+     * Creates a box of two nand gates in a row. The first input drives both gates through a junction,
+     * the second output is the signal between the gates, so the stages can be chained.
+     *
+     * @return              the box
+     * @throws Exception    If a connection fails.
+     */
+    private static CircuitBox nandStage() throws Exception {
+        Junction input = new Junction(2);
+        NandGate first = new NandGate(2);
+        NandGate second = new NandGate(2);
+        Junction middle = new Junction(2);
+        input.connect(first, 0, 0);
+        input.connect(second, 1, 0);
+        first.connect(middle);
+        middle.connect(second, 0, 1);
+        CircuitBox box = new CircuitBox("stage", 2, 2);
+        box.bindInputPin(input, 0, 0);
+        box.bindInputPin(first, 1, 1);
+        box.bindOutputPin(second, 0, 0);
+        box.bindOutputPin(middle, 1, 1);
+        return box;
+    }
+
+    /**
+     * Connects both outputs of every stage to the inputs of the next one, inside a box.
+     *
+     * @param stages        the stages
+     * @return              box with the inputs of the first and the outputs of the last stage
+     * @throws Exception    If a connection fails.
+     */
+    private static CircuitBox stageChain(Device[] stages) throws Exception {
+        for(int i = 1; i < stages.length; i++) {
+            stages[i - 1].connect(stages[i], 0, 0);
+            stages[i - 1].connect(stages[i], 1, 1);
+        }
+        CircuitBox box = new CircuitBox("chain", 2, 2);
+        box.bindInputPin(stages[0], 0, 0);
+        box.bindInputPin(stages[0], 1, 1);
+        box.bindOutputPin(stages[stages.length - 1], 0, 0);
+        box.bindOutputPin(stages[stages.length - 1], 1, 1);
+        return box;
+    }
+
+    /**
+     * Measures the three connection methods by connecting a row of new gates.
+     * The baseline only creates the gates, its time is included in the other results.
+     *
+     * @param runner        the harness
+     * @param devices       number of gates in a row
+     * @throws Exception    If a benchmark fails.
+     */
+    private static void connection(BenchmarkRunner runner, int devices) throws Exception {
+        runner.run("connect.baseline", params(devices, null), devices, () -> gates(devices).length);
+        runner.run("connect.firstFree", params(devices, null), devices, () -> {
+            AndGate[] gates = gates(devices);
+            for(int i = 1; i < gates.length; i++) gates[i - 1].connect(gates[i]);
+            return gates.length;
+        });
+        runner.run("connect.targetPin", params(devices, null), devices, () -> {
+            AndGate[] gates = gates(devices);
+            for(int i = 1; i < gates.length; i++) gates[i - 1].connect(gates[i], 1);
+            return gates.length;
+        });
+        runner.run("connect.explicitPins", params(devices, null), devices, () -> {
+            AndGate[] gates = gates(devices);
+            for(int i = 1; i < gates.length; i++) gates[i - 1].connect(gates[i], 0, 0);
+            return gates.length;
+        });
+    }
+
+    /**
+     * Measures filling a DeviceMap, exact lookups of existing and missing names,
+     * a prefix query and a typed query.
+     *
+     * @param runner        the harness
+     * @param devices       number of stored devices
+     * @throws Exception    If a benchmark fails.
+     */
+    private static void deviceMap(BenchmarkRunner runner, int devices) throws Exception {
+        if(!runner.isSelected("devicemap")) return;
+        DeviceType[] types = {DeviceType.INVERTER, DeviceType.ANDGATE, DeviceType.ORGATE, DeviceType.NANDGATE};
+        Inverter device = new Inverter();
+        List<String> names = new ArrayList<>();
+        for(int i = 0; i < devices; i++) names.add("g" + i);
+        DeviceMap map = new DeviceMap();
+        for(int i = 0; i < devices; i++) map.add(names.get(i), new DeviceBundle(device, types[i % types.length]));
+        Collections.shuffle(names, new Random(42));
+        String[] lookups = names.toArray(new String[0]);
+        int[] next = {0};
+
+        runner.run("devicemap.add", params(devices, null), devices, () -> {
+            DeviceMap filled = new DeviceMap();
+            for(int i = 0; i < lookups.length; i++) filled.add(lookups[i], new DeviceBundle(device, types[i % types.length]));
+            return filled.count(null);
+        });
+        runner.run("devicemap.get", params(devices, null), 1, () -> {
+            next[0] = next[0] + 1 == lookups.length ? 0 : next[0] + 1;
+            return map.get(lookups[next[0]]).getType().ordinal();
+        });
+        runner.run("devicemap.getMissing", params(devices, null), 1, () -> {
+            try {
+                return map.get("missing").getType().ordinal();
+            } catch (DeviceNotExistsException err) {
+                return 1;
+            }
+        });
+        runner.run("devicemap.prefix", params(devices, null), 1, () -> map.forEachMatch(null, "g12*", (name, bundle) -> {}));
+        runner.run("devicemap.typed", params(devices, null), 1, () -> map.forEachMatch(DeviceType.ANDGATE, null, (name, bundle) -> {}));
+    }
+
+    /**
+     * Measures saving and loading a box with a chain of inverters inside.
+     *
+     * @param runner        the harness
+     * @param devices       number of devices in the box
+     * @param directory     directory of the saved file
+     * @throws Exception    If a benchmark fails.
+     */
+    private static void persistence(BenchmarkRunner runner, int devices, Path directory) throws Exception {
+        if(!runner.isSelected("file")) return;
+        Inverter first = new Inverter();
+        Device last = chain(first, devices - 1);
+        CircuitBox box = new CircuitBox(directory.resolve("chain" + devices).toString(), 1, 1);
+        box.bindInputPin(first, 0, 0);
+        box.bindOutputPin(last, 0, 0);
+        FileHandler.saveCircuit(box);
+
+        runner.run("file.save", params(devices, null), 1, () -> {
+            FileHandler.saveCircuit(box);
+            return 1;
+        });
+        runner.run("file.load", params(devices, null), 1, () -> FileHandler.loadCircuit(box.getName()).inputPins().length);
+    }
+
+    /**
+     * Connects a chain of inverters to the device.
+     *
+     * @param source        device driving the chain
+     * @param length        number of inverters
+     * @return              the last device of the chain
+     * @throws Exception    If a connection fails.
+     */
+    private static Device chain(Device source, int length) throws Exception {
+        Device last = source;
+        for(int i = 0; i < length; i++) last = last.connect(new Inverter());
+        return last;
+    }
+
+    /**
+     * Connects a binary fanout tree of junctions to the device, with inverters on the leaves.
+     * The leaves are reduced into one output with a chain of and gates, so the result
+     * depends on every leaf.
+     *
+     * @param source        device driving the tree
+     * @param devices       number of devices in the tree, about a quarter of them are leaves
+     * @return              the last and gate
+     * @throws Exception    If a connection fails.
+     */
+    private static Device tree(Device source, int devices) throws Exception {
+        int leaves = Math.max(2, devices / 4);
+        List<Device> level = new ArrayList<>();
+        for(int i = 0; i < leaves; i++) level.add(new Inverter());
+        List<Device> all = new ArrayList<>(level);
+        while(level.size() > 1) {
+            List<Device> parents = new ArrayList<>();
+            for(int i = 0; i + 1 < level.size(); i += 2) {
+                Junction junction = new Junction(2);
+                junction.connect(level.get(i));
+                junction.connect(level.get(i + 1));
+                parents.add(junction);
+            }
+            if(level.size() % 2 == 1) parents.add(level.get(level.size() - 1));
+            level = parents;
+        }
+        source.connect(level.get(0));
+
+        Device result = all.get(0);
+        for(int i = 1; i < leaves; i++) {
+            AndGate gate = new AndGate(2);
+            result.connect(gate);
+            all.get(i).connect(gate);
+            result = gate;
+        }
+        return result;
+    }
+
+    /**
+     * Connects a chain of reconvergent stages to the device. Every stage splits the signal
+     * with a junction into two inverters in a row and a direct path, then joins them with an
+     * and gate, so the gate gets its two inputs through paths of different length.
+     *
+     * @param source        device driving the stages
+     * @param devices       number of devices, every stage has four
+     * @return              the and gate of the last stage
+     * @throws Exception    If a connection fails.
+     */
+    private static Device reconvergent(Device source, int devices) throws Exception {
+        Device last = source;
+        for(int i = 0; i < Math.max(1, devices / 4); i++) {
+            Junction junction = new Junction(2);
+            AndGate gate = new AndGate(2);
+            last.connect(junction);
+            junction.connect(new Inverter()).connect(new Inverter()).connect(gate);
+            junction.connect(gate);
+            last = gate;
+        }
+        return last;
+    }
+
+    /**
+     * Creates a row of unconnected and gates.
+     *
+     * @param count number of gates
+     * @return      the gates
+     */
+    private static AndGate[] gates(int count) {
+        AndGate[] gates = new AndGate[count];
+        for(int i = 0; i < count; i++) gates[i] = new AndGate(2);
+        return gates;
+    }
+
+    /**
+     * Creates the parameters of a result.
+     *
+     * @param devices   size of the circuit
+     * @param engine    name of the propagation engine, or null if it isn't used
+     * @return          the parameters
+     */
+    private static Map<String, String> params(int devices, String engine) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("size", Integer.toString(devices));
+        if(engine != null) params.put("engine", engine);
+        return params;
+    }
+}
@@ -0,0 +1,126 @@
+package hu.erik.digitalcircuits.benchmark;
+
+import hu.erik.digitalcircuits.simulation.BitParallelSimulator;
+import hu.erik.digitalcircuits.simulation.Netlist;
+import hu.erik.digitalcircuits.simulation.NetlistBuilder;
+import hu.erik.digitalcircuits.simulation.ParallelSimulator;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how the ParallelSimulator scales with the number of threads on a wide circuit.<br>
+ * The circuit is a Kogge-Stone parallel prefix adder: every prefix level is as wide as the
+ * adder itself, while the depth only grows with the logarithm of the width.<br>
+ *
+ * Usage: ParallelScalingBenchmark [bits] [passes] [threshold]
+ */
+public final class ParallelScalingBenchmark {
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private ParallelScalingBenchmark() {}
+
+    /**
+     * Runs the benchmark with 1, 2, 4, ... threads up to the number of processors.
+     *
+     * @param args optional bits, passes and threshold
+     */
+    public static void main(String[] args) {
+        int bits = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int threshold = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+
+        Netlist adder = koggeStoneAdder(bits);
+        long[] inputs = new long[adder.getInputCount()];
+        Random random = new Random(42);
+        for(int i = 0; i < inputs.length; i++) inputs[i] = random.nextLong();
+
+        System.out.printf("%d-bit Kogge-Stone adder: %d gates, %d levels, 64 vectors per pass%n",
+                bits, adder.getGateCount(), adder.getLevelCount());
+
+        BitParallelSimulator reference = new BitParallelSimulator(adder);
+        long[] expected = reference.simulate(inputs);
+        double baseline = measure(reference, inputs, passes);
+        System.out.printf("sequential: %10.1f us/pass%n", baseline);
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        for(int threads = 1; threads <= processors; threads = threads < processors ? Math.min(2 * threads, processors) : threads + 1) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                ParallelSimulator simulator = new ParallelSimulator(adder, pool, threshold);
+                if(!Arrays.equals(expected, simulator.simulate(inputs))) {
+                    throw new IllegalStateException("Parallel result differs from the sequential one!");
+                }
+                double time = measure(simulator, inputs, passes);
+                System.out.printf("%3d threads: %10.1f us/pass, speedup %.2fx%n", threads, time, baseline / time);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Measures the average time of a simulation pass after a warmup.
+     *
+     * @param simulator simulator to measure
+     * @param inputs    input values
+     * @param passes    number of measured passes
+     * @return          average time of a pass in microseconds
+     */
+    private static double measure(BitParallelSimulator simulator, long[] inputs, int passes) {
+        for(int i = 0; i < passes; i++) simulator.simulate(inputs);
+        long start = System.nanoTime();
+        for(int i = 0; i < passes; i++) simulator.simulate(inputs);
+        return (System.nanoTime() - start) / 1000.0 / passes;
+    }
+
+    /**
+     * Builds a Kogge-Stone adder. Inputs are a0..a(n-1), then b0..b(n-1),
+     * outputs are s0..s(n-1), then the carry.
+     *
+     * @param bits  width of the adder
+     * @return      the netlist of the adder
+     */
+    public static Netlist koggeStoneAdder(int bits) {
+        NetlistBuilder builder = new NetlistBuilder(2 * bits);
+        int[] propagate = new int[bits];
+        int[] generate = new int[bits];
+        for(int i = 0; i < bits; i++) {
+            int a = builder.input(i), b = builder.input(bits + i);
+            propagate[i] = xor(builder, a, b);
+            generate[i] = builder.gate(Netlist.AND, a, b);
+        }
+        int[] halfSum = propagate.clone();
+
+        for(int distance = 1; distance < bits; distance *= 2) {
+            int[] nextPropagate = propagate.clone();
+            int[] nextGenerate = generate.clone();
+            for(int i = distance; i < bits; i++) {
+                int carried = builder.gate(Netlist.AND, propagate[i], generate[i - distance]);
+                nextGenerate[i] = builder.gate(Netlist.OR, generate[i], carried);
+                nextPropagate[i] = builder.gate(Netlist.AND, propagate[i], propagate[i - distance]);
+            }
+            propagate = nextPropagate;
+            generate = nextGenerate;
+        }
+
+        builder.output(halfSum[0]);
+        for(int i = 1; i < bits; i++) builder.output(xor(builder, halfSum[i], generate[i - 1]));
+        builder.output(generate[bits - 1]);
+        return builder.build();
+    }
+
+    /**
+     * Adds an exclusive or built from the available gates.
+     *
+     * @param builder   netlist under construction
+     * @param a         first operand
+     * @param b         second operand
+     * @return          node of the result
+     */
+    private static int xor(NetlistBuilder builder, int a, int b) {
+        return builder.gate(Netlist.AND, builder.gate(Netlist.OR, a, b), builder.gate(Netlist.NAND, a, b));
+    }
+}
@@ -0,0 +1,84 @@
+package hu.erik.digitalcircuits.cli;
+
+import hu.erik.digitalcircuits.errors.TooManyArgumentException;
+import hu.erik.digitalcircuits.utils.Printer;
+import hu.erik.digitalcircuits.utils.TemplateCache;
+
+/**
+ * Class to handle commands prefixed with "cache".
+ * Shows and configures the cache of the loaded box files.
+ */
+public class CacheCmd extends Command {
+    /**
+     * Cache of the loaded box files, shared with the device command.
+     */
+    private TemplateCache cache;
+
+    /**
+     * Constructor to setup the command's name, format and description.
+     *
+     * @param cache cache of the loaded box files
+     */
+    public CacheCmd(TemplateCache cache) {
+        super(
+                "cache",
+                "cache [size <number> | clear]",
+                "Shows the cached boxes and the hit rate, sets the cache size or clears the cache."
+        );
+        this.cache = cache;
+    }
+
+    /**
+     * Shows the statistics of the cache, or changes its size, or clears it.<br>
+     *
+     * Command formats:<br>
+     * cache<br>
+     * cache size {@literal <}number{@literal >}<br>
+     * cache clear
+     *
+     * @param storage   cli data structure
+     * @param cmd       command, split by spaces
+     */
+    @Override
+    public void action(DeviceMap storage, String[] cmd) {
+        if(cmd.length == 1) {
+            printStats();
+            return;
+        }
+
+        if(cmd[1].equalsIgnoreCase("clear")) {
+            if(cmd.length > 2) Printer.printErr(new TooManyArgumentException(cmd[0]));
+            cache.clear();
+            Printer.println("Cache cleared!");
+            return;
+        }
+
+        if(cmd[1].equalsIgnoreCase("size") && cmd.length > 2) {
+            if(cmd.length > 3) Printer.printErr(new TooManyArgumentException(cmd[0]));
+            try {
+                int size = Integer.parseInt(cmd[2]);
+                if(size < 1) throw new NumberFormatException();
+                cache.setCapacity(size);
+                Printer.println("Cache size set to " + size + "!");
+            } catch (NumberFormatException err) {
+                Printer.printErr("Invalid size! It must be a positive number.");
+            }
+            return;
+        }
+
+        Printer.printErr("Invalid arguments! Try: " + getFormat());
+    }
+
+    /**
+     * Prints the size, the statistics and the cached boxes.
+     */
+    private void printStats() {
+        long requests = cache.getHits() + cache.getMisses();
+        long hitRate = requests == 0 ? 0 : cache.getHits() * 100 / requests;
+        Printer.println("Cached boxes: " + cache.getNames().size() + "/" + cache.getCapacity());
+        Printer.println("Hits: " + cache.getHits() + ", misses: " + cache.getMisses()
+                + ", evictions: " + cache.getEvictions() + ", hit rate: " + hitRate + "%");
+        for(String name : cache.getNames()) Printer.println(" - " + name);
+        Printer.println("Done!");
+    }
+}
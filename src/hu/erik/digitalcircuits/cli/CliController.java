@@ -1,12 +1,16 @@
 package hu.erik.digitalcircuits.cli;
 
 import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.devices.Device;
+import hu.erik.digitalcircuits.errors.FeedbackLoopException;
 import hu.erik.digitalcircuits.errors.NotEnoughArgsException;
 import hu.erik.digitalcircuits.errors.RedundantKeyException;
 import hu.erik.digitalcircuits.errors.TooManyArgumentException;
+import hu.erik.digitalcircuits.simulation.Simulation;
 import hu.erik.digitalcircuits.utils.FileHandler;
 import hu.erik.digitalcircuits.utils.Printer;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -21,6 +25,7 @@ import java.util.Scanner;
  * will be deleted. User can switch modes at any time.
  * In box editor mode, delete command can't be use to ensure that
  * users don't mess up their circuit.
+ * Commands can also be run from a script, one command in every line.
  */
 public class CliController {
     /**
@@ -57,6 +62,18 @@ public class CliController {
         boxEditorCommands = new HashMap<>();
         inBoxEditorMode = false;
         boxEditorCommands.put("box", new BoxCmd());
+        Simulation.setNameResolver(this::nameOf);
+    }
+
+    /**
+     * Finds the name of a device in the current session or in the box editor session.
+     *
+     * @param device    device to look for
+     * @return          name of the device or null if the user didn't name it
+     */
+    private String nameOf(Device device) {
+        String name = devices.nameOf(device);
+        return name != null ? name : boxEditorDevices.nameOf(device);
     }
 
     /**
@@ -83,38 +100,98 @@ public class CliController {
         showMenu();
 
         while (true) {
-            String cmd = sc.nextLine();
-            String[] splitCMD = cmd.split(" ");
-
-            if(splitCMD[0].equalsIgnoreCase("exit")) {
-                Printer.println("Bye, have a nice day! :)");
-                break;
-            } else if(splitCMD[0].equalsIgnoreCase("menu")) {
-                if (splitCMD.length > 1) Printer.printErr(new TooManyArgumentException("menu"));
-                showMenu();
-                continue;
-            } else if(splitCMD[0].equalsIgnoreCase("boxeditor")) {
-                handleEditorMode(splitCMD);
-                continue;
-            } else if(cmd.equals("\n") || cmd.equals("")) {
-                continue;
-            }
+            if(!inputWaiting()) Printer.flush();
+            if(!execute(sc.nextLine())) break;
+        }
 
-            try {
-                if(inBoxEditorMode) {
-                    boxEditorCommands.get(splitCMD[0]).action(boxEditorDevices, splitCMD);
-                } else {
-                    commands.get(splitCMD[0]).action(devices, splitCMD);
-                }
-            } catch (NotEnoughArgsException err) {
-                Printer.printErr(err);
-            } catch (NullPointerException err) {
-                Printer.printErr("There isn't any command with this name: " + splitCMD[0] + "!");
-                Printer.printErr("Too see the available commands, use the menu command!");
+        sc.close();
+    }
+
+    /**
+     * Checks whether the next command is already available on the standard input,
+     * so the output doesn't have to be flushed before reading it.
+     *
+     * @return true if the standard input can be read without waiting for the user
+     */
+    private static boolean inputWaiting() {
+        try {
+            return System.in.available() > 0;
+        } catch (IOException err) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs the commands of a script line by line, until the end of the script or an exit command.
+     * The output is buffered (or suppressed in quiet mode), and the errors show the line
+     * which caused them. Empty lines and lines starting with "#" are skipped.
+     * The recording is stopped at the end of the script.
+     *
+     * @param reader        the script
+     * @param source        name of the script in the error messages
+     * @param quiet         suppress everything except the errors
+     * @return              number of the lines which printed an error
+     * @throws IOException  If the script can't be read.
+     */
+    public long runScript(BufferedReader reader, String source, boolean quiet) throws IOException {
+        long lines = 0;
+        long errors;
+        long start = System.nanoTime();
+        Printer.startBatch(source, quiet);
+        try {
+            String line;
+            while((line = reader.readLine()) != null) {
+                Printer.setLine(++lines);
+                if(line.startsWith("#")) continue;
+                if(!execute(line)) break;
             }
+            RecordCmd.stopRecording();
+        } finally {
+            errors = Printer.endBatch();
         }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        Printer.println("Script " + source + " finished: " + lines + " lines in " + millis
+                + " milliseconds, " + errors + " lines with errors.");
+        return errors;
+    }
 
-        sc.close();
+    /**
+     * Runs a single command.
+     *
+     * @param cmd   the command as it was typed in
+     * @return      false if the command was exit, true otherwise
+     */
+    private boolean execute(String cmd) {
+        String[] splitCMD = cmd.split(" ");
+
+        if(splitCMD[0].equalsIgnoreCase("exit")) {
+            RecordCmd.stopRecording();
+            Printer.println("Bye, have a nice day! :)");
+            return false;
+        } else if(splitCMD[0].equalsIgnoreCase("menu")) {
+            if (splitCMD.length > 1) Printer.printErr(new TooManyArgumentException("menu"));
+            showMenu();
+            return true;
+        } else if(splitCMD[0].equalsIgnoreCase("boxeditor")) {
+            handleEditorMode(splitCMD);
+            return true;
+        } else if(cmd.equals("\n") || cmd.equals("")) {
+            return true;
+        }
+
+        try {
+            if(inBoxEditorMode) {
+                boxEditorCommands.get(splitCMD[0]).action(boxEditorDevices, splitCMD);
+            } else {
+                commands.get(splitCMD[0]).action(devices, splitCMD);
+            }
+        } catch (NotEnoughArgsException err) {
+            Printer.printErr(err);
+        } catch (NullPointerException err) {
+            Printer.printErr("There isn't any command with this name: " + splitCMD[0] + "!");
+            Printer.printErr("Too see the available commands, use the menu command!");
+        }
+        return true;
     }
 
     /**
@@ -123,17 +200,17 @@ public class CliController {
     private void showMenu() {
         Printer.printTitle("Digital Circuits v2.0");
         Printer.println("menu");
-        System.out.println("\tShows this menu.");
+        Printer.printIndented("Shows this menu.");
         for(String name : commands.keySet()) {
             Printer.println(commands.get(name).getFormat());
-            System.out.println("\t" + commands.get(name).getBriefDescription());
+            Printer.printIndented(commands.get(name).getBriefDescription());
         }
         Printer.println(boxEditorCommands.get("box").getFormat());
-        System.out.println("\t" + boxEditorCommands.get("box").getBriefDescription());
+        Printer.printIndented(boxEditorCommands.get("box").getBriefDescription());
         Printer.println("boxeditor");
-        System.out.println("\tOpen or close a circuit box editor session.");
+        Printer.printIndented("Open or close a circuit box editor session.");
         Printer.println("exit");
-        System.out.println("\tCloses the application.");
+        Printer.printIndented("Closes the application.");
         Printer.printSeparatorLine("-");
     }
 
@@ -157,10 +234,13 @@ public class CliController {
                         FileHandler.saveCircuit(box);
                         this.devices.add(name, devices.get(name));
                         Printer.println("[BoxEditorMode] " + name + " >> Saved and added to your current session!");
+                        Printer.println("[BoxEditorMode] " + name + " >> " + OptimizeCmd.report(box));
                     } catch (IOException  e) {
                         Printer.printErr("[BoxEditorMode] " + name + " >> Save failed!");
                     } catch (RedundantKeyException err) {
                         Printer.printErr("[BoxEditorMode] " + name + " >> Can't be added to the current session because a device already has this name!");
+                    } catch (FeedbackLoopException err) {
+                        Printer.printErr("[BoxEditorMode] " + name + " >> Can't be optimized because it contains a feedback loop!");
                     }
                 }
             }
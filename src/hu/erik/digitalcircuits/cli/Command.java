@@ -1,6 +1,19 @@
 package hu.erik.digitalcircuits.cli;
 
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.devices.MappedCircuitFile;
+import hu.erik.digitalcircuits.errors.DeviceNotExistsException;
+import hu.erik.digitalcircuits.errors.FeedbackLoopException;
 import hu.erik.digitalcircuits.errors.NotEnoughArgsException;
+import hu.erik.digitalcircuits.simulation.Netlist;
+import hu.erik.digitalcircuits.simulation.NetlistCompiler;
+import hu.erik.digitalcircuits.utils.FileHandler;
+import hu.erik.digitalcircuits.utils.Printer;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+
+import static hu.erik.digitalcircuits.cli.DeviceType.CIRCUITBOX;
 
 /**
  * Abstract class to create Commands.
@@ -68,4 +81,72 @@ public abstract class Command {
      */
     public abstract void action(DeviceMap storage, String[] cmd) throws NotEnoughArgsException;
 
+    /**
+     * Compiles a box for the simulation commands. If there is no device with the name,
+     * the saved circuit file with the name is mapped and compiled, without loading its devices.
+     * Errors are printed to the console.
+     *
+     * @param storage   cli data structure
+     * @param name      name of a box, or a saved circuit
+     * @return          the compiled netlist, or null if it can't be compiled
+     */
+    protected Netlist compileBox(DeviceMap storage, String name) {
+        return compileBox(storage, name, NetlistCompiler::compile, NetlistCompiler::compile);
+    }
+
+    /**
+     * Compiles a box with the given compilers. If there is no device with the name,
+     * the saved circuit file with the name is mapped and compiled, without loading its devices.
+     * Errors are printed to the console.
+     *
+     * @param storage       cli data structure
+     * @param name          name of a box, or a saved circuit
+     * @param boxCompiler   compiler of a loaded box
+     * @param fileCompiler  compiler of a mapped circuit file
+     * @param <T>           type of the compiled result
+     * @return              the compiled result, or null if it can't be compiled
+     */
+    protected <T> T compileBox(DeviceMap storage, String name,
+                               Compiler<CircuitBox, T> boxCompiler, Compiler<MappedCircuitFile, T> fileCompiler) {
+        try {
+            DeviceBundle bundle = storage.get(name);
+            if(!bundle.getType().equals(CIRCUITBOX)) {
+                Printer.printErr(name + " is not a " + CIRCUITBOX + "!");
+                return null;
+            }
+            return boxCompiler.compile((CircuitBox) bundle.getDevice());
+        } catch (DeviceNotExistsException err) {
+            try {
+                return fileCompiler.compile(FileHandler.mapCircuit(name));
+            } catch (NoSuchFileException fileErr) {
+                Printer.printErr(err);
+            } catch (IOException fileErr) {
+                Printer.printErr("Something went wrong with the circuit file handling!");
+            } catch (FeedbackLoopException loopErr) {
+                Printer.printErr(loopErr);
+            }
+        } catch (FeedbackLoopException err) {
+            Printer.printErr(err);
+        }
+        return null;
+    }
+
+    /**
+     * Compiles a box or a mapped circuit file for a simulation command.
+     *
+     * @param <S> type of the source
+     * @param <T> type of the compiled result
+     */
+    @FunctionalInterface
+    protected interface Compiler<S, T> {
+        /**
+         * Compiles the source.
+         *
+         * @param source                    box or mapped circuit file
+         * @return                          the compiled result
+         * @throws FeedbackLoopException    If the circuit contains a feedback loop.
+         */
+        T compile(S source) throws FeedbackLoopException;
+    }
+
 }
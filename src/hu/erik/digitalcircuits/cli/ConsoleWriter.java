@@ -0,0 +1,37 @@
+package hu.erik.digitalcircuits.cli;
+
+import hu.erik.digitalcircuits.utils.Printer;
+
+import java.io.Writer;
+
+/**
+ * Writer which prints every written line to the console through the Printer.
+ * Used by the commands which write to a file or to the console.
+ */
+class ConsoleWriter extends Writer {
+    /**
+     * Characters of the current line.
+     */
+    private final StringBuilder line = new StringBuilder();
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+        for(int i = offset; i < offset + length; i++) {
+            if(buffer[i] == '\n') {
+                Printer.println(line.toString());
+                line.setLength(0);
+            } else {
+                line.append(buffer[i]);
+            }
+        }
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {
+        if(line.length() > 0) Printer.println(line.toString());
+        line.setLength(0);
+    }
+}
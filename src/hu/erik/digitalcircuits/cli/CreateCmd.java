@@ -40,6 +40,9 @@ public class CreateCmd extends Command {
         actions.put(NORGATE.getValue(), this::createNor);
         actions.put(CIRCUITBOX.getValue(), this::createBox);
         actions.put(JUNCTION.getValue(), this::createJunction);
+        actions.put(CLOCK.getValue(), this::createClock);
+        actions.put(DFLIPFLOP.getValue(), this::createDFlipFlop);
+        actions.put(REGISTER.getValue(), this::createRegister);
     }
 
     /**
@@ -214,4 +217,63 @@ public class CreateCmd extends Command {
             Printer.printErr("Invalid arguments! Try: create junction <name> <output pin number>");
         }
     }
+
+    /**
+     * Creates a Clock.
+     *
+     * @param storage   cli data structure
+     * @param cmd       command, split by spaces
+     */
+    private void createClock(DeviceMap storage, String[] cmd) {
+        if(cmd.length > 3) Printer.printErr(new TooManyArgumentException(cmd[0] + " " + CLOCK));
+        try {
+            storage.add(cmd[2], new DeviceBundle(new Clock(), CLOCK));
+            Printer.println("Clock, " + cmd[2] + " added!");
+        } catch (RedundantKeyException err) {
+            Printer.printErr(err);
+        }
+    }
+
+    /**
+     * Creates a DFlipFlop.
+     *
+     * @param storage   cli data structure
+     * @param cmd       command, split by spaces
+     */
+    private void createDFlipFlop(DeviceMap storage, String[] cmd) {
+        if(cmd.length > 3) Printer.printErr(new TooManyArgumentException(cmd[0] + " " + DFLIPFLOP));
+        try {
+            storage.add(cmd[2], new DeviceBundle(new DFlipFlop(), DFLIPFLOP));
+            Printer.println("DFlipFlop, " + cmd[2] + " added!");
+        } catch (RedundantKeyException err) {
+            Printer.printErr(err);
+        }
+    }
+
+    /**
+     * Creates a Register.
+     *
+     * @param storage   cli data structure
+     * @param cmd       command, split by spaces
+     */
+    private void createRegister(DeviceMap storage, String[] cmd) {
+        if(cmd.length > 4) Printer.printErr(new TooManyArgumentException(cmd[0] + " " + REGISTER));
+        int width;
+        try {
+            width = Integer.parseInt(cmd[3]);
+        } catch (NumberFormatException | IndexOutOfBoundsException err) {
+            width = 0;
+        }
+        if(width < 1) {
+            Printer.printErr("Invalid arguments! Try: create register <name> <bit number>");
+            return;
+        }
+
+        try {
+            storage.add(cmd[2], new DeviceBundle(new Register(width), REGISTER));
+            Printer.println("Register, " + cmd[2] + " added!");
+        } catch (RedundantKeyException err) {
+            Printer.printErr(err);
+        }
+    }
 }
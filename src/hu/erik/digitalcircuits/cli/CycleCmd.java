@@ -0,0 +1,77 @@
+package hu.erik.digitalcircuits.cli;
+
+import hu.erik.digitalcircuits.errors.*;
+import hu.erik.digitalcircuits.simulation.CycleSimulator;
+import hu.erik.digitalcircuits.simulation.Netlist;
+import hu.erik.digitalcircuits.utils.Printer;
+
+/**
+ * Class to handle commands prefixed with "cycle".
+ * Runs clock cycles on a CircuitBox with flip-flops and registers. In every cycle the
+ * combinational logic is evaluated once, then every flip-flop is latched at the same time.
+ */
+public class CycleCmd extends Command {
+
+    /**
+     * Constructor to setup the command's name, format and description.
+     */
+    public CycleCmd() {
+        super(
+                "cycle",
+                "cycle <box name> <cycles> [input bits]",
+                "Runs clock cycles on a box with flip-flops and registers, then shows the outputs and the cycles per second."
+        );
+    }
+
+    /**
+     * Runs the given number of clock cycles on the box from the reset state,
+     * with the box inputs fixed to the given bits.<br>
+     *
+     * Command format:<br>
+     * cycle {@literal <}box name{@literal >} {@literal <}cycles{@literal >} [input bits]
+     *
+     * @param storage                   cli data structure
+     * @param cmd                       command, split by spaces
+     * @throws NotEnoughArgsException   If the number of arguments are less then 2.
+     */
+    @Override
+    public void action(DeviceMap storage, String[] cmd) throws NotEnoughArgsException {
+        if(cmd.length < 3) throw new NotEnoughArgsException(cmd[0], 2, cmd.length - 1);
+        if(cmd.length > 4) Printer.printErr(new TooManyArgumentException(cmd[0]));
+
+        long cycles;
+        try {
+            cycles = Long.parseLong(cmd[2]);
+        } catch (NumberFormatException err) {
+            cycles = -1;
+        }
+        if(cycles < 0) {
+            Printer.printErr("Invalid arguments! Try: cycle <box name> <cycles> [input bits]");
+            return;
+        }
+
+        Netlist netlist = compileBox(storage, cmd[1]);
+        if(netlist == null) return;
+        CycleSimulator simulator = new CycleSimulator(netlist);
+
+        int inputCount = simulator.getNetlist().getInputCount();
+        String bits = cmd.length > 3 ? cmd[3] : "0".repeat(inputCount);
+        if(bits.length() != inputCount || !bits.matches("[01]*")) {
+            Printer.printErr("The box needs exactly " + inputCount + " input bits (0 or 1)!");
+            return;
+        }
+        long[] inputs = new long[inputCount];
+        for(int i = 0; i < inputCount; i++) inputs[i] = bits.charAt(i) == '1' ? -1L : 0L;
+        simulator.setInputs(inputs);
+
+        long start = System.nanoTime();
+        simulator.run(cycles);
+        long micros = Math.max(1, (System.nanoTime() - start) / 1000);
+
+        StringBuilder outputs = new StringBuilder();
+        for(long output : simulator.getOutputs()) outputs.append((output & 1L) == 1L ? '1' : '0');
+        Printer.println("Outputs after " + cycles + " cycles: " + outputs);
+        Printer.println(simulator.getFlipFlopCount() + " flip-flops, " + cycles + " cycles in " + micros
+                + " microseconds (" + cycles * 1_000_000 / micros + " cycles/s).");
+    }
+}
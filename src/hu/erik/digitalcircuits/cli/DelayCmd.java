@@ -0,0 +1,81 @@
+package hu.erik.digitalcircuits.cli;
+
+import hu.erik.digitalcircuits.errors.TooManyArgumentException;
+import hu.erik.digitalcircuits.simulation.DelayModel;
+import hu.erik.digitalcircuits.simulation.Simulation;
+import hu.erik.digitalcircuits.utils.Printer;
+
+import java.util.Map;
+
+/**
+ * Class to handle commands prefixed with "delay".
+ * Shows or sets the propagation delay of the device types for the timed simulation.
+ */
+public class DelayCmd extends Command {
+
+    /**
+     * Constructor to setup the command's name, format and description.
+     */
+    public DelayCmd() {
+        super(
+                "delay",
+                "delay [type] [ticks]",
+                "Shows or sets the propagation delay of the device types, used by the timing command."
+        );
+    }
+
+    /**
+     * Lists the delays, or sets the delay of the given device type.<br>
+     *
+     * Command format:<br>
+     * delay [type] [ticks]
+     *
+     * @param storage   cli data structure
+     * @param cmd       command, split by spaces
+     */
+    @Override
+    public void action(DeviceMap storage, String[] cmd) {
+        if(cmd.length > 3) Printer.printErr(new TooManyArgumentException(cmd[0]));
+        DelayModel model = Simulation.getDelayModel();
+
+        if(cmd.length == 1) {
+            for(Map.Entry<String, Integer> delay : model.getDelays().entrySet()) {
+                Printer.println(delay.getKey() + ": " + delay.getValue() + " tick(s)");
+            }
+            return;
+        }
+
+        String type = cmd[1].toLowerCase();
+        if(!isTimedType(type)) {
+            Printer.printErr("Invalid device type!");
+            return;
+        }
+        if(cmd.length == 2) {
+            Printer.println(type + ": " + model.getDelay(type) + " tick(s)");
+            return;
+        }
+
+        try {
+            int ticks = Integer.parseInt(cmd[2]);
+            if(ticks < 0) throw new NumberFormatException();
+            model.setDelay(type, ticks);
+            Printer.println("Delay of " + type + " is now " + ticks + " tick(s)");
+        } catch (NumberFormatException err) {
+            Printer.printErr("Delay must be a non-negative whole number!");
+        }
+    }
+
+    /**
+     * Checks whether the type is a device type which has a delay. CircuitBoxes
+     * don't have their own delay, their devices are simulated one by one.
+     *
+     * @param type  lowercase type name
+     * @return      true if the type can have a delay
+     */
+    private boolean isTimedType(String type) {
+        for(DeviceType deviceType : DeviceType.values()) {
+            if(deviceType != DeviceType.CIRCUITBOX && deviceType.getValue().equals(type)) return true;
+        }
+        return false;
+    }
+}
@@ -4,8 +4,12 @@ import hu.erik.digitalcircuits.devices.Pin;
 import hu.erik.digitalcircuits.errors.DeviceNotExistsException;
 import hu.erik.digitalcircuits.errors.NotEnoughArgsException;
 import hu.erik.digitalcircuits.errors.TooManyArgumentException;
+import hu.erik.digitalcircuits.simulation.FeedbackLoops;
+import hu.erik.digitalcircuits.simulation.Simulation;
 import hu.erik.digitalcircuits.utils.Printer;
 
+import java.util.List;
+
 /**
  * Class to handle command prefixed with "delete".
  */
@@ -24,7 +28,7 @@ public class DeleteCmd extends Command {
 
     /**
      * Deletes a device with the given name, and also disconnects the device from
-     * every other connected devices.<br>
+     * every other connected devices. The feedback loops inside the device are unregistered.<br>
      *
      * Command format:<br>
      * delete {@literal <}name{@literal >}
@@ -44,6 +48,7 @@ public class DeleteCmd extends Command {
             connectionReset(device.getDevice().inputPins(), false);
             connectionReset(device.getDevice().outputPins(), true);
             storage.remove(cmd[1]);
+            FeedbackLoops.unregister(List.of(device.getDevice()));
             Printer.println("Device has been deleted!");
         } catch (DeviceNotExistsException err) {
             Printer.printErr(err);
@@ -63,10 +68,14 @@ public class DeleteCmd extends Command {
                 Pin otherPin = p.getConnectionCable().getOtherPin(p);
                 otherPin.setConnectionCable(null);
                 otherPin.setAvailability(true);
+                Simulation.circuitChanged();
                 if(isOutput) {
+                    FeedbackLoops.disconnected(p.getParentDevice(), otherPin.getParentDevice());
                     otherPin.setSignal(false);
                     otherPin.getParentDevice().calcOutput();
                     otherPin.getParentDevice().sendOutput();
+                } else {
+                    FeedbackLoops.disconnected(otherPin.getParentDevice(), p.getParentDevice());
                 }
             }
             // This is necessary because of CircuitBox reference bindings
@@ -2,12 +2,17 @@ package hu.erik.digitalcircuits.cli;
 
 import hu.erik.digitalcircuits.devices.*;
 import hu.erik.digitalcircuits.errors.*;
-import hu.erik.digitalcircuits.utils.FileHandler;
+import hu.erik.digitalcircuits.simulation.CircuitInstance;
+import hu.erik.digitalcircuits.simulation.CircuitTemplate;
+import hu.erik.digitalcircuits.simulation.FeedbackLoops;
+import hu.erik.digitalcircuits.simulation.Stimulus;
 import hu.erik.digitalcircuits.utils.Printer;
+import hu.erik.digitalcircuits.utils.TemplateCache;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.function.BiConsumer;
 
 import static hu.erik.digitalcircuits.cli.DeviceType.*;
@@ -22,11 +27,17 @@ public class DeviceCmd extends Command {
      * Based on device type, it has O(1) complexity reach.
      */
     private HashMap<DeviceType, BiConsumer<DeviceMap, String[]>> actions;
+    /**
+     * Cache of the loaded box files, shared with the cache command.
+     */
+    private TemplateCache cache;
 
     /**
      * Constructor to setup the command's name, format, description and it's possible actions.
+     *
+     * @param cache cache of the loaded box files
      */
-    public DeviceCmd() {
+    public DeviceCmd(TemplateCache cache) {
         super(
                 "device",
                 "device <name> <uniqe method> <args...>",
@@ -36,6 +47,8 @@ public class DeviceCmd extends Command {
         actions.put(SWITCH, this::handleSwitch);
         actions.put(JUNCTION, this::handleJunction);
         actions.put(CIRCUITBOX, this::handleCircuitBox);
+        actions.put(CLOCK, this::handleClock);
+        this.cache = cache;
     }
 
     /**
@@ -57,6 +70,16 @@ public class DeviceCmd extends Command {
             return;
         }
 
+        if(cmd[2].strip().equalsIgnoreCase("instance")) {
+            handleInstance(storage, cmd);
+            return;
+        }
+
+        if(cmd[1].equalsIgnoreCase("set") && cmd[2].contains("=")) {
+            handleSet(storage, cmd);
+            return;
+        }
+
         try {
             actions.get(storage.get(cmd[1]).getType()).accept(storage, cmd);
         } catch (NullPointerException err) {
@@ -97,6 +120,85 @@ public class DeviceCmd extends Command {
         }
     }
 
+    /**
+     * Handles Clock specific unique methods like TICK and CYCLE.<br>
+     *
+     * Command formats:<br>
+     * device {@literal <}name{@literal >} tick<br>
+     * device {@literal <}name{@literal >} cycle [count]
+     *
+     * @param storage   cli data structure
+     * @param cmd       command, split by spaces
+     */
+    private void handleClock(DeviceMap storage, String[] cmd) {
+        if(cmd.length > 4) Printer.printErr(new TooManyArgumentException(cmd[0]));
+        Clock clock;
+
+        try {
+            clock = (Clock) storage.get(cmd[1]).getDevice();
+        } catch (DeviceNotExistsException err) {
+            Printer.printErr(err);
+            return;
+        }
+
+        if(cmd[2].equalsIgnoreCase("tick")) {
+            clock.tick();
+            Printer.println("Your clock is now " + (clock.isHigh() ? "HIGH(1)" : "LOW(0)"));
+        } else if(cmd[2].equalsIgnoreCase("cycle")) {
+            try {
+                long cycles = cmd.length > 3 ? Long.parseLong(cmd[3]) : 1;
+                long start = System.nanoTime();
+                clock.cycle(cycles);
+                long micros = Math.max(1, (System.nanoTime() - start) / 1000);
+                Printer.println(cycles + " cycles in " + micros + " microseconds ("
+                        + cycles * 1_000_000 / micros + " cycles/s).");
+            } catch (NumberFormatException err) {
+                Printer.printErr("Invalid arguments! Try: device <name> cycle [count]");
+            }
+        } else {
+            Printer.printErr("Invalid arguments! Try: device <name> <tick | cycle [count]>");
+        }
+    }
+
+    /**
+     * Sets many switches at once, then updates the circuit with one propagation.
+     * If any of the assignments is invalid, none of the switches will be changed.<br>
+     *
+     * Command format:<br>
+     * device set {@literal <}name{@literal >}={@literal <}1 or 0{@literal >} {@literal <}name{@literal >}={@literal <}1 or 0{@literal >} ...
+     *
+     * @param storage   cli data structure
+     * @param cmd       command, split by spaces
+     */
+    private void handleSet(DeviceMap storage, String[] cmd) {
+        Stimulus stimulus = new Stimulus();
+
+        for(int i = 2; i < cmd.length; i++) {
+            String[] assignment = cmd[i].split("=");
+            if(assignment.length != 2 || !(assignment[1].equals("1") || assignment[1].equals("0"))) {
+                Printer.printErr("Invalid assignment: " + cmd[i] + "! Try: device set <name>=<1 | 0> ...");
+                Printer.printErr("None of the switches will be changed!");
+                return;
+            }
+            try {
+                DeviceBundle bundle = storage.get(assignment[0]);
+                if(!bundle.getType().equals(SWITCH)) {
+                    Printer.printErr(assignment[0] + " is not a switch!");
+                    Printer.printErr("None of the switches will be changed!");
+                    return;
+                }
+                stimulus.set((Switch) bundle.getDevice(), assignment[1].equals("1"));
+            } catch (DeviceNotExistsException err) {
+                Printer.printErr(err);
+                Printer.printErr("None of the switches will be changed!");
+                return;
+            }
+        }
+
+        int changed = stimulus.apply();
+        Printer.println(changed + " switch(es) changed with one propagation.");
+    }
+
     /**
      * Handles junction specific unique methods like CONNECTALL.<br>
      *
@@ -155,8 +257,40 @@ public class DeviceCmd extends Command {
         }
     }
 
+    /**
+     * Creates a new instance of a saved box. The box file is only loaded and compiled
+     * the first time, every later instance shares the same template while the file
+     * doesn't change.<br>
+     *
+     * Command format:<br>
+     * device {@literal <}box name{@literal >} instance {@literal <}instance name{@literal >}
+     *
+     * @param storage   cli data structure
+     * @param cmd       command, split by spaces
+     */
+    private void handleInstance(DeviceMap storage, String[] cmd) {
+        if(cmd.length < 4) {
+            Printer.printErr("Invalid arguments! Try: device <box name> instance <instance name>");
+            return;
+        }
+        if(cmd.length > 4) Printer.printErr(new TooManyArgumentException(cmd[0]));
+
+        try {
+            CircuitTemplate template = cache.get(cmd[1]).getTemplate();
+            storage.add(cmd[3], new DeviceBundle(new CircuitInstance(template), INSTANCE));
+            Printer.println("Instance of " + template.getName() + ", " + cmd[3] + " added!");
+        } catch (IOException | ClassNotFoundException err) {
+            Printer.printErr("Something went wrong with the circuit loading!");
+        } catch (FeedbackLoopException | RedundantKeyException err) {
+            Printer.printErr(err);
+        } catch (IllegalArgumentException err) {
+            Printer.printErr(err.getMessage() + " Use: device <box name> load");
+        }
+    }
+
     /**
      * Handles circuit box specific unique methods like LOAD<br>
+     * The box file is only deserialized if it's not in the cache, otherwise the cached box is copied.<br>
      *
      * Command formats:<br>
      * device {@literal <}name{@literal >} load
@@ -167,8 +301,9 @@ public class DeviceCmd extends Command {
     private void handleCircuitBox(DeviceMap storage, String[] cmd) {
         if(cmd.length > 3) Printer.printErr(new TooManyArgumentException(cmd[0]));
         try {
-            CircuitBox box = FileHandler.loadCircuit(cmd[1]);
+            CircuitBox box = cache.get(cmd[1]).newBox();
             storage.add(box.getName(), new DeviceBundle(box, CIRCUITBOX));
+            FeedbackLoops.analyze(List.of(box));
             Printer.println("Circuit loaded!");
         } catch (IOException | ClassNotFoundException err) {
             Printer.printErr("Something went wrong with the circuit loading!");
@@ -1,14 +1,26 @@
 package hu.erik.digitalcircuits.cli;
 
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.devices.Device;
 import hu.erik.digitalcircuits.errors.DeviceNotExistsException;
 import hu.erik.digitalcircuits.errors.RedundantKeyException;
+import hu.erik.digitalcircuits.simulation.CircuitHierarchy;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
 
 /**
  * Data structure for storing user created devices.
+ * Besides the name lookup, it keeps the names of every device type in alphabetical order,
+ * so the devices of a type, or the names with a given prefix can be listed and counted
+ * without checking every device.
  */
 public class DeviceMap {
     /**
@@ -18,12 +30,18 @@ public class DeviceMap {
      * very useful when the user tries to access his/her devices.
      */
     private HashMap<String , DeviceBundle> map;
+    /**
+     * Names of the stored devices in alphabetical order for every device type.
+     */
+    private EnumMap<DeviceType, TreeSet<String>> typeIndex;
 
     /**
      * Default constructor for initializing.
      */
     public DeviceMap() {
         this.map = new HashMap<>();
+        this.typeIndex = new EnumMap<>(DeviceType.class);
+        for(DeviceType type : DeviceType.values()) typeIndex.put(type, new TreeSet<>());
     }
 
     /**
@@ -36,6 +54,7 @@ public class DeviceMap {
     public void add(String name, DeviceBundle bundle) throws RedundantKeyException {
         if(map.get(name) != null) throw new RedundantKeyException(name);
         map.put(name, bundle);
+        typeIndex.get(bundle.getType()).add(name);
     }
 
     /**
@@ -47,6 +66,7 @@ public class DeviceMap {
     public void remove(String name) throws DeviceNotExistsException {
         DeviceBundle d = map.remove(name);
         if(d == null) throw new DeviceNotExistsException(name);
+        typeIndex.get(d.getType()).remove(name);
     }
 
     /**
@@ -58,10 +78,134 @@ public class DeviceMap {
      */
     public DeviceBundle get(String name) throws DeviceNotExistsException {
         DeviceBundle device = map.get(name);
+        if(device == null && name.indexOf(CircuitHierarchy.SEPARATOR) > 0) device = getInner(name);
         if(device == null) throw new DeviceNotExistsException(name);
         return device;
     }
 
+    /**
+     * Finds a device inside a stored box by its "box/inner" path.
+     *
+     * @param path  name of the box and the inner name of the device
+     * @return      the device with it's type, or null if the path doesn't lead to a device
+     */
+    private DeviceBundle getInner(String path) {
+        int separator = path.indexOf(CircuitHierarchy.SEPARATOR);
+        DeviceBundle box = map.get(path.substring(0, separator));
+        if(box == null || !box.getType().equals(DeviceType.CIRCUITBOX)) return null;
+        Device device = CircuitHierarchy.resolve((CircuitBox) box.getDevice(), path.substring(separator + 1));
+        return device == null ? null : new DeviceBundle(device, DeviceType.of(device));
+    }
+
+    /**
+     * Finds the name of the given device with a linear search. Devices inside
+     * the stored boxes get their "box/inner" path.
+     * Should only be used for rare events, like error messages.
+     *
+     * @param device    device to look for
+     * @return          name of the device or null if it isn't stored here
+     */
+    public String nameOf(Device device) {
+        for(Map.Entry<String, DeviceBundle> entry : map.entrySet()) {
+            if(entry.getValue().getDevice() == device) return entry.getKey();
+        }
+        for(Map.Entry<String, DeviceBundle> entry : map.entrySet()) {
+            if(!entry.getValue().getType().equals(DeviceType.CIRCUITBOX)) continue;
+            CircuitBox box = (CircuitBox) entry.getValue().getDevice();
+            for(Map.Entry<String, Device> inner : CircuitHierarchy.innerDevices(box).entrySet()) {
+                if(inner.getValue() == device) return entry.getKey() + CircuitHierarchy.SEPARATOR + inner.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of the stored devices of the given type.
+     *
+     * @param type  type of the devices, or null for every type
+     * @return      number of the devices
+     */
+    public int count(DeviceType type) {
+        return type == null ? map.size() : typeIndex.get(type).size();
+    }
+
+    /**
+     * Calls the action for every stored device of the given type, whose name matches the pattern,
+     * in the alphabetical order of the names. In the pattern "*" matches any number of characters,
+     * and "?" matches one character. Only the names starting with the part before the first
+     * wildcard are checked. Without a type, the sorted names of the types are merged.
+     *
+     * @param type      type of the devices, or null for every type
+     * @param pattern   pattern of the names, or null for every name
+     * @param action    called with the name and the device
+     * @return          number of the matching devices
+     */
+    public int forEachMatch(DeviceType type, String pattern, BiConsumer<String, DeviceBundle> action) {
+        int wildcard = 0;
+        while(pattern != null && wildcard < pattern.length()
+                && pattern.charAt(wildcard) != '*' && pattern.charAt(wildcard) != '?') wildcard++;
+        if(pattern != null && wildcard == pattern.length()) {
+            DeviceBundle bundle = map.get(pattern);
+            if(bundle == null || (type != null && bundle.getType() != type)) return 0;
+            action.accept(pattern, bundle);
+            return 1;
+        }
+
+        String prefix = pattern == null ? "" : pattern.substring(0, wildcard);
+        List<Iterator<String>> sources = new ArrayList<>();
+        for(DeviceType current : type == null ? DeviceType.values() : new DeviceType[] {type}) {
+            Iterator<String> source = typeIndex.get(current).tailSet(prefix, true).iterator();
+            if(source.hasNext()) sources.add(source);
+        }
+        String[] heads = new String[sources.size()];
+        for(int i = 0; i < heads.length; i++) heads[i] = sources.get(i).next();
+
+        int count = 0;
+        while(true) {
+            int first = -1;
+            for(int i = 0; i < heads.length; i++) {
+                if(heads[i] != null && (first < 0 || heads[i].compareTo(heads[first]) < 0)) first = i;
+            }
+            if(first < 0 || !heads[first].startsWith(prefix)) return count;
+            String name = heads[first];
+            heads[first] = sources.get(first).hasNext() ? sources.get(first).next() : null;
+            if(pattern != null && !matches(pattern, name)) continue;
+            action.accept(name, map.get(name));
+            count++;
+        }
+    }
+
+    /**
+     * Checks whether the name matches the pattern, where "*" matches any number
+     * of characters, and "?" matches one character.
+     *
+     * @param pattern   pattern of the name
+     * @param name      name to check
+     * @return          true if the name matches
+     */
+    static boolean matches(String pattern, String name) {
+        int p = 0;
+        int n = 0;
+        int star = -1;
+        int starMatch = 0;
+        while(n < name.length()) {
+            if(p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == name.charAt(n))) {
+                p++;
+                n++;
+            } else if(p < pattern.length() && pattern.charAt(p) == '*') {
+                star = p++;
+                starMatch = n;
+            } else if(star >= 0) {
+                p = star + 1;
+                n = ++starMatch;
+            } else {
+                return false;
+            }
+        }
+        while(p < pattern.length() && pattern.charAt(p) == '*') p++;
+        return p == pattern.length();
+    }
+
     /**
      * Returns the full device map in an unmodifiable format.
      * Useful for iterations.
@@ -1,5 +1,7 @@
 package hu.erik.digitalcircuits.cli;
 
+import hu.erik.digitalcircuits.devices.Device;
+
 /**
  * Stores unified device types. The whole Cli will use this.
  */
@@ -40,7 +42,23 @@ public enum DeviceType {
     /**
      * Represents an OrGate type.
      */
-    ORGATE("orgate");
+    ORGATE("orgate"),
+    /**
+     * Represents a Clock type.
+     */
+    CLOCK("clock"),
+    /**
+     * Represents a DFlipFlop type.
+     */
+    DFLIPFLOP("dflipflop"),
+    /**
+     * Represents a Register type.
+     */
+    REGISTER("register"),
+    /**
+     * Represents a CircuitInstance type.
+     */
+    INSTANCE("instance");
 
     /**
      * String value of the enum. Will be useful in commands, and in the whole cli.
@@ -63,6 +81,33 @@ public enum DeviceType {
         return value;
     }
 
+    /**
+     * Finds the type by its string value.
+     *
+     * @param value     string value of the type, case insensitive
+     * @return          the type, or null if there isn't any type with this value
+     */
+    public static DeviceType fromValue(String value) {
+        for(DeviceType type : values()) {
+            if(type.value.equalsIgnoreCase(value)) return type;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the type of a device based on its class name.
+     *
+     * @param device    device whose type is required
+     * @return          type of the device, or null if it isn't a known type
+     */
+    public static DeviceType of(Device device) {
+        String name = device.toString().toLowerCase();
+        for(DeviceType type : values()) {
+            if(type.value.equals(name)) return type;
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         return value;
@@ -0,0 +1,74 @@
+package hu.erik.digitalcircuits.cli;
+
+import hu.erik.digitalcircuits.devices.Device;
+import hu.erik.digitalcircuits.errors.TooManyArgumentException;
+import hu.erik.digitalcircuits.simulation.LevelizedEngine;
+import hu.erik.digitalcircuits.simulation.PropagationEngine;
+import hu.erik.digitalcircuits.simulation.Simulation;
+import hu.erik.digitalcircuits.simulation.WorklistEngine;
+import hu.erik.digitalcircuits.utils.Printer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to handle commands prefixed with "engine".
+ * Switches between the propagation engines and reports their work.
+ */
+public class EngineCmd extends Command {
+
+    /**
+     * Constructor to setup the command's name, format and description.
+     */
+    public EngineCmd() {
+        super(
+                "engine",
+                "engine [worklist | levelized]",
+                "Selects the propagation engine. Without arguments, shows the evaluations of the last propagation."
+        );
+    }
+
+    /**
+     * Selects the required propagation engine, or shows information about the current one.<br>
+     *
+     * Command format:<br>
+     * engine [worklist | levelized]
+     *
+     * @param storage                   cli data structure
+     * @param cmd                       command, split by spaces
+     */
+    @Override
+    public void action(DeviceMap storage, String[] cmd) {
+        if(cmd.length > 2) Printer.printErr(new TooManyArgumentException(cmd[0]));
+
+        if(cmd.length == 1) {
+            PropagationEngine engine = Simulation.getEngine();
+            Printer.println("Propagation engine: " + engine.getName());
+            Printer.println("Last propagation: " + engine.getEvaluations() + " device evaluations on "
+                    + engine.getDepth() + " levels, " + engine.getTransfers() + " changed pins, "
+                    + engine.getSuppressedEvaluations() + " suppressed because their input didn't change");
+        } else if(cmd[1].equalsIgnoreCase("worklist")) {
+            Simulation.setEngine(new WorklistEngine());
+            Printer.println("Propagation engine is now: worklist");
+        } else if(cmd[1].equalsIgnoreCase("levelized")) {
+            LevelizedEngine engine = new LevelizedEngine();
+            engine.compile(devicesOf(storage));
+            Simulation.setEngine(engine);
+            Printer.println("Propagation engine is now: levelized");
+        } else {
+            Printer.printErr("Invalid arguments! Try: " + getFormat());
+        }
+    }
+
+    /**
+     * Returns every device stored in the cli data structure.
+     *
+     * @param storage   cli data structure
+     * @return          the stored devices
+     */
+    private List<Device> devicesOf(DeviceMap storage) {
+        List<Device> devices = new ArrayList<>();
+        for(DeviceBundle bundle : storage.getMap().values()) devices.add(bundle.getDevice());
+        return devices;
+    }
+}
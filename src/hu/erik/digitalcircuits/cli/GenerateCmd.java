@@ -0,0 +1,137 @@
+package hu.erik.digitalcircuits.cli;
+
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.devices.CircuitGenerator;
+import hu.erik.digitalcircuits.errors.*;
+import hu.erik.digitalcircuits.simulation.FeedbackLoops;
+import hu.erik.digitalcircuits.utils.FileHandler;
+import hu.erik.digitalcircuits.utils.Printer;
+
+import java.io.IOException;
+import java.util.List;
+
+import static hu.erik.digitalcircuits.cli.DeviceType.CIRCUITBOX;
+
+/**
+ * Class to handle commands prefixed with "generate".
+ * Builds large circuits, like adders, multipliers or random logic, to test the simulator at scale.
+ */
+public class GenerateCmd extends Command {
+
+    /**
+     * Constructor to setup the command's name, format and description.
+     */
+    public GenerateCmd() {
+        super(
+                "generate",
+                "generate <ripple | lookahead | multiplier | decoder | latches | random> <box name> <size | gates depth fanout [seed]> [save]",
+                "Creates a box with a generated circuit of the given size. With save, it is written to a box file instead."
+        );
+    }
+
+    /**
+     * Generates a circuit into a new box. The size is the width of the adders and the multiplier,
+     * the number of inputs of the decoder and the number of latches. A random circuit is generated
+     * with the given number of gates on the given number of levels, and every signal has at most
+     * fanout readers. The same seed always gives the same circuit.<br>
+     * With the save option the box is written to the "box name".dcb file without adding it to the session,
+     * so it can be simulated from the file.<br>
+     *
+     * Command format:<br>
+     * generate {@literal <}ripple | lookahead | multiplier | decoder | latches{@literal >} {@literal <}box name{@literal >} {@literal <}size{@literal >} [save]<br>
+     * generate random {@literal <}box name{@literal >} {@literal <}gates{@literal >} {@literal <}depth{@literal >} {@literal <}fanout{@literal >} [seed] [save]
+     *
+     * @param storage                   cli data structure
+     * @param cmd                       command, split by spaces
+     * @throws NotEnoughArgsException   If the number of arguments are less then 3, or less then 5 for a random circuit.
+     */
+    @Override
+    public void action(DeviceMap storage, String[] cmd) throws NotEnoughArgsException {
+        if(cmd.length < 4) throw new NotEnoughArgsException(cmd[0], 3, cmd.length - 1);
+        String kind = cmd[1].toLowerCase();
+        boolean random = kind.equals("random");
+        if(random && cmd.length < 6) throw new NotEnoughArgsException(cmd[0], 5, cmd.length - 1);
+
+        int end = cmd.length;
+        boolean save = cmd[end - 1].equalsIgnoreCase("save");
+        if(save) end--;
+        int maxArgs = random ? 7 : 4;
+        if(end > maxArgs) Printer.printErr(new TooManyArgumentException(cmd[0]));
+
+        String name = cmd[2];
+        if(!save && storage.getMap().containsKey(name)) {
+            Printer.printErr(new RedundantKeyException(name));
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            CircuitBox box = generate(kind, name, cmd, end);
+            if(box == null) {
+                Printer.printErr("Unknown circuit: " + cmd[1] + "! Try: " + getFormat());
+                return;
+            }
+            if(save) {
+                FileHandler.saveCircuit(box);
+            } else {
+                storage.add(name, new DeviceBundle(box, CIRCUITBOX));
+                // Only the latches have feedback loops, the other circuits are acyclic by construction.
+                if(kind.equals("latches")) FeedbackLoops.analyze(List.of(box));
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            Printer.println((save ? "Saved " : "Generated ") + name + " with " + box.inputPins().length + " inputs and "
+                    + box.outputPins().length + " outputs in " + millis + " milliseconds.");
+        } catch (NumberFormatException err) {
+            Printer.printErr("Invalid size! It must be a positive number.");
+        } catch (IllegalArgumentException err) {
+            Printer.printErr(err.getMessage());
+        } catch (RedundantKeyException err) {
+            Printer.printErr(err);
+        } catch (IOException err) {
+            Printer.printErr("Something went wrong with the box file handling!");
+        }
+    }
+
+    /**
+     * Generates the circuit of the given kind.
+     *
+     * @param kind                      kind of the circuit, in lower case
+     * @param name                      name of the box
+     * @param cmd                       command, split by spaces
+     * @param end                       index after the last size argument
+     * @return                          the box, or null if the kind is unknown
+     * @throws NumberFormatException    If a size is not a positive number.
+     */
+    private static CircuitBox generate(String kind, String name, String[] cmd, int end) {
+        switch(kind) {
+            case "ripple":
+                return CircuitGenerator.rippleCarryAdder(name, positive(cmd[3]));
+            case "lookahead":
+                return CircuitGenerator.carryLookaheadAdder(name, positive(cmd[3]));
+            case "multiplier":
+                return CircuitGenerator.arrayMultiplier(name, positive(cmd[3]));
+            case "decoder":
+                return CircuitGenerator.decoder(name, positive(cmd[3]));
+            case "latches":
+                return CircuitGenerator.norLatches(name, positive(cmd[3]));
+            case "random":
+                long seed = end > 6 ? Long.parseLong(cmd[6]) : 0;
+                return CircuitGenerator.randomDag(name, positive(cmd[3]), positive(cmd[4]), positive(cmd[5]), seed);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Parses a size argument.
+     *
+     * @param arg                       the argument
+     * @return                          the size
+     * @throws NumberFormatException    If the argument is not a positive number.
+     */
+    private static int positive(String arg) {
+        int value = Integer.parseInt(arg);
+        if(value < 1) throw new NumberFormatException();
+        return value;
+    }
+}
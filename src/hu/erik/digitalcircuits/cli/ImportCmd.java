@@ -0,0 +1,75 @@
+package hu.erik.digitalcircuits.cli;
+
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.devices.NetlistImporter;
+import hu.erik.digitalcircuits.errors.*;
+import hu.erik.digitalcircuits.simulation.FeedbackLoops;
+import hu.erik.digitalcircuits.utils.Printer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static hu.erik.digitalcircuits.cli.DeviceType.CIRCUITBOX;
+
+/**
+ * Class to handle commands prefixed with "import".
+ * Builds a CircuitBox from a benchmark netlist file in the ISCAS .bench or in the BLIF format.
+ */
+public class ImportCmd extends Command {
+
+    /**
+     * Constructor to setup the command's name, format and description.
+     */
+    public ImportCmd() {
+        super(
+                "import",
+                "import <netlist file> [box name]",
+                "Creates a box from a .bench or a .blif netlist. Flip-flops get an extra last input as their clock."
+        );
+    }
+
+    /**
+     * Imports the netlist file into a new box. The box is named after the
+     * file without its extension, if the name is not given.<br>
+     *
+     * Command format:<br>
+     * import {@literal <}netlist file{@literal >} [box name]
+     *
+     * @param storage                   cli data structure
+     * @param cmd                       command, split by spaces
+     * @throws NotEnoughArgsException   If the number of arguments are less then 1.
+     */
+    @Override
+    public void action(DeviceMap storage, String[] cmd) throws NotEnoughArgsException {
+        if(cmd.length < 2) throw new NotEnoughArgsException(cmd[0], 1, cmd.length - 1);
+        if(cmd.length > 3) Printer.printErr(new TooManyArgumentException(cmd[0]));
+        if(!NetlistImporter.isSupported(cmd[1])) {
+            Printer.printErr(cmd[1] + " is not a .bench or a .blif file!");
+            return;
+        }
+
+        Path file = Paths.get(cmd[1]);
+        String fileName = file.getFileName().toString();
+        String name = cmd.length > 2 ? cmd[2] : fileName.substring(0, fileName.lastIndexOf('.'));
+        if(storage.getMap().containsKey(name)) {
+            Printer.printErr(new RedundantKeyException(name));
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            CircuitBox box = NetlistImporter.importFile(file, name);
+            storage.add(name, new DeviceBundle(box, CIRCUITBOX));
+            FeedbackLoops.analyze(List.of(box));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            Printer.println("Imported " + name + " with " + box.inputPins().length + " inputs and "
+                    + box.outputPins().length + " outputs in " + millis + " milliseconds.");
+        } catch (NetlistFormatException | RedundantKeyException err) {
+            Printer.printErr(err);
+        } catch (IOException err) {
+            Printer.printErr("Something went wrong with the netlist file handling!");
+        }
+    }
+}
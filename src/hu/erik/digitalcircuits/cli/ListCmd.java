@@ -1,10 +1,7 @@
 package hu.erik.digitalcircuits.cli;
 
-import hu.erik.digitalcircuits.errors.TooManyArgumentException;
 import hu.erik.digitalcircuits.utils.Printer;
 
-import java.util.Map;
-
 /**
  * Class to handle commands prefixed with "list".
  */
@@ -16,67 +13,70 @@ public class ListCmd extends Command {
     public ListCmd() {
         super(
                 "list",
-                "list [type]",
-                "Lists all available device type."
+                "list [count] [type] [pattern ...]",
+                "Lists the created devices in alphabetical order, filtered by type and by name patterns like add_*."
         );
     }
 
     /**
-     * Lists the name and type of the created devices.
-     * It supports filtering by device type.<br>
+     * Lists the name and type of the created devices in alphabetical order.
+     * It supports filtering by device type, and by name patterns, where
+     * "*" matches any number of characters and "?" matches one character.
+     * With the count option, only the number of the devices is shown.<br>
      *
      * Command format:<br>
-     * list [type]
+     * list [count] [type] [pattern ...]
      *
      * @param storage                   cli data structure
      * @param cmd                       command, splitted by spaces
      */
     @Override
     public void action(DeviceMap storage, String[] cmd) {
+        int next = 1;
+        boolean countOnly = next < cmd.length && cmd[next].equalsIgnoreCase("count");
+        if(countOnly) next++;
+        DeviceType type = next < cmd.length ? DeviceType.fromValue(cmd[next]) : null;
+        if(type != null) next++;
 
-        if(cmd.length > 2) Printer.printErr(new TooManyArgumentException(cmd[0]));
-
-        if(cmd.length == 1) {
-            listAll(storage);
-        } else {
-            listFiltered(storage, cmd[1].toLowerCase());
+        if(next == cmd.length) {
+            int count = countOnly ? storage.count(type) : storage.forEachMatch(type, null, ListCmd::print);
+            printCount(countOnly, count);
+            return;
         }
 
+        int firstPattern = next;
+        int[] count = {0};
+        for(int i = firstPattern; i < cmd.length; i++) {
+            int current = i;
+            storage.forEachMatch(type, cmd[i], (name, bundle) -> {
+                for(int previous = firstPattern; previous < current; previous++) {
+                    if(DeviceMap.matches(cmd[previous], name)) return;
+                }
+                count[0]++;
+                if(!countOnly) print(name, bundle);
+            });
+        }
+        printCount(countOnly, count[0]);
     }
 
     /**
-     * Lists all of the stored devices with their name and type.
+     * Prints the type and the name of a device.
      *
-     * @param storage    cli data structure
+     * @param name      name of the device
+     * @param bundle    the device with its type
      */
-    private void listAll(DeviceMap storage) {
-        Map<String, DeviceBundle> devices = storage.getMap();
-
-        for(String name : devices.keySet()) {
-            DeviceType type = devices.get(name).getType();
-            Printer.println("[" + type + "]" + " ".repeat(15 - type.getValue().length()) + name);
-        }
-
-        Printer.println("Done!");
+    private static void print(String name, DeviceBundle bundle) {
+        String type = bundle.getType().getValue();
+        Printer.println("[" + type + "]" + " ".repeat(Math.max(0, 15 - type.length())) + name);
     }
 
     /**
-     * Lists all of the stored devices with their name and type if the
-     * given type is equals to the device type.
+     * Prints the number of the listed devices.
      *
-     * @param storage   cli data structure
-     * @param type      filter criteria
+     * @param countOnly determines whether the devices were listed or only counted
+     * @param count     number of the devices
      */
-    private void listFiltered(DeviceMap storage, String type) {
-        Map<String, DeviceBundle> devices = storage.getMap();
-
-        for(String name : devices.keySet()) {
-            String currentType = devices.get(name).getType().getValue();
-            if(currentType.equals(type)) {
-                Printer.println("[" + type + "]" + " ".repeat(15 - type.length()) + name);
-            }
-        }
-
-        Printer.println("Done!");
+    private static void printCount(boolean countOnly, int count) {
+        Printer.println(countOnly ? count + " devices." : "Done! " + count + " devices.");
     }
 }
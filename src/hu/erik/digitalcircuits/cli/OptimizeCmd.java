@@ -0,0 +1,80 @@
+package hu.erik.digitalcircuits.cli;
+
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.errors.*;
+import hu.erik.digitalcircuits.simulation.Netlist;
+import hu.erik.digitalcircuits.simulation.NetlistCompiler;
+import hu.erik.digitalcircuits.simulation.NetlistOptimizer;
+import hu.erik.digitalcircuits.utils.Printer;
+
+import static hu.erik.digitalcircuits.cli.DeviceType.CIRCUITBOX;
+
+/**
+ * Class to handle commands prefixed with "optimize".
+ * Shows how much the netlist optimization simplifies a CircuitBox. The simulate, truthtable
+ * and cycle commands always run the optimized netlist, the box itself is not changed.
+ */
+public class OptimizeCmd extends Command {
+
+    /**
+     * Constructor to setup the command's name, format and description.
+     */
+    public OptimizeCmd() {
+        super(
+                "optimize",
+                "optimize <box name>",
+                "Folds constants, removes inverter pairs and unused logic, shows the gate count before and after."
+        );
+    }
+
+    /**
+     * Optimizes the netlist of the given box and shows the result.<br>
+     *
+     * Command format:<br>
+     * optimize {@literal <}box name{@literal >}
+     *
+     * @param storage                   cli data structure
+     * @param cmd                       command, split by spaces
+     * @throws NotEnoughArgsException   If the number of arguments are less then 1.
+     */
+    @Override
+    public void action(DeviceMap storage, String[] cmd) throws NotEnoughArgsException {
+        if(cmd.length < 2) throw new NotEnoughArgsException(cmd[0], 1, cmd.length - 1);
+        if(cmd.length > 2) Printer.printErr(new TooManyArgumentException(cmd[0]));
+
+        DeviceBundle bundle;
+        try {
+            bundle = storage.get(cmd[1]);
+        } catch (DeviceNotExistsException err) {
+            Printer.printErr(err);
+            return;
+        }
+        if(!bundle.getType().equals(CIRCUITBOX)) {
+            Printer.printErr(cmd[1] + " is not a " + CIRCUITBOX + "!");
+            return;
+        }
+
+        try {
+            Printer.println(cmd[1] + " >> " + report((CircuitBox) bundle.getDevice()));
+        } catch (FeedbackLoopException err) {
+            Printer.printErr(err);
+        }
+    }
+
+    /**
+     * Compiles and optimizes the box, then describes the difference.
+     *
+     * @param box                       box to optimize
+     * @return                          gate and level count before and after the optimization
+     * @throws FeedbackLoopException    If the box contains a feedback loop.
+     */
+    static String report(CircuitBox box) throws FeedbackLoopException {
+        Netlist original = NetlistCompiler.compile(box, null);
+        long start = System.nanoTime();
+        Netlist optimized = NetlistOptimizer.optimize(original);
+        long micros = (System.nanoTime() - start) / 1000;
+        return "Optimized from " + original.getGateCount() + " gates (" + original.getLevelCount() + " levels) to "
+                + optimized.getGateCount() + " gates (" + optimized.getLevelCount() + " levels) in "
+                + micros + " microseconds.";
+    }
+}
@@ -0,0 +1,120 @@
+package hu.erik.digitalcircuits.cli;
+
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.devices.Device;
+import hu.erik.digitalcircuits.errors.*;
+import hu.erik.digitalcircuits.simulation.CircuitHierarchy;
+import hu.erik.digitalcircuits.simulation.Simulation;
+import hu.erik.digitalcircuits.simulation.VcdRecorder;
+import hu.erik.digitalcircuits.utils.Printer;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static hu.erik.digitalcircuits.cli.DeviceType.CIRCUITBOX;
+
+/**
+ * Class to handle commands prefixed with "record".
+ * Records the pin signals of the devices into a VCD waveform file, which can be opened
+ * with waveform viewers like GTKWave. Every propagation is one time step.
+ */
+public class RecordCmd extends Command {
+
+    /**
+     * Constructor to setup the command's name, format and description.
+     */
+    public RecordCmd() {
+        super(
+                "record",
+                "record [<vcd file> [all | <name> ...] | stop]",
+                "Records the pins of the devices (every device by default) into a VCD file until \"record stop\"."
+        );
+    }
+
+    /**
+     * Starts or stops the recording, or shows the state of the recording.<br>
+     *
+     * Command formats:<br>
+     * record<br>
+     * record {@literal <}vcd file{@literal >} [all | {@literal <}name{@literal >} ...]<br>
+     * record stop
+     *
+     * @param storage   cli data structure
+     * @param cmd       command, split by spaces
+     */
+    @Override
+    public void action(DeviceMap storage, String[] cmd) {
+        VcdRecorder recorder = Simulation.getRecorder();
+        if(cmd.length == 1) {
+            if(recorder == null) Printer.println("Nothing is recorded.");
+            else Printer.println("Recording " + recorder.getPinCount() + " pins into " + recorder.getFile()
+                    + ", " + recorder.getTime() + " steps and " + recorder.getChangeCount() + " value changes so far.");
+            return;
+        }
+        if(cmd[1].equalsIgnoreCase("stop")) {
+            if(cmd.length > 2) Printer.printErr(new TooManyArgumentException(cmd[0]));
+            if(recorder == null) Printer.printErr("Nothing is recorded.");
+            else stopRecording();
+            return;
+        }
+        if(recorder != null) {
+            Printer.printErr("Already recording into " + recorder.getFile() + "! Use: record stop");
+            return;
+        }
+
+        Map<String, Device> devices = new LinkedHashMap<>();
+        try {
+            if(cmd.length == 2 || (cmd.length == 3 && cmd[2].equalsIgnoreCase("all"))) {
+                for(String name : storage.getMap().keySet()) addDevice(devices, name, storage.get(name).getDevice());
+            } else {
+                for(int i = 2; i < cmd.length; i++) addDevice(devices, cmd[i], storage.get(cmd[i]).getDevice());
+            }
+        } catch (DeviceNotExistsException err) {
+            Printer.printErr(err);
+            return;
+        }
+
+        try {
+            recorder = new VcdRecorder(Paths.get(cmd[1]), devices);
+            Simulation.setRecorder(recorder);
+            Printer.println("Recording " + recorder.getPinCount() + " pins into " + cmd[1] + ".");
+        } catch (IOException err) {
+            Printer.printErr("Something went wrong with the waveform file handling!");
+        }
+    }
+
+    /**
+     * Adds a device to the recorded devices. Boxes are replaced by the devices inside them.
+     *
+     * @param devices   the recorded devices by their name
+     * @param name      name of the device
+     * @param device    the device
+     */
+    private static void addDevice(Map<String, Device> devices, String name, Device device) {
+        if(!DeviceType.of(device).equals(CIRCUITBOX)) {
+            devices.put(name, device);
+            return;
+        }
+        for(Map.Entry<String, Device> inner : CircuitHierarchy.innerDevices((CircuitBox) device).entrySet()) {
+            devices.put(name + CircuitHierarchy.SEPARATOR + inner.getKey(), inner.getValue());
+        }
+    }
+
+    /**
+     * Stops the active recording and closes its file. Does nothing if nothing is recorded.
+     */
+    static void stopRecording() {
+        VcdRecorder recorder = Simulation.getRecorder();
+        if(recorder == null) return;
+        Simulation.setRecorder(null);
+        try {
+            recorder.close();
+            Printer.println(recorder.getChangeCount() + " value changes in " + recorder.getTime()
+                    + " steps written to " + recorder.getFile() + ".");
+        } catch (IOException err) {
+            Printer.printErr("Something went wrong with the waveform file handling!");
+        }
+    }
+}
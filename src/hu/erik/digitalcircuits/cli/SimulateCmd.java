@@ -0,0 +1,64 @@
+package hu.erik.digitalcircuits.cli;
+
+import hu.erik.digitalcircuits.errors.*;
+import hu.erik.digitalcircuits.simulation.BitParallelSimulator;
+import hu.erik.digitalcircuits.simulation.Netlist;
+import hu.erik.digitalcircuits.simulation.ParallelSimulator;
+import hu.erik.digitalcircuits.utils.Printer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class to handle commands prefixed with "simulate".
+ * Runs input vectors from a file through a CircuitBox with the bit-parallel simulator.
+ * Wide circuits are evaluated on multiple cores.
+ */
+public class SimulateCmd extends Command {
+
+    /**
+     * Constructor to setup the command's name, format and description.
+     */
+    public SimulateCmd() {
+        super(
+                "simulate",
+                "simulate <box name> <vector file> [output file]",
+                "Simulates every input vector (one line of 0s and 1s) from the file on the box, 64 at a time."
+        );
+    }
+
+    /**
+     * Simulates the input vectors of the file on the given box, and writes
+     * the output vectors to the output file or to the console.<br>
+     *
+     * Command format:<br>
+     * simulate {@literal <}box name{@literal >} {@literal <}vector file{@literal >} [output file]
+     *
+     * @param storage                   cli data structure
+     * @param cmd                       command, split by spaces
+     * @throws NotEnoughArgsException   If the number of arguments are less then 2.
+     */
+    @Override
+    public void action(DeviceMap storage, String[] cmd) throws NotEnoughArgsException {
+        if(cmd.length < 3) throw new NotEnoughArgsException(cmd[0], 2, cmd.length - 1);
+        if(cmd.length > 4) Printer.printErr(new TooManyArgumentException(cmd[0]));
+
+        Netlist netlist = compileBox(storage, cmd[1]);
+        if(netlist == null) return;
+
+        try (BufferedReader in = new BufferedReader(new FileReader(cmd[2], StandardCharsets.UTF_8));
+             Writer out = cmd.length > 3
+                     ? new BufferedWriter(new FileWriter(cmd[3], StandardCharsets.UTF_8))
+                     : new ConsoleWriter()) {
+            BitParallelSimulator simulator = new ParallelSimulator(netlist);
+            long start = System.nanoTime();
+            long vectors = simulator.simulateVectors(in, out, cmd[2]);
+            long micros = (System.nanoTime() - start) / 1000;
+            Printer.println(vectors + " vectors simulated in " + micros + " microseconds.");
+        } catch (VectorFormatException err) {
+            Printer.printErr(err);
+        } catch (IOException err) {
+            Printer.printErr("Something went wrong with the vector file handling!");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package hu.erik.digitalcircuits.cli;
+
+import hu.erik.digitalcircuits.errors.TooManyArgumentException;
+import hu.erik.digitalcircuits.simulation.Histogram;
+import hu.erik.digitalcircuits.simulation.Simulation;
+import hu.erik.digitalcircuits.simulation.SimulationMetrics;
+import hu.erik.digitalcircuits.utils.Printer;
+
+import java.util.Locale;
+
+/**
+ * Class to handle commands prefixed with "stats".
+ * Shows and resets the cost of the propagations.
+ */
+public class StatsCmd extends Command {
+
+    /**
+     * Constructor to setup the command's name, format and description.
+     */
+    public StatsCmd() {
+        super(
+                "stats",
+                "stats [reset]",
+                "Shows the device evaluations, changed pins, depth and time of the propagations since the last reset."
+        );
+    }
+
+    /**
+     * Shows the metrics of the propagations since the last reset, or resets them.
+     * Cone size is the number of device evaluations of a propagation, and the percentiles
+     * are upper bounds within a factor of two.<br>
+     *
+     * Command format:<br>
+     * stats [reset]
+     *
+     * @param storage   cli data structure
+     * @param cmd       command, split by spaces
+     */
+    @Override
+    public void action(DeviceMap storage, String[] cmd) {
+        if(cmd.length > 2) Printer.printErr(new TooManyArgumentException(cmd[0]));
+
+        if(cmd.length == 1) {
+            printStats(Simulation.getMetrics().snapshot());
+        } else if(cmd[1].equalsIgnoreCase("reset")) {
+            Simulation.getMetrics().reset();
+            Printer.println("Statistics reset!");
+        } else {
+            Printer.printErr("Invalid arguments! Try: " + getFormat());
+        }
+    }
+
+    /**
+     * Prints the metrics.
+     *
+     * @param stats copy of the metrics
+     */
+    private static void printStats(SimulationMetrics.Snapshot stats) {
+        long propagations = stats.getPropagations();
+        Printer.println("Propagations: " + propagations + " in " + time(stats.getWallNanos())
+                + ", during the last " + time(stats.getElapsedNanos()));
+        Printer.println("Device evaluations: " + stats.getEvaluations() + ", suppressed: "
+                + stats.getSuppressedEvaluations() + ", changed pins: " + stats.getTransfers());
+        Printer.println(String.format(Locale.ROOT, "Depth: %.1f levels on average, %d at most",
+                stats.getMeanDepth(), stats.getMaxDepth()));
+        Histogram.Snapshot cones = stats.getConeSizes();
+        Printer.println(String.format(Locale.ROOT, "Cone size: %.1f on average, median <= %d, 99%% <= %d, max %d evaluations",
+                cones.getMean(), cones.percentile(0.5), cones.percentile(0.99), cones.getMax()));
+        Histogram.Snapshot latencies = stats.getLatencies();
+        Printer.println("Latency: " + time(Math.round(latencies.getMean())) + " on average, median <= "
+                + time(latencies.percentile(0.5)) + ", 99% <= " + time(latencies.percentile(0.99))
+                + ", max " + time(latencies.getMax()));
+    }
+
+    /**
+     * Formats a duration with a readable unit.
+     *
+     * @param nanos the duration in nanoseconds
+     * @return      the duration in nanoseconds, microseconds, milliseconds or seconds
+     */
+    private static String time(long nanos) {
+        if(nanos < 10_000) return nanos + " ns";
+        if(nanos < 10_000_000) return nanos / 1_000 + " us";
+        if(nanos < 10_000_000_000L) return nanos / 1_000_000 + " ms";
+        return nanos / 1_000_000_000 + " s";
+    }
+}
@@ -0,0 +1,67 @@
+package hu.erik.digitalcircuits.cli;
+
+import hu.erik.digitalcircuits.errors.*;
+import hu.erik.digitalcircuits.simulation.DelayModel;
+import hu.erik.digitalcircuits.simulation.Simulation;
+import hu.erik.digitalcircuits.simulation.TimedSimulator;
+import hu.erik.digitalcircuits.utils.Printer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class to handle commands prefixed with "timing".
+ * Runs input vectors from a file through a CircuitBox with the timed simulator,
+ * using the delays set by the delay command.
+ */
+public class TimingCmd extends Command {
+
+    /**
+     * Constructor to setup the command's name, format and description.
+     */
+    public TimingCmd() {
+        super(
+                "timing",
+                "timing <box name> <vector file> [output file]",
+                "Applies the input vectors one after the other with gate delays. Shows settle time and output transitions."
+        );
+    }
+
+    /**
+     * Applies the input vectors of the file on the given box with delays, and writes
+     * the outputs with their timing to the output file or to the console.
+     * A saved box which is not loaded is compiled from its mapped file.<br>
+     *
+     * Command format:<br>
+     * timing {@literal <}box name{@literal >} {@literal <}vector file{@literal >} [output file]
+     *
+     * @param storage                   cli data structure
+     * @param cmd                       command, split by spaces
+     * @throws NotEnoughArgsException   If the number of arguments are less then 2.
+     */
+    @Override
+    public void action(DeviceMap storage, String[] cmd) throws NotEnoughArgsException {
+        if(cmd.length < 3) throw new NotEnoughArgsException(cmd[0], 2, cmd.length - 1);
+        if(cmd.length > 4) Printer.printErr(new TooManyArgumentException(cmd[0]));
+
+        DelayModel model = Simulation.getDelayModel();
+        TimedSimulator simulator = compileBox(storage, cmd[1], box -> TimedSimulator.of(box, model), file -> TimedSimulator.of(file, model));
+        if(simulator == null) return;
+
+        try (BufferedReader in = new BufferedReader(new FileReader(cmd[2], StandardCharsets.UTF_8));
+             Writer out = cmd.length > 3
+                     ? new BufferedWriter(new FileWriter(cmd[3], StandardCharsets.UTF_8))
+                     : new ConsoleWriter()) {
+            long start = System.nanoTime();
+            long vectors = simulator.simulateVectors(in, out, cmd[2]);
+            long micros = Math.max(1, (System.nanoTime() - start) / 1000);
+            Printer.println(vectors + " vectors simulated in " + simulator.getTime() + " ticks, "
+                    + simulator.getEventCount() + " events (" + simulator.getCoalescedCount() + " coalesced), "
+                    + simulator.getEventCount() * 1_000_000 / micros + " events/s.");
+        } catch (VectorFormatException err) {
+            Printer.printErr(err);
+        } catch (IOException err) {
+            Printer.printErr("Something went wrong with the vector file handling!");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package hu.erik.digitalcircuits.cli;
+
+import hu.erik.digitalcircuits.errors.*;
+import hu.erik.digitalcircuits.simulation.Netlist;
+import hu.erik.digitalcircuits.simulation.TruthTable;
+import hu.erik.digitalcircuits.utils.Printer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class to handle commands prefixed with "truthtable".
+ * Writes the full truth table of a CircuitBox to a file or to the console.
+ */
+public class TruthTableCmd extends Command {
+
+    /**
+     * Constructor to setup the command's name, format and description.
+     */
+    public TruthTableCmd() {
+        super(
+                "truthtable",
+                "truthtable <box name> [output file]",
+                "Writes the output of the box for every input combination. One row: input bits, space, output bits."
+        );
+    }
+
+    /**
+     * Enumerates every input combination of the given box, and writes
+     * the rows to the output file or to the console.<br>
+     *
+     * Command format:<br>
+     * truthtable {@literal <}box name{@literal >} [output file]
+     *
+     * @param storage                   cli data structure
+     * @param cmd                       command, split by spaces
+     * @throws NotEnoughArgsException   If the number of arguments are less then 1.
+     */
+    @Override
+    public void action(DeviceMap storage, String[] cmd) throws NotEnoughArgsException {
+        if(cmd.length < 2) throw new NotEnoughArgsException(cmd[0], 1, cmd.length - 1);
+        if(cmd.length > 3) Printer.printErr(new TooManyArgumentException(cmd[0]));
+
+        Netlist netlist = compileBox(storage, cmd[1]);
+        if(netlist == null) return;
+        if(netlist.getInputCount() > TruthTable.MAX_INPUTS) {
+            Printer.printErr(cmd[1] + " has " + netlist.getInputCount() + " inputs, truth table can only be created up to "
+                    + TruthTable.MAX_INPUTS + " inputs!");
+            return;
+        }
+
+        try (Writer out = cmd.length > 2
+                ? new BufferedWriter(new FileWriter(cmd[2], StandardCharsets.UTF_8), 1 << 16)
+                : new ConsoleWriter()) {
+            long start = System.nanoTime();
+            long rows = new TruthTable(netlist).write(out);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            Printer.println(rows + " rows written in " + millis + " milliseconds.");
+        } catch (IOException err) {
+            Printer.printErr("Something went wrong with the output file handling!");
+        }
+    }
+}
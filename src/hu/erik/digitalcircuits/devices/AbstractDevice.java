@@ -4,12 +4,17 @@ package hu.erik.digitalcircuits.devices;
 import hu.erik.digitalcircuits.errors.NoMorePinException;
 import hu.erik.digitalcircuits.errors.PinAlreadyInUseException;
 import hu.erik.digitalcircuits.errors.PinNotExistsException;
-import hu.erik.digitalcircuits.utils.Printer;
+import hu.erik.digitalcircuits.simulation.FeedbackLoops;
+import hu.erik.digitalcircuits.simulation.Simulation;
 
 /**
  * Abstract class for the Device interface which implements the connection methods.
  */
 public abstract class AbstractDevice implements Device {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = 8534191528408476554L;
 
     /**
      * Connects this device next free output pin to the
@@ -26,8 +31,7 @@ public abstract class AbstractDevice implements Device {
         Pin inputPin = findFreePin(device.inputPins());
         if(outputPin == null) throw new NoMorePinException(this, "output");
         if(inputPin == null) throw new NoMorePinException(device, "input");
-        new Cable(outputPin, inputPin);
-        transferValue(outputPin);
+        link(outputPin, inputPin);
         return device;
     }
 
@@ -52,8 +56,7 @@ public abstract class AbstractDevice implements Device {
         Pin targetInputPin = device.inputPins()[targetInputIndex];
         if(!targetInputPin.isFree()) throw new PinAlreadyInUseException(device, targetInputIndex);
 
-        new Cable(outputPin, targetInputPin);
-        transferValue(outputPin);
+        link(outputPin, targetInputPin);
         return device;
     }
 
@@ -78,8 +81,7 @@ public abstract class AbstractDevice implements Device {
         Pin targetInputPin = device.inputPins()[targetInputIndex];
         if(!targetInputPin.isFree()) throw new PinAlreadyInUseException(device, targetInputIndex);
 
-        new Cable(outputPin, targetInputPin);
-        transferValue(outputPin);
+        link(outputPin, targetInputPin);
         return device;
     }
 
@@ -107,6 +109,8 @@ public abstract class AbstractDevice implements Device {
                     targetPin.setConnectionCable(null);
                     targetPin.setSignal(false);
                     targetPin.setAvailability(true);
+                    Simulation.circuitChanged();
+                    FeedbackLoops.disconnected(p.getParentDevice(), targetDevice);
                     targetDevice.calcOutput();
                     targetDevice.sendOutput();
                     break;
@@ -116,34 +120,27 @@ public abstract class AbstractDevice implements Device {
     }
 
     /**
-     * Sends output pin values to the connected pins.
+     * Connects the two pins with a cable, registers the change
+     * and updates the whole circuit. Loops are registered first,
+     * so the engine sees them when it updates its compiled data.
+     *
+     * @param outputPin output pin of the driver device
+     * @param inputPin  input pin of the target device
      */
-    @Override
-    public void sendOutput() {
-        for(Pin outputPin : outputPins()) {
-            transferValue(outputPin);
-        }
+    private void link(Pin outputPin, Pin inputPin) {
+        new Cable(outputPin, inputPin);
+        FeedbackLoops.connected(outputPin.getParentDevice(), inputPin.getParentDevice());
+        Simulation.circuitConnected(outputPin.getParentDevice(), inputPin.getParentDevice());
+        Simulation.getEngine().propagate(outputPin);
     }
 
     /**
-     * Transfers value from a pin to another pin if it is possible.
-     * Updates the whole circuit with every value transfer.
-     *
-     * @param outputPin outputPin you want to transfer the value from
+     * Sends output pin values to the connected pins
+     * through the currently selected propagation engine.
      */
-    private void transferValue(Pin outputPin) {
-        try {
-            if(outputPin.isFree()) return;
-            Pin connectedPin = outputPin.getConnectionCable().getOtherPin(outputPin);
-            connectedPin.setSignal(outputPin.getSignal());
-            Device device = connectedPin.getParentDevice();
-            device.calcOutput();
-            device.sendOutput();
-        } catch (StackOverflowError err) {
-            // "protection" against oscillation
-            Printer.printErr("Oscillation occurred in your circuit. Signal transfers are stopped!");
-            Printer.printErr("Please fix your circuit!");
-        }
+    @Override
+    public void sendOutput() {
+        Simulation.getEngine().propagate(this);
     }
 
     /**
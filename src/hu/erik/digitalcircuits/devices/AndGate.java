@@ -4,6 +4,10 @@ package hu.erik.digitalcircuits.devices;
  * Class to create And gates.
  */
 public class AndGate extends Gate {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = 3170946101487221480L;
 
     /**
      * Constructor to create an And gate with the given number of input pins.
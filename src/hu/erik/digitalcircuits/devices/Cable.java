@@ -6,6 +6,10 @@ import java.io.Serializable;
  * Cable is used to create connection between two pins.
  */
 public class Cable implements Serializable {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = -7685178995180103148L;
     /**
      * Pin at one end of the cable.
      */
@@ -2,6 +2,7 @@ package hu.erik.digitalcircuits.devices;
 
 import hu.erik.digitalcircuits.errors.BoundException;
 import hu.erik.digitalcircuits.errors.PinNotExistsException;
+import hu.erik.digitalcircuits.simulation.Simulation;
 
 import java.util.Arrays;
 
@@ -9,6 +10,10 @@ import java.util.Arrays;
  * Represents a digital circuit in a box.
  */
 public class CircuitBox extends MultipinDevice {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = -5215060927627287382L;
     /**
      * Name of the box.
      */
@@ -66,6 +71,7 @@ public class CircuitBox extends MultipinDevice {
         if(boundedInputs[boxPinIndex]) throw new BoundException(this);
         inputPins()[boxPinIndex] = target.inputPins()[pinIndex];
         boundedInputs[boxPinIndex] = true;
+        Simulation.circuitChanged();
     }
 
 
@@ -80,10 +86,11 @@ public class CircuitBox extends MultipinDevice {
      */
     public void bindOutputPin(Device target, int pinIndex, int boxPinIndex) throws BoundException, PinNotExistsException {
         if(boxPinIndex > outputPins().length - 1) throw new PinNotExistsException(this, boxPinIndex);
-        if(pinIndex > target.inputPins().length - 1) throw new PinNotExistsException(target, pinIndex);
+        if(pinIndex > target.outputPins().length - 1) throw new PinNotExistsException(target, pinIndex);
         if(boundedOutputs[boxPinIndex]) throw new BoundException(this);
         outputPins()[boxPinIndex] = target.outputPins()[pinIndex];
         boundedOutputs[boxPinIndex] = true;
+        Simulation.circuitChanged();
     }
 
 
@@ -94,6 +101,7 @@ public class CircuitBox extends MultipinDevice {
     public void resetToDefaultState() {
         resetPins(inputPins(), true);
         resetPins(outputPins(), false);
+        Simulation.circuitChanged();
         for (Pin p : inputPins()) {
             p.getParentDevice().calcOutput();
             p.getParentDevice().sendOutput();
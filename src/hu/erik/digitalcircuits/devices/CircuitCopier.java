@@ -0,0 +1,198 @@
+package hu.erik.digitalcircuits.devices;
+
+import hu.erik.digitalcircuits.errors.BoundException;
+import hu.erik.digitalcircuits.errors.PinNotExistsException;
+import hu.erik.digitalcircuits.simulation.CircuitInstance;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Util class to copy a CircuitBox with all of its devices, without serialization.<br>
+ * Every device is recreated by its constructor, the cables and the pin signals are copied
+ * directly, so the copy is in the same state as the original and nothing is propagated.
+ * Pins of the copied boxes are bound the same way as the original ones.
+ */
+public final class CircuitCopier {
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private CircuitCopier() {}
+
+    /**
+     * Creates an independent copy of the box.
+     *
+     * @param box   box to copy
+     * @return      the copy
+     * @throws IllegalArgumentException If the box contains a device which can't be copied.
+     */
+    public static CircuitBox copy(CircuitBox box) {
+        Map<Device, Device> copies = new IdentityHashMap<>();
+        CircuitBox copy = new CircuitBox(box.getName(), box.inputPins().length, box.outputPins().length);
+        copies.put(box, copy);
+        List<Device> devices = devicesInside(box);
+        for(Device device : devices) copies.put(device, newDevice(device));
+
+        Map<Pin, Pin> pins = new IdentityHashMap<>();
+        for(Device device : devices) {
+            Device target = copies.get(device);
+            // bound pins of nested boxes belong to an other device, they are copied with that device
+            for(int i = 0; i < device.inputPins().length; i++) {
+                if(device.inputPins()[i].getParentDevice() == device) pins.put(device.inputPins()[i], target.inputPins()[i]);
+            }
+            for(int i = 0; i < device.outputPins().length; i++) {
+                if(device.outputPins()[i].getParentDevice() == device) pins.put(device.outputPins()[i], target.outputPins()[i]);
+            }
+        }
+        for(Map.Entry<Pin, Pin> pin : pins.entrySet()) {
+            Pin original = pin.getKey();
+            pin.getValue().setSignal(original.getSignal());
+            if(original.getConnectionCable() == null) continue;
+            Pin other = pins.get(original.getConnectionCable().getOtherPin(original));
+            if(other != null && pin.getValue().getConnectionCable() == null) new Cable(pin.getValue(), other);
+        }
+
+        try {
+            bind(box, copy, copies);
+            for(Device device : devices) {
+                if(device instanceof CircuitBox) bind((CircuitBox) device, (CircuitBox) copies.get(device), copies);
+            }
+        } catch (BoundException | PinNotExistsException err) {
+            throw new IllegalArgumentException("The pins of " + box.getName() + " can't be copied!", err);
+        }
+        return copy;
+    }
+
+    /**
+     * Binds the pins of the copied box to the copies of the devices the original box is bound to.
+     *
+     * @param original  the original box
+     * @param copy      copy of the box
+     * @param copies    copy of every device
+     * @throws BoundException           If a pin of the copy is already bound.
+     * @throws PinNotExistsException    If a pin doesn't exist on the copy.
+     */
+    private static void bind(CircuitBox original, CircuitBox copy, Map<Device, Device> copies) throws BoundException, PinNotExistsException {
+        for(int i = 0; i < original.inputPins().length; i++) {
+            Device owner = original.inputPins()[i].getParentDevice();
+            if(owner == original) continue;
+            copy.bindInputPin(copies.get(owner), indexOf(owner.inputPins(), original.inputPins()[i]), i);
+        }
+        for(int i = 0; i < original.outputPins().length; i++) {
+            Device owner = original.outputPins()[i].getParentDevice();
+            if(owner == original) continue;
+            copy.bindOutputPin(copies.get(owner), indexOf(owner.outputPins(), original.outputPins()[i]), i);
+        }
+    }
+
+    /**
+     * Collects every device inside the box, including the nested boxes, in a stable order.
+     *
+     * @param box   box whose devices are required
+     * @return      devices inside the box, without the box itself
+     */
+    static List<Device> devicesInside(CircuitBox box) {
+        return devicesInside(box, new IdentityHashMap<>());
+    }
+
+    /**
+     * Collects every device inside the box, and numbers them in the order of the list.
+     *
+     * @param box       box whose devices are required
+     * @param indexes   empty map, filled with 0 for the box and the list index + 1 for the devices
+     * @return          devices inside the box, without the box itself
+     */
+    static List<Device> devicesInside(CircuitBox box, Map<Device, Integer> indexes) {
+        indexes.put(box, 0);
+        List<Device> devices = new ArrayList<>();
+        ArrayDeque<Device> queue = new ArrayDeque<>();
+        for(Pin[] pins : new Pin[][] {box.inputPins(), box.outputPins()}) {
+            for(Pin pin : pins) discover(pin.getParentDevice(), indexes, queue);
+        }
+        while(!queue.isEmpty()) {
+            Device device = queue.poll();
+            devices.add(device);
+            for(Pin[] pins : new Pin[][] {device.inputPins(), device.outputPins()}) {
+                for(Pin pin : pins) {
+                    if(pin.getParentDevice() != device) discover(pin.getParentDevice(), indexes, queue);
+                    if(pin.getConnectionCable() == null) continue;
+                    discover(pin.getConnectionCable().getOtherPin(pin).getParentDevice(), indexes, queue);
+                }
+            }
+        }
+        return devices;
+    }
+
+    /**
+     * Numbers and queues a device if it was not found before.
+     *
+     * @param device    the found device
+     * @param indexes   numbers of the already found devices
+     * @param queue     devices waiting to be visited
+     */
+    private static void discover(Device device, Map<Device, Integer> indexes, ArrayDeque<Device> queue) {
+        if(indexes.putIfAbsent(device, indexes.size()) == null) queue.add(device);
+    }
+
+    /**
+     * Creates a new device with the same type, pin numbers and state as the original.
+     * Nested boxes are created without bindings.
+     *
+     * @param device    the original device
+     * @return          the new device
+     * @throws IllegalArgumentException If the type of the device is not known.
+     */
+    private static Device newDevice(Device device) {
+        Class<?> type = device.getClass();
+        int inputs = device.inputPins().length;
+        if(type == AndGate.class) return new AndGate(inputs);
+        if(type == OrGate.class) return new OrGate(inputs);
+        if(type == NandGate.class) return new NandGate(inputs);
+        if(type == NorGate.class) return new NorGate(inputs);
+        if(type == Inverter.class) return new Inverter();
+        if(type == PowerSource.class) return new PowerSource();
+        if(type == Junction.class) return new Junction(device.outputPins().length);
+        if(type == Switch.class) {
+            Switch copy = new Switch();
+            copy.setStatus(((Switch) device).isOn());
+            return copy;
+        }
+        if(type == Clock.class) {
+            Clock copy = new Clock();
+            copy.restoreState(((Clock) device).saveState());
+            return copy;
+        }
+        if(type == DFlipFlop.class) {
+            DFlipFlop copy = new DFlipFlop();
+            copy.restoreState(((DFlipFlop) device).saveState());
+            return copy;
+        }
+        if(type == Register.class) {
+            Register copy = new Register(((Register) device).getWidth());
+            copy.restoreState(((Register) device).saveState());
+            return copy;
+        }
+        if(type == CircuitBox.class) {
+            CircuitBox box = (CircuitBox) device;
+            return new CircuitBox(box.getName(), inputs, device.outputPins().length);
+        }
+        if(type == CircuitInstance.class) return new CircuitInstance(((CircuitInstance) device).getTemplate());
+        throw new IllegalArgumentException(device + " can't be copied!");
+    }
+
+    /**
+     * Finds a pin in an array by reference.
+     *
+     * @param pins  pins to search in
+     * @param pin   pin to look for
+     * @return      index of the pin
+     * @throws PinNotExistsException If the pin is not in the array.
+     */
+    static int indexOf(Pin[] pins, Pin pin) throws PinNotExistsException {
+        for(int i = 0; i < pins.length; i++) if(pins[i] == pin) return i;
+        throw new PinNotExistsException(pin.getParentDevice(), -1);
+    }
+}
@@ -0,0 +1,109 @@
+package hu.erik.digitalcircuits.devices;
+
+/**
+ * Constants of the binary circuit file format, shared by the CircuitWriter, the CircuitReader
+ * and the MappedCircuitFile. The device kinds are public, so the mapped devices can be compiled.<br>
+ * Every number is an unsigned LEB128 varint, so small numbers take one byte. The file layout:
+ * <ul>
+ *     <li>magic bytes "DCBF", then the format version</li>
+ *     <li>string table: count, then the UTF-8 length and bytes of every string</li>
+ *     <li>template table: count, then the name and the netlist of every instance template</li>
+ *     <li>device table: count, then the kind and the parameters of every device, the saved box is the first</li>
+ *     <li>bindings: for every box, the owner device + 1 and its pin index for every box pin, 0 if the box owns the pin</li>
+ *     <li>signals of every pin owned by a device, in device order, inputs first, packed 8 per byte</li>
+ *     <li>connections: count, then the two pin indexes of every cable, delta encoded</li>
+ * </ul>
+ */
+public final class CircuitFormat {
+    /**
+     * First bytes of every circuit file.
+     */
+    static final byte[] MAGIC = {'D', 'C', 'B', 'F'};
+    /**
+     * Version of the written format. Readers reject newer versions.
+     */
+    static final int VERSION = 1;
+    /**
+     * Device kind of a CircuitBox, parameters: name, input count, output count.
+     */
+    public static final int BOX = 0;
+    /**
+     * Device kind of an AndGate, parameter: input count.
+     */
+    public static final int AND = 1;
+    /**
+     * Device kind of an OrGate, parameter: input count.
+     */
+    public static final int OR = 2;
+    /**
+     * Device kind of a NandGate, parameter: input count.
+     */
+    public static final int NAND = 3;
+    /**
+     * Device kind of a NorGate, parameter: input count.
+     */
+    public static final int NOR = 4;
+    /**
+     * Device kind of an Inverter, without parameters.
+     */
+    public static final int INVERTER = 5;
+    /**
+     * Device kind of a PowerSource, without parameters.
+     */
+    public static final int POWER_SOURCE = 6;
+    /**
+     * Device kind of a Junction, parameter: output count.
+     */
+    public static final int JUNCTION = 7;
+    /**
+     * Device kind of a Switch, parameter: 1 if it's on.
+     */
+    public static final int SWITCH = 8;
+    /**
+     * Device kind of a Clock, parameter: packed state.
+     */
+    public static final int CLOCK = 9;
+    /**
+     * Device kind of a DFlipFlop, parameter: packed state.
+     */
+    public static final int DFLIPFLOP = 10;
+    /**
+     * Device kind of a Register, parameters: width, packed state.
+     */
+    public static final int REGISTER = 11;
+    /**
+     * Device kind of a CircuitInstance, parameter: template index.
+     */
+    public static final int INSTANCE = 12;
+
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private CircuitFormat() {}
+
+    /**
+     * Returns the type name of a device kind, the same as the name returned by the toString of the device.
+     * The delay model knows the delays by these names.
+     *
+     * @param kind  device kind
+     * @return      name of the device type
+     */
+    public static String typeName(int kind) {
+        switch(kind) {
+            case BOX: return "CircuitBox";
+            case AND: return "AndGate";
+            case OR: return "OrGate";
+            case NAND: return "NandGate";
+            case NOR: return "NorGate";
+            case INVERTER: return "Inverter";
+            case POWER_SOURCE: return "PowerSource";
+            case JUNCTION: return "Junction";
+            case SWITCH: return "Switch";
+            case CLOCK: return "Clock";
+            case DFLIPFLOP: return "DFlipFlop";
+            case REGISTER: return "Register";
+            case INSTANCE: return "Instance";
+            default: throw new IllegalArgumentException("Unknown device kind: " + kind);
+        }
+    }
+}
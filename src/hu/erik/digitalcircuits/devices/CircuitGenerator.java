@@ -0,0 +1,398 @@
+package hu.erik.digitalcircuits.devices;
+
+import hu.erik.digitalcircuits.errors.NetlistFormatException;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static hu.erik.digitalcircuits.devices.NetlistImporter.AND;
+import static hu.erik.digitalcircuits.devices.NetlistImporter.NAND;
+import static hu.erik.digitalcircuits.devices.NetlistImporter.NOR;
+import static hu.erik.digitalcircuits.devices.NetlistImporter.NOT;
+import static hu.erik.digitalcircuits.devices.NetlistImporter.OR;
+
+/**
+ * Generates synthetic circuits of any size into a new CircuitBox, to test the simulator at scale.<br>
+ * The circuits are described with the netlist of the NetlistImporter, so they are built the same
+ * way as the imported ones: the cables are made directly, and every gate is evaluated once.
+ * Every circuit is deterministic, the random ones depend only on their seed.
+ * XOR gates are built from an OR, a NAND and an AND gate.
+ */
+public class CircuitGenerator {
+    /**
+     * Largest number of decoder inputs, the decoder has 2^inputs gates.
+     */
+    public static final int MAX_DECODER_INPUTS = 24;
+    /**
+     * Number of bits in a block of the carry-lookahead adder.
+     */
+    private static final int LOOKAHEAD_BLOCK = 4;
+    /**
+     * Number of random picks before the fanout limit of the random circuits is ignored.
+     */
+    private static final int FANOUT_TRIES = 16;
+    /**
+     * Kinds of the two input gates in the random circuits.
+     */
+    private static final byte[] RANDOM_KINDS = {AND, OR, NAND, NOR};
+
+    /**
+     * Netlist of the generated circuit.
+     */
+    private final NetlistImporter netlist;
+
+    /**
+     * Constructor to create an empty netlist.
+     */
+    private CircuitGenerator() {
+        this.netlist = new NetlistImporter("generator");
+    }
+
+    /**
+     * Generates a ripple-carry adder. Inputs are a0..a(n-1), b0..b(n-1) and the carry,
+     * outputs are s0..s(n-1) and the carry.
+     *
+     * @param name  name of the box
+     * @param bits  width of the adder
+     * @return      the box with the adder
+     */
+    public static CircuitBox rippleCarryAdder(String name, int bits) {
+        CircuitGenerator generator = new CircuitGenerator();
+        int[] a = generator.inputs(bits);
+        int[] b = generator.inputs(bits);
+        int carry = generator.input();
+        for(int i = 0; i < bits; i++) {
+            int[] sum = generator.fullAdder(a[i], b[i], carry);
+            generator.output(sum[0]);
+            carry = sum[1];
+        }
+        generator.output(carry);
+        return generator.build(name);
+    }
+
+    /**
+     * Generates a carry-lookahead adder from 4 bit blocks. Every carry of a block is computed
+     * directly from the generate and propagate signals of the bits before it and the carry of the block.
+     * The blocks pass their carry to the next block through their group generate and propagate signals.
+     * Inputs are a0..a(n-1), b0..b(n-1) and the carry, outputs are s0..s(n-1) and the carry.
+     *
+     * @param name  name of the box
+     * @param bits  width of the adder
+     * @return      the box with the adder
+     */
+    public static CircuitBox carryLookaheadAdder(String name, int bits) {
+        CircuitGenerator generator = new CircuitGenerator();
+        int[] a = generator.inputs(bits);
+        int[] b = generator.inputs(bits);
+        int carry = generator.input();
+        for(int start = 0; start < bits; start += LOOKAHEAD_BLOCK) {
+            int width = Math.min(LOOKAHEAD_BLOCK, bits - start);
+            int[] propagate = new int[width];
+            int[] generate = new int[width];
+            for(int i = 0; i < width; i++) {
+                propagate[i] = generator.xor(a[start + i], b[start + i]);
+                generate[i] = generator.gate(AND, a[start + i], b[start + i]);
+            }
+            for(int i = 0; i < width; i++) {
+                int bitCarry = i == 0 ? carry : generator.lookahead(propagate, generate, i, carry);
+                generator.output(generator.xor(propagate[i], bitCarry));
+            }
+            int groupGenerate = generator.lookahead(propagate, generate, width, -1);
+            int groupPropagate = width == 1 ? propagate[0] : generator.gate(AND, propagate);
+            carry = generator.gate(OR, groupGenerate, generator.gate(AND, groupPropagate, carry));
+        }
+        generator.output(carry);
+        return generator.build(name);
+    }
+
+    /**
+     * Generates an array multiplier: an AND gate for every partial product bit, and a row of
+     * ripple-carry adders for every partial product after the first.
+     * Inputs are a0..a(n-1) and b0..b(n-1), outputs are p0..p(2n-1).
+     *
+     * @param name  name of the box
+     * @param bits  width of the operands
+     * @return      the box with the multiplier
+     */
+    public static CircuitBox arrayMultiplier(String name, int bits) {
+        CircuitGenerator generator = new CircuitGenerator();
+        int[] a = generator.inputs(bits);
+        int[] b = generator.inputs(bits);
+        int[] product = new int[2 * bits];
+        Arrays.fill(product, -1);
+        for(int j = 0; j < bits; j++) product[j] = generator.gate(AND, a[j], b[0]);
+
+        for(int i = 1; i < bits; i++) {
+            int carry = -1;
+            for(int j = 0; j < bits; j++) {
+                int partial = generator.gate(AND, a[j], b[i]);
+                int[] sum;
+                if(product[i + j] < 0) sum = carry < 0 ? new int[] {partial, -1} : generator.halfAdder(partial, carry);
+                else if(carry < 0) sum = generator.halfAdder(product[i + j], partial);
+                else sum = generator.fullAdder(product[i + j], partial, carry);
+                product[i + j] = sum[0];
+                carry = sum[1];
+            }
+            product[i + bits] = carry;
+        }
+        for(int bit : product) if(bit >= 0) generator.output(bit);
+        return generator.build(name);
+    }
+
+    /**
+     * Generates a decoder: every output is an AND gate of the inputs or their inverted values,
+     * so exactly one output is 1. Inputs are x0..x(n-1), the output k is 1 if the inputs are k in binary.
+     *
+     * @param name      name of the box
+     * @param inputs    number of inputs, at most MAX_DECODER_INPUTS
+     * @return          the box with the decoder
+     * @throws IllegalArgumentException If the decoder would have too many inputs.
+     */
+    public static CircuitBox decoder(String name, int inputs) {
+        if(inputs > MAX_DECODER_INPUTS) throw new IllegalArgumentException("A decoder can have at most " + MAX_DECODER_INPUTS + " inputs!");
+        CircuitGenerator generator = new CircuitGenerator();
+        int[] x = generator.inputs(inputs);
+        int[] inverted = new int[inputs];
+        for(int i = 0; i < inputs; i++) inverted[i] = generator.gate(NOT, x[i]);
+        int[] literals = new int[inputs];
+        for(int value = 0; value < 1 << inputs; value++) {
+            for(int i = 0; i < inputs; i++) literals[i] = (value >> i & 1) == 1 ? x[i] : inverted[i];
+            generator.output(generator.gate(AND, literals));
+        }
+        return generator.build(name);
+    }
+
+    /**
+     * Generates a random combinational circuit in levels. Every level has the same number of gates,
+     * and it has as many inputs as a level has gates. Every gate reads a signal of the level before
+     * it, so the circuit is exactly as deep as required, and a random earlier signal.
+     * A signal is read by at most the given number of gates, unless no other signal can be found.
+     * The gates are random AND, OR, NAND, NOR gates and inverters. Every signal without a reader
+     * is an output.
+     *
+     * @param name      name of the box
+     * @param gates     number of gates
+     * @param depth     number of levels
+     * @param fanout    largest number of readers of a signal
+     * @param seed      seed of the random generator
+     * @return          the box with the circuit
+     */
+    public static CircuitBox randomDag(String name, int gates, int depth, int fanout, long seed) {
+        CircuitGenerator generator = new CircuitGenerator();
+        Random random = new Random(seed);
+        int width = (gates + depth - 1) / depth;
+        int[] signals = new int[width + gates];
+        int[] readers = new int[signals.length];
+        int count = 0;
+        for(int i = 0; i < width; i++) signals[count++] = generator.input();
+
+        int levelStart = 0;
+        for(int level = 0; level < depth && count < signals.length; level++) {
+            int previous = levelStart;
+            levelStart = count;
+            for(int i = 0; i < width && count < signals.length; i++) {
+                int first = pick(random, readers, fanout, previous, levelStart, -1);
+                int kind = random.nextInt(9);
+                if(kind == 8 || levelStart < 2) {
+                    signals[count++] = generator.gate(NOT, signals[first]);
+                    continue;
+                }
+                int second = pick(random, readers, fanout, 0, levelStart, first);
+                signals[count++] = generator.gate(RANDOM_KINDS[kind / 2], signals[first], signals[second]);
+            }
+        }
+        for(int i = 0; i < count; i++) if(readers[i] == 0) generator.output(signals[i]);
+        return generator.build(name);
+    }
+
+    /**
+     * Generates an array of SR latches, each made of two cross coupled NOR gates.
+     * Inputs are s0, r0, s1, r1 ..., outputs are q0, not q0, q1, not q1 ...
+     * The latches start with q = 0, because the gate of the inverted output comes first in the netlist.
+     *
+     * @param name      name of the box
+     * @param latches   number of latches
+     * @return          the box with the latches
+     */
+    public static CircuitBox norLatches(String name, int latches) {
+        CircuitGenerator generator = new CircuitGenerator();
+        for(int i = 0; i < latches; i++) {
+            int set = generator.input();
+            int reset = generator.input();
+            int q = generator.netlist.fresh();
+            int notQ = generator.netlist.fresh();
+            generator.addGate(NOR, notQ, set, q);
+            generator.addGate(NOR, q, reset, notQ);
+            generator.output(q);
+            generator.output(notQ);
+        }
+        return generator.build(name);
+    }
+
+    /**
+     * Picks a random signal from a range which has less readers than the limit,
+     * and counts the new reader.
+     *
+     * @param random    the random generator
+     * @param readers   number of readers of every signal
+     * @param fanout    largest number of readers
+     * @param from      first index of the range
+     * @param to        index after the range
+     * @param excluded  index which can't be picked, or -1
+     * @return          index of the picked signal
+     */
+    private static int pick(Random random, int[] readers, int fanout, int from, int to, int excluded) {
+        int picked = excluded;
+        for(int tries = 0; tries < FANOUT_TRIES || picked == excluded; tries++) {
+            picked = from + random.nextInt(to - from);
+            if(picked != excluded && readers[picked] < fanout) break;
+        }
+        readers[picked]++;
+        return picked;
+    }
+
+    /**
+     * Computes a carry inside a lookahead block: the OR of the generate signal of every bit before it,
+     * each ANDed with the propagate signals of the bits between them, and of the block carry ANDed
+     * with every propagate signal before it.
+     *
+     * @param propagate propagate signals of the block
+     * @param generate  generate signals of the block
+     * @param bit       index of the carry in the block
+     * @param carry     carry of the block, or -1 to compute the group generate signal
+     * @return          the carry signal
+     */
+    private int lookahead(int[] propagate, int[] generate, int bit, int carry) {
+        int[] terms = new int[bit + 1];
+        int count = 0;
+        for(int from = bit - 1; from >= -1; from--) {
+            if(from < 0 && carry < 0) break;
+            int[] operands = new int[bit - from];
+            for(int k = from + 1; k < bit; k++) operands[k - from - 1] = propagate[k];
+            operands[operands.length - 1] = from < 0 ? carry : generate[from];
+            terms[count++] = operands.length == 1 ? operands[0] : gate(AND, operands);
+        }
+        return count == 1 ? terms[0] : gate(OR, Arrays.copyOf(terms, count));
+    }
+
+    /**
+     * Adds a full adder.
+     *
+     * @param x     first operand
+     * @param y     second operand
+     * @param carry carry in
+     * @return      the sum and the carry out signals
+     */
+    private int[] fullAdder(int x, int y, int carry) {
+        int half = xor(x, y);
+        int sum = xor(half, carry);
+        int carryOut = gate(OR, gate(AND, x, y), gate(AND, half, carry));
+        return new int[] {sum, carryOut};
+    }
+
+    /**
+     * Adds a half adder.
+     *
+     * @param x first operand
+     * @param y second operand
+     * @return  the sum and the carry out signals
+     */
+    private int[] halfAdder(int x, int y) {
+        return new int[] {xor(x, y), gate(AND, x, y)};
+    }
+
+    /**
+     * Adds the given number of inputs.
+     *
+     * @param count number of inputs
+     * @return      the input signals
+     */
+    private int[] inputs(int count) {
+        int[] inputs = new int[count];
+        for(int i = 0; i < count; i++) inputs[i] = input();
+        return inputs;
+    }
+
+    /**
+     * Adds an input.
+     *
+     * @return the input signal
+     */
+    private int input() {
+        int signal = netlist.fresh();
+        try {
+            netlist.addInput(signal);
+        } catch (NetlistFormatException err) {
+            throw new IllegalStateException(err);
+        }
+        return signal;
+    }
+
+    /**
+     * Adds an output.
+     *
+     * @param signal the output signal
+     */
+    private void output(int signal) {
+        netlist.addOutput(signal);
+    }
+
+    /**
+     * Adds a gate with a new output signal.
+     *
+     * @param kind      kind of the gate
+     * @param operands  input signals
+     * @return          the output signal
+     */
+    private int gate(byte kind, int... operands) {
+        int signal = netlist.fresh();
+        addGate(kind, signal, operands);
+        return signal;
+    }
+
+    /**
+     * Adds a gate which drives an existing signal.
+     *
+     * @param kind      kind of the gate
+     * @param output    the output signal
+     * @param operands  input signals
+     */
+    private void addGate(byte kind, int output, int... operands) {
+        try {
+            netlist.addGate(kind, output, operands);
+        } catch (NetlistFormatException err) {
+            throw new IllegalStateException(err);
+        }
+    }
+
+    /**
+     * Adds a two input XOR gate.
+     *
+     * @param x first operand
+     * @param y second operand
+     * @return  the output signal
+     */
+    private int xor(int x, int y) {
+        int signal = netlist.fresh();
+        try {
+            netlist.addXor(new int[] {x, y}, signal, false);
+        } catch (NetlistFormatException err) {
+            throw new IllegalStateException(err);
+        }
+        return signal;
+    }
+
+    /**
+     * Creates the devices of the netlist.
+     *
+     * @param name  name of the box
+     * @return      the new box
+     */
+    private CircuitBox build(String name) {
+        try {
+            return netlist.build(name);
+        } catch (NetlistFormatException err) {
+            throw new IllegalStateException(err);
+        }
+    }
+}
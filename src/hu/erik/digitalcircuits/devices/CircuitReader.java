@@ -0,0 +1,334 @@
+package hu.erik.digitalcircuits.devices;
+
+import hu.erik.digitalcircuits.errors.BoundException;
+import hu.erik.digitalcircuits.errors.PinNotExistsException;
+import hu.erik.digitalcircuits.simulation.CircuitInstance;
+import hu.erik.digitalcircuits.simulation.CircuitTemplate;
+import hu.erik.digitalcircuits.simulation.Netlist;
+import hu.erik.digitalcircuits.simulation.Simulation;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static hu.erik.digitalcircuits.devices.CircuitFormat.*;
+
+/**
+ * Reads CircuitBoxes written by the CircuitWriter. The devices are recreated by their
+ * constructors, the cables and the signals are restored directly, so nothing is propagated
+ * while the box is read.
+ */
+public class CircuitReader implements Closeable {
+    /**
+     * Stream where the bytes are read from, null if the bytes come from a buffer.
+     */
+    private final InputStream in;
+    /**
+     * Buffer where the bytes are read from, null if the bytes come from a stream.
+     */
+    private final ByteBuffer source;
+    /**
+     * Bytes read from the stream.
+     */
+    private final byte[] buffer;
+    /**
+     * Index of the next byte in the buffer.
+     */
+    private int position;
+    /**
+     * Number of valid bytes in the buffer.
+     */
+    private int limit;
+
+    /**
+     * Constructor to create a reader on a stream.
+     *
+     * @param in stream where the circuits are read from
+     */
+    public CircuitReader(InputStream in) {
+        this.in = in;
+        this.source = null;
+        this.buffer = new byte[8192];
+        this.position = 0;
+        this.limit = 0;
+    }
+
+    /**
+     * Constructor to create a reader on a buffer, like a mapped file.
+     * The bytes are read from the current position of the buffer.
+     *
+     * @param source buffer where the circuits are read from
+     */
+    CircuitReader(ByteBuffer source) {
+        this.in = null;
+        this.source = source;
+        this.buffer = null;
+        this.position = 0;
+        this.limit = 0;
+    }
+
+    /**
+     * Reads a box with every device inside it.
+     *
+     * @return              the box
+     * @throws IOException  If the read fails, or the data is not a valid circuit.
+     */
+    public CircuitBox read() throws IOException {
+        readHeader();
+
+        String[] strings = new String[readVarint()];
+        for(int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readVarint()];
+            for(int b = 0; b < bytes.length; b++) bytes[b] = (byte) readByte();
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        CircuitTemplate[] templates = new CircuitTemplate[readVarint()];
+        for(int i = 0; i < templates.length; i++) {
+            String name = strings[readIndex(strings.length)];
+            templates[i] = new CircuitTemplate(name, readNetlist());
+        }
+
+        Device[] devices = new Device[readVarint()];
+        for(int i = 0; i < devices.length; i++) devices[i] = readDevice(strings, templates);
+        if(devices.length == 0 || !(devices[0] instanceof CircuitBox)) throw new IOException("The circuit file doesn't contain a box!");
+
+        try {
+            for(Device device : devices) {
+                if(!(device instanceof CircuitBox)) continue;
+                CircuitBox box = (CircuitBox) device;
+                for(int i = 0; i < box.inputPins().length; i++) {
+                    int owner = readIndex(devices.length + 1);
+                    if(owner > 0) box.bindInputPin(devices[owner - 1], readVarint(), i);
+                }
+                for(int i = 0; i < box.outputPins().length; i++) {
+                    int owner = readIndex(devices.length + 1);
+                    if(owner > 0) box.bindOutputPin(devices[owner - 1], readVarint(), i);
+                }
+            }
+        } catch (BoundException | PinNotExistsException err) {
+            throw new IOException("Invalid binding in the circuit file!", err);
+        }
+
+        List<Pin> pins = new ArrayList<>();
+        for(Device device : devices) {
+            for(Pin pin : device.inputPins()) if(pin.getParentDevice() == device) pins.add(pin);
+            for(Pin pin : device.outputPins()) if(pin.getParentDevice() == device) pins.add(pin);
+        }
+        boolean[] signals = readBits(pins.size());
+        for(int i = 0; i < signals.length; i++) pins.get(i).setSignal(signals[i]);
+
+        int cableCount = readVarint();
+        for(int c = 0, previous = 0; c < cableCount; c++) {
+            int first = previous + readVarint();
+            int second = first + 1 + readVarint();
+            if(second >= pins.size()) throw new IOException("Invalid connection in the circuit file!");
+            new Cable(pins.get(first), pins.get(second));
+            previous = first;
+        }
+        Simulation.circuitChanged();
+        return (CircuitBox) devices[0];
+    }
+
+    /**
+     * Reads the magic bytes and the version, and checks whether the version is supported.
+     *
+     * @throws IOException If the read fails, or the data is not a supported circuit file.
+     */
+    void readHeader() throws IOException {
+        for(byte b : MAGIC) if(readByte() != (b & 0xFF)) throw new IOException("Not a circuit file!");
+        int version = readVarint();
+        if(version > VERSION) throw new IOException("Circuit file version " + version + " is not supported!");
+    }
+
+    /**
+     * Reads the kind and the parameters of a device, then creates it.
+     *
+     * @param strings       the string table
+     * @param templates     the template table
+     * @return              the new device
+     * @throws IOException  If the read fails, or the device kind is not known.
+     */
+    private Device readDevice(String[] strings, CircuitTemplate[] templates) throws IOException {
+        int kind = readVarint();
+        switch(kind) {
+            case BOX:
+                return new CircuitBox(strings[readIndex(strings.length)], readVarint(), readVarint());
+            case AND:
+                return new AndGate(readVarint());
+            case OR:
+                return new OrGate(readVarint());
+            case NAND:
+                return new NandGate(readVarint());
+            case NOR:
+                return new NorGate(readVarint());
+            case INVERTER:
+                return new Inverter();
+            case POWER_SOURCE:
+                return new PowerSource();
+            case JUNCTION:
+                return new Junction(readVarint());
+            case SWITCH:
+                Switch lever = new Switch();
+                lever.setStatus(readVarint() == 1);
+                return lever;
+            case CLOCK:
+                Clock clock = new Clock();
+                clock.restoreState(readBits(1));
+                return clock;
+            case DFLIPFLOP:
+                DFlipFlop flipFlop = new DFlipFlop();
+                flipFlop.restoreState(readBits(2));
+                return flipFlop;
+            case REGISTER:
+                Register register = new Register(readVarint());
+                register.restoreState(readBits(register.getWidth() + 1));
+                return register;
+            case INSTANCE:
+                return new CircuitInstance(templates[readIndex(templates.length)]);
+            default:
+                throw new IOException("Unknown device kind " + kind + " in the circuit file!");
+        }
+    }
+
+    /**
+     * Reads a netlist written by the CircuitWriter.
+     *
+     * @return              the netlist
+     * @throws IOException  If the read fails, or the netlist is not valid.
+     */
+    Netlist readNetlist() throws IOException {
+        int size = readVarint();
+        int inputCount = readIndex(size);
+        byte[] types = new byte[size];
+        int[] faninStart = new int[size + 1];
+        int[] fanin = new int[16];
+        types[0] = Netlist.ZERO;
+        for(int node = 1; node <= inputCount; node++) types[node] = Netlist.INPUT;
+        int count = 0;
+        for(int node = inputCount + 1; node < size; node++) {
+            types[node] = (byte) readVarint();
+            int faninCount = readVarint();
+            if(count + faninCount > fanin.length) fanin = Arrays.copyOf(fanin, Math.max(fanin.length * 2, count + faninCount));
+            for(int k = 0; k < faninCount; k++) {
+                int zigzag = readVarint();
+                int driver = node - ((zigzag >>> 1) ^ -(zigzag & 1));
+                if(driver < 0 || driver >= size) throw new IOException("Invalid netlist in the circuit file!");
+                fanin[count++] = driver;
+            }
+            faninStart[node + 1] = count;
+        }
+        int[] outputs = new int[readVarint()];
+        for(int i = 0; i < outputs.length; i++) outputs[i] = readIndex(size);
+
+        Netlist netlist = Netlist.of(types, faninStart, Arrays.copyOf(fanin, count), inputCount, outputs, null);
+        if(netlist == null) throw new IOException("Invalid netlist in the circuit file!");
+        return netlist;
+    }
+
+    /**
+     * Reads bits packed into bytes, 8 bits in one byte.
+     *
+     * @param count         number of bits
+     * @return              the bits
+     * @throws IOException  If the read fails.
+     */
+    private boolean[] readBits(int count) throws IOException {
+        boolean[] bits = new boolean[count];
+        for(int i = 0; i < count; i += 8) {
+            int packed = readByte();
+            for(int b = 0; b < 8 && i + b < count; b++) bits[i + b] = (packed & (1 << b)) != 0;
+        }
+        return bits;
+    }
+
+    /**
+     * Reads a varint which must be an index smaller than the given limit.
+     *
+     * @param bound         exclusive upper bound of the index
+     * @return              the index
+     * @throws IOException  If the read fails, or the index is out of range.
+     */
+    int readIndex(int bound) throws IOException {
+        int index = readVarint();
+        if(index >= bound) throw new IOException("Invalid index " + index + " in the circuit file!");
+        return index;
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint.
+     *
+     * @return              the number
+     * @throws IOException  If the read fails, or the number is too long.
+     */
+    int readVarint() throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                if(value < 0) throw new IOException("Invalid number in the circuit file!");
+                return value;
+            }
+        }
+        throw new IOException("Invalid number in the circuit file!");
+    }
+
+    /**
+     * Reads the next byte, refilling the buffer from the stream if it's empty.
+     *
+     * @return              the byte as an unsigned number
+     * @throws IOException  If the read fails, or the stream ended.
+     */
+    private int readByte() throws IOException {
+        if(source != null) {
+            if(!source.hasRemaining()) throw new EOFException("Unexpected end of the circuit file!");
+            return source.get() & 0xFF;
+        }
+        if(position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if(limit <= 0) {
+                limit = 0;
+                throw new EOFException("Unexpected end of the circuit file!");
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * Skips bytes of a buffer, without reading them.
+     *
+     * @param count         number of bytes to skip
+     * @throws IOException  If the buffer is shorter.
+     */
+    void skip(int count) throws IOException {
+        if(count > source.remaining()) throw new EOFException("Unexpected end of the circuit file!");
+        source.position(source.position() + count);
+    }
+
+    /**
+     * Returns the position of the next byte in the buffer.
+     *
+     * @return offset in the buffer
+     */
+    int offset() {
+        return source.position();
+    }
+
+    /**
+     * Closes the stream.
+     *
+     * @throws IOException If the close fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if(in != null) in.close();
+    }
+}
@@ -0,0 +1,346 @@
+package hu.erik.digitalcircuits.devices;
+
+import hu.erik.digitalcircuits.errors.PinNotExistsException;
+import hu.erik.digitalcircuits.simulation.CircuitInstance;
+import hu.erik.digitalcircuits.simulation.CircuitTemplate;
+import hu.erik.digitalcircuits.simulation.Netlist;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static hu.erik.digitalcircuits.devices.CircuitFormat.*;
+
+/**
+ * Writes CircuitBoxes in the binary circuit format described in CircuitFormat.
+ * The output is buffered, the devices are walked iteratively, so deep circuits can be saved too.
+ */
+public class CircuitWriter implements Closeable {
+    /**
+     * Stream where the bytes are written.
+     */
+    private final OutputStream out;
+    /**
+     * Bytes not written to the stream yet.
+     */
+    private final byte[] buffer;
+    /**
+     * Number of bytes in the buffer.
+     */
+    private int position;
+
+    /**
+     * Constructor to create a writer on a stream.
+     *
+     * @param out stream where the circuits are written
+     */
+    public CircuitWriter(OutputStream out) {
+        this.out = out;
+        this.buffer = new byte[8192];
+        this.position = 0;
+    }
+
+    /**
+     * Writes the box with every device inside it, its connections, bindings and signals.
+     *
+     * @param box           box to write
+     * @throws IOException  If the write fails, or the box contains a device which can't be saved.
+     */
+    public void write(CircuitBox box) throws IOException {
+        Map<Device, Integer> deviceIndexes = new IdentityHashMap<>();
+        List<Device> devices = new ArrayList<>();
+        devices.add(box);
+        devices.addAll(CircuitCopier.devicesInside(box, deviceIndexes));
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<CircuitTemplate> templates = new ArrayList<>();
+        Map<CircuitTemplate, Integer> templateIndexes = new IdentityHashMap<>();
+        int[] pinStart = new int[devices.size()];
+        List<Pin> pins = new ArrayList<>();
+        for(int i = 0; i < devices.size(); i++) {
+            Device device = devices.get(i);
+            pinStart[i] = pins.size();
+            if(device instanceof CircuitBox) intern(((CircuitBox) device).getName(), strings, stringIndexes);
+            if(device instanceof CircuitInstance) {
+                CircuitTemplate template = ((CircuitInstance) device).getTemplate();
+                intern(template.getName(), strings, stringIndexes);
+                if(!templateIndexes.containsKey(template)) {
+                    templateIndexes.put(template, templates.size());
+                    templates.add(template);
+                }
+            }
+            for(Pin[] devicePins : new Pin[][] {device.inputPins(), device.outputPins()}) {
+                for(Pin pin : devicePins) {
+                    if(pin.getParentDevice() == device) pins.add(pin);
+                }
+            }
+        }
+
+        for(byte b : MAGIC) writeByte(b);
+        writeVarint(VERSION);
+
+        writeVarint(strings.size());
+        for(String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            for(byte b : bytes) writeByte(b);
+        }
+
+        writeVarint(templates.size());
+        for(CircuitTemplate template : templates) {
+            writeVarint(stringIndexes.get(template.getName()));
+            writeNetlist(template.getNetlist());
+        }
+
+        writeVarint(devices.size());
+        for(Device device : devices) writeDevice(device, stringIndexes, templateIndexes);
+
+        for(Device device : devices) {
+            if(!(device instanceof CircuitBox)) continue;
+            writeBindings(device, device.inputPins(), deviceIndexes, true);
+            writeBindings(device, device.outputPins(), deviceIndexes, false);
+        }
+
+        boolean[] signals = new boolean[pins.size()];
+        for(int i = 0; i < signals.length; i++) signals[i] = pins.get(i).getSignal();
+        writeBits(signals);
+
+        int[] cables = new int[pins.size() * 2];
+        int cableCount = 0;
+        for(int i = 0; i < pins.size(); i++) {
+            Cable cable = pins.get(i).getConnectionCable();
+            if(cable == null) continue;
+            int other = indexOf(cable.getOtherPin(pins.get(i)), deviceIndexes, pinStart);
+            if(other <= i) continue;
+            cables[cableCount * 2] = i;
+            cables[cableCount * 2 + 1] = other;
+            cableCount++;
+        }
+        writeVarint(cableCount);
+        for(int c = 0, previous = 0; c < cableCount; c++) {
+            writeVarint(cables[c * 2] - previous);
+            writeVarint(cables[c * 2 + 1] - cables[c * 2] - 1);
+            previous = cables[c * 2];
+        }
+    }
+
+    /**
+     * Writes the kind and the parameters of a device.
+     *
+     * @param device            device to write
+     * @param stringIndexes     index of the strings in the string table
+     * @param templateIndexes   index of the templates in the template table
+     * @throws IOException      If the write fails, or the device can't be saved.
+     */
+    private void writeDevice(Device device, Map<String, Integer> stringIndexes, Map<CircuitTemplate, Integer> templateIndexes) throws IOException {
+        Class<?> type = device.getClass();
+        int inputs = device.inputPins().length;
+        if(type == CircuitBox.class) {
+            writeVarint(BOX);
+            writeVarint(stringIndexes.get(((CircuitBox) device).getName()));
+            writeVarint(inputs);
+            writeVarint(device.outputPins().length);
+        } else if(type == AndGate.class) {
+            writeVarint(AND);
+            writeVarint(inputs);
+        } else if(type == OrGate.class) {
+            writeVarint(OR);
+            writeVarint(inputs);
+        } else if(type == NandGate.class) {
+            writeVarint(NAND);
+            writeVarint(inputs);
+        } else if(type == NorGate.class) {
+            writeVarint(NOR);
+            writeVarint(inputs);
+        } else if(type == Inverter.class) {
+            writeVarint(INVERTER);
+        } else if(type == PowerSource.class) {
+            writeVarint(POWER_SOURCE);
+        } else if(type == Junction.class) {
+            writeVarint(JUNCTION);
+            writeVarint(device.outputPins().length);
+        } else if(type == Switch.class) {
+            writeVarint(SWITCH);
+            writeVarint(((Switch) device).isOn() ? 1 : 0);
+        } else if(type == Clock.class) {
+            writeVarint(CLOCK);
+            writeBits(((Clock) device).saveState());
+        } else if(type == DFlipFlop.class) {
+            writeVarint(DFLIPFLOP);
+            writeBits(((DFlipFlop) device).saveState());
+        } else if(type == Register.class) {
+            writeVarint(REGISTER);
+            writeVarint(((Register) device).getWidth());
+            writeBits(((Register) device).saveState());
+        } else if(type == CircuitInstance.class) {
+            writeVarint(INSTANCE);
+            writeVarint(templateIndexes.get(((CircuitInstance) device).getTemplate()));
+        } else {
+            throw new IOException(device + " can't be saved!");
+        }
+    }
+
+    /**
+     * Writes the nodes, the fanin and the outputs of a netlist. The drivers are
+     * written relative to the node, because they are usually close to it.
+     *
+     * @param netlist       netlist to write
+     * @throws IOException  If the write fails.
+     */
+    private void writeNetlist(Netlist netlist) throws IOException {
+        writeVarint(netlist.size());
+        writeVarint(netlist.getInputCount());
+        for(int node = netlist.getInputCount() + 1; node < netlist.size(); node++) {
+            writeVarint(netlist.getType(node));
+            writeVarint(netlist.getFaninCount(node));
+            for(int k = 0; k < netlist.getFaninCount(node); k++) {
+                int delta = node - netlist.getFanin(node, k);
+                writeVarint((delta << 1) ^ (delta >> 31));
+            }
+        }
+        writeVarint(netlist.getOutputCount());
+        for(int i = 0; i < netlist.getOutputCount(); i++) writeVarint(netlist.getOutput(i));
+    }
+
+    /**
+     * Writes the owner of every pin of a box.
+     *
+     * @param box           the box
+     * @param pins          input or output pins of the box
+     * @param deviceIndexes index of the devices in the device table
+     * @param inputs        true if the pins are input pins
+     * @throws IOException  If the write fails, or a pin is bound outside of the saved box.
+     */
+    private void writeBindings(Device box, Pin[] pins, Map<Device, Integer> deviceIndexes, boolean inputs) throws IOException {
+        for(Pin pin : pins) {
+            Device owner = pin.getParentDevice();
+            if(owner == box) {
+                writeVarint(0);
+                continue;
+            }
+            Integer index = deviceIndexes.get(owner);
+            if(index == null) throw new IOException(box + " is bound to a device outside of the saved box!");
+            try {
+                writeVarint(index + 1);
+                writeVarint(CircuitCopier.indexOf(inputs ? owner.inputPins() : owner.outputPins(), pin));
+            } catch (PinNotExistsException err) {
+                throw new IOException(box + " is bound to a missing pin!", err);
+            }
+        }
+    }
+
+    /**
+     * Finds the index of a pin among the pins owned by the devices. The pins of a device
+     * are numbered from its start index, inputs first, skipping the pins it doesn't own.
+     *
+     * @param pin           pin to look for
+     * @param deviceIndexes index of the devices in the device table
+     * @param pinStart      index of the first pin of every device
+     * @return              index of the pin, or -1 if its device is not saved
+     */
+    private static int indexOf(Pin pin, Map<Device, Integer> deviceIndexes, int[] pinStart) {
+        Device owner = pin.getParentDevice();
+        Integer device = deviceIndexes.get(owner);
+        if(device == null) return -1;
+        int index = pinStart[device];
+        for(Pin[] devicePins : new Pin[][] {owner.inputPins(), owner.outputPins()}) {
+            for(Pin candidate : devicePins) {
+                if(candidate == pin) return index;
+                if(candidate.getParentDevice() == owner) index++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a string to the string table if it's not there yet.
+     *
+     * @param string        string to add
+     * @param strings       the string table
+     * @param stringIndexes index of the strings in the table
+     */
+    private static void intern(String string, List<String> strings, Map<String, Integer> stringIndexes) {
+        if(stringIndexes.containsKey(string)) return;
+        stringIndexes.put(string, strings.size());
+        strings.add(string);
+    }
+
+    /**
+     * Writes bits packed into bytes, 8 bits in one byte.
+     *
+     * @param bits          bits to write
+     * @throws IOException  If the write fails.
+     */
+    private void writeBits(boolean[] bits) throws IOException {
+        for(int i = 0; i < bits.length; i += 8) {
+            int packed = 0;
+            for(int b = 0; b < 8 && i + b < bits.length; b++) if(bits[i + b]) packed |= 1 << b;
+            writeByte(packed);
+        }
+    }
+
+    /**
+     * Writes a non-negative number as an unsigned LEB128 varint.
+     *
+     * @param value         number to write
+     * @throws IOException  If the write fails.
+     */
+    private void writeVarint(int value) throws IOException {
+        while((value & ~0x7F) != 0) {
+            writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    /**
+     * Writes a byte into the buffer, the full buffer is written to the stream.
+     *
+     * @param value         byte to write
+     * @throws IOException  If the write fails.
+     */
+    private void writeByte(int value) throws IOException {
+        if(position == buffer.length) drain();
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes the buffered bytes to the stream.
+     *
+     * @throws IOException If the write fails.
+     */
+    private void drain() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    /**
+     * Writes the buffered bytes to the stream and flushes the stream.
+     *
+     * @throws IOException If the write or the flush fails.
+     */
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Writes the buffered bytes and closes the stream.
+     *
+     * @throws IOException If the write or the close fails.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package hu.erik.digitalcircuits.devices;
+
+/**
+ * Class to create Clocks.
+ * Clocks drive the clock inputs of the flip-flops and registers.
+ * Their output only changes when they are ticked.
+ */
+public class Clock extends SimpleDevice {
+    /**
+     * Current level of the clock output.
+     */
+    private boolean level;
+
+    /**
+     * Default constructor for Clock.
+     * Sets the output signal to false, and sets the input
+     * pin availability to false, since clocks don't need power.
+     */
+    public Clock() {
+        super();
+        getInputPin().setAvailability(false);
+        this.level = false;
+    }
+
+    /**
+     * Inverts the clock level, then updates the whole connected circuit.
+     */
+    public void tick() {
+        level = !level;
+        calcOutput();
+        sendOutput();
+    }
+
+    /**
+     * Runs full clock cycles: a rising edge, then a falling edge.
+     * The clock is low after the call.
+     *
+     * @param cycles number of cycles
+     */
+    public void cycle(long cycles) {
+        if(level) tick();
+        for(long i = 0; i < cycles; i++) {
+            tick();
+            tick();
+        }
+    }
+
+    /**
+     * Returns the current level of the clock.
+     *
+     * @return true if the clock is high
+     */
+    public boolean isHigh() {
+        return level;
+    }
+
+    /**
+     * Sets the output to the current level.
+     */
+    @Override
+    public void calcOutput() {
+        getOutputPin().setSignal(level);
+    }
+
+    /**
+     * Returns the inner state, used to copy and save the clock.
+     *
+     * @return the level of the clock
+     */
+    boolean[] saveState() {
+        return new boolean[] {level};
+    }
+
+    /**
+     * Restores the inner state returned by saveState, without changing the pins.
+     *
+     * @param bits the saved state
+     */
+    void restoreState(boolean[] bits) {
+        this.level = bits[0];
+    }
+
+    @Override
+    public String toString() {
+        return "Clock";
+    }
+}
@@ -0,0 +1,13 @@
+package hu.erik.digitalcircuits.devices;
+
+/**
+ * Interface to represent the devices which only change their outputs on a rising clock edge.
+ * Their outputs don't depend directly on their inputs, so a loop which goes through
+ * a clocked device is not a feedback loop.
+ */
+public interface ClockedDevice extends Device {
+    /**
+     * Clears the stored state of the device. The circuit is not updated.
+     */
+    void reset();
+}
@@ -0,0 +1,93 @@
+package hu.erik.digitalcircuits.devices;
+
+/**
+ * Class to create D flip-flops.
+ * Input pin 0 is D, input pin 1 is the clock. Output pin 0 is Q,
+ * output pin 1 is the negated Q. On a rising clock edge the flip-flop stores D,
+ * otherwise its outputs don't change.
+ */
+public class DFlipFlop extends MultipinDevice implements ClockedDevice {
+    /**
+     * Index of the data input pin.
+     */
+    public static final int D = 0;
+    /**
+     * Index of the clock input pin.
+     */
+    public static final int CLK = 1;
+
+    /**
+     * The stored bit.
+     */
+    private boolean state;
+    /**
+     * Clock signal at the last evaluation, used to detect the rising edge.
+     */
+    private boolean lastClock;
+
+    /**
+     * Default constructor to create a flip-flop which stores 0.
+     */
+    public DFlipFlop() {
+        super(2, 2);
+        this.state = false;
+        this.lastClock = false;
+        outputPins()[1].setSignal(true);
+    }
+
+    /**
+     * Stores the D input on a rising clock edge, then sets the outputs
+     * based on the stored bit.
+     */
+    @Override
+    public void calcOutput() {
+        boolean clock = inputPins()[CLK].getSignal();
+        if(clock && !lastClock) state = inputPins()[D].getSignal();
+        lastClock = clock;
+        outputPins()[0].setSignal(state);
+        outputPins()[1].setSignal(!state);
+    }
+
+    /**
+     * Clears the stored bit. The circuit is not updated.
+     */
+    @Override
+    public void reset() {
+        state = false;
+        outputPins()[0].setSignal(false);
+        outputPins()[1].setSignal(true);
+    }
+
+    /**
+     * Returns the stored bit.
+     *
+     * @return the state of the flip-flop
+     */
+    public boolean getState() {
+        return state;
+    }
+
+    /**
+     * Returns the inner state, used to copy and save the flip-flop.
+     *
+     * @return the stored bit and the last clock signal
+     */
+    boolean[] saveState() {
+        return new boolean[] {state, lastClock};
+    }
+
+    /**
+     * Restores the inner state returned by saveState, without changing the pins.
+     *
+     * @param bits the saved state
+     */
+    void restoreState(boolean[] bits) {
+        this.state = bits[0];
+        this.lastClock = bits[1];
+    }
+
+    @Override
+    public String toString() {
+        return "DFlipFlop";
+    }
+}
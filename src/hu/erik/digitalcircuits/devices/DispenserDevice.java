@@ -6,10 +6,19 @@ package hu.erik.digitalcircuits.devices;
  *  input pin.
  */
 public abstract class DispenserDevice extends AbstractDevice {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = 5301249471901918493L;
     /**
      * The one and only input pin on a DispenserDevice
      */
     private Pin inputPin;
+    /**
+     * Single element array of the input pin. Created on first use, so the
+     * pin getter doesn't allocate a new array on every call.
+     */
+    private transient Pin[] inputPinArray;
 
     /**
      * Holds all of the output pins.
@@ -36,7 +45,8 @@ public abstract class DispenserDevice extends AbstractDevice {
      */
     @Override
     public Pin[] inputPins() {
-        return new Pin[] {inputPin};
+        if(inputPinArray == null) inputPinArray = new Pin[] {inputPin};
+        return inputPinArray;
     }
 
     /**
@@ -5,6 +5,10 @@ package hu.erik.digitalcircuits.devices;
  * Gates are mostly responsible for the circuit logic.
  */
 public abstract class Gate extends AbstractDevice {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = -3121515196411496639L;
     /**
      * Holds all of the input pins.
      */
@@ -14,6 +18,11 @@ public abstract class Gate extends AbstractDevice {
      * Single output pin for Gates.
      */
     private Pin outputPin;
+    /**
+     * Single element array of the output pin. Created on first use, so the
+     * pin getter doesn't allocate a new array on every call.
+     */
+    private transient Pin[] outputPinArray;
 
     /**
      * Creates a Gate with a specified number of input pins.
@@ -43,7 +52,8 @@ public abstract class Gate extends AbstractDevice {
      */
     @Override
     public Pin[] outputPins() {
-        return new Pin[] {outputPin};
+        if(outputPinArray == null) outputPinArray = new Pin[] {outputPin};
+        return outputPinArray;
     }
 
     /**
@@ -4,6 +4,10 @@ package hu.erik.digitalcircuits.devices;
  * Class to create Inverters.
  */
 public class Inverter extends SimpleDevice {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = 2366857770933221529L;
 
     /**
      * Default constructor to initialize inverter starting output.
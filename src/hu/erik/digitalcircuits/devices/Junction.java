@@ -10,6 +10,10 @@ import java.util.ArrayList;
  * to the connected devices.
  */
 public class Junction extends DispenserDevice {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = -4016324591044525567L;
 
     /**
      * Constructor to create Junction with the given number
@@ -0,0 +1,415 @@
+package hu.erik.digitalcircuits.devices;
+
+import hu.erik.digitalcircuits.simulation.Netlist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static hu.erik.digitalcircuits.devices.CircuitFormat.*;
+
+/**
+ * A circuit file mapped into memory, read without creating the devices.<br>
+ * The device, binding and connection tables are decoded into primitive arrays, every
+ * other part of the file stays in the mapped buffer: names are only decoded when they
+ * are asked for, signals are read directly from the buffer. Devices and pins are
+ * numbered like in the file, the saved box is device 0. Pins are numbered device by device,
+ * inputs first, only counting the pins the device owns.
+ */
+public class MappedCircuitFile {
+    /**
+     * The mapped file.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Offset of the bytes of every string.
+     */
+    private final int[] stringOffsets;
+    /**
+     * Byte length of every string.
+     */
+    private final int[] stringLengths;
+    /**
+     * Already decoded strings, null if not decoded yet.
+     */
+    private final String[] strings;
+    /**
+     * String index of the name of every template.
+     */
+    private final int[] templateNames;
+    /**
+     * Netlist of every template.
+     */
+    private final Netlist[] templates;
+    /**
+     * Kind of every device.
+     */
+    private final byte[] kinds;
+    /**
+     * Kind specific parameter of every device: the name of a box, the state of a switch
+     * or the template of an instance.
+     */
+    private final int[] parameters;
+    /**
+     * Number of input pins of every device.
+     */
+    private final int[] inputCounts;
+    /**
+     * Number of output pins of every device.
+     */
+    private final int[] outputCounts;
+    /**
+     * Index of the first pin of every device, plus one closing element.
+     */
+    private final int[] pinStart;
+    /**
+     * Pin of every input of the saved box, -1 if it can't be resolved.
+     */
+    private final int[] boxInputs;
+    /**
+     * Pin of every output of the saved box, -1 if it can't be resolved.
+     */
+    private final int[] boxOutputs;
+    /**
+     * The pin at the other end of the cable of every pin, -1 if the pin is not connected.
+     */
+    private final int[] connections;
+    /**
+     * Offset of the packed pin signals.
+     */
+    private final int signalOffset;
+
+    /**
+     * Constructor which decodes the tables of a mapped file.
+     *
+     * @param buffer        the mapped file
+     * @throws IOException  If the data is not a valid circuit file.
+     */
+    private MappedCircuitFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        CircuitReader reader = new CircuitReader(buffer.duplicate());
+        reader.readHeader();
+
+        int stringCount = reader.readVarint();
+        stringOffsets = new int[stringCount];
+        stringLengths = new int[stringCount];
+        strings = new String[stringCount];
+        for(int i = 0; i < stringCount; i++) {
+            stringLengths[i] = reader.readVarint();
+            stringOffsets[i] = reader.offset();
+            reader.skip(stringLengths[i]);
+        }
+
+        int templateCount = reader.readVarint();
+        templateNames = new int[templateCount];
+        templates = new Netlist[templateCount];
+        for(int i = 0; i < templateCount; i++) {
+            templateNames[i] = reader.readIndex(stringCount);
+            templates[i] = reader.readNetlist();
+        }
+
+        int deviceCount = reader.readVarint();
+        kinds = new byte[deviceCount];
+        parameters = new int[deviceCount];
+        inputCounts = new int[deviceCount];
+        outputCounts = new int[deviceCount];
+        for(int i = 0; i < deviceCount; i++) readDevice(reader, i);
+        if(deviceCount == 0 || kinds[0] != BOX) throw new IOException("The circuit file doesn't contain a box!");
+
+        // a box only owns its unbound pins, so the pins are numbered after the bindings
+        int[] owned = new int[deviceCount];
+        for(int i = 0; i < deviceCount; i++) owned[i] = inputCounts[i] + outputCounts[i];
+        int[] rootOwners = new int[inputCounts[0] + outputCounts[0]];
+        int[] rootPins = new int[rootOwners.length];
+        for(int device = 0; device < deviceCount; device++) {
+            if(kinds[device] != BOX) continue;
+            for(int i = 0; i < inputCounts[device] + outputCounts[device]; i++) {
+                int owner = reader.readIndex(deviceCount + 1);
+                int pin = owner > 0 ? reader.readVarint() : 0;
+                if(owner > 0) owned[device]--;
+                if(device == 0) {
+                    rootOwners[i] = owner - 1;
+                    rootPins[i] = pin;
+                }
+            }
+        }
+        pinStart = new int[deviceCount + 1];
+        for(int i = 0; i < deviceCount; i++) pinStart[i + 1] = pinStart[i] + owned[i];
+
+        boxInputs = new int[inputCounts[0]];
+        boxOutputs = new int[outputCounts[0]];
+        for(int i = 0; i < rootOwners.length; i++) {
+            int owner = rootOwners[i];
+            boolean input = i < boxInputs.length;
+            int pin = -1;
+            if(owner >= 0 && kinds[owner] != BOX) {
+                int count = input ? inputCounts[owner] : outputCounts[owner];
+                if(rootPins[i] >= count) throw new IOException("Invalid binding in the circuit file!");
+                pin = input ? getInputPin(owner, rootPins[i]) : getOutputPin(owner, rootPins[i]);
+            }
+            if(input) boxInputs[i] = pin;
+            else boxOutputs[i - boxInputs.length] = pin;
+        }
+
+        signalOffset = reader.offset();
+        reader.skip((pinStart[deviceCount] + 7) / 8);
+
+        connections = new int[pinStart[deviceCount]];
+        Arrays.fill(connections, -1);
+        int cableCount = reader.readVarint();
+        for(int c = 0, previous = 0; c < cableCount; c++) {
+            int first = previous + reader.readVarint();
+            int second = first + 1 + reader.readVarint();
+            if(first < 0 || second >= connections.length || second <= first) throw new IOException("Invalid connection in the circuit file!");
+            connections[first] = second;
+            connections[second] = first;
+            previous = first;
+        }
+    }
+
+    /**
+     * Maps a circuit file into memory and decodes its tables.
+     *
+     * @param file          the circuit file
+     * @return              the mapped file
+     * @throws IOException  If the file can't be mapped, or it's not a valid circuit file.
+     */
+    public static MappedCircuitFile map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) throw new IOException(file + " is too large to map!");
+            return new MappedCircuitFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads the kind and the parameters of a device into the tables.
+     *
+     * @param reader        reader on the device table
+     * @param device        index of the device
+     * @throws IOException  If the read fails, or the device kind is not known.
+     */
+    private void readDevice(CircuitReader reader, int device) throws IOException {
+        int kind = reader.readVarint();
+        kinds[device] = (byte) kind;
+        inputCounts[device] = 1;
+        outputCounts[device] = 1;
+        switch(kind) {
+            case BOX:
+                parameters[device] = reader.readIndex(strings.length);
+                inputCounts[device] = reader.readVarint();
+                outputCounts[device] = reader.readVarint();
+                break;
+            case AND:
+            case OR:
+            case NAND:
+            case NOR:
+                inputCounts[device] = reader.readVarint();
+                break;
+            case INVERTER:
+            case POWER_SOURCE:
+                break;
+            case JUNCTION:
+                outputCounts[device] = reader.readVarint();
+                break;
+            case SWITCH:
+                parameters[device] = reader.readVarint();
+                break;
+            case CLOCK:
+            case DFLIPFLOP:
+                if(kind == DFLIPFLOP) inputCounts[device] = outputCounts[device] = 2;
+                reader.skip(1);
+                break;
+            case REGISTER:
+                int width = reader.readVarint();
+                inputCounts[device] = width + 1;
+                outputCounts[device] = width;
+                reader.skip((width + 1 + 7) / 8);
+                break;
+            case INSTANCE:
+                parameters[device] = reader.readIndex(templates.length);
+                inputCounts[device] = templates[parameters[device]].getInputCount();
+                outputCounts[device] = templates[parameters[device]].getOutputCount();
+                break;
+            default:
+                throw new IOException("Unknown device kind " + kind + " in the circuit file!");
+        }
+    }
+
+    /**
+     * Returns a string of the string table, decoded at the first call.
+     *
+     * @param index index in the string table
+     * @return      the string
+     */
+    private String getString(int index) {
+        if(strings[index] == null) {
+            byte[] bytes = new byte[stringLengths[index]];
+            for(int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(stringOffsets[index] + i);
+            strings[index] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings[index];
+    }
+
+    /**
+     * Returns the name of the saved box.
+     *
+     * @return name of the box
+     */
+    public String getName() {
+        return getBoxName(0);
+    }
+
+    /**
+     * Returns the name of a box device.
+     *
+     * @param device    index of a box device
+     * @return          name of the box
+     */
+    public String getBoxName(int device) {
+        return getString(parameters[device]);
+    }
+
+    /**
+     * Returns the name of the box which the template of an instance was created from.
+     *
+     * @param device    index of an instance device
+     * @return          name of the template
+     */
+    public String getTemplateName(int device) {
+        return getString(templateNames[parameters[device]]);
+    }
+
+    /**
+     * Returns the number of devices, including the saved box.
+     *
+     * @return number of devices
+     */
+    public int getDeviceCount() {
+        return kinds.length;
+    }
+
+    /**
+     * Returns the kind of a device, one of the kinds of the CircuitFormat.
+     *
+     * @param device    index of the device
+     * @return          kind of the device
+     */
+    public int getKind(int device) {
+        return kinds[device];
+    }
+
+    /**
+     * Returns the number of input pins of a device.
+     *
+     * @param device    index of the device
+     * @return          number of input pins
+     */
+    public int getInputCount(int device) {
+        return inputCounts[device];
+    }
+
+    /**
+     * Returns the number of output pins of a device.
+     *
+     * @param device    index of the device
+     * @return          number of output pins
+     */
+    public int getOutputCount(int device) {
+        return outputCounts[device];
+    }
+
+    /**
+     * Returns whether a switch device is turned on.
+     *
+     * @param device    index of a switch device
+     * @return          the state of the switch
+     */
+    public boolean isOn(int device) {
+        return parameters[device] == 1;
+    }
+
+    /**
+     * Returns the netlist of the template of an instance device.
+     *
+     * @param device    index of an instance device
+     * @return          netlist of the template
+     */
+    public Netlist getTemplate(int device) {
+        return templates[parameters[device]];
+    }
+
+    /**
+     * Returns the pin index of an input of a device, which is not a box.
+     *
+     * @param device    index of the device
+     * @param input     index of the input pin on the device
+     * @return          index of the pin
+     */
+    public int getInputPin(int device, int input) {
+        return pinStart[device] + input;
+    }
+
+    /**
+     * Returns the pin index of an output of a device, which is not a box.
+     *
+     * @param device    index of the device
+     * @param output    index of the output pin on the device
+     * @return          index of the pin
+     */
+    public int getOutputPin(int device, int output) {
+        return pinStart[device] + inputCounts[device] + output;
+    }
+
+    /**
+     * Returns the pin which is bound to an input of the saved box.
+     *
+     * @param input index of the box input
+     * @return      index of the pin, -1 if the input is not bound, or the pin belongs to an inner box
+     */
+    public int getBoxInputPin(int input) {
+        return boxInputs[input];
+    }
+
+    /**
+     * Returns the pin which is bound to an output of the saved box.
+     *
+     * @param output    index of the box output
+     * @return          index of the pin, -1 if the output is not bound, or the pin belongs to an inner box
+     */
+    public int getBoxOutputPin(int output) {
+        return boxOutputs[output];
+    }
+
+    /**
+     * Returns the pin at the other end of the cable of a pin.
+     *
+     * @param pin   index of the pin
+     * @return      index of the connected pin, -1 if the pin is not connected
+     */
+    public int getConnectedPin(int pin) {
+        return connections[pin];
+    }
+
+    /**
+     * Returns the number of pins owned by the devices.
+     *
+     * @return number of pins
+     */
+    public int getPinCount() {
+        return connections.length;
+    }
+
+    /**
+     * Returns the saved signal of a pin, read directly from the mapped file.
+     *
+     * @param pin   index of the pin
+     * @return      the signal of the pin
+     */
+    public boolean getSignal(int pin) {
+        return (buffer.get(signalOffset + (pin >>> 3)) & (1 << (pin & 7))) != 0;
+    }
+}
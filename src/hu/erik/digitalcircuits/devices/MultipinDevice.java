@@ -5,6 +5,10 @@ package hu.erik.digitalcircuits.devices;
  * with multiple input and output pins.
  */
 public abstract class MultipinDevice extends AbstractDevice {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = -6064801682213889696L;
     /**
      * Holds all of the input pins.
      */
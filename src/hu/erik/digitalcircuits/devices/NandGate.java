@@ -4,6 +4,10 @@ package hu.erik.digitalcircuits.devices;
  * Class to create Nand gates.
  */
 public class NandGate extends Gate {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = -6010372948234033772L;
 
     /**
      * Constructor to create a Nand gate with the given number of input pins.
@@ -0,0 +1,767 @@
+package hu.erik.digitalcircuits.devices;
+
+import hu.erik.digitalcircuits.errors.BoundException;
+import hu.erik.digitalcircuits.errors.NetlistFormatException;
+import hu.erik.digitalcircuits.errors.PinNotExistsException;
+import hu.erik.digitalcircuits.simulation.Simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Imports benchmark netlists from ISCAS .bench and BLIF files into a CircuitBox.<br>
+ * The file is read line by line in one pass. The gates are collected into primitive arrays,
+ * so signals can be used before they are defined, and nothing but the netlist is kept in memory.
+ * The devices are created at the end:
+ * <ul>
+ *     <li>wide gates become AndGates, NandGates, etc. with the same number of inputs</li>
+ *     <li>signals with more than one reader get a Junction, buffers become Junctions too</li>
+ *     <li>XOR and XNOR gates are built from OR, NAND and AND gates</li>
+ *     <li>BLIF covers become an AND gate for every row, and an OR or NOR gate for the rows</li>
+ *     <li>flip-flops share an extra last box input as their clock, and start from 0</li>
+ * </ul>
+ * The cables are made directly, then every gate is evaluated once in topological order.
+ * The CircuitGenerator builds its circuits through the same netlist.
+ */
+public class NetlistImporter {
+    /**
+     * Gate kind of an AND gate.
+     */
+    static final byte AND = 0;
+    /**
+     * Gate kind of an OR gate.
+     */
+    static final byte OR = 1;
+    /**
+     * Gate kind of a NAND gate.
+     */
+    static final byte NAND = 2;
+    /**
+     * Gate kind of a NOR gate.
+     */
+    static final byte NOR = 3;
+    /**
+     * Gate kind of an inverter.
+     */
+    static final byte NOT = 4;
+    /**
+     * Gate kind of a buffer.
+     */
+    static final byte BUFFER = 5;
+    /**
+     * Gate kind of a D flip-flop.
+     */
+    static final byte DFF = 6;
+    /**
+     * Gate kind of the constant 1.
+     */
+    static final byte ONE = 7;
+    /**
+     * Gate kind of the constant 0.
+     */
+    static final byte ZERO = 8;
+    /**
+     * Driver of a signal which is not driven yet.
+     */
+    private static final int UNDRIVEN = -1;
+    /**
+     * Driver of a primary input signal.
+     */
+    private static final int PRIMARY_INPUT = -2;
+
+    /**
+     * Name of the imported file, used in the error messages.
+     */
+    private final String fileName;
+    /**
+     * Index of every named signal.
+     */
+    private final Map<String, Integer> signalIndexes;
+    /**
+     * Name of every signal, null for the signals created by the importer.
+     */
+    private String[] signalNames;
+    /**
+     * Gate which drives the signal, UNDRIVEN or PRIMARY_INPUT.
+     */
+    private int[] drivers;
+    /**
+     * Number of signals.
+     */
+    private int signalCount;
+    /**
+     * Kind of every gate.
+     */
+    private byte[] kinds;
+    /**
+     * Start of the fanin of every gate, plus one closing element.
+     */
+    private int[] faninStart;
+    /**
+     * Input signals of the gates.
+     */
+    private int[] fanin;
+    /**
+     * Output signal of every gate.
+     */
+    private int[] gateOutputs;
+    /**
+     * Number of gates.
+     */
+    private int gateCount;
+    /**
+     * Primary input signals, in the order of the box inputs.
+     */
+    private int[] inputs;
+    /**
+     * Number of primary inputs.
+     */
+    private int inputCount;
+    /**
+     * Primary output signals, in the order of the box outputs.
+     */
+    private int[] outputs;
+    /**
+     * Number of primary outputs.
+     */
+    private int outputCount;
+    /**
+     * Number of the last read line.
+     */
+    private long lineNumber;
+    /**
+     * Input signals of the BLIF cover which is being read.
+     */
+    private int[] coverInputs;
+    /**
+     * Output signal of the BLIF cover which is being read, -1 outside of a cover.
+     */
+    private int coverOutput;
+    /**
+     * Output value of the rows of the cover, -1 before the first row.
+     */
+    private int coverValue;
+    /**
+     * Signal of every row of the cover.
+     */
+    private int[] terms;
+    /**
+     * Number of rows of the cover.
+     */
+    private int termCount;
+
+    /**
+     * Constructor to create an empty netlist.
+     *
+     * @param fileName name of the imported file
+     */
+    NetlistImporter(String fileName) {
+        this.fileName = fileName;
+        this.signalIndexes = new HashMap<>();
+        this.signalNames = new String[64];
+        this.drivers = new int[64];
+        this.kinds = new byte[64];
+        this.faninStart = new int[65];
+        this.fanin = new int[128];
+        this.gateOutputs = new int[64];
+        this.inputs = new int[16];
+        this.outputs = new int[16];
+        this.coverInputs = new int[0];
+        this.coverOutput = -1;
+        this.terms = new int[16];
+    }
+
+    /**
+     * Returns whether the file has the extension of a supported netlist format.
+     *
+     * @param fileName  name of the file
+     * @return          true if it's a .bench or a .blif file
+     */
+    public static boolean isSupported(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".bench") || lower.endsWith(".blif");
+    }
+
+    /**
+     * Imports a .bench or a .blif file into a new box. The format is chosen by the extension.
+     *
+     * @param file                      the netlist file
+     * @param boxName                   name of the new box
+     * @return                          the box with the imported circuit
+     * @throws IOException              If the file can't be read.
+     * @throws NetlistFormatException   If the file is not a valid netlist.
+     * @throws IllegalArgumentException If the file extension is not supported.
+     */
+    public static CircuitBox importFile(Path file, String boxName) throws IOException, NetlistFormatException {
+        String name = file.getFileName().toString();
+        if(!isSupported(name)) throw new IllegalArgumentException(name + " is not a .bench or a .blif file!");
+        NetlistImporter importer = new NetlistImporter(name);
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if(name.toLowerCase(Locale.ROOT).endsWith(".bench")) importer.readBench(in);
+            else importer.readBlif(in);
+        }
+        return importer.build(boxName);
+    }
+
+    /**
+     * Reads an ISCAS .bench netlist. Lines: INPUT(name), OUTPUT(name) or name = GATE(inputs),
+     * where GATE is AND, OR, NAND, NOR, XOR, XNOR, NOT, BUF, BUFF or DFF.
+     *
+     * @param in                        reader on the file
+     * @throws IOException              If the read fails.
+     * @throws NetlistFormatException   If a line is not valid.
+     */
+    private void readBench(BufferedReader in) throws IOException, NetlistFormatException {
+        String line;
+        while((line = in.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if(comment >= 0) line = line.substring(0, comment);
+            line = line.trim();
+            if(line.isEmpty()) continue;
+
+            int equals = line.indexOf('=');
+            int open = line.indexOf('(');
+            int close = line.lastIndexOf(')');
+            if(open < 0 || close < open || equals > open) throw fail("Expected INPUT(name), OUTPUT(name) or name = GATE(inputs)!");
+            String function = line.substring(equals + 1, open).trim().toUpperCase(Locale.ROOT);
+            String[] arguments = line.substring(open + 1, close).split(",");
+            int[] operands = new int[arguments.length];
+            for(int i = 0; i < arguments.length; i++) {
+                String argument = arguments[i].trim();
+                if(argument.isEmpty()) throw fail("Missing signal name!");
+                operands[i] = signal(argument);
+            }
+
+            if(equals < 0) {
+                if(operands.length != 1) throw fail(function + " needs exactly one signal!");
+                if(function.equals("INPUT")) addInput(operands[0]);
+                else if(function.equals("OUTPUT")) addOutput(operands[0]);
+                else throw fail("Expected INPUT(name), OUTPUT(name) or name = GATE(inputs)!");
+                continue;
+            }
+            String output = line.substring(0, equals).trim();
+            if(output.isEmpty()) throw fail("Missing signal name!");
+            addFunction(function, operands, signal(output));
+        }
+    }
+
+    /**
+     * Adds the gates of a .bench function.
+     *
+     * @param function                  name of the function in upper case
+     * @param operands                  input signals
+     * @param output                    output signal
+     * @throws NetlistFormatException   If the function is not known, or it has the wrong number of inputs.
+     */
+    private void addFunction(String function, int[] operands, int output) throws NetlistFormatException {
+        switch(function) {
+            case "AND":
+                addGate(operands.length == 1 ? BUFFER : AND, output, operands);
+                break;
+            case "OR":
+                addGate(operands.length == 1 ? BUFFER : OR, output, operands);
+                break;
+            case "NAND":
+                addGate(operands.length == 1 ? NOT : NAND, output, operands);
+                break;
+            case "NOR":
+                addGate(operands.length == 1 ? NOT : NOR, output, operands);
+                break;
+            case "XOR":
+            case "XNOR":
+                addXor(operands, output, function.equals("XNOR"));
+                break;
+            case "NOT":
+            case "BUF":
+            case "BUFF":
+            case "DFF":
+                if(operands.length != 1) throw fail(function + " needs exactly one input!");
+                addGate(function.equals("NOT") ? NOT : function.equals("DFF") ? DFF : BUFFER, output, operands);
+                break;
+            default:
+                throw fail("Unknown gate type " + function + "!");
+        }
+    }
+
+    /**
+     * Adds a chain of two input XOR gates, each built from an OR, a NAND and an AND gate.
+     * The last AND gate is a NAND gate for XNOR.
+     *
+     * @param operands                  input signals
+     * @param output                    output signal
+     * @param invert                    true for XNOR
+     * @throws NetlistFormatException   If the output is already driven.
+     */
+    void addXor(int[] operands, int output, boolean invert) throws NetlistFormatException {
+        if(operands.length == 1) {
+            addGate(invert ? NOT : BUFFER, output, operands);
+            return;
+        }
+        int result = operands[0];
+        for(int i = 1; i < operands.length; i++) {
+            boolean last = i == operands.length - 1;
+            int target = last ? output : fresh();
+            int either = fresh();
+            int notBoth = fresh();
+            addGate(OR, either, result, operands[i]);
+            addGate(NAND, notBoth, result, operands[i]);
+            addGate(last && invert ? NAND : AND, target, either, notBoth);
+            result = target;
+        }
+    }
+
+    /**
+     * Reads the first model of a flattened BLIF netlist: .inputs, .outputs, .names covers and .latch lines.
+     * Hierarchical models (.subckt) and library gates (.gate) are not supported.
+     *
+     * @param in                        reader on the file
+     * @throws IOException              If the read fails.
+     * @throws NetlistFormatException   If a line is not valid.
+     */
+    private void readBlif(BufferedReader in) throws IOException, NetlistFormatException {
+        String line;
+        while((line = readBlifLine(in)) != null) {
+            String[] tokens = tokens(line);
+            if(tokens.length == 0) continue;
+            if(!tokens[0].startsWith(".")) {
+                addCoverRow(tokens);
+                continue;
+            }
+            finishCover();
+            switch(tokens[0]) {
+                case ".inputs":
+                    for(int i = 1; i < tokens.length; i++) addInput(signal(tokens[i]));
+                    break;
+                case ".outputs":
+                    for(int i = 1; i < tokens.length; i++) addOutput(signal(tokens[i]));
+                    break;
+                case ".names":
+                    startCover(tokens);
+                    break;
+                case ".latch":
+                    if(tokens.length < 3) throw fail(".latch needs an input and an output!");
+                    addGate(DFF, signal(tokens[2]), signal(tokens[1]));
+                    break;
+                case ".end":
+                case ".exdc":
+                    return;
+                case ".subckt":
+                case ".gate":
+                case ".mlatch":
+                case ".search":
+                    throw fail(tokens[0] + " is not supported, flatten the netlist first!");
+                default:
+                    // .model, .clock and the timing directives don't change the logic
+                    break;
+            }
+        }
+        finishCover();
+    }
+
+    /**
+     * Reads the next BLIF line without its comment. Lines ending with a backslash are joined.
+     *
+     * @param in            reader on the file
+     * @return              the line, or null at the end of the file
+     * @throws IOException  If the read fails.
+     */
+    private String readBlifLine(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        if(line == null) return null;
+        lineNumber++;
+        StringBuilder joined = null;
+        while(true) {
+            int comment = line.indexOf('#');
+            if(comment >= 0) line = line.substring(0, comment);
+            line = line.trim();
+            if(!line.endsWith("\\")) break;
+            if(joined == null) joined = new StringBuilder();
+            joined.append(line, 0, line.length() - 1).append(' ');
+            line = in.readLine();
+            if(line == null) return joined.toString();
+            lineNumber++;
+        }
+        return joined == null ? line : joined.append(line).toString();
+    }
+
+    /**
+     * Starts a .names cover. The last signal is the output, the rest are the inputs.
+     *
+     * @param tokens                    tokens of the .names line
+     * @throws NetlistFormatException   If the output is missing.
+     */
+    private void startCover(String[] tokens) throws NetlistFormatException {
+        if(tokens.length < 2) throw fail(".names needs an output!");
+        coverInputs = new int[tokens.length - 2];
+        for(int i = 0; i < coverInputs.length; i++) coverInputs[i] = signal(tokens[i + 1]);
+        coverOutput = signal(tokens[tokens.length - 1]);
+        coverValue = -1;
+        termCount = 0;
+    }
+
+    /**
+     * Adds a row of the current cover as an AND gate of its literals.
+     * Rows with one literal don't need a gate, rows without literals are the constant 1.
+     *
+     * @param tokens                    tokens of the row
+     * @throws NetlistFormatException   If the row is not valid, or it's not in a cover.
+     */
+    private void addCoverRow(String[] tokens) throws NetlistFormatException {
+        if(coverOutput < 0) throw fail("Unexpected line outside of a .names cover!");
+        String cube = coverInputs.length == 0 ? "" : tokens[0];
+        String value = tokens[tokens.length - 1];
+        if(tokens.length != (coverInputs.length == 0 ? 1 : 2) || cube.length() != coverInputs.length
+                || !(value.equals("0") || value.equals("1"))) {
+            throw fail("Expected a row of " + coverInputs.length + " literals (0, 1 or -) and an output value!");
+        }
+        if(coverValue >= 0 && coverValue != value.charAt(0) - '0') throw fail("The rows of a cover must have the same output value!");
+        coverValue = value.charAt(0) - '0';
+
+        int literals = 0;
+        for(int i = 0; i < cube.length(); i++) {
+            char literal = cube.charAt(i);
+            if(literal != '0' && literal != '1' && literal != '-') throw fail("Invalid literal " + literal + "!");
+            if(literal != '-') literals++;
+        }
+        int[] operands = new int[literals];
+        for(int i = 0, k = 0; i < cube.length(); i++) {
+            if(cube.charAt(i) == '-') continue;
+            operands[k] = coverInputs[i];
+            if(cube.charAt(i) == '0') {
+                operands[k] = fresh();
+                addGate(NOT, operands[k], coverInputs[i]);
+            }
+            k++;
+        }
+
+        int term;
+        if(literals == 1) {
+            term = operands[0];
+        } else {
+            term = fresh();
+            addGate(literals == 0 ? ONE : AND, term, operands);
+        }
+        terms = ensure(terms, termCount + 1);
+        terms[termCount++] = term;
+    }
+
+    /**
+     * Adds the gate of the current cover: an OR gate of the rows, or a NOR gate if the rows
+     * describe where the output is 0. A single row gate drives the output directly.
+     *
+     * @throws NetlistFormatException If the output is already driven.
+     */
+    private void finishCover() throws NetlistFormatException {
+        if(coverOutput < 0) return;
+        int output = coverOutput;
+        coverOutput = -1;
+        boolean offSet = coverValue == 0;
+        if(termCount == 0) {
+            addGate(ZERO, output);
+        } else if(termCount == 1 && signalNames[terms[0]] == null) {
+            // the gate of the only row is moved to the output, inverted for the off-set
+            int gate = drivers[terms[0]];
+            drivers[terms[0]] = UNDRIVEN;
+            drive(output, gate);
+            gateOutputs[gate] = output;
+            if(offSet) kinds[gate] = kinds[gate] == AND ? NAND : kinds[gate] == NOT ? BUFFER : ZERO;
+        } else if(termCount == 1) {
+            addGate(offSet ? NOT : BUFFER, output, terms[0]);
+        } else {
+            addGate(offSet ? NOR : OR, output, Arrays.copyOf(terms, termCount));
+        }
+    }
+
+    /**
+     * Returns the index of a named signal, the signal is created at the first use.
+     *
+     * @param name  name of the signal
+     * @return      index of the signal
+     */
+    private int signal(String name) {
+        Integer index = signalIndexes.get(name);
+        if(index != null) return index;
+        int signal = fresh();
+        signalNames[signal] = name;
+        signalIndexes.put(name, signal);
+        return signal;
+    }
+
+    /**
+     * Creates an unnamed signal.
+     *
+     * @return index of the signal
+     */
+    int fresh() {
+        if(signalCount == drivers.length) {
+            drivers = Arrays.copyOf(drivers, signalCount * 2);
+            signalNames = Arrays.copyOf(signalNames, signalCount * 2);
+        }
+        drivers[signalCount] = UNDRIVEN;
+        return signalCount++;
+    }
+
+    /**
+     * Sets the driver of a signal.
+     *
+     * @param signal                    the signal
+     * @param driver                    gate index or PRIMARY_INPUT
+     * @throws NetlistFormatException   If the signal is already driven.
+     */
+    private void drive(int signal, int driver) throws NetlistFormatException {
+        if(drivers[signal] != UNDRIVEN) throw fail(signalNames[signal] + " is driven more than once!");
+        drivers[signal] = driver;
+    }
+
+    /**
+     * Adds a primary input.
+     *
+     * @param signal                    the input signal
+     * @throws NetlistFormatException   If the signal is already driven.
+     */
+    void addInput(int signal) throws NetlistFormatException {
+        drive(signal, PRIMARY_INPUT);
+        inputs = ensure(inputs, inputCount + 1);
+        inputs[inputCount++] = signal;
+    }
+
+    /**
+     * Adds a primary output.
+     *
+     * @param signal the output signal
+     */
+    void addOutput(int signal) {
+        outputs = ensure(outputs, outputCount + 1);
+        outputs[outputCount++] = signal;
+    }
+
+    /**
+     * Adds a gate.
+     *
+     * @param kind                      kind of the gate
+     * @param output                    output signal
+     * @param operands                  input signals
+     * @throws NetlistFormatException   If the output is already driven.
+     */
+    void addGate(byte kind, int output, int... operands) throws NetlistFormatException {
+        drive(output, gateCount);
+        if(gateCount == kinds.length) {
+            kinds = Arrays.copyOf(kinds, gateCount * 2);
+            faninStart = Arrays.copyOf(faninStart, gateCount * 2 + 1);
+            gateOutputs = Arrays.copyOf(gateOutputs, gateCount * 2);
+        }
+        int start = faninStart[gateCount];
+        fanin = ensure(fanin, start + operands.length);
+        System.arraycopy(operands, 0, fanin, start, operands.length);
+        kinds[gateCount] = kind;
+        gateOutputs[gateCount] = output;
+        faninStart[++gateCount] = start + operands.length;
+    }
+
+    /**
+     * Creates the devices and the cables of the netlist, binds the box pins, then propagates the box.
+     *
+     * @param name                      name of the box
+     * @return                          the new box
+     * @throws NetlistFormatException   If a used signal is never driven.
+     */
+    CircuitBox build(String name) throws NetlistFormatException {
+        int[] fanout = new int[signalCount];
+        for(int k = 0; k < faninStart[gateCount]; k++) fanout[fanin[k]]++;
+        for(int i = 0; i < outputCount; i++) fanout[outputs[i]]++;
+        for(int signal = 0; signal < signalCount; signal++) {
+            if(fanout[signal] > 0 && drivers[signal] == UNDRIVEN) throw fail(signalNames[signal] + " is used, but never driven!");
+        }
+        int flipFlops = 0;
+        for(int gate = 0; gate < gateCount; gate++) if(kinds[gate] == DFF) flipFlops++;
+
+        CircuitBox box = new CircuitBox(name, inputCount + (flipFlops > 0 ? 1 : 0), outputCount);
+        Device[] sources = new Device[signalCount];
+        Device[] gates = new Device[gateCount];
+        try {
+            for(int i = 0; i < inputCount; i++) {
+                Junction junction = new Junction(Math.max(1, fanout[inputs[i]]));
+                box.bindInputPin(junction, 0, i);
+                sources[inputs[i]] = junction;
+            }
+            Junction clock = null;
+            if(flipFlops > 0) {
+                clock = new Junction(flipFlops);
+                box.bindInputPin(clock, 0, inputCount);
+            }
+
+            for(int gate = 0; gate < gateCount; gate++) {
+                int output = gateOutputs[gate];
+                gates[gate] = newDevice(kinds[gate], faninStart[gate + 1] - faninStart[gate], fanout[output]);
+                sources[output] = gates[gate];
+                if(kinds[gate] != BUFFER && fanout[output] > 1) {
+                    Junction junction = new Junction(fanout[output]);
+                    new Cable(gates[gate].outputPins()[0], junction.inputPins()[0]);
+                    sources[output] = junction;
+                }
+            }
+
+            int[] used = new int[signalCount];
+            int clockPins = 0;
+            for(int gate = 0; gate < gateCount; gate++) {
+                for(int k = faninStart[gate]; k < faninStart[gate + 1]; k++) {
+                    int signal = fanin[k];
+                    new Cable(sources[signal].outputPins()[used[signal]++], gates[gate].inputPins()[k - faninStart[gate]]);
+                }
+                if(kinds[gate] == DFF) new Cable(clock.outputPins()[clockPins++], gates[gate].inputPins()[DFlipFlop.CLK]);
+            }
+            for(int i = 0; i < outputCount; i++) box.bindOutputPin(sources[outputs[i]], used[outputs[i]]++, i);
+        } catch (BoundException | PinNotExistsException err) {
+            throw new IllegalStateException("The pins of " + name + " can't be bound!", err);
+        }
+
+        Simulation.circuitChanged();
+        settle(gates, sources);
+        return box;
+    }
+
+    /**
+     * Calculates the signals of the new circuit. Every gate is evaluated once, after the gates
+     * which drive it, the flip-flops keep their state. Propagating the whole circuit at once
+     * would evaluate the deep gates again after every change before them.
+     * Gates in combinational loops, and the gates after them are evaluated once in the order
+     * of the netlist, then they are left to the propagation engine. This way a latch gets a stable
+     * state from the gate which comes first, instead of oscillating.
+     *
+     * @param gates     device of every gate
+     * @param sources   device which sends every signal to its readers
+     */
+    private void settle(Device[] gates, Device[] sources) {
+        int[] readerStart = new int[signalCount + 1];
+        for(int k = 0; k < faninStart[gateCount]; k++) readerStart[fanin[k] + 1]++;
+        for(int signal = 0; signal < signalCount; signal++) readerStart[signal + 1] += readerStart[signal];
+        int[] readers = new int[faninStart[gateCount]];
+        int[] pending = new int[gateCount];
+        int[] next = Arrays.copyOf(readerStart, signalCount);
+        for(int gate = 0; gate < gateCount; gate++) {
+            for(int k = faninStart[gate]; k < faninStart[gate + 1]; k++) {
+                readers[next[fanin[k]]++] = gate;
+                int driver = drivers[fanin[k]];
+                if(driver >= 0 && kinds[driver] != DFF) pending[gate]++;
+            }
+        }
+
+        int[] queue = new int[gateCount];
+        int tail = 0;
+        for(int gate = 0; gate < gateCount; gate++) if(pending[gate] == 0) queue[tail++] = gate;
+        for(int head = 0; head < tail; head++) {
+            int gate = queue[head];
+            int output = gateOutputs[gate];
+            gates[gate].calcOutput();
+            send(gates[gate]);
+            if(sources[output] != gates[gate]) {
+                sources[output].calcOutput();
+                send(sources[output]);
+            }
+            if(kinds[gate] == DFF) continue;
+            for(int k = readerStart[output]; k < readerStart[output + 1]; k++) {
+                if(--pending[readers[k]] == 0) queue[tail++] = readers[k];
+            }
+        }
+
+        if(tail == gateCount) return;
+        List<Device> loops = new ArrayList<>();
+        for(int gate = 0; gate < gateCount; gate++) {
+            if(pending[gate] == 0) continue;
+            int output = gateOutputs[gate];
+            gates[gate].calcOutput();
+            send(gates[gate]);
+            if(sources[output] != gates[gate]) {
+                sources[output].calcOutput();
+                send(sources[output]);
+            }
+            loops.add(gates[gate]);
+        }
+        Simulation.getEngine().propagate(loops);
+    }
+
+    /**
+     * Copies the output signals of a device to the pins connected to them.
+     *
+     * @param device the device
+     */
+    private static void send(Device device) {
+        for(Pin pin : device.outputPins()) {
+            if(pin.getConnectionCable() != null) pin.getConnectionCable().getOtherPin(pin).setSignal(pin.getSignal());
+        }
+    }
+
+    /**
+     * Creates the device of a gate.
+     *
+     * @param kind      kind of the gate
+     * @param inputs    number of inputs
+     * @param fanout    number of readers of the output
+     * @return          the new device
+     */
+    private static Device newDevice(byte kind, int inputs, int fanout) {
+        switch(kind) {
+            case AND: return new AndGate(inputs);
+            case OR: return new OrGate(inputs);
+            case NAND: return new NandGate(inputs);
+            case NOR: return new NorGate(inputs);
+            case NOT: return new Inverter();
+            case BUFFER: return new Junction(Math.max(1, fanout));
+            case DFF: return new DFlipFlop();
+            case ONE: return new PowerSource();
+            default: return new Switch();
+        }
+    }
+
+    /**
+     * Splits a line into tokens at the whitespaces.
+     *
+     * @param line  the line
+     * @return      the tokens
+     */
+    private static String[] tokens(String line) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for(int i = 0; i <= line.length(); i++) {
+            boolean space = i == line.length() || Character.isWhitespace(line.charAt(i));
+            if(space && start >= 0) {
+                tokens.add(line.substring(start, i));
+                start = -1;
+            } else if(!space && start < 0) {
+                start = i;
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * Returns an array which can hold the given number of elements, grown if it's necessary.
+     *
+     * @param array the array
+     * @param size  required size
+     * @return      the array or its larger copy
+     */
+    private static int[] ensure(int[] array, int size) {
+        return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+
+    /**
+     * Creates an exception about the last read line.
+     *
+     * @param reason    what is wrong with the line
+     * @return          the exception
+     */
+    private NetlistFormatException fail(String reason) {
+        return new NetlistFormatException(fileName, lineNumber, reason);
+    }
+}
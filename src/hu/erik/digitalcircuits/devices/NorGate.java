@@ -4,6 +4,10 @@ package hu.erik.digitalcircuits.devices;
  * Class to create Nor gates.
  */
 public class NorGate extends Gate {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = 5775759433024552497L;
 
     /**
      * Constructor to create a Nor gate with the given number of input pins.
@@ -4,6 +4,10 @@ package hu.erik.digitalcircuits.devices;
  * Class to create Or gates.
  */
 public class OrGate extends Gate {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = 3310334653864236037L;
 
     /**
      * Constructor to create an Or gate.
@@ -7,6 +7,10 @@ import java.io.Serializable;
  * Devices can only connect to each other through Pins.
  */
 public class Pin implements Serializable {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = -4784001159048798150L;
 
     /**
      * Cable which is connected to the pin.
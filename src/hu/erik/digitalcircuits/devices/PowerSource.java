@@ -4,6 +4,10 @@ package hu.erik.digitalcircuits.devices;
  * Class to create Power Sources.
  */
 public class PowerSource extends SimpleDevice {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = -2758214476266413501L;
 
     /**
      * Default constructor for PowerSource.
@@ -0,0 +1,100 @@
+package hu.erik.digitalcircuits.devices;
+
+import java.util.Arrays;
+
+/**
+ * Class to create Registers, which are multiple D flip-flops with a shared clock.
+ * Input pins 0..width-1 are the data inputs, the last input pin is the clock.
+ * Output pin n is the stored bit of the data input n.
+ */
+public class Register extends MultipinDevice implements ClockedDevice {
+    /**
+     * The stored bits.
+     */
+    private boolean[] state;
+    /**
+     * Clock signal at the last evaluation, used to detect the rising edge.
+     */
+    private boolean lastClock;
+
+    /**
+     * Constructor to create a register with the given number of bits.
+     *
+     * @param width number of stored bits
+     */
+    public Register(int width) {
+        super(width + 1, width);
+        this.state = new boolean[width];
+        this.lastClock = false;
+    }
+
+    /**
+     * Stores the data inputs on a rising clock edge, then sets the outputs
+     * based on the stored bits.
+     */
+    @Override
+    public void calcOutput() {
+        boolean clock = inputPins()[state.length].getSignal();
+        if(clock && !lastClock) {
+            for(int i = 0; i < state.length; i++) state[i] = inputPins()[i].getSignal();
+        }
+        lastClock = clock;
+        for(int i = 0; i < state.length; i++) outputPins()[i].setSignal(state[i]);
+    }
+
+    /**
+     * Clears the stored bits. The circuit is not updated.
+     */
+    @Override
+    public void reset() {
+        for(int i = 0; i < state.length; i++) {
+            state[i] = false;
+            outputPins()[i].setSignal(false);
+        }
+    }
+
+    /**
+     * Returns the number of stored bits.
+     *
+     * @return width of the register
+     */
+    public int getWidth() {
+        return state.length;
+    }
+
+    /**
+     * Returns the index of the clock input pin.
+     *
+     * @return index of the clock pin
+     */
+    public int getClockIndex() {
+        return state.length;
+    }
+
+    /**
+     * Returns the inner state, used to copy and save the register.
+     *
+     * @return the stored bits followed by the last clock signal
+     */
+    boolean[] saveState() {
+        boolean[] bits = Arrays.copyOf(state, state.length + 1);
+        bits[state.length] = lastClock;
+        return bits;
+    }
+
+    /**
+     * Restores the inner state returned by saveState, without changing the pins.
+     * The width of the saved register must be the same.
+     *
+     * @param bits the saved state
+     */
+    void restoreState(boolean[] bits) {
+        System.arraycopy(bits, 0, state, 0, state.length);
+        this.lastClock = bits[state.length];
+    }
+
+    @Override
+    public String toString() {
+        return "Register";
+    }
+}
@@ -5,6 +5,10 @@ package hu.erik.digitalcircuits.devices;
  * have one input and output pin.
  */
 public abstract class SimpleDevice extends AbstractDevice {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = 8095442269118474946L;
     /**
      * SimpleDevice single input pin.
      */
@@ -13,6 +17,15 @@ public abstract class SimpleDevice extends AbstractDevice {
      * SimpleDevice single output pin.
      */
     private Pin outputPin;
+    /**
+     * Single element array of the input pin. Created on first use, so the
+     * pin getter doesn't allocate a new array on every call.
+     */
+    private transient Pin[] inputPinArray;
+    /**
+     * Single element array of the output pin. Created on first use.
+     */
+    private transient Pin[] outputPinArray;
 
     /**
      * Creates a basic SimpleDevice with one input and output pin.
@@ -29,7 +42,8 @@ public abstract class SimpleDevice extends AbstractDevice {
      */
     @Override
     public Pin[] inputPins() {
-        return new Pin[] {inputPin};
+        if(inputPinArray == null) inputPinArray = new Pin[] {inputPin};
+        return inputPinArray;
     }
 
     /**
@@ -39,7 +53,8 @@ public abstract class SimpleDevice extends AbstractDevice {
      */
     @Override
     public Pin[] outputPins() {
-        return new Pin[] {outputPin};
+        if(outputPinArray == null) outputPinArray = new Pin[] {outputPin};
+        return outputPinArray;
     }
 
     /**
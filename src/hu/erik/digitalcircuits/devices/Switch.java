@@ -5,6 +5,10 @@ package hu.erik.digitalcircuits.devices;
  * These switches will most likely be your variables in circuits.
  */
 public class Switch extends SimpleDevice {
+    /**
+     * Version of the serialized form, fixed so the saved .ser files stay loadable.
+     */
+    private static final long serialVersionUID = -2984969412002106910L;
     /**
      * Shows whether the switch is on or off.
      */
@@ -42,6 +46,26 @@ public class Switch extends SimpleDevice {
         sendOutput();
     }
 
+    /**
+     * Sets the switch state/status without updating the connected circuit.
+     * Useful when many switches change at once, because the circuit
+     * can be updated with a single propagation after all of them are set.
+     *
+     * @param status the new state/status
+     */
+    public void setStatus(boolean status) {
+        this.status = status;
+        calcOutput();
+    }
+
+    /**
+     * Returns whether the switch is turned on or not.
+     *
+     * @return the switch state/status
+     */
+    public boolean isOn() {
+        return status;
+    }
 
     /**
      * Calculates the Switch output based on it's status or state and it's input pin value.
@@ -0,0 +1,30 @@
+package hu.erik.digitalcircuits.errors;
+
+import hu.erik.digitalcircuits.devices.Device;
+
+/**
+ * Device exception that handles errors which caused by feedback loops.
+ * Thrown when a circuit has to be compiled into a representation
+ * which can only describe circuits without loops.
+ */
+public class FeedbackLoopException extends DeviceException {
+
+    /**
+     * Constructor to save the device which contains the feedback loop.
+     *
+     * @param device the device with which the problem occurred
+     */
+    public FeedbackLoopException(Device device) {
+        super(device);
+    }
+
+    /**
+     * Returns an error specific message which tells that the circuit contains a feedback loop.
+     *
+     * @return error message
+     */
+    @Override
+    public String getMessage() {
+        return getDevice() + " contains a feedback loop, so it can't be compiled!";
+    }
+}
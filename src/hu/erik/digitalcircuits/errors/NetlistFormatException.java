@@ -0,0 +1,38 @@
+package hu.erik.digitalcircuits.errors;
+
+/**
+ * Cli exception that handles errors which caused by invalid lines in an imported netlist file.
+ */
+public class NetlistFormatException extends CliException {
+    /**
+     * Number of the invalid line in the file. Counting starts at 1.
+     */
+    private long lineNumber;
+    /**
+     * What is wrong with the line.
+     */
+    private String reason;
+
+    /**
+     * Constructor to initialize the file name, the invalid line number and the problem.
+     *
+     * @param fileName      name of the netlist file
+     * @param lineNumber    number of the invalid line
+     * @param reason        what is wrong with the line
+     */
+    public NetlistFormatException(String fileName, long lineNumber, String reason) {
+        super(fileName);
+        this.lineNumber = lineNumber;
+        this.reason = reason;
+    }
+
+    /**
+     * Returns an error specific message which shows the invalid line.
+     *
+     * @return error message
+     */
+    @Override
+    public String getMessage() {
+        return "In file: " + getCmdOrName() + ", line " + lineNumber + ": " + reason;
+    }
+}
@@ -0,0 +1,39 @@
+package hu.erik.digitalcircuits.errors;
+
+/**
+ * Cli exception that handles errors which caused by invalid lines in a vector file.
+ */
+public class VectorFormatException extends CliException {
+    /**
+     * Number of the invalid line in the file. Counting starts at 1.
+     */
+    private long lineNumber;
+    /**
+     * Number of bits that a vector must have.
+     */
+    private int expectedBits;
+
+    /**
+     * Constructor to initialize the file name, the invalid line number and the required vector width.
+     *
+     * @param fileName      name of the vector file
+     * @param lineNumber    number of the invalid line
+     * @param expectedBits  number of bits that a vector must have
+     */
+    public VectorFormatException(String fileName, long lineNumber, int expectedBits) {
+        super(fileName);
+        this.lineNumber = lineNumber;
+        this.expectedBits = expectedBits;
+    }
+
+    /**
+     * Returns an error specific message which shows the invalid line.
+     *
+     * @return error message
+     */
+    @Override
+    public String getMessage() {
+        return "In file: " + getCmdOrName() + ", line " + lineNumber +
+                " is not a valid vector! Vectors must have exactly " + expectedBits + " bits (0 or 1).";
+    }
+}
@@ -0,0 +1,242 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.errors.FeedbackLoopException;
+import hu.erik.digitalcircuits.errors.VectorFormatException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Bit-parallel evaluator for compiled circuits.<br>
+ * Every signal of the netlist is a long. Each bit of the long belongs to a different
+ * stimulus vector, so one pass over the nodes evaluates 64 independent input vectors
+ * with bitwise operations.<br>
+ * The netlist is a snapshot: later connection changes in the circuit are not visible.
+ * The first passes are interpreted; after COMPILE_THRESHOLD passes the simulator switches
+ * to code generated for the netlist, and stays interpreted if the generation fails.
+ * Instances are not thread safe, but any number of simulators can share a netlist.
+ */
+public class BitParallelSimulator {
+    /**
+     * Number of input vectors evaluated in one pass.
+     */
+    public static final int LANES = Long.SIZE;
+    /**
+     * Number of interpreted passes before the netlist is compiled to bytecode.
+     * Short simulations don't pay for the code generation.
+     */
+    public static final int COMPILE_THRESHOLD = 64;
+
+    /**
+     * The simulated netlist.
+     */
+    private final Netlist netlist;
+    /**
+     * Current value of every node, 64 lanes each.
+     */
+    final long[] values;
+    /**
+     * Generated evaluator of the netlist, null while the simulator is interpreting.
+     */
+    private NetlistEvaluator evaluator;
+    /**
+     * Number of interpreted passes.
+     */
+    private long interpretedPasses;
+
+    /**
+     * Constructor to create a simulator for the given netlist.
+     *
+     * @param netlist netlist which will be simulated
+     */
+    public BitParallelSimulator(Netlist netlist) {
+        this.netlist = netlist;
+        this.values = new long[netlist.size()];
+        this.evaluator = null;
+        this.interpretedPasses = 0;
+    }
+
+    /**
+     * Constructor to compile and simulate the given box.
+     *
+     * @param box                       box which will be simulated
+     * @throws FeedbackLoopException    If the box contains a feedback loop.
+     */
+    public BitParallelSimulator(CircuitBox box) throws FeedbackLoopException {
+        this(NetlistCompiler.compile(box));
+    }
+
+    /**
+     * Evaluates 64 input vectors at once. Bit n of every input and output
+     * belongs to the n-th vector.
+     *
+     * @param inputs    one long for every primary input
+     * @return          one long for every primary output
+     */
+    public long[] simulate(long[] inputs) {
+        System.arraycopy(inputs, 0, values, 1, netlist.inputCount);
+        evaluateGates();
+
+        int[] outputs = netlist.outputs;
+        long[] result = new long[outputs.length];
+        for(int i = 0; i < outputs.length; i++) result[i] = values[outputs[i]];
+        return result;
+    }
+
+    /**
+     * Evaluates every gate once, in level order, based on the current input values.
+     * Uses the generated code after enough interpreted passes.
+     */
+    void evaluateGates() {
+        if(evaluator == null && ++interpretedPasses == COMPILE_THRESHOLD) evaluator = netlist.compiled();
+        if(evaluator != null) evaluator.evaluate(values);
+        else evaluateRange(netlist.inputCount + 1, netlist.size());
+    }
+
+    /**
+     * Switches to the generated code of the netlist right away.
+     *
+     * @return true if the generated code is used, false if the netlist can't be compiled
+     */
+    public boolean compile() {
+        if(evaluator == null) evaluator = netlist.compiled();
+        return evaluator != null;
+    }
+
+    /**
+     * Checks whether the simulator runs generated code or interprets the netlist.
+     *
+     * @return true if the generated code is used
+     */
+    public boolean isCompiled() {
+        return evaluator != null;
+    }
+
+    /**
+     * Evaluates the given range of nodes in order.
+     *
+     * @param from  first node to evaluate
+     * @param to    end of the range (exclusive)
+     */
+    final void evaluateRange(int from, int to) {
+        byte[] types = netlist.types;
+        int[] faninStart = netlist.faninStart;
+        for(int node = from; node < to; node++) {
+            values[node] = evaluate(node, types[node], faninStart[node], faninStart[node + 1]);
+        }
+    }
+
+    /**
+     * Evaluates a single node on all lanes.
+     *
+     * @param node  index of the node
+     * @param type  type code of the node
+     * @param from  start of the node fanin
+     * @param to    end of the node fanin (exclusive)
+     * @return      output of the node
+     */
+    private long evaluate(int node, byte type, int from, int to) {
+        int[] fanin = netlist.fanin;
+        long acc;
+        switch(type) {
+            case Netlist.ONE:
+                return -1L;
+            case Netlist.DFF:
+                return values[node];
+            case Netlist.BUFFER:
+                return values[fanin[from]];
+            case Netlist.NOT:
+                return ~values[fanin[from]];
+            case Netlist.AND:
+            case Netlist.NAND:
+                acc = -1L;
+                for(int k = from; k < to; k++) acc &= values[fanin[k]];
+                return type == Netlist.AND ? acc : ~acc;
+            case Netlist.OR:
+            case Netlist.NOR:
+                acc = 0L;
+                for(int k = from; k < to; k++) acc |= values[fanin[k]];
+                return type == Netlist.OR ? acc : ~acc;
+            default:
+                return 0L;
+        }
+    }
+
+    /**
+     * Reads input vectors line by line, simulates them 64 at a time and
+     * writes the output vectors line by line. Every vector is a string of 0 and 1
+     * characters, one for every pin. Empty lines and lines starting with # are skipped.
+     *
+     * @param in                        source of the input vectors
+     * @param out                       destination of the output vectors
+     * @param sourceName                name of the input, used in error messages
+     * @return                          number of simulated vectors
+     * @throws IOException              If reading or writing fails.
+     * @throws VectorFormatException    If an input line is not a valid vector.
+     */
+    public long simulateVectors(BufferedReader in, Writer out, String sourceName) throws IOException, VectorFormatException {
+        int inputCount = netlist.inputCount;
+        long[] inputs = new long[inputCount];
+        char[] line = new char[netlist.outputs.length + 1];
+        line[netlist.outputs.length] = '\n';
+        long lineNumber = 0;
+        long vectors = 0;
+        int lanes = 0;
+
+        String text;
+        while((text = in.readLine()) != null) {
+            lineNumber++;
+            String vector = text.strip();
+            if(vector.isEmpty() || vector.startsWith("#")) continue;
+            if(vector.length() != inputCount) throw new VectorFormatException(sourceName, lineNumber, inputCount);
+            for(int i = 0; i < inputCount; i++) {
+                char c = vector.charAt(i);
+                if(c == '1') inputs[i] |= 1L << lanes;
+                else if(c != '0') throw new VectorFormatException(sourceName, lineNumber, inputCount);
+            }
+
+            if(++lanes == LANES) {
+                writeVectors(simulate(inputs), lanes, line, out);
+                vectors += lanes;
+                lanes = 0;
+                Arrays.fill(inputs, 0L);
+            }
+        }
+        if(lanes > 0) {
+            writeVectors(simulate(inputs), lanes, line, out);
+            vectors += lanes;
+        }
+        out.flush();
+        return vectors;
+    }
+
+    /**
+     * Writes the first lanes of the simulated outputs as vectors.
+     *
+     * @param results       simulated outputs
+     * @param lanes         number of used lanes
+     * @param line          buffer for one output line
+     * @param out           destination of the output vectors
+     * @throws IOException  If the writing fails.
+     */
+    private void writeVectors(long[] results, int lanes, char[] line, Writer out) throws IOException {
+        for(int lane = 0; lane < lanes; lane++) {
+            for(int i = 0; i < results.length; i++) {
+                line[i] = (results[i] >>> lane & 1L) == 1L ? '1' : '0';
+            }
+            out.write(line);
+        }
+    }
+
+    /**
+     * Returns the simulated netlist.
+     *
+     * @return the netlist
+     */
+    public Netlist getNetlist() {
+        return netlist;
+    }
+}
@@ -0,0 +1,250 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.ClockedDevice;
+import hu.erik.digitalcircuits.devices.Device;
+import hu.erik.digitalcircuits.devices.Pin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Util class to walk the device graph which is formed by the pins and cables.<br>
+ * Only the pins whose parent is the device itself are treated as the pins of the device,
+ * so the reference bound pins of a CircuitBox belong to the devices inside the box.
+ */
+public final class CircuitGraph {
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private CircuitGraph() {}
+
+    /**
+     * Collects every device which can be reached from the given devices
+     * through pins and cables, in both directions.
+     *
+     * @param roots devices to start the search from
+     * @return      every reachable device (including the roots) in discovery order
+     */
+    public static Set<Device> collect(Collection<? extends Device> roots) {
+        return collect(roots, Collections.emptySet());
+    }
+
+    /**
+     * Collects every device which can be reached from the given devices
+     * through pins and cables, in both directions, without the known devices.
+     * The search doesn't go through the known devices.
+     *
+     * @param roots devices to start the search from
+     * @param known devices to leave out
+     * @return      every reachable device which is not known (including the roots) in discovery order
+     */
+    public static Set<Device> collect(Collection<? extends Device> roots, Set<Device> known) {
+        Set<Device> found = new LinkedHashSet<>();
+        ArrayDeque<Device> queue = new ArrayDeque<>();
+        for(Device root : roots) visit(root, known, found, queue);
+        while(!queue.isEmpty()) {
+            Device device = queue.poll();
+            visitPins(device.inputPins(), known, found, queue);
+            visitPins(device.outputPins(), known, found, queue);
+        }
+        return found;
+    }
+
+    /**
+     * Adds the parent devices of the given pins and the devices
+     * at the other end of their cables to the found devices.
+     *
+     * @param pins  pins to visit
+     * @param known devices to leave out
+     * @param found already found devices
+     * @param queue devices which neighbours are not visited yet
+     */
+    private static void visitPins(Pin[] pins, Set<Device> known, Set<Device> found, ArrayDeque<Device> queue) {
+        for(Pin pin : pins) {
+            visit(pin.getParentDevice(), known, found, queue);
+            if(pin.getConnectionCable() == null) continue;
+            visit(pin.getConnectionCable().getOtherPin(pin).getParentDevice(), known, found, queue);
+        }
+    }
+
+    /**
+     * Adds the device to the found devices and queues it, if it is new and not known.
+     *
+     * @param device    device to add
+     * @param known     devices to leave out
+     * @param found     already found devices
+     * @param queue     devices which neighbours are not visited yet
+     */
+    private static void visit(Device device, Set<Device> known, Set<Device> found, ArrayDeque<Device> queue) {
+        if(!known.contains(device) && found.add(device)) queue.add(device);
+    }
+
+    /**
+     * Returns the devices which are connected to the output pins of the given device.
+     * Every device appears only once.
+     *
+     * @param device    device whose fanout is required
+     * @return          devices driven by the given device
+     */
+    public static List<Device> fanout(Device device) {
+        return neighbours(device, device.outputPins());
+    }
+
+    /**
+     * Returns the devices which are connected to the input pins of the given device.
+     * Every device appears only once.
+     *
+     * @param device    device whose fanin is required
+     * @return          devices driving the given device
+     */
+    public static List<Device> fanin(Device device) {
+        return neighbours(device, device.inputPins());
+    }
+
+    /**
+     * Returns the devices at the other end of the given pins which belong to the device.
+     *
+     * @param device    owner of the pins
+     * @param pins      pins of the device
+     * @return          connected devices, without duplicates
+     */
+    private static List<Device> neighbours(Device device, Pin[] pins) {
+        List<Device> result = new ArrayList<>(pins.length);
+        for(Pin pin : pins) {
+            if(pin.getParentDevice() != device || pin.getConnectionCable() == null) continue;
+            Device other = pin.getConnectionCable().getOtherPin(pin).getParentDevice();
+            if(!result.contains(other)) result.add(other);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the devices whose output depends directly on the output of the given device.
+     * Clocked devices only change on a clock edge, so nothing depends on them directly.
+     *
+     * @param device    device whose fanout is required
+     * @return          devices driven by the given device, or nothing for clocked devices
+     */
+    public static List<Device> combinationalFanout(Device device) {
+        if(device instanceof ClockedDevice) return Collections.emptyList();
+        return fanout(device);
+    }
+
+    /**
+     * Returns the devices whose output directly affects the output of the given device.
+     * Clocked devices only change on a clock edge, so they are left out.
+     *
+     * @param device    device whose fanin is required
+     * @return          devices driving the given device, without the clocked ones
+     */
+    public static List<Device> combinationalFanin(Device device) {
+        List<Device> result = fanin(device);
+        result.removeIf(driver -> driver instanceof ClockedDevice);
+        return result;
+    }
+
+    /**
+     * Finds the strongly connected components of the given devices which form combinational
+     * feedback loops. A component is a feedback loop if it has
+     * more than one device, or its only device drives itself.
+     * Devices which are not in the given collection are ignored.
+     *
+     * @param devices   devices to search in
+     * @return          devices of every feedback loop
+     */
+    public static List<List<Device>> stronglyConnectedComponents(Collection<? extends Device> devices) {
+        List<List<Device>> loops = new ArrayList<>();
+        for(List<Device> component : components(devices)) {
+            if(isLoop(component)) loops.add(component);
+        }
+        return loops;
+    }
+
+    /**
+     * Checks whether a strongly connected component is a feedback loop.
+     *
+     * @param component devices of the component
+     * @return          true if it has more than one device, or its only device drives itself
+     */
+    public static boolean isLoop(List<Device> component) {
+        return component.size() > 1 || combinationalFanout(component.get(0)).contains(component.get(0));
+    }
+
+    /**
+     * Finds every strongly connected component of the given devices with an iterative version
+     * of Tarjan's algorithm. Paths through clocked devices are not followed, so every device
+     * which is not part of a feedback loop is a component on its own.
+     * The components are returned in reverse topological order: a component never drives
+     * an earlier one. Devices which are not in the given collection are ignored.
+     *
+     * @param devices   devices to search in
+     * @return          devices of every component
+     */
+    public static List<List<Device>> components(Collection<? extends Device> devices) {
+        Set<Device> scope = Collections.newSetFromMap(new IdentityHashMap<>());
+        scope.addAll(devices);
+        Map<Device, Integer> index = new IdentityHashMap<>();
+        Map<Device, Integer> lowLink = new IdentityHashMap<>();
+        Set<Device> onStack = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Device> stack = new ArrayDeque<>();
+        ArrayDeque<Device> callStack = new ArrayDeque<>();
+        ArrayDeque<Iterator<Device>> iterators = new ArrayDeque<>();
+        List<List<Device>> components = new ArrayList<>();
+
+        for(Device root : devices) {
+            if(index.containsKey(root)) continue;
+            index.put(root, index.size());
+            lowLink.put(root, index.get(root));
+            stack.push(root);
+            onStack.add(root);
+            callStack.push(root);
+            iterators.push(combinationalFanout(root).iterator());
+
+            while(!callStack.isEmpty()) {
+                Device device = callStack.peek();
+                Iterator<Device> targets = iterators.peek();
+                if(targets.hasNext()) {
+                    Device target = targets.next();
+                    if(!scope.contains(target)) continue;
+                    if(!index.containsKey(target)) {
+                        index.put(target, index.size());
+                        lowLink.put(target, index.get(target));
+                        stack.push(target);
+                        onStack.add(target);
+                        callStack.push(target);
+                        iterators.push(combinationalFanout(target).iterator());
+                    } else if(onStack.contains(target)) {
+                        lowLink.put(device, Math.min(lowLink.get(device), index.get(target)));
+                    }
+                    continue;
+                }
+
+                callStack.pop();
+                iterators.pop();
+                if(!callStack.isEmpty()) {
+                    Device parent = callStack.peek();
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(device)));
+                }
+                if(lowLink.get(device).equals(index.get(device))) {
+                    List<Device> component = new ArrayList<>();
+                    Device member;
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        component.add(member);
+                    } while(member != device);
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+}
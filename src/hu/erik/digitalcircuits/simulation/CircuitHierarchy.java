@@ -0,0 +1,78 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.devices.Device;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Util class to name the devices inside a CircuitBox. The devices of nested boxes are
+ * flattened into the outer box, like in the netlist. Every inner device is named after its
+ * type and its position in the box, like "nandgate0", so it can be reached by the
+ * "box/inner" path. The names are stable while the box is not changed.
+ */
+public final class CircuitHierarchy {
+    /**
+     * Separator between the box name and the inner name in a path.
+     */
+    public static final char SEPARATOR = '/';
+    /**
+     * Inner devices of the already named boxes, valid until the circuit changes.
+     */
+    private static final Map<CircuitBox, Map<String, Device>> namedBoxes = new WeakHashMap<>();
+    /**
+     * Circuit version which the named boxes belong to.
+     */
+    private static long namedVersion = -1;
+
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private CircuitHierarchy() {}
+
+    /**
+     * Returns every device inside the box by its inner name.
+     *
+     * @param box   box whose devices are required
+     * @return      unmodifiable map from inner name to device, in the order of discovery
+     */
+    public static synchronized Map<String, Device> innerDevices(CircuitBox box) {
+        if(namedVersion != Simulation.getTopologyVersion()) {
+            namedBoxes.clear();
+            namedVersion = Simulation.getTopologyVersion();
+        }
+        return namedBoxes.computeIfAbsent(box, CircuitHierarchy::name);
+    }
+
+    /**
+     * Finds a device inside the box by its inner name.
+     *
+     * @param box       box which contains the device
+     * @param innerName inner name of the device
+     * @return          the device, or null if the box doesn't have a device with this name
+     */
+    public static Device resolve(CircuitBox box, String innerName) {
+        return innerDevices(box).get(innerName.toLowerCase());
+    }
+
+    /**
+     * Names the devices inside the box.
+     *
+     * @param box   box whose devices are named
+     * @return      unmodifiable map from inner name to device
+     */
+    private static Map<String, Device> name(CircuitBox box) {
+        Map<String, Integer> counters = new HashMap<>();
+        Map<String, Device> devices = new LinkedHashMap<>();
+        for(Device device : NetlistCompiler.devicesInside(box)) {
+            String type = device.toString().toLowerCase();
+            int index = counters.merge(type, 1, Integer::sum) - 1;
+            devices.put(type + index, device);
+        }
+        return Collections.unmodifiableMap(devices);
+    }
+}
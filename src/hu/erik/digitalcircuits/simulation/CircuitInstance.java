@@ -0,0 +1,60 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.MultipinDevice;
+
+/**
+ * Device which behaves like a loaded CircuitBox, but it doesn't have inner devices.
+ * The logic comes from a shared CircuitTemplate, the instance only owns the signals
+ * of the template nodes in a packed bitset.
+ */
+public class CircuitInstance extends MultipinDevice {
+    /**
+     * The shared template.
+     */
+    private final CircuitTemplate template;
+    /**
+     * Signal of every node of the template, in a packed bitset.
+     */
+    private final long[] signals;
+
+    /**
+     * Constructor to create a new instance of the template.
+     * The outputs are calculated with every input set to 0.
+     *
+     * @param template the shared template
+     */
+    public CircuitInstance(CircuitTemplate template) {
+        super(template.getNetlist().getInputCount(), template.getNetlist().getOutputCount());
+        this.template = template;
+        this.signals = new long[template.getStateSize()];
+        calcOutput();
+    }
+
+    /**
+     * Evaluates the template with the signals of the input pins,
+     * then sets the output pins.
+     */
+    @Override
+    public void calcOutput() {
+        Netlist netlist = template.getNetlist();
+        for(int i = 0; i < inputPins().length; i++) Netlist.setSignal(signals, i + 1, inputPins()[i].getSignal());
+        netlist.evaluate(signals);
+        for(int i = 0; i < outputPins().length; i++) {
+            outputPins()[i].setSignal(Netlist.getSignal(signals, netlist.getOutput(i)));
+        }
+    }
+
+    /**
+     * Returns the shared template.
+     *
+     * @return the template
+     */
+    public CircuitTemplate getTemplate() {
+        return template;
+    }
+
+    @Override
+    public String toString() {
+        return "Instance";
+    }
+}
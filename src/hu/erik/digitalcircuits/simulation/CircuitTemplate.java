@@ -0,0 +1,74 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.errors.FeedbackLoopException;
+
+/**
+ * Immutable, optimized netlist of a saved CircuitBox, shared by every CircuitInstance of the box.
+ * An instance only stores the signals of the nodes, so a box used many times costs one netlist
+ * and a small bitset per use, instead of a full device object graph per use.
+ */
+public class CircuitTemplate {
+    /**
+     * Name of the box the template was created from.
+     */
+    private final String name;
+    /**
+     * The shared netlist.
+     */
+    private final Netlist netlist;
+
+    /**
+     * Constructor to create a template from a netlist.
+     *
+     * @param name      name of the template
+     * @param netlist   combinational netlist of the template
+     * @throws IllegalArgumentException If the netlist contains flip-flops.
+     */
+    public CircuitTemplate(String name, Netlist netlist) {
+        if(netlist.getFlipFlops().length > 0) {
+            throw new IllegalArgumentException("Boxes with flip-flops or registers can't be shared!");
+        }
+        this.name = name;
+        this.netlist = netlist;
+    }
+
+    /**
+     * Compiles and optimizes the box into a template.
+     *
+     * @param box                       box of the template
+     * @return                          the template
+     * @throws FeedbackLoopException    If the box contains a feedback loop.
+     * @throws IllegalArgumentException If the box contains flip-flops.
+     */
+    public static CircuitTemplate of(CircuitBox box) throws FeedbackLoopException {
+        return new CircuitTemplate(box.getName(), NetlistCompiler.compile(box));
+    }
+
+    /**
+     * Returns the name of the box the template was created from.
+     *
+     * @return name of the template
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the shared netlist.
+     *
+     * @return the netlist
+     */
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    /**
+     * Returns the number of longs needed to store the signals of an instance.
+     *
+     * @return size of the per-instance state
+     */
+    public int getStateSize() {
+        return (netlist.size() + 63) >>> 6;
+    }
+}
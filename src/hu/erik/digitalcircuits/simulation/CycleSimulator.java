@@ -0,0 +1,124 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.errors.FeedbackLoopException;
+
+/**
+ * Cycle based simulator for sequential circuits.<br>
+ * Every flip-flop of the netlist is driven by the same clock. A clock cycle evaluates
+ * the combinational logic once, in level order, then every flip-flop stores its D input
+ * at the same time, so the order of the flip-flops never matters.<br>
+ * Like the bit-parallel simulator, every signal has 64 lanes, so 64 independent copies
+ * of the circuit can run with different inputs.
+ */
+public class CycleSimulator extends BitParallelSimulator {
+    /**
+     * Indexes of the flip-flop nodes.
+     */
+    private final int[] flipFlops;
+    /**
+     * Indexes of the nodes which drive the D input of the flip-flops.
+     */
+    private final int[] dataInputs;
+    /**
+     * Next state of the flip-flops, calculated before any of them changes.
+     */
+    private final long[] nextState;
+    /**
+     * Current value of the primary inputs.
+     */
+    private final long[] inputs;
+    /**
+     * Number of simulated clock cycles.
+     */
+    private long cycles;
+
+    /**
+     * Constructor to create a simulator for the given netlist. Every flip-flop starts from 0.
+     *
+     * @param netlist netlist which will be simulated
+     */
+    public CycleSimulator(Netlist netlist) {
+        super(netlist);
+        this.flipFlops = netlist.getFlipFlops();
+        this.dataInputs = new int[flipFlops.length];
+        for(int i = 0; i < flipFlops.length; i++) dataInputs[i] = netlist.getFanin(flipFlops[i], 0);
+        this.nextState = new long[flipFlops.length];
+        this.inputs = new long[netlist.getInputCount()];
+        this.cycles = 0;
+    }
+
+    /**
+     * Constructor to compile and simulate the given box.
+     *
+     * @param box                       box which will be simulated
+     * @throws FeedbackLoopException    If the box contains a combinational feedback loop.
+     */
+    public CycleSimulator(CircuitBox box) throws FeedbackLoopException {
+        this(NetlistCompiler.compile(box));
+    }
+
+    /**
+     * Sets the primary inputs. They keep their value for the next cycles.
+     *
+     * @param inputs one long for every primary input
+     */
+    public void setInputs(long[] inputs) {
+        System.arraycopy(inputs, 0, this.inputs, 0, this.inputs.length);
+    }
+
+    /**
+     * Simulates the given number of clock cycles.
+     *
+     * @param count number of cycles
+     */
+    public void run(long count) {
+        for(long cycle = 0; cycle < count; cycle++) step();
+    }
+
+    /**
+     * Simulates one clock cycle: evaluates the logic, then clocks every flip-flop.
+     */
+    public void step() {
+        System.arraycopy(inputs, 0, values, 1, inputs.length);
+        evaluateGates();
+        for(int i = 0; i < flipFlops.length; i++) nextState[i] = values[dataInputs[i]];
+        for(int i = 0; i < flipFlops.length; i++) values[flipFlops[i]] = nextState[i];
+        cycles++;
+    }
+
+    /**
+     * Returns the outputs based on the current state and inputs.
+     *
+     * @return one long for every primary output
+     */
+    public long[] getOutputs() {
+        return simulate(inputs);
+    }
+
+    /**
+     * Clears every flip-flop and the cycle counter.
+     */
+    public void reset() {
+        for(int flipFlop : flipFlops) values[flipFlop] = 0L;
+        cycles = 0;
+    }
+
+    /**
+     * Returns the number of simulated cycles since the creation or the last reset.
+     *
+     * @return number of cycles
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * Returns the number of flip-flops.
+     *
+     * @return number of stored bits
+     */
+    public int getFlipFlopCount() {
+        return flipFlops.length;
+    }
+}
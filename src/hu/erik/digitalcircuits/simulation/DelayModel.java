@@ -0,0 +1,97 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.Device;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Propagation delay of every device type, in simulation ticks.<br>
+ * Device types are identified by their lowercase name, like "nandgate" or "inverter",
+ * which matches the type names of the cli. Gates have 1 tick delay by default,
+ * the other devices are instantaneous.
+ */
+public class DelayModel {
+    /**
+     * Delay of the device types which are not set explicitly.
+     */
+    public static final int DEFAULT_GATE_DELAY = 1;
+
+    /**
+     * Delay of every device type.
+     */
+    private final Map<String, Integer> delays;
+
+    /**
+     * Default constructor to create a model with the default delays.
+     */
+    public DelayModel() {
+        this.delays = new TreeMap<>();
+        for(String gate : new String[] {"andgate", "orgate", "nandgate", "norgate", "inverter", "dflipflop", "register"}) {
+            delays.put(gate, DEFAULT_GATE_DELAY);
+        }
+        for(String wire : new String[] {"junction", "switch", "powersource", "clock"}) delays.put(wire, 0);
+    }
+
+    /**
+     * Sets the delay of a device type.
+     *
+     * @param type  lowercase name of the device type
+     * @param ticks delay in ticks
+     * @throws IllegalArgumentException If the delay is negative.
+     */
+    public void setDelay(String type, int ticks) {
+        if(ticks < 0) throw new IllegalArgumentException("Delay can't be negative!");
+        delays.put(type.toLowerCase(), ticks);
+    }
+
+    /**
+     * Returns the delay of a device type.
+     *
+     * @param type  lowercase name of the device type
+     * @return      delay in ticks
+     */
+    public int getDelay(String type) {
+        return delays.getOrDefault(type.toLowerCase(), DEFAULT_GATE_DELAY);
+    }
+
+    /**
+     * Returns the delay of a device based on its type.
+     *
+     * @param device    device whose delay is required
+     * @return          delay in ticks
+     */
+    public int delayOf(Device device) {
+        return getDelay(device.toString());
+    }
+
+    /**
+     * Returns the delay of a netlist node based on its type. Nodes inlined from the template
+     * of an instance don't have a device of their own, so gates get the delay of the matching
+     * device type, and wires, inputs and constants are instantaneous.
+     *
+     * @param type  type code of the node
+     * @return      delay in ticks
+     */
+    public int nodeDelay(byte type) {
+        switch(type) {
+            case Netlist.AND: return getDelay("andgate");
+            case Netlist.OR: return getDelay("orgate");
+            case Netlist.NAND: return getDelay("nandgate");
+            case Netlist.NOR: return getDelay("norgate");
+            case Netlist.NOT: return getDelay("inverter");
+            case Netlist.DFF: return getDelay("dflipflop");
+            default: return 0;
+        }
+    }
+
+    /**
+     * Returns every configured delay in an unmodifiable format, sorted by type name.
+     *
+     * @return delays by type name
+     */
+    public Map<String, Integer> getDelays() {
+        return Collections.unmodifiableMap(delays);
+    }
+}
@@ -0,0 +1,159 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.Device;
+import hu.erik.digitalcircuits.devices.Pin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Strongly connected group of devices, in other words a feedback loop.<br>
+ * Loops are not propagated device by device, they are evaluated repeatedly
+ * until none of their outputs change. Stable loops, like latches built from
+ * NorGates, settle in a few sweeps. Loops which don't settle within the
+ * iteration bound are oscillating.
+ */
+public class FeedbackLoop {
+    /**
+     * Devices of the loop.
+     */
+    private final List<Device> members;
+    /**
+     * Devices of the loop for fast membership checks.
+     */
+    private final Set<Device> memberSet;
+    /**
+     * Number of device evaluations during the last settle.
+     */
+    private long evaluations;
+
+    /**
+     * Constructor to create a loop from its devices.
+     *
+     * @param members devices of the loop
+     */
+    public FeedbackLoop(List<Device> members) {
+        this.members = new ArrayList<>(members);
+        this.memberSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.memberSet.addAll(members);
+        this.evaluations = 0;
+    }
+
+    /**
+     * Evaluates the devices of the loop in sweeps until none of their outputs change.
+     * Each device reads the latest outputs of the others, so stable loops settle
+     * even if they started from an inconsistent state.
+     *
+     * @return true if the loop settled, false if it is oscillating
+     */
+    public boolean settle() {
+        int maxSweeps = 2 * members.size() + 2;
+        evaluations = 0;
+        for(int sweep = 0; sweep < maxSweeps; sweep++) {
+            boolean changed = false;
+            for(Device device : members) {
+                LevelizedEngine.pullInputs(device);
+                changed |= evaluate(device);
+            }
+            if(!changed) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Recalculates the output of a device and tells whether any of its output pins changed.
+     *
+     * @param device    device to evaluate
+     * @return          true if any of the output signals changed
+     */
+    private boolean evaluate(Device device) {
+        long before = LevelizedEngine.outputSignals(device);
+        device.calcOutput();
+        evaluations++;
+        return before != LevelizedEngine.outputSignals(device);
+    }
+
+    /**
+     * Returns the connected output pins of the loop devices which lead out of the loop.
+     *
+     * @return output pins leading out of the loop
+     */
+    public List<Pin> exitPins() {
+        List<Pin> exits = new ArrayList<>();
+        for(Device device : members) {
+            for(Pin pin : device.outputPins()) {
+                if(pin.getParentDevice() != device || pin.getConnectionCable() == null) continue;
+                if(!memberSet.contains(pin.getConnectionCable().getOtherPin(pin).getParentDevice())) exits.add(pin);
+            }
+        }
+        return exits;
+    }
+
+    /**
+     * Describes one cycle of the loop with the device names, for example "a -> b -> a".
+     *
+     * @return the description of the loop
+     */
+    public String describe() {
+        Device start = members.get(0);
+        Map<Device, Device> previous = new IdentityHashMap<>();
+        ArrayDeque<Device> queue = new ArrayDeque<>();
+        queue.add(start);
+        Device last = start;
+        search:
+        while(!queue.isEmpty()) {
+            Device device = queue.poll();
+            for(Device target : CircuitGraph.fanout(device)) {
+                if(target == start) {
+                    last = device;
+                    break search;
+                }
+                if(memberSet.contains(target) && !previous.containsKey(target)) {
+                    previous.put(target, device);
+                    queue.add(target);
+                }
+            }
+        }
+
+        ArrayDeque<String> names = new ArrayDeque<>();
+        names.push(Simulation.nameOf(start));
+        for(Device device = last; device != start; device = previous.get(device)) {
+            names.push(Simulation.nameOf(device));
+        }
+        names.push(Simulation.nameOf(start));
+        return String.join(" -> ", names);
+    }
+
+    /**
+     * Checks whether the device is part of the loop.
+     *
+     * @param device    device to check
+     * @return          true if the device is in the loop
+     */
+    public boolean contains(Device device) {
+        return memberSet.contains(device);
+    }
+
+    /**
+     * Returns the devices of the loop.
+     *
+     * @return devices of the loop
+     */
+    public List<Device> getMembers() {
+        return Collections.unmodifiableList(members);
+    }
+
+    /**
+     * Returns the number of device evaluations during the last settle.
+     *
+     * @return number of evaluations
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+}
@@ -0,0 +1,238 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.ClockedDevice;
+import hu.erik.digitalcircuits.devices.Device;
+import hu.erik.digitalcircuits.devices.Pin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps track of the feedback loops in the circuits.<br>
+ * Every connected device has a rank, and the ranks are a topological order of the combinational paths:
+ * a device never drives a device with a smaller rank, and only the devices of the same loop share a rank.
+ * A connection from a smaller to a bigger rank can't close a loop, so it costs two lookups.
+ * Otherwise only the devices ranked between the target and the driver are searched, as in the
+ * algorithm of Pearce and Kelly. If the search reaches the driver, the new cable closed a loop,
+ * so the strongly connected components of the circuit are recalculated. If it doesn't,
+ * the searched devices are reordered to keep the ranks in topological order.
+ */
+public final class FeedbackLoops {
+    /**
+     * Loop of every device which is part of a loop.
+     * The loops of deleted devices have to be removed with {@link #unregister(Collection)}.
+     */
+    private static final Map<Device, FeedbackLoop> loops = new IdentityHashMap<>();
+    /**
+     * Rank of every connected device. The ranks don't reference the devices,
+     * so the ranks of the devices which are no longer used are removed by the garbage collector.
+     */
+    private static final Map<Device, Integer> ranks = new WeakHashMap<>();
+    /**
+     * Smallest rank given out so far.
+     */
+    private static int lowestRank = 0;
+    /**
+     * Largest rank given out so far.
+     */
+    private static int highestRank = 0;
+
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private FeedbackLoops() {}
+
+    /**
+     * Returns the loop which contains the device.
+     *
+     * @param device    device to look for
+     * @return          the loop of the device or null if it isn't part of any loop
+     */
+    public static FeedbackLoop loopOf(Device device) {
+        return loops.get(device);
+    }
+
+    /**
+     * Has to be called after a cable was connected between the given devices.
+     * Registers the loop if the connection closed one.
+     *
+     * @param driver    device of the output pin
+     * @param target    device of the input pin
+     */
+    public static void connected(Device driver, Device target) {
+        // clocked devices only change on a clock edge, so their cables can't close a loop
+        if(driver instanceof ClockedDevice) return;
+        if(driver == target) {
+            analyze(List.of(driver));
+            return;
+        }
+
+        // a device whose only cable is the new one can get any rank which keeps the order
+        Integer driverRank = ranks.get(driver);
+        Integer targetRank = ranks.get(target);
+        if(driverRank == null && cableCount(driver) == 1) ranks.put(driver, driverRank = --lowestRank);
+        if(targetRank == null && cableCount(target) == 1) ranks.put(target, targetRank = ++highestRank);
+        if(driverRank == null || targetRank == null) {
+            // the circuit was built without the connect methods, like a generated box
+            analyze(List.of(driver));
+            return;
+        }
+        // equal ranks belong to the same loop
+        if(targetRank >= driverRank) return;
+
+        List<Device> forward = new ArrayList<>();
+        if(searchForward(target, driverRank, forward)) {
+            analyze(List.of(driver));
+            return;
+        }
+        List<Device> backward = searchBackward(driver, targetRank);
+        reorder(backward, forward);
+    }
+
+    /**
+     * Collects the devices which can be reached from the target of a new cable
+     * and are ranked below the driver of the cable.
+     *
+     * @param target    target device of the new cable
+     * @param bound     rank of the driver device of the new cable
+     * @param found     list which will be filled with the reached devices, including the target
+     * @return          true if the new cable closed a loop, because a device with the rank of the driver was reached
+     */
+    private static boolean searchForward(Device target, int bound, List<Device> found) {
+        Set<Device> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Device> stack = new ArrayDeque<>();
+        visited.add(target);
+        stack.push(target);
+        while(!stack.isEmpty()) {
+            Device device = stack.pop();
+            found.add(device);
+            for(Device next : CircuitGraph.combinationalFanout(device)) {
+                Integer rank = ranks.get(next);
+                // devices without a rank are not ordered, so they may close a loop as well
+                if(rank == null || rank == bound) return true;
+                if(rank < bound && visited.add(next)) stack.push(next);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects the devices which can reach the driver of a new cable
+     * and are ranked above the target of the cable.
+     *
+     * @param driver    driver device of the new cable
+     * @param bound     rank of the target device of the new cable
+     * @return          the reached devices, including the driver
+     */
+    private static List<Device> searchBackward(Device driver, int bound) {
+        List<Device> found = new ArrayList<>();
+        Set<Device> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Device> stack = new ArrayDeque<>();
+        visited.add(driver);
+        stack.push(driver);
+        while(!stack.isEmpty()) {
+            Device device = stack.pop();
+            found.add(device);
+            for(Device previous : CircuitGraph.combinationalFanin(device)) {
+                Integer rank = ranks.get(previous);
+                if(rank != null && rank > bound && visited.add(previous)) stack.push(previous);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Gives the ranks of the searched devices to them again, so every device which reaches
+     * the driver is ranked below every device which is reached from the target.
+     * Both groups keep their own order, and the devices of a loop keep sharing a rank.
+     *
+     * @param backward  devices which reach the driver of the new cable
+     * @param forward   devices which are reached from the target of the new cable
+     */
+    private static void reorder(List<Device> backward, List<Device> forward) {
+        Comparator<Device> byRank = Comparator.comparingInt(ranks::get);
+        backward.sort(byRank);
+        forward.sort(byRank);
+        List<Device> devices = new ArrayList<>(backward);
+        devices.addAll(forward);
+
+        int[] previous = new int[devices.size()];
+        for(int i = 0; i < previous.length; i++) previous[i] = ranks.get(devices.get(i));
+        int[] pool = Arrays.stream(previous).sorted().distinct().toArray();
+        int slot = -1;
+        for(int i = 0; i < previous.length; i++) {
+            if(i == 0 || previous[i] != previous[i - 1]) slot++;
+            ranks.put(devices.get(i), pool[slot]);
+        }
+    }
+
+    /**
+     * Counts the cables of the device.
+     *
+     * @param device    device whose cables are required
+     * @return          number of connected pins which belong to the device
+     */
+    private static int cableCount(Device device) {
+        int count = 0;
+        for(Pin[] pins : new Pin[][] {device.inputPins(), device.outputPins()}) {
+            for(Pin pin : pins) {
+                if(pin.getParentDevice() == device && pin.getConnectionCable() != null) count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Has to be called after a cable was removed between the given devices.
+     * Recalculates the loops if the cable was part of one.
+     *
+     * @param driver    device of the output pin
+     * @param target    device of the input pin
+     */
+    public static void disconnected(Device driver, Device target) {
+        FeedbackLoop loop = loops.get(driver);
+        if(loop == null || !loop.contains(target)) return;
+        for(Device member : loop.getMembers()) loops.remove(member);
+        analyze(List.of(driver, target));
+    }
+
+    /**
+     * Finds and registers every loop in the circuits of the given devices, and ranks their devices.
+     * Should be used for circuits which were built without the connect methods, like loaded boxes.
+     *
+     * @param roots devices of the circuits
+     */
+    public static void analyze(Collection<? extends Device> roots) {
+        Set<Device> devices = CircuitGraph.collect(roots);
+        for(Device device : devices) loops.remove(device);
+        List<List<Device>> components = CircuitGraph.components(devices);
+        // the components are in reverse topological order
+        for(int i = components.size() - 1; i >= 0; i--) {
+            List<Device> members = components.get(i);
+            int rank = ++highestRank;
+            for(Device member : members) ranks.put(member, rank);
+            if(!CircuitGraph.isLoop(members)) continue;
+            FeedbackLoop loop = new FeedbackLoop(members);
+            for(Device member : members) loops.put(member, loop);
+        }
+    }
+
+    /**
+     * Removes every loop in the circuits of the given devices. Has to be called
+     * when the devices are deleted, so their loops don't keep them in memory.
+     *
+     * @param roots devices of the circuits
+     */
+    public static void unregister(Collection<? extends Device> roots) {
+        for(Device device : CircuitGraph.collect(roots)) loops.remove(device);
+    }
+}
@@ -0,0 +1,183 @@
+package hu.erik.digitalcircuits.simulation;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values in power of two buckets.<br>
+ * Bucket 0 counts the zeros, bucket b counts the values from 2^(b-1) to 2^b - 1, so the
+ * percentiles are only known up to a factor of two, but recording a value is one
+ * striped increment without any allocation or locking, and it can be done from any thread.
+ */
+public class Histogram {
+    /**
+     * Number of buckets: one for zero and one for every bit of a long.
+     */
+    public static final int BUCKETS = Long.SIZE + 1;
+
+    /**
+     * Number of values in every bucket.
+     */
+    private final LongAdder[] buckets;
+    /**
+     * Sum of the values.
+     */
+    private final LongAdder sum;
+    /**
+     * Largest value.
+     */
+    private final LongAccumulator max;
+
+    /**
+     * Constructor to create an empty histogram.
+     */
+    public Histogram() {
+        this.buckets = new LongAdder[BUCKETS];
+        for(int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Adds a value to the histogram. Negative values are counted as zero.
+     *
+     * @param value the value
+     */
+    public void record(long value) {
+        if(value < 0) value = 0;
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(value)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Removes every value. Values recorded by other threads during the reset may be partly kept.
+     */
+    public void reset() {
+        for(LongAdder bucket : buckets) bucket.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Returns the current state of the histogram.
+     *
+     * @return copy of the counts
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for(int i = 0; i < BUCKETS; i++) counts[i] = buckets[i].sum();
+        return new Snapshot(counts, sum.sum(), max.get());
+    }
+
+    /**
+     * Returns the largest value of a bucket.
+     *
+     * @param bucket    index of the bucket
+     * @return          the upper bound of the bucket
+     */
+    public static long upperBound(int bucket) {
+        return bucket == Long.SIZE ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    /**
+     * Copy of a histogram at a point of time.
+     */
+    public static class Snapshot {
+        /**
+         * Number of values in every bucket.
+         */
+        private final long[] counts;
+        /**
+         * Number of values.
+         */
+        private final long count;
+        /**
+         * Sum of the values.
+         */
+        private final long sum;
+        /**
+         * Largest value.
+         */
+        private final long max;
+
+        /**
+         * Constructor to store the copied counts.
+         *
+         * @param counts    number of values in every bucket
+         * @param sum       sum of the values
+         * @param max       largest value
+         */
+        private Snapshot(long[] counts, long sum, long max) {
+            this.counts = counts;
+            long count = 0;
+            for(long bucket : counts) count += bucket;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of values in a bucket.
+         *
+         * @param bucket    index of the bucket
+         * @return          number of values from 2^(bucket-1) to 2^bucket - 1
+         */
+        public long getCount(int bucket) {
+            return counts[bucket];
+        }
+
+        /**
+         * Returns the number of values.
+         *
+         * @return number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the sum of the values.
+         *
+         * @return sum of the recorded values
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Returns the largest value.
+         *
+         * @return the largest recorded value, 0 without values
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the average of the values.
+         *
+         * @return the mean, 0 without values
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns an upper bound of a percentile: the given fraction of the values are not larger than it.
+         * It is the upper bound of the bucket which contains the percentile, but never more than the largest value.
+         *
+         * @param fraction  the percentile between 0 and 1, like 0.99
+         * @return          the upper bound, 0 without values
+         */
+        public long percentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for(int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += counts[bucket];
+                if(seen >= rank && seen > 0) return Math.min(upperBound(bucket), max);
+            }
+            return max;
+        }
+    }
+}
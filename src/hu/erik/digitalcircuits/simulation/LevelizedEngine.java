@@ -0,0 +1,448 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.ClockedDevice;
+import hu.erik.digitalcircuits.devices.Device;
+import hu.erik.digitalcircuits.devices.Pin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled propagation engine.<br>
+ * The reachable devices are sorted topologically and get a level, then every
+ * propagation evaluates the affected devices in level order. This way every
+ * device is evaluated exactly once per input change, even with reconvergent fanout.<br>
+ * Every feedback loop is compiled into a single node, which is settled as a whole
+ * when it is evaluated.
+ */
+public class LevelizedEngine implements PropagationEngine {
+    /**
+     * Compiled data of the devices: their level and fanout.
+     */
+    private Map<Device, Node> nodes;
+    /**
+     * Topology version which the compiled data belongs to.
+     */
+    private long compiledVersion;
+    /**
+     * Scheduled devices grouped by their level.
+     */
+    private List<List<Node>> buckets;
+    /**
+     * Whether a propagation is running right now or not.
+     */
+    private boolean running;
+    /**
+     * Number of device evaluations during the last propagation.
+     */
+    private long evaluations;
+    /**
+     * Number of suppressed device evaluations during the last propagation.
+     */
+    private long suppressed;
+    /**
+     * Number of input pins which received a changed value during the last propagation.
+     */
+    private long transfers;
+    /**
+     * Number of levels with a device evaluation during the last propagation.
+     */
+    private int depth;
+    /**
+     * Lowest level which got a node since the current level was started.
+     */
+    private int lowestScheduled;
+    /**
+     * Highest level which got a node since the last propagation.
+     */
+    private int highestScheduled;
+
+    /**
+     * Default constructor to create an engine without any compiled circuit.
+     */
+    public LevelizedEngine() {
+        this.nodes = new IdentityHashMap<>();
+        this.compiledVersion = Simulation.getTopologyVersion();
+        this.buckets = new ArrayList<>();
+        this.running = false;
+        this.evaluations = 0;
+        this.suppressed = 0;
+        this.transfers = 0;
+        this.depth = 0;
+        this.lowestScheduled = Integer.MAX_VALUE;
+        this.highestScheduled = -1;
+    }
+
+    /**
+     * Compiles every device which can be reached from the given devices.
+     * Devices which are not compiled yet will be compiled on their first propagation.
+     * Compiled devices are not visited again, so only the new part of the circuit is compiled,
+     * and cables from it to the compiled part are handled by {@link #connected(Device, Device)}.
+     *
+     * @param roots devices to start from
+     */
+    public void compile(Collection<? extends Device> roots) {
+        if(compiledVersion != Simulation.getTopologyVersion()) {
+            nodes.clear();
+            compiledVersion = Simulation.getTopologyVersion();
+        }
+
+        Set<Device> devices = CircuitGraph.collect(roots, nodes.keySet());
+        if(devices.isEmpty()) return;
+
+        List<Node> created = new ArrayList<>();
+        Set<Node> fresh = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(Device device : devices) {
+            if(nodes.containsKey(device)) continue;
+            Node node = new Node(device, FeedbackLoops.loopOf(device));
+            for(Device member : node.members()) nodes.put(member, node);
+            created.add(node);
+            fresh.add(node);
+        }
+
+        Map<Node, Integer> inDegree = new IdentityHashMap<>();
+        for(Node node : created) {
+            Set<Node> fanout = Collections.newSetFromMap(new IdentityHashMap<>());
+            for(Device member : node.members()) {
+                for(Device target : CircuitGraph.fanout(member)) {
+                    Node targetNode = nodes.get(target);
+                    if(targetNode != null && targetNode != node) fanout.add(targetNode);
+                }
+            }
+            node.fanout = fanout.toArray(new Node[0]);
+            if(node.isClocked()) continue;
+            for(Node target : node.fanout) if(fresh.contains(target)) inDegree.merge(target, 1, Integer::sum);
+        }
+
+        ArrayDeque<Node> ready = new ArrayDeque<>();
+        for(Node node : created) if(!inDegree.containsKey(node)) ready.add(node);
+        while(!ready.isEmpty()) {
+            Node node = ready.poll();
+            if(node.isClocked()) continue;
+            for(Node target : node.fanout) {
+                if(!fresh.contains(target)) continue;
+                target.level = Math.max(target.level, node.level + 1);
+                if(inDegree.merge(target, -1, Integer::sum) == 0) ready.add(target);
+            }
+        }
+    }
+
+    /**
+     * Adds a new cable to the compiled data, so connecting devices one by one doesn't
+     * compile the circuit again every time. The uncompiled side of the cable is compiled,
+     * then the target and the devices after it are moved to a higher level than the driver.
+     * If the cable closed a feedback loop, or the compiled data is already out of date,
+     * the circuit is compiled again on the next propagation.
+     *
+     * @param driver    device of the output pin
+     * @param target    device of the input pin
+     */
+    @Override
+    public void connected(Device driver, Device target) {
+        if(compiledVersion != Simulation.getTopologyVersion() - 1) return;
+        FeedbackLoop loop = FeedbackLoops.loopOf(driver);
+        if(loop != null && loop == FeedbackLoops.loopOf(target)) return;
+        compiledVersion = Simulation.getTopologyVersion();
+
+        Node from = nodes.get(driver);
+        Node to = nodes.get(target);
+        if(from == null && to == null) return;
+        if(from == null || to == null) {
+            compile(Collections.singleton(from == null ? driver : target));
+            from = nodes.get(driver);
+            to = nodes.get(target);
+        }
+        if(!Arrays.asList(from.fanout).contains(to)) {
+            from.fanout = Arrays.copyOf(from.fanout, from.fanout.length + 1);
+            from.fanout[from.fanout.length - 1] = to;
+        }
+        if(!from.isClocked()) raise(to, from.level + 1);
+    }
+
+    /**
+     * Raises the level of the node, and the levels of the nodes after it,
+     * so every node stays on a higher level than the nodes before it.
+     *
+     * @param node  node to move
+     * @param level lowest level of the node
+     */
+    private static void raise(Node node, int level) {
+        if(node.level >= level) return;
+        node.level = level;
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(node);
+        while(!queue.isEmpty()) {
+            Node current = queue.poll();
+            if(current.isClocked()) continue;
+            for(Node target : current.fanout) {
+                if(target.level > current.level) continue;
+                target.level = current.level + 1;
+                queue.add(target);
+            }
+        }
+    }
+
+    /**
+     * Evaluates the devices connected to the output pins of the given device.
+     *
+     * @param source device which output pins have to be sent
+     */
+    @Override
+    public void propagate(Device source) {
+        run(source.outputPins());
+    }
+
+    /**
+     * Evaluates the device connected to the given output pin.
+     *
+     * @param outputPin output pin you want to transfer the value from
+     */
+    @Override
+    public void propagate(Pin outputPin) {
+        run(new Pin[] {outputPin});
+    }
+
+    /**
+     * Evaluates the devices connected to the output pins of the given devices together.
+     *
+     * @param sources devices which output pins have to be sent
+     */
+    @Override
+    public void propagate(Collection<? extends Device> sources) {
+        List<Pin> outputPins = new ArrayList<>();
+        for(Device source : sources) Collections.addAll(outputPins, source.outputPins());
+        run(outputPins.toArray(new Pin[0]));
+    }
+
+    /**
+     * Schedules the devices behind the given output pins,
+     * then evaluates all of the scheduled devices in level order.
+     *
+     * @param outputPins changed output pins
+     */
+    private void run(Pin[] outputPins) {
+        List<Node> targets = new ArrayList<>(outputPins.length);
+        for(Pin pin : outputPins) {
+            Simulation.deviceUpdated(pin.getParentDevice());
+            if(pin.getConnectionCable() == null) continue;
+            Device target = pin.getConnectionCable().getOtherPin(pin).getParentDevice();
+            if(compiledVersion != Simulation.getTopologyVersion() || !nodes.containsKey(target)) {
+                compile(Collections.singleton(target));
+            }
+            targets.add(nodes.get(target));
+        }
+
+        if(running) {
+            for(Node target : targets) schedule(target);
+            return;
+        }
+
+        running = true;
+        evaluations = 0;
+        suppressed = 0;
+        transfers = 0;
+        depth = 0;
+        long start = System.nanoTime();
+        try {
+            for(Node target : targets) schedule(target);
+            evaluateScheduled();
+        } finally {
+            running = false;
+            Simulation.propagationFinished(this, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Puts the node into the bucket of its level if it isn't scheduled already.
+     *
+     * @param node node to evaluate
+     */
+    private void schedule(Node node) {
+        if(node.scheduled) return;
+        node.scheduled = true;
+        lowestScheduled = Math.min(lowestScheduled, node.level);
+        highestScheduled = Math.max(highestScheduled, node.level);
+        while(buckets.size() <= node.level) buckets.add(new ArrayList<>());
+        buckets.get(node.level).add(node);
+    }
+
+    /**
+     * Evaluates the scheduled nodes level by level. Combinational fanout of an evaluated node
+     * is always on a higher level, so every node is evaluated at most once per clock edge.
+     * Fanout of clocked devices can be on a lower level, then the evaluation goes back to that level.
+     * Fanout is only scheduled if the output of the node changed.
+     * The depth is the number of levels which evaluated a device.
+     * Only the levels between the lowest and the highest scheduled node are visited,
+     * so a propagation in a deep circuit doesn't walk every empty level.
+     */
+    private void evaluateScheduled() {
+        int first = lowestScheduled;
+        lowestScheduled = Integer.MAX_VALUE;
+        for(int level = first; level <= highestScheduled; level++) {
+            List<Node> bucket = buckets.get(level);
+            long levelStart = evaluations;
+            for(int i = 0; i < bucket.size(); i++) {
+                Node node = bucket.get(i);
+                node.scheduled = false;
+                if(!evaluate(node)) continue;
+                for(Node target : node.fanout) schedule(target);
+            }
+            bucket.clear();
+            if(evaluations > levelStart) depth++;
+            if(lowestScheduled < level) level = lowestScheduled - 1;
+            lowestScheduled = Integer.MAX_VALUE;
+        }
+        highestScheduled = -1;
+    }
+
+    /**
+     * Evaluates a node. Single devices are recalculated if any of their inputs changed,
+     * loops are settled.
+     *
+     * @param node  node to evaluate
+     * @return      true if the fanout of the node has to be updated
+     */
+    private boolean evaluate(Node node) {
+        if(node.loop == null) {
+            int changed = pullInputs(node.device);
+            if(changed == 0) {
+                suppressed++;
+                return false;
+            }
+            transfers += changed;
+            long before = outputSignals(node.device);
+            node.device.calcOutput();
+            evaluations++;
+            Simulation.deviceUpdated(node.device);
+            return before != outputSignals(node.device) || node.device.outputPins().length > Long.SIZE;
+        }
+        boolean settled = node.loop.settle();
+        evaluations += node.loop.getEvaluations();
+        for(Device member : node.loop.getMembers()) Simulation.deviceUpdated(member);
+        if(!settled) WorklistEngine.reportOscillation(node.loop);
+        return settled;
+    }
+
+    /**
+     * Copies the signals from the connected output pins to the input pins of the device.
+     *
+     * @param device    device to update
+     * @return          number of the input signals which changed
+     */
+    static int pullInputs(Device device) {
+        int changed = 0;
+        for(Pin pin : device.inputPins()) {
+            if(pin.getParentDevice() != device || pin.getConnectionCable() == null) continue;
+            boolean signal = pin.getConnectionCable().getOtherPin(pin).getSignal();
+            if(pin.getSignal() == signal) continue;
+            pin.setSignal(signal);
+            changed++;
+        }
+        return changed;
+    }
+
+    /**
+     * Packs the signals of the first 64 output pins of the device into a mask.
+     *
+     * @param device    device whose outputs are required
+     * @return          the output signals, bit i is the signal of the output pin i
+     */
+    static long outputSignals(Device device) {
+        Pin[] outputs = device.outputPins();
+        long signals = 0;
+        for(int i = 0; i < outputs.length && i < Long.SIZE; i++) {
+            if(outputs[i].getSignal()) signals |= 1L << i;
+        }
+        return signals;
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    @Override
+    public long getSuppressedEvaluations() {
+        return suppressed;
+    }
+
+    @Override
+    public long getTransfers() {
+        return transfers;
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public String getName() {
+        return "levelized";
+    }
+
+    /**
+     * Compiled data of a single device or a whole feedback loop.
+     */
+    private static class Node {
+        /**
+         * The compiled device, or any member of the loop.
+         */
+        final Device device;
+        /**
+         * The compiled loop or null if the node is a single device.
+         */
+        final FeedbackLoop loop;
+        /**
+         * Level of the node in the topological order.
+         */
+        int level;
+        /**
+         * Nodes driven by this node.
+         */
+        Node[] fanout;
+        /**
+         * Whether the node is waiting for evaluation or not.
+         */
+        boolean scheduled;
+
+        /**
+         * Constructor to initialize the device and its loop.
+         *
+         * @param device    the compiled device
+         * @param loop      loop of the device or null
+         */
+        Node(Device device, FeedbackLoop loop) {
+            this.device = device;
+            this.loop = loop;
+            this.level = 0;
+            this.fanout = new Node[0];
+            this.scheduled = false;
+        }
+
+        /**
+         * Checks whether the node is a clocked device, so its fanout doesn't depend on it directly.
+         *
+         * @return true if the node is a clocked device
+         */
+        boolean isClocked() {
+            return device instanceof ClockedDevice;
+        }
+
+        /**
+         * Returns the devices of the node.
+         *
+         * @return the devices of the loop or the single device
+         */
+        List<Device> members() {
+            return loop == null ? List.of(device) : loop.getMembers();
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package hu.erik.digitalcircuits.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Compact, immutable representation of a compiled circuit built on primitive arrays.<br>
+ * Every node has a single output signal. Node 0 is the constant 0 signal, nodes
+ * 1..inputCount are the primary inputs, the rest are gates. Nodes are sorted by
+ * level, so a node is always after all of its drivers. Flip-flops only depend on their
+ * drivers at the clock edge, so they are on the first level like the inputs.<br>
+ * Connections are stored in compressed sparse row (CSR) format: the fanin of node n is
+ * {@code fanin[faninStart[n]]..fanin[faninStart[n + 1] - 1]}, same for the fanout.
+ * Signal values are not part of the netlist, they are held in packed bitsets
+ * created by {@link #newSignals()}, so one netlist can be shared by many simulations.
+ */
+public final class Netlist {
+    /**
+     * Node which always outputs 0. Also used for unconnected input pins.
+     */
+    public static final byte ZERO = 0;
+    /**
+     * Node which always outputs 1.
+     */
+    public static final byte ONE = 1;
+    /**
+     * Primary input of the netlist.
+     */
+    public static final byte INPUT = 2;
+    /**
+     * Node which outputs its only input.
+     */
+    public static final byte BUFFER = 3;
+    /**
+     * Node which outputs the negation of its only input.
+     */
+    public static final byte NOT = 4;
+    /**
+     * And gate.
+     */
+    public static final byte AND = 5;
+    /**
+     * Or gate.
+     */
+    public static final byte OR = 6;
+    /**
+     * Nand gate.
+     */
+    public static final byte NAND = 7;
+    /**
+     * Nor gate.
+     */
+    public static final byte NOR = 8;
+    /**
+     * D flip-flop. Its first input is D, the others (the clock) are ignored, because
+     * every flip-flop is clocked by the cycle simulator at once. Its output is the stored
+     * state, so it doesn't depend on its inputs during the evaluation of the gates.
+     */
+    public static final byte DFF = 9;
+
+    /**
+     * Type code of every node.
+     */
+    final byte[] types;
+    /**
+     * Start of the fanin of every node in the fanin array, plus one closing element.
+     */
+    final int[] faninStart;
+    /**
+     * Driver nodes of the node inputs.
+     */
+    final int[] fanin;
+    /**
+     * Start of the fanout of every node in the fanout array, plus one closing element.
+     */
+    final int[] fanoutStart;
+    /**
+     * Nodes driven by the node outputs.
+     */
+    final int[] fanout;
+    /**
+     * First node of every level, plus one closing element.
+     */
+    final int[] levelStart;
+    /**
+     * Number of primary inputs.
+     */
+    final int inputCount;
+    /**
+     * Nodes which drive the primary outputs.
+     */
+    final int[] outputs;
+    /**
+     * Generated evaluator of the netlist, null if it is not compiled or it can't be compiled.
+     */
+    private NetlistEvaluator evaluator;
+    /**
+     * Whether the code generation was already attempted.
+     */
+    private boolean compiled;
+
+    /**
+     * Constructor to initialize the already sorted arrays.
+     *
+     * @param types         type codes
+     * @param faninStart    fanin offsets
+     * @param fanin         fanin nodes
+     * @param levelStart    first node of every level
+     * @param inputCount    number of primary inputs
+     * @param outputs       nodes of the primary outputs
+     */
+    private Netlist(byte[] types, int[] faninStart, int[] fanin, int[] levelStart, int inputCount, int[] outputs) {
+        this.types = types;
+        this.faninStart = faninStart;
+        this.fanin = fanin;
+        this.levelStart = levelStart;
+        this.inputCount = inputCount;
+        this.outputs = outputs;
+
+        int size = types.length;
+        this.fanoutStart = new int[size + 1];
+        for(int driver : fanin) fanoutStart[driver + 1]++;
+        for(int i = 0; i < size; i++) fanoutStart[i + 1] += fanoutStart[i];
+        this.fanout = new int[fanin.length];
+        int[] fill = Arrays.copyOf(fanoutStart, size);
+        for(int node = 0; node < size; node++) {
+            for(int k = faninStart[node]; k < faninStart[node + 1]; k++) fanout[fill[fanin[k]]++] = node;
+        }
+    }
+
+    /**
+     * Creates a netlist from nodes in any order. Node 0 must be a ZERO node and
+     * nodes 1..inputCount must be the INPUT nodes, these keep their index.
+     * The other nodes are sorted by level. Inputs of the flip-flops don't count
+     * as dependencies, so feedback through a flip-flop is allowed.
+     *
+     * @param types         type code of every node
+     * @param faninStart    start of the fanin of every node, plus one closing element
+     * @param fanin         driver nodes of the node inputs
+     * @param inputCount    number of primary inputs
+     * @param outputs       nodes of the primary outputs
+     * @param renumbering   if not null, it will be filled with the new index of every given node
+     * @return              the sorted netlist or null if the nodes form a combinational feedback loop
+     */
+    public static Netlist of(byte[] types, int[] faninStart, int[] fanin, int inputCount, int[] outputs, int[] renumbering) {
+        int size = types.length;
+        int[] inDegree = new int[size];
+        int[] outStart = new int[size + 1];
+        for(int node = 0; node < size; node++) {
+            if(types[node] == DFF) continue;
+            inDegree[node] = faninStart[node + 1] - faninStart[node];
+            for(int k = faninStart[node]; k < faninStart[node + 1]; k++) outStart[fanin[k] + 1]++;
+        }
+        for(int i = 0; i < size; i++) outStart[i + 1] += outStart[i];
+        int[] out = new int[outStart[size]];
+        int[] fill = Arrays.copyOf(outStart, size);
+        for(int node = 0; node < size; node++) {
+            if(types[node] == DFF) continue;
+            for(int k = faninStart[node]; k < faninStart[node + 1]; k++) out[fill[fanin[k]]++] = node;
+        }
+
+        // Kahn's algorithm, computing the longest path from the sources as level
+        int[] level = new int[size];
+        int[] queue = new int[size];
+        int head = 0, tail = 0, maxLevel = 0;
+        for(int node = 0; node < size; node++) if(inDegree[node] == 0) queue[tail++] = node;
+        while(head < tail) {
+            int node = queue[head++];
+            maxLevel = Math.max(maxLevel, level[node]);
+            for(int k = outStart[node]; k < outStart[node + 1]; k++) {
+                int target = out[k];
+                level[target] = Math.max(level[target], level[node] + 1);
+                if(--inDegree[target] == 0) queue[tail++] = target;
+            }
+        }
+        if(tail != size) return null;
+
+        // stable counting sort by level keeps the constant and the inputs at the front
+        int[] levelStart = new int[maxLevel + 2];
+        for(int node = 0; node < size; node++) levelStart[level[node] + 1]++;
+        for(int l = 0; l <= maxLevel; l++) levelStart[l + 1] += levelStart[l];
+        int[] newIndex = renumbering != null ? renumbering : new int[size];
+        int[] next = Arrays.copyOf(levelStart, maxLevel + 1);
+        for(int node = 0; node < size; node++) newIndex[node] = next[level[node]]++;
+
+        byte[] sortedTypes = new byte[size];
+        int[] sortedStart = new int[size + 1];
+        for(int node = 0; node < size; node++) {
+            sortedTypes[newIndex[node]] = types[node];
+            sortedStart[newIndex[node] + 1] = faninStart[node + 1] - faninStart[node];
+        }
+        for(int i = 0; i < size; i++) sortedStart[i + 1] += sortedStart[i];
+        int[] sortedFanin = new int[fanin.length];
+        for(int node = 0; node < size; node++) {
+            int to = sortedStart[newIndex[node]];
+            for(int k = faninStart[node]; k < faninStart[node + 1]; k++) sortedFanin[to++] = newIndex[fanin[k]];
+        }
+        int[] sortedOutputs = new int[outputs.length];
+        for(int i = 0; i < outputs.length; i++) sortedOutputs[i] = newIndex[outputs[i]];
+
+        return new Netlist(sortedTypes, sortedStart, sortedFanin, levelStart, inputCount, sortedOutputs);
+    }
+
+    /**
+     * Creates a packed bitset which can hold one signal for every node.
+     *
+     * @return bitset with every signal set to 0
+     */
+    public long[] newSignals() {
+        return new long[(types.length + 63) >>> 6];
+    }
+
+    /**
+     * Returns the signal of a node from a packed bitset.
+     *
+     * @param signals   packed bitset
+     * @param node      index of the node
+     * @return          signal of the node
+     */
+    public static boolean getSignal(long[] signals, int node) {
+        return (signals[node >>> 6] & 1L << node) != 0;
+    }
+
+    /**
+     * Sets the signal of a node in a packed bitset.
+     *
+     * @param signals   packed bitset
+     * @param node      index of the node
+     * @param value     new signal of the node
+     */
+    public static void setSignal(long[] signals, int node, boolean value) {
+        if(value) signals[node >>> 6] |= 1L << node;
+        else signals[node >>> 6] &= ~(1L << node);
+    }
+
+    /**
+     * Evaluates every gate once, in level order, based on the input signals
+     * already set in the bitset.
+     *
+     * @param signals packed bitset of the signals
+     */
+    public void evaluate(long[] signals) {
+        for(int node = inputCount + 1; node < types.length; node++) {
+            setSignal(signals, node, evaluate(signals, node));
+        }
+    }
+
+    /**
+     * Evaluates a single node based on the signals of its drivers.
+     *
+     * @param signals   packed bitset of the signals
+     * @param node      index of the node
+     * @return          output of the node
+     */
+    boolean evaluate(long[] signals, int node) {
+        int from = faninStart[node], to = faninStart[node + 1];
+        switch(types[node]) {
+            case ONE:
+                return true;
+            case INPUT:
+            case DFF:
+                return getSignal(signals, node);
+            case BUFFER:
+                return getSignal(signals, fanin[from]);
+            case NOT:
+                return !getSignal(signals, fanin[from]);
+            case AND:
+            case NAND:
+                boolean all = true;
+                for(int k = from; k < to && all; k++) all = getSignal(signals, fanin[k]);
+                return all == (types[node] == AND);
+            case OR:
+            case NOR:
+                boolean any = false;
+                for(int k = from; k < to && !any; k++) any = getSignal(signals, fanin[k]);
+                return any == (types[node] == OR);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the flip-flops of the netlist.
+     *
+     * @return indexes of the DFF nodes in ascending order
+     */
+    public int[] getFlipFlops() {
+        int count = 0;
+        for(byte type : types) if(type == DFF) count++;
+        int[] flipFlops = new int[count];
+        for(int node = 0, i = 0; node < types.length; node++) if(types[node] == DFF) flipFlops[i++] = node;
+        return flipFlops;
+    }
+
+    /**
+     * Returns the driver of an input of a node.
+     *
+     * @param node  index of the node
+     * @param input index of the node input
+     * @return      index of the driver node
+     */
+    public int getFanin(int node, int input) {
+        return fanin[faninStart[node] + input];
+    }
+
+    /**
+     * Returns the number of inputs of a node.
+     *
+     * @param node  index of the node
+     * @return      number of driver nodes
+     */
+    public int getFaninCount(int node) {
+        return faninStart[node + 1] - faninStart[node];
+    }
+
+    /**
+     * Returns the generated evaluator of the netlist. The code is generated at the first call,
+     * and shared by every later caller.
+     *
+     * @return the evaluator, or null if the netlist can't be compiled
+     */
+    synchronized NetlistEvaluator compiled() {
+        if(!compiled) {
+            compiled = true;
+            try {
+                evaluator = NetlistCodegen.compile(this);
+            } catch (RuntimeException | LinkageError err) {
+                evaluator = null;
+            }
+        }
+        return evaluator;
+    }
+
+    /**
+     * Returns the number of nodes, including the constant and the inputs.
+     *
+     * @return number of nodes
+     */
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * Returns the number of gates, that is every node except the constant and the inputs.
+     *
+     * @return number of gates
+     */
+    public int getGateCount() {
+        return types.length - inputCount - 1;
+    }
+
+    /**
+     * Returns the number of primary inputs.
+     *
+     * @return number of inputs
+     */
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    /**
+     * Returns the number of primary outputs.
+     *
+     * @return number of outputs
+     */
+    public int getOutputCount() {
+        return outputs.length;
+    }
+
+    /**
+     * Returns the number of levels.
+     *
+     * @return number of levels
+     */
+    public int getLevelCount() {
+        return levelStart.length - 1;
+    }
+
+    /**
+     * Returns the type code of a node.
+     *
+     * @param node  index of the node
+     * @return      type code of the node
+     */
+    public byte getType(int node) {
+        return types[node];
+    }
+
+    /**
+     * Returns the node which drives a primary output.
+     *
+     * @param output    index of the output
+     * @return          index of the node
+     */
+    public int getOutput(int output) {
+        return outputs[output];
+    }
+
+    /**
+     * Returns the approximate memory used by the arrays of the netlist in bytes.
+     *
+     * @return size of the netlist in bytes
+     */
+    public long getMemoryFootprint() {
+        return types.length + 4L * (faninStart.length + fanin.length + fanoutStart.length
+                + fanout.length + levelStart.length + outputs.length);
+    }
+}
@@ -0,0 +1,161 @@
+package hu.erik.digitalcircuits.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Helper to create a Netlist node by node, without building Device objects.
+ * Useful for generated and imported circuits which are too large for the object graph.
+ * Node 0 is the constant 0 signal, nodes 1..inputCount are the primary inputs.
+ */
+public class NetlistBuilder {
+    /**
+     * Type code of every node.
+     */
+    private byte[] types;
+    /**
+     * Start of the fanin of every node, plus one closing element.
+     */
+    private int[] faninStart;
+    /**
+     * Driver nodes of the node inputs.
+     */
+    private int[] fanin;
+    /**
+     * Nodes of the primary outputs.
+     */
+    private int[] outputs;
+    /**
+     * Number of nodes.
+     */
+    private int size;
+    /**
+     * Number of used elements in the fanin array.
+     */
+    private int faninSize;
+    /**
+     * Number of primary outputs.
+     */
+    private int outputCount;
+    /**
+     * Number of primary inputs.
+     */
+    private final int inputCount;
+    /**
+     * Node of the constant 1 signal, or -1 if it isn't created yet.
+     */
+    private int one;
+
+    /**
+     * Constructor to create a netlist with the given number of inputs.
+     *
+     * @param inputCount number of primary inputs
+     */
+    public NetlistBuilder(int inputCount) {
+        this.inputCount = inputCount;
+        this.types = new byte[Math.max(16, 2 * (inputCount + 1))];
+        this.faninStart = new int[types.length + 1];
+        this.fanin = new int[2 * types.length];
+        this.outputs = new int[16];
+        this.size = 0;
+        this.faninSize = 0;
+        this.outputCount = 0;
+        this.one = -1;
+        add(Netlist.ZERO);
+        for(int i = 0; i < inputCount; i++) add(Netlist.INPUT);
+    }
+
+    /**
+     * Returns the node of a primary input.
+     *
+     * @param index index of the input
+     * @return      node of the input
+     */
+    public int input(int index) {
+        if(index < 0 || index >= inputCount) throw new IndexOutOfBoundsException("Input " + index + " doesn't exist!");
+        return index + 1;
+    }
+
+    /**
+     * Returns the node of a constant signal.
+     *
+     * @param value the constant
+     * @return      node of the constant
+     */
+    public int constant(boolean value) {
+        if(!value) return 0;
+        if(one == -1) one = add(Netlist.ONE);
+        return one;
+    }
+
+    /**
+     * Adds a gate driven by the given nodes.
+     *
+     * @param type      type code of the gate
+     * @param drivers   nodes which drive the gate inputs
+     * @return          node of the gate
+     */
+    public int gate(byte type, int... drivers) {
+        for(int driver : drivers) {
+            if(driver < 0 || driver >= size) throw new IndexOutOfBoundsException("Node " + driver + " doesn't exist!");
+        }
+        if(faninSize + drivers.length > fanin.length) {
+            fanin = Arrays.copyOf(fanin, Math.max(2 * fanin.length, faninSize + drivers.length));
+        }
+        System.arraycopy(drivers, 0, fanin, faninSize, drivers.length);
+        faninSize += drivers.length;
+        return add(type);
+    }
+
+    /**
+     * Adds a primary output driven by the given node.
+     *
+     * @param node  node which drives the output
+     * @return      index of the output
+     */
+    public int output(int node) {
+        if(outputCount == outputs.length) outputs = Arrays.copyOf(outputs, 2 * outputs.length);
+        outputs[outputCount] = node;
+        return outputCount++;
+    }
+
+    /**
+     * Returns the number of nodes added so far.
+     *
+     * @return number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Creates the netlist. Gates can only be driven by earlier nodes, so the result never has a loop.
+     *
+     * @return the netlist
+     */
+    public Netlist build() {
+        return Netlist.of(
+                Arrays.copyOf(types, size),
+                Arrays.copyOf(faninStart, size + 1),
+                Arrays.copyOf(fanin, faninSize),
+                inputCount,
+                Arrays.copyOf(outputs, outputCount),
+                null
+        );
+    }
+
+    /**
+     * Adds a node whose fanin is already at the end of the fanin array.
+     *
+     * @param type  type code of the node
+     * @return      index of the node
+     */
+    private int add(byte type) {
+        if(size == types.length) {
+            types = Arrays.copyOf(types, 2 * types.length);
+            faninStart = Arrays.copyOf(faninStart, types.length + 1);
+        }
+        types[size] = type;
+        faninStart[++size] = faninSize;
+        return size - 1;
+    }
+}
@@ -0,0 +1,617 @@
+package hu.erik.digitalcircuits.simulation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiles a netlist into a generated class which evaluates the gates as straight-line
+ * bytecode. Every gate becomes a few long operations on local variables, without any
+ * loop, type switch or fanin lookup, so the JIT can compile it like handwritten code.<br>
+ * The JVM never compiles methods bigger than 8000 bytes, so the gates are split into
+ * chunks, every chunk is a separate static method. Values which are needed by a later
+ * chunk, or outside of the generated code, are written back to the value array.<br>
+ * The generated code of very large netlists doesn't fit in the instruction cache and runs
+ * slower than the interpreter, so only netlists up to MAX_NODES nodes are compiled.
+ * Every class gets its own class loader, so the code of a netlist is unloaded together
+ * with the netlist.
+ */
+public final class NetlistCodegen {
+    /**
+     * Maximum number of nodes in a compiled netlist.
+     */
+    public static final int MAX_NODES = 50_000;
+    /**
+     * The JVM doesn't compile methods with more bytecode than this.
+     */
+    private static final int HUGE_METHOD_LIMIT = 8000;
+    /**
+     * Estimated bytecode size of the chunk methods.
+     */
+    private static final int CHUNK_SIZE = 6000;
+    /**
+     * Internal name of the package of the generated classes.
+     */
+    private static final String PACKAGE = "hu/erik/digitalcircuits/simulation/generated/";
+    /**
+     * Number of generated classes, used to give them unique names.
+     */
+    private static final AtomicLong classCount = new AtomicLong();
+
+    /**
+     * Private constructor, because this is a static utility class.
+     */
+    private NetlistCodegen() {}
+
+    /**
+     * Generates and loads an evaluator for the given netlist.
+     *
+     * @param netlist   netlist to compile
+     * @return          evaluator of the netlist
+     * @throws IllegalArgumentException If the netlist has more than MAX_NODES nodes.
+     * @throws IllegalStateException    If the generated class can't be instantiated.
+     */
+    public static NetlistEvaluator compile(Netlist netlist) {
+        if(netlist.size() > MAX_NODES) throw new IllegalArgumentException("Netlist is too large to compile!");
+        String name = PACKAGE + "CompiledNetlist" + classCount.incrementAndGet();
+        byte[] classFile = null;
+        for(int chunkSize = CHUNK_SIZE; classFile == null; chunkSize /= 2) {
+            classFile = generate(netlist, name, chunkSize);
+        }
+        try {
+            Class<?> generated = new Loader().define(name.replace('/', '.'), classFile);
+            return (NetlistEvaluator) generated.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException err) {
+            throw new IllegalStateException("Generated evaluator can't be created!", err);
+        }
+    }
+
+    /**
+     * Generates the class file of the evaluator. The gates are split into chunks based
+     * on an estimated code size, which is usually a lot more than the real one.
+     *
+     * @param netlist   netlist to compile
+     * @param name      internal name of the class
+     * @param chunkSize estimated bytecode size of a chunk
+     * @return          content of the class file, or null if a chunk is too big for the JIT
+     */
+    private static byte[] generate(Netlist netlist, String name, int chunkSize) {
+        int size = netlist.size();
+        byte[] types = netlist.types;
+        int[] faninStart = netlist.faninStart;
+        int[] fanin = netlist.fanin;
+
+        boolean[] needed = new boolean[size];
+        for(int output : netlist.outputs) needed[output] = true;
+        for(int flipFlop : netlist.getFlipFlops()) needed[fanin[faninStart[flipFlop]]] = true;
+        boolean[] stored = needed.clone();
+        for(int node = size - 1; node > netlist.inputCount; node--) {
+            if(needed[node] && isGate(types[node])) {
+                for(int k = faninStart[node]; k < faninStart[node + 1]; k++) needed[fanin[k]] = true;
+            }
+        }
+
+        int[] chunkOf = new int[size];
+        int chunks = 0;
+        int estimatedSize = chunkSize;
+        for(int node = netlist.inputCount + 1; node < size; node++) {
+            if(!needed[node] || !isGate(types[node])) continue;
+            int estimate = 8 + 6 * (faninStart[node + 1] - faninStart[node]);
+            if(estimatedSize + estimate > chunkSize) {
+                chunks++;
+                estimatedSize = 0;
+            }
+            estimatedSize += estimate;
+            chunkOf[node] = chunks - 1;
+            for(int k = faninStart[node]; k < faninStart[node + 1]; k++) {
+                int driver = fanin[k];
+                if(isGate(types[driver]) && chunkOf[driver] != chunkOf[node]) stored[driver] = true;
+            }
+        }
+
+        ClassFile file = new ClassFile(name);
+        Code init = new Code(1, 1);
+        init.op(0x2a);
+        init.op(0xb7).u2(file.methodRef("java/lang/Object", "<init>", "()V"));
+        init.op(0xb1);
+        file.method(0x0001, "<init>", "()V", init);
+
+        Code evaluate = new Code(1, 2);
+        ChunkWriter writer = new ChunkWriter(netlist, stored);
+        int node = netlist.inputCount + 1;
+        for(int chunk = 0; chunk < Math.max(1, chunks); chunk++) {
+            int from = node;
+            while(node < size && (!isGate(types[node]) || !needed[node] || chunkOf[node] == chunk)) node++;
+            String chunkName = "c" + chunk;
+            Code code = writer.write(from, node, needed);
+            if(code.bytes.size() >= HUGE_METHOD_LIMIT && chunkSize > 1) return null;
+            file.method(0x000a, chunkName, "([J)V", code);
+            evaluate.op(0x2b);
+            evaluate.op(0xb8).u2(file.methodRef(name, chunkName, "([J)V"));
+        }
+        evaluate.op(0xb1);
+        file.method(0x0001, "evaluate", "([J)V", evaluate);
+        return file.toBytes();
+    }
+
+    /**
+     * Checks whether the node is calculated from its fanin.
+     *
+     * @param type  type code of the node
+     * @return      true if the node is a gate, false if it is a source or a constant
+     */
+    private static boolean isGate(byte type) {
+        return type >= Netlist.BUFFER && type <= Netlist.NOR;
+    }
+
+    /**
+     * Writes the code of the chunk methods. Local variables are reused
+     * after the last use of their node.
+     */
+    private static class ChunkWriter {
+        /**
+         * The compiled netlist.
+         */
+        private final Netlist netlist;
+        /**
+         * Nodes which must be written to the value array.
+         */
+        private final boolean[] stored;
+        /**
+         * Local variable of every node in the current chunk, 0 if it is not in a local.
+         */
+        private final int[] slot;
+        /**
+         * Number of remaining uses of every node in the current chunk.
+         */
+        private final int[] usesLeft;
+        /**
+         * Released local variables.
+         */
+        private final ArrayDeque<Integer> freeSlots;
+        /**
+         * First never used local variable of the current chunk.
+         */
+        private int nextSlot;
+
+        /**
+         * Constructor to write the chunks of the given netlist.
+         *
+         * @param netlist   the compiled netlist
+         * @param stored    nodes which must be written to the value array
+         */
+        ChunkWriter(Netlist netlist, boolean[] stored) {
+            this.netlist = netlist;
+            this.stored = stored;
+            this.slot = new int[netlist.size()];
+            this.usesLeft = new int[netlist.size()];
+            this.freeSlots = new ArrayDeque<>();
+        }
+
+        /**
+         * Writes the code of the needed nodes in the given range.
+         *
+         * @param from      first node of the chunk
+         * @param to        end of the chunk (exclusive)
+         * @param needed    nodes which affect a visible node
+         * @return          code of the chunk method
+         */
+        Code write(int from, int to, boolean[] needed) {
+            byte[] types = netlist.types;
+            int[] faninStart = netlist.faninStart;
+            int[] fanin = netlist.fanin;
+            for(int node = from; node < to; node++) {
+                if(!needed[node] || !isGate(types[node])) continue;
+                for(int k = faninStart[node]; k < faninStart[node + 1]; k++) usesLeft[fanin[k]]++;
+            }
+
+            Code code = new Code(10, 1);
+            nextSlot = 1;
+            freeSlots.clear();
+            for(int node = from; node < to; node++) {
+                if(!needed[node]) continue;
+                byte type = types[node];
+                if(type == Netlist.ZERO || type == Netlist.ONE) {
+                    if(!stored[node]) continue;
+                    code.op(0x2a);
+                    index(code, node);
+                    constant(code, type == Netlist.ONE);
+                    code.op(0x50);
+                    continue;
+                }
+                if(!isGate(type)) continue;
+
+                if(stored[node]) {
+                    code.op(0x2a);
+                    index(code, node);
+                }
+                gate(code, node, type, faninStart[node], faninStart[node + 1]);
+                if(stored[node] && usesLeft[node] > 0) {
+                    code.op(0x5e).op(0x50);
+                    store(code, node);
+                } else if(stored[node]) {
+                    code.op(0x50);
+                } else if(usesLeft[node] > 0) {
+                    store(code, node);
+                } else {
+                    code.op(0x58);
+                }
+            }
+            code.op(0xb1);
+            code.maxLocals = nextSlot;
+
+            for(int node = from; node < to; node++) {
+                for(int k = faninStart[node]; k < faninStart[node + 1]; k++) {
+                    usesLeft[fanin[k]] = 0;
+                    slot[fanin[k]] = 0;
+                }
+            }
+            return code;
+        }
+
+        /**
+         * Writes the calculation of a gate, which leaves the output on the stack.
+         *
+         * @param code  code of the chunk
+         * @param node  index of the gate
+         * @param type  type code of the gate
+         * @param from  start of the fanin
+         * @param to    end of the fanin (exclusive)
+         */
+        private void gate(Code code, int node, byte type, int from, int to) {
+            int[] fanin = netlist.fanin;
+            if(from == to) {
+                constant(code, type == Netlist.AND || type == Netlist.NOR || type == Netlist.NOT);
+                return;
+            }
+            load(code, fanin[from]);
+            int operation = type == Netlist.OR || type == Netlist.NOR ? 0x81 : 0x7f;
+            for(int k = from + 1; k < to; k++) {
+                load(code, fanin[k]);
+                code.op(operation);
+            }
+            if(type == Netlist.NOT || type == Netlist.NAND || type == Netlist.NOR) {
+                code.op(0x75).op(0x0a).op(0x65);
+            }
+        }
+
+        /**
+         * Pushes the value of a node. The first use in the chunk reads it from the
+         * value array, and keeps it in a local if it is used again.
+         *
+         * @param code  code of the chunk
+         * @param node  index of the node
+         */
+        private void load(Code code, int node) {
+            byte type = netlist.types[node];
+            usesLeft[node]--;
+            if(type == Netlist.ZERO || type == Netlist.ONE) {
+                constant(code, type == Netlist.ONE);
+            } else if(slot[node] != 0) {
+                code.local(0x16, 0x1e, slot[node]);
+                if(usesLeft[node] == 0) {
+                    freeSlots.push(slot[node]);
+                    slot[node] = 0;
+                }
+            } else {
+                code.op(0x2a);
+                index(code, node);
+                code.op(0x2f);
+                if(usesLeft[node] > 0) {
+                    code.op(0x5c);
+                    store(code, node);
+                }
+            }
+        }
+
+        /**
+         * Stores the value on the top of the stack into a new local of the node.
+         *
+         * @param code  code of the chunk
+         * @param node  index of the node
+         */
+        private void store(Code code, int node) {
+            if(freeSlots.isEmpty()) {
+                slot[node] = nextSlot;
+                nextSlot += 2;
+            } else {
+                slot[node] = freeSlots.pop();
+            }
+            code.local(0x37, 0x3f, slot[node]);
+        }
+
+        /**
+         * Pushes a constant on all lanes.
+         *
+         * @param code  code of the chunk
+         * @param value the constant
+         */
+        private static void constant(Code code, boolean value) {
+            code.op(0x09);
+            if(value) code.op(0x0a).op(0x65);
+        }
+
+        /**
+         * Pushes an array index without using the constant pool.
+         *
+         * @param code  code of the chunk
+         * @param index the index
+         */
+        private static void index(Code code, int index) {
+            if(index <= 5) {
+                code.op(0x03 + index);
+            } else if(index <= Byte.MAX_VALUE) {
+                code.op(0x10).op(index);
+            } else if(index <= Short.MAX_VALUE) {
+                code.op(0x11).u2(index);
+            } else {
+                code.op(0x11).u2(index >>> 15).op(0x10).op(15).op(0x78);
+                code.op(0x11).u2(index & Short.MAX_VALUE).op(0x80);
+            }
+        }
+    }
+
+    /**
+     * Bytecode of a method with its stack and local variable sizes.
+     */
+    private static class Code {
+        /**
+         * The bytecode.
+         */
+        private final ByteArrayOutputStream bytes;
+        /**
+         * Maximum depth of the operand stack.
+         */
+        private final int maxStack;
+        /**
+         * Number of local variable slots.
+         */
+        private int maxLocals;
+
+        /**
+         * Constructor to create an empty method body.
+         *
+         * @param maxStack  maximum depth of the operand stack
+         * @param maxLocals number of local variable slots
+         */
+        Code(int maxStack, int maxLocals) {
+            this.bytes = new ByteArrayOutputStream();
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        /**
+         * Writes an opcode or a one byte operand.
+         *
+         * @param value the byte
+         * @return      this code
+         */
+        Code op(int value) {
+            bytes.write(value);
+            return this;
+        }
+
+        /**
+         * Writes a two byte operand.
+         *
+         * @param value the operand
+         * @return      this code
+         */
+        Code u2(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+            return this;
+        }
+
+        /**
+         * Writes a long local variable instruction in its shortest form.
+         *
+         * @param opcode    general form of the instruction
+         * @param shortForm form of the instruction for slot 0
+         * @param slot      index of the local variable
+         */
+        void local(int opcode, int shortForm, int slot) {
+            if(slot <= 3) op(shortForm + slot);
+            else if(slot <= 0xff) op(opcode).op(slot);
+            else op(0xc4).op(opcode).u2(slot);
+        }
+    }
+
+    /**
+     * Minimal class file writer, which only supports what the evaluators need:
+     * a public final class implementing NetlistEvaluator with methods without branches.
+     */
+    private static class ClassFile {
+        /**
+         * Entries of the constant pool.
+         */
+        private final ByteArrayOutputStream pool;
+        /**
+         * Index of every constant pool entry by its content.
+         */
+        private final Map<String, Integer> entries;
+        /**
+         * Number of used constant pool slots, plus one.
+         */
+        private int poolSize;
+        /**
+         * The written methods.
+         */
+        private final ByteArrayOutputStream methods;
+        /**
+         * Number of methods.
+         */
+        private int methodCount;
+        /**
+         * Constant pool index of the class.
+         */
+        private final int thisClass;
+
+        /**
+         * Constructor to create an empty class.
+         *
+         * @param name internal name of the class
+         */
+        ClassFile(String name) {
+            this.pool = new ByteArrayOutputStream();
+            this.entries = new HashMap<>();
+            this.poolSize = 1;
+            this.methods = new ByteArrayOutputStream();
+            this.methodCount = 0;
+            this.thisClass = classRef(name);
+        }
+
+        /**
+         * Adds a method to the class.
+         *
+         * @param access        access flags of the method
+         * @param name          name of the method
+         * @param descriptor    descriptor of the method
+         * @param code          body of the method
+         */
+        void method(int access, String name, String descriptor, Code code) {
+            byte[] body = code.bytes.toByteArray();
+            DataOutputStream out = new DataOutputStream(methods);
+            try {
+                out.writeShort(access);
+                out.writeShort(utf8(name));
+                out.writeShort(utf8(descriptor));
+                out.writeShort(1);
+                out.writeShort(utf8("Code"));
+                out.writeInt(12 + body.length);
+                out.writeShort(code.maxStack);
+                out.writeShort(code.maxLocals);
+                out.writeInt(body.length);
+                out.write(body);
+                out.writeShort(0);
+                out.writeShort(0);
+            } catch (IOException err) {
+                throw new UncheckedIOException(err);
+            }
+            methodCount++;
+        }
+
+        /**
+         * Returns the constant pool index of a method reference.
+         *
+         * @param owner         internal name of the class of the method
+         * @param name          name of the method
+         * @param descriptor    descriptor of the method
+         * @return              index of the entry
+         */
+        int methodRef(String owner, String name, String descriptor) {
+            int nameAndType = entry("T" + name + descriptor, 12, utf8(name), utf8(descriptor));
+            return entry("M" + owner + "." + name + descriptor, 10, classRef(owner), nameAndType);
+        }
+
+        /**
+         * Returns the constant pool index of a class reference.
+         *
+         * @param name  internal name of the class
+         * @return      index of the entry
+         */
+        private int classRef(String name) {
+            return entry("C" + name, 7, utf8(name));
+        }
+
+        /**
+         * Returns the constant pool index of a string.
+         *
+         * @param value the string
+         * @return      index of the entry
+         */
+        private int utf8(String value) {
+            Integer index = entries.get("U" + value);
+            if(index != null) return index;
+            try {
+                DataOutputStream out = new DataOutputStream(pool);
+                out.writeByte(1);
+                out.writeUTF(value);
+            } catch (IOException err) {
+                throw new UncheckedIOException(err);
+            }
+            entries.put("U" + value, poolSize);
+            return poolSize++;
+        }
+
+        /**
+         * Returns the constant pool index of an entry which refers to other entries.
+         *
+         * @param key       unique key of the entry
+         * @param tag       constant pool tag of the entry
+         * @param indexes   indexes of the referred entries
+         * @return          index of the entry
+         */
+        private int entry(String key, int tag, int... indexes) {
+            Integer index = entries.get(key);
+            if(index != null) return index;
+            pool.write(tag);
+            for(int referred : indexes) {
+                pool.write(referred >>> 8);
+                pool.write(referred);
+            }
+            entries.put(key, poolSize);
+            return poolSize++;
+        }
+
+        /**
+         * Creates the content of the class file.
+         *
+         * @return the class file
+         */
+        byte[] toBytes() {
+            int superClass = classRef("java/lang/Object");
+            int evaluator = classRef(NetlistEvaluator.class.getName().replace('.', '/'));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(55);
+                out.writeShort(poolSize);
+                pool.writeTo(out);
+                out.writeShort(0x0031);
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(1);
+                out.writeShort(evaluator);
+                out.writeShort(0);
+                out.writeShort(methodCount);
+                methods.writeTo(out);
+                out.writeShort(0);
+            } catch (IOException err) {
+                throw new UncheckedIOException(err);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Class loader of a single generated class.
+     */
+    private static class Loader extends ClassLoader {
+
+        /**
+         * Constructor to create a loader which sees the classes of the simulator.
+         */
+        Loader() {
+            super(NetlistEvaluator.class.getClassLoader());
+        }
+
+        /**
+         * Defines the generated class.
+         *
+         * @param name      binary name of the class
+         * @param classFile content of the class file
+         * @return          the loaded class
+         */
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
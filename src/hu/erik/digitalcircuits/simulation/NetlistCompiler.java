@@ -0,0 +1,513 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.*;
+import hu.erik.digitalcircuits.errors.FeedbackLoopException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Util class to compile the Device object graph into a Netlist.
+ */
+public final class NetlistCompiler {
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private NetlistCompiler() {}
+
+    /**
+     * Compiles the devices inside the box. The box input pins become the primary
+     * inputs, the box output pins become the primary outputs of the netlist.
+     * Unbound box pins are compiled as constant 0 signals.
+     * Switches are compiled with their current state. Flip-flops and registers
+     * become DFF nodes, which are clocked together by the CycleSimulator.
+     * The result is simplified by the NetlistOptimizer.
+     *
+     * @param box                       box to compile
+     * @return                          the compiled netlist
+     * @throws FeedbackLoopException    If the box contains a feedback loop.
+     */
+    public static Netlist compile(CircuitBox box) throws FeedbackLoopException {
+        return NetlistOptimizer.optimize(compile(box, null));
+    }
+
+    /**
+     * Compiles the devices inside the box without simplification, and tells which device became which node.
+     *
+     * @param box                       box to compile
+     * @param nodeDevices               if not null, it will be filled with the device of every node,
+     *                                  null for the constant and the input nodes
+     * @return                          the compiled netlist
+     * @throws FeedbackLoopException    If the box contains a feedback loop.
+     * @see #compile(CircuitBox)
+     */
+    public static Netlist compile(CircuitBox box, List<Device> nodeDevices) throws FeedbackLoopException {
+        Pin[] boxInputs = box.inputPins();
+        Pin[] boxOutputs = box.outputPins();
+
+        Map<Pin, Integer> inputNodes = new IdentityHashMap<>();
+        Set<Pin> boundary = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(int i = 0; i < boxInputs.length; i++) {
+            if(boxInputs[i].getParentDevice() != box) inputNodes.put(boxInputs[i], i + 1);
+            boundary.add(boxInputs[i]);
+        }
+        Collections.addAll(boundary, boxOutputs);
+
+        List<Device> devices = collectInside(box, boundary);
+        int first = boxInputs.length + 1;
+        List<Gate> gates = new ArrayList<>();
+        Map<Pin, Integer> outputNodes = new IdentityHashMap<>();
+        for(Device device : devices) addGates(device, first, gates, outputNodes);
+
+        int size = first + gates.size();
+        byte[] types = new byte[size];
+        int[] faninStart = new int[size + 1];
+        types[0] = Netlist.ZERO;
+        for(int i = 1; i < first; i++) types[i] = Netlist.INPUT;
+        for(int i = 0; i < gates.size(); i++) {
+            types[first + i] = gates.get(i).type;
+            faninStart[first + i + 1] = faninStart[first + i] + gates.get(i).fanin.length;
+        }
+
+        int[] fanin = new int[faninStart[size]];
+        for(int i = 0; i < gates.size(); i++) {
+            Object[] drivers = gates.get(i).fanin;
+            for(int j = 0; j < drivers.length; j++) {
+                fanin[faninStart[first + i] + j] = drivers[j] instanceof Pin
+                        ? driverOf((Pin) drivers[j], inputNodes, outputNodes)
+                        : (Integer) drivers[j];
+            }
+        }
+
+        int[] outputs = new int[boxOutputs.length];
+        for(int i = 0; i < boxOutputs.length; i++) {
+            Integer node = outputNodes.get(boxOutputs[i]);
+            outputs[i] = node == null ? 0 : node;
+        }
+
+        int[] renumbering = new int[size];
+        Netlist netlist = Netlist.of(types, faninStart, fanin, boxInputs.length, outputs, renumbering);
+        if(netlist == null) throw new FeedbackLoopException(box);
+        if(nodeDevices != null) {
+            nodeDevices.clear();
+            nodeDevices.addAll(Collections.nCopies(size, null));
+            for(int i = 0; i < gates.size(); i++) nodeDevices.set(renumbering[first + i], gates.get(i).device);
+        }
+        return netlist;
+    }
+
+    /**
+     * Compiles a mapped circuit file without creating its devices. The netlist behaves
+     * the same as the netlist of the loaded box, and it is simplified by the NetlistOptimizer.
+     *
+     * @param file                      the mapped circuit file
+     * @return                          the compiled netlist
+     * @throws FeedbackLoopException    If the box contains a feedback loop.
+     * @see #compile(CircuitBox)
+     */
+    public static Netlist compile(MappedCircuitFile file) throws FeedbackLoopException {
+        return NetlistOptimizer.optimize(compile(file, null));
+    }
+
+    /**
+     * Compiles a mapped circuit file without simplification, and tells which kind of device became which node.
+     *
+     * @param file                      the mapped circuit file
+     * @param nodeTypes                 if not null, it will be filled with the type name of the device of every node,
+     *                                  null for the constant, the input and the inlined template nodes
+     * @return                          the compiled netlist
+     * @throws FeedbackLoopException    If the box contains a feedback loop.
+     * @see #compile(CircuitBox, List)
+     */
+    public static Netlist compile(MappedCircuitFile file, List<String> nodeTypes) throws FeedbackLoopException {
+        int inputCount = file.getInputCount(0);
+        int[] inputNodes = new int[file.getPinCount()];
+        for(int i = 0; i < inputCount; i++) {
+            if(file.getBoxInputPin(i) >= 0) inputNodes[file.getBoxInputPin(i)] = i + 1;
+        }
+
+        // drivers are node indexes, or -(pin + 1) for input pins which are resolved at the end
+        Nodes nodes = new Nodes(inputCount, file.getDeviceCount() * 2);
+        int[] outputNodes = new int[file.getPinCount()];
+        List<String> types = nodeTypes == null ? null : new ArrayList<>(Collections.nCopies(inputCount + 1, (String) null));
+        for(int device = 1; device < file.getDeviceCount(); device++) {
+            addGates(file, device, nodes, outputNodes);
+            if(types == null) continue;
+            int kind = file.getKind(device);
+            String type = kind == CircuitFormat.INSTANCE ? null : CircuitFormat.typeName(kind);
+            while(types.size() < nodes.size) types.add(type);
+        }
+
+        for(int k = 0; k < nodes.faninStart[nodes.size]; k++) {
+            if(nodes.fanin[k] >= 0) continue;
+            int pin = -nodes.fanin[k] - 1;
+            int other = file.getConnectedPin(pin);
+            nodes.fanin[k] = inputNodes[pin] > 0 ? inputNodes[pin] : other < 0 ? 0 : outputNodes[other];
+        }
+
+        int[] outputs = new int[file.getOutputCount(0)];
+        for(int i = 0; i < outputs.length; i++) {
+            int pin = file.getBoxOutputPin(i);
+            outputs[i] = pin < 0 ? 0 : outputNodes[pin];
+        }
+
+        int[] renumbering = new int[nodes.size];
+        Netlist netlist = Netlist.of(Arrays.copyOf(nodes.types, nodes.size), Arrays.copyOf(nodes.faninStart, nodes.size + 1),
+                Arrays.copyOf(nodes.fanin, nodes.faninStart[nodes.size]), inputCount, outputs, renumbering);
+        if(netlist == null) throw new FeedbackLoopException(new CircuitBox(file.getName(), 0, 0));
+        if(nodeTypes != null) {
+            nodeTypes.clear();
+            nodeTypes.addAll(Collections.nCopies(nodes.size, null));
+            for(int node = inputCount + 1; node < nodes.size; node++) nodeTypes.set(renumbering[node], types.get(node));
+        }
+        return netlist;
+    }
+
+    /**
+     * Creates the nodes of a mapped device, the same way as the nodes of a loaded device.
+     * Inner boxes don't have nodes, their pins are bound to the pins of their devices.
+     *
+     * @param file          the mapped circuit file
+     * @param device        index of the device
+     * @param nodes         the already created nodes
+     * @param outputNodes   node of every compiled output pin, 0 if the pin is not compiled
+     */
+    private static void addGates(MappedCircuitFile file, int device, Nodes nodes, int[] outputNodes) {
+        int kind = file.getKind(device);
+        if(kind == CircuitFormat.BOX) return;
+        if(kind == CircuitFormat.DFLIPFLOP) {
+            int q = nodes.add(Netlist.DFF);
+            nodes.addFanin(-file.getInputPin(device, DFlipFlop.D) - 1);
+            nodes.addFanin(-file.getInputPin(device, DFlipFlop.CLK) - 1);
+            nodes.add(Netlist.NOT);
+            nodes.addFanin(q);
+            outputNodes[file.getOutputPin(device, 0)] = q;
+            outputNodes[file.getOutputPin(device, 1)] = q + 1;
+        } else if(kind == CircuitFormat.REGISTER) {
+            int clock = file.getInputPin(device, file.getOutputCount(device));
+            for(int i = 0; i < file.getOutputCount(device); i++) {
+                outputNodes[file.getOutputPin(device, i)] = nodes.add(Netlist.DFF);
+                nodes.addFanin(-file.getInputPin(device, i) - 1);
+                nodes.addFanin(-clock - 1);
+            }
+        } else if(kind == CircuitFormat.INSTANCE) {
+            Netlist template = file.getTemplate(device);
+            int offset = nodes.size - template.inputCount - 1;
+            for(int node = template.inputCount + 1; node < template.size(); node++) {
+                nodes.add(template.types[node]);
+                for(int k = 0; k < template.getFaninCount(node); k++) {
+                    nodes.addFanin(templateDriver(file, device, template.getFanin(node, k), offset));
+                }
+            }
+            for(int i = 0; i < template.getOutputCount(); i++) {
+                int output = template.getOutput(i);
+                if(output > template.inputCount) {
+                    outputNodes[file.getOutputPin(device, i)] = offset + output;
+                } else {
+                    outputNodes[file.getOutputPin(device, i)] = nodes.add(Netlist.BUFFER);
+                    nodes.addFanin(templateDriver(file, device, output, offset));
+                }
+            }
+        } else {
+            int node = nodes.add(typeOf(kind, file.isOn(device)));
+            for(int i = 0; i < file.getInputCount(device); i++) nodes.addFanin(-file.getInputPin(device, i) - 1);
+            for(int i = 0; i < file.getOutputCount(device); i++) outputNodes[file.getOutputPin(device, i)] = node;
+        }
+    }
+
+    /**
+     * Translates a driver node of a template to the driver of the inlined node of a mapped instance.
+     *
+     * @param file      the mapped circuit file
+     * @param device    index of the instance
+     * @param driver    driver node in the template
+     * @param offset    difference of the inlined and the template node indexes
+     * @return          node index, or -(pin + 1) for an input pin of the instance
+     */
+    private static int templateDriver(MappedCircuitFile file, int device, int driver, int offset) {
+        if(driver == 0) return 0;
+        if(driver <= file.getInputCount(device)) return -file.getInputPin(device, driver - 1) - 1;
+        return offset + driver;
+    }
+
+    /**
+     * Creates the nodes of a device. Most of the devices become a single node, flip-flops
+     * and registers become one DFF node for every stored bit.
+     *
+     * @param device        device to compile
+     * @param first         index of the first gate node
+     * @param gates         the already created gate nodes
+     * @param outputNodes   node of every compiled output pin
+     */
+    private static void addGates(Device device, int first, List<Gate> gates, Map<Pin, Integer> outputNodes) {
+        Pin[] inputs = device.inputPins();
+        Pin[] outputs = device.outputPins();
+        if(device instanceof DFlipFlop) {
+            int q = first + gates.size();
+            gates.add(new Gate(Netlist.DFF, device, inputs[DFlipFlop.D], inputs[DFlipFlop.CLK]));
+            gates.add(new Gate(Netlist.NOT, device, q));
+            outputNodes.put(outputs[0], q);
+            outputNodes.put(outputs[1], q + 1);
+        } else if(device instanceof Register) {
+            Pin clock = inputs[((Register) device).getClockIndex()];
+            for(int i = 0; i < outputs.length; i++) {
+                outputNodes.put(outputs[i], first + gates.size());
+                gates.add(new Gate(Netlist.DFF, device, inputs[i], clock));
+            }
+        } else if(device instanceof CircuitInstance) {
+            addTemplate((CircuitInstance) device, first, gates, outputNodes);
+        } else {
+            int node = first + gates.size();
+            gates.add(new Gate(typeOf(device), device, (Object[]) inputs));
+            for(Pin pin : outputs) outputNodes.put(pin, node);
+        }
+    }
+
+    /**
+     * Inlines the template of an instance, so shared boxes are flattened into the netlist.
+     * Template inputs are replaced by the input pins of the instance.
+     *
+     * @param instance      instance to compile
+     * @param first         index of the first gate node
+     * @param gates         the already created gate nodes
+     * @param outputNodes   node of every compiled output pin
+     */
+    private static void addTemplate(CircuitInstance instance, int first, List<Gate> gates, Map<Pin, Integer> outputNodes) {
+        Netlist template = instance.getTemplate().getNetlist();
+        Pin[] inputs = instance.inputPins();
+        int offset = first + gates.size() - template.inputCount - 1;
+        for(int node = template.inputCount + 1; node < template.size(); node++) {
+            Object[] fanin = new Object[template.faninStart[node + 1] - template.faninStart[node]];
+            for(int k = 0; k < fanin.length; k++) fanin[k] = templateDriver(template.getFanin(node, k), inputs, offset);
+            gates.add(new Gate(template.types[node], instance, fanin));
+        }
+        for(int i = 0; i < template.getOutputCount(); i++) {
+            int output = template.getOutput(i);
+            if(output > template.inputCount) {
+                outputNodes.put(instance.outputPins()[i], offset + output);
+            } else {
+                outputNodes.put(instance.outputPins()[i], first + gates.size());
+                gates.add(new Gate(Netlist.BUFFER, instance, templateDriver(output, inputs, offset)));
+            }
+        }
+    }
+
+    /**
+     * Translates a driver node of a template to the driver of the inlined node.
+     *
+     * @param driver    driver node in the template
+     * @param inputs    input pins of the instance
+     * @param offset    difference of the inlined and the template node indexes
+     * @return          input pin or node index which drives the inlined node
+     */
+    private static Object templateDriver(int driver, Pin[] inputs, int offset) {
+        if(driver == 0) return 0;
+        if(driver <= inputs.length) return inputs[driver - 1];
+        return offset + driver;
+    }
+
+    /**
+     * Returns the node which drives the given input pin.
+     *
+     * @param pin           input pin of a compiled device
+     * @param inputNodes    nodes of the box input pins
+     * @param outputNodes   nodes of the compiled output pins
+     * @return              index of the driver node, 0 if the pin is not driven
+     */
+    private static int driverOf(Pin pin, Map<Pin, Integer> inputNodes, Map<Pin, Integer> outputNodes) {
+        Integer input = inputNodes.get(pin);
+        if(input != null) return input;
+        if(pin.getConnectionCable() == null) return 0;
+        Integer driver = outputNodes.get(pin.getConnectionCable().getOtherPin(pin));
+        return driver == null ? 0 : driver;
+    }
+
+    /**
+     * Collects the devices inside the box, in the same order every time.
+     *
+     * @param box   box whose devices are required
+     * @return      devices inside the box
+     */
+    static List<Device> devicesInside(CircuitBox box) {
+        Set<Pin> boundary = Collections.newSetFromMap(new IdentityHashMap<>());
+        Collections.addAll(boundary, box.inputPins());
+        Collections.addAll(boundary, box.outputPins());
+        return collectInside(box, boundary);
+    }
+
+    /**
+     * Collects the devices inside the box in breadth-first order, starting from the
+     * box pins in index order. Cables of the box pins are not
+     * followed, because they lead out of the box.
+     *
+     * @param box       box whose devices are required
+     * @param boundary  pins of the box
+     * @return          devices inside the box
+     */
+    private static List<Device> collectInside(CircuitBox box, Set<Pin> boundary) {
+        Set<Device> found = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Device> devices = new ArrayList<>();
+        ArrayDeque<Device> queue = new ArrayDeque<>();
+        for(Pin[] pins : new Pin[][] {box.inputPins(), box.outputPins()}) {
+            for(Pin pin : pins) {
+                Device device = pin.getParentDevice();
+                if(device != box && found.add(device)) queue.add(device);
+            }
+        }
+        while(!queue.isEmpty()) {
+            Device device = queue.poll();
+            devices.add(device);
+            for(Pin[] pins : new Pin[][] {device.inputPins(), device.outputPins()}) {
+                for(Pin pin : pins) {
+                    if(pin.getConnectionCable() == null || boundary.contains(pin)) continue;
+                    Device other = pin.getConnectionCable().getOtherPin(pin).getParentDevice();
+                    if(other != box && found.add(other)) queue.add(other);
+                }
+            }
+        }
+        return devices;
+    }
+
+    /**
+     * Returns the node type which matches the behavior of the device.
+     *
+     * @param device    compiled device
+     * @return          type code of the node
+     */
+    private static byte typeOf(Device device) {
+        if(device instanceof AndGate) return Netlist.AND;
+        if(device instanceof OrGate) return Netlist.OR;
+        if(device instanceof NandGate) return Netlist.NAND;
+        if(device instanceof NorGate) return Netlist.NOR;
+        if(device instanceof Inverter) return Netlist.NOT;
+        if(device instanceof Junction) return Netlist.BUFFER;
+        if(device instanceof PowerSource) return Netlist.ONE;
+        // every flip-flop is clocked by the cycle simulator, so the clock itself is not needed
+        if(device instanceof Clock) return Netlist.ZERO;
+        if(device instanceof Switch) return ((Switch) device).isOn() ? Netlist.BUFFER : Netlist.ZERO;
+        return Netlist.ZERO;
+    }
+
+    /**
+     * Returns the node type which matches the behavior of a mapped device kind.
+     *
+     * @param kind      kind of the device in the circuit file
+     * @param on        state of the device if it's a switch
+     * @return          type code of the node
+     */
+    private static byte typeOf(int kind, boolean on) {
+        switch(kind) {
+            case CircuitFormat.AND: return Netlist.AND;
+            case CircuitFormat.OR: return Netlist.OR;
+            case CircuitFormat.NAND: return Netlist.NAND;
+            case CircuitFormat.NOR: return Netlist.NOR;
+            case CircuitFormat.INVERTER: return Netlist.NOT;
+            case CircuitFormat.JUNCTION: return Netlist.BUFFER;
+            case CircuitFormat.POWER_SOURCE: return Netlist.ONE;
+            case CircuitFormat.SWITCH: return on ? Netlist.BUFFER : Netlist.ZERO;
+            default: return Netlist.ZERO;
+        }
+    }
+
+    /**
+     * Growing node arrays of a netlist. The constant and the input nodes are created at the start.
+     * Fanin is added to the last created node.
+     */
+    private static class Nodes {
+        /**
+         * Type code of every node.
+         */
+        byte[] types;
+        /**
+         * Start of the fanin of every node, plus one closing element.
+         */
+        int[] faninStart;
+        /**
+         * Drivers of the node inputs.
+         */
+        int[] fanin;
+        /**
+         * Number of nodes.
+         */
+        int size;
+
+        /**
+         * Constructor to create the constant and the input nodes.
+         *
+         * @param inputCount    number of primary inputs
+         * @param capacity      expected number of nodes
+         */
+        Nodes(int inputCount, int capacity) {
+            size = inputCount + 1;
+            types = new byte[Math.max(size, capacity)];
+            faninStart = new int[types.length + 1];
+            fanin = new int[types.length * 2];
+            types[0] = Netlist.ZERO;
+            for(int i = 1; i < size; i++) types[i] = Netlist.INPUT;
+        }
+
+        /**
+         * Creates a node without fanin.
+         *
+         * @param type  type code of the node
+         * @return      index of the node
+         */
+        int add(byte type) {
+            if(size == types.length) {
+                types = Arrays.copyOf(types, size * 2);
+                faninStart = Arrays.copyOf(faninStart, size * 2 + 1);
+            }
+            types[size] = type;
+            faninStart[size + 1] = faninStart[size];
+            return size++;
+        }
+
+        /**
+         * Adds a driver to the last created node.
+         *
+         * @param driver    node index or encoded pin of the driver
+         */
+        void addFanin(int driver) {
+            if(faninStart[size] == fanin.length) fanin = Arrays.copyOf(fanin, fanin.length * 2 + 1);
+            fanin[faninStart[size]++] = driver;
+        }
+    }
+
+    /**
+     * Gate node which is not numbered yet. Its drivers are either input pins
+     * which are resolved at the end, or the index of an other gate.
+     */
+    private static class Gate {
+        /**
+         * Type code of the node.
+         */
+        final byte type;
+        /**
+         * Device which the node belongs to.
+         */
+        final Device device;
+        /**
+         * Input pins or node indexes which drive the node.
+         */
+        final Object[] fanin;
+
+        /**
+         * Constructor to initialize every field.
+         *
+         * @param type      type code of the node
+         * @param device    device of the node
+         * @param fanin     input pins or node indexes which drive the node
+         */
+        Gate(byte type, Device device, Object... fanin) {
+            this.type = type;
+            this.device = device;
+            this.fanin = fanin;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package hu.erik.digitalcircuits.simulation;
+
+/**
+ * Evaluates every gate of one specific netlist at once. Implementations are generated
+ * by NetlistCodegen, and they don't have any state, so a single instance can be shared
+ * between any number of simulators and threads.
+ */
+public interface NetlistEvaluator {
+
+    /**
+     * Evaluates the gates on all 64 lanes, based on the inputs and the flip-flops in the
+     * value array. Only the nodes which are visible from outside are written back:
+     * the primary outputs and the data inputs of the flip-flops.
+     *
+     * @param values value of every node of the netlist
+     */
+    void evaluate(long[] values);
+}
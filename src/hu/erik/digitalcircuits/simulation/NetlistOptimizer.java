@@ -0,0 +1,265 @@
+package hu.erik.digitalcircuits.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Util class to simplify a netlist without changing the value of its outputs.<br>
+ * Constants (from PowerSources, switched off Switches and unconnected pins) are folded into
+ * the gates they drive, inverter pairs are removed, buffers and single-input AND and OR gates
+ * become wires, and every node outside the cone of the outputs and the flip-flops is dropped.
+ * The timing of the circuit is not preserved, so it is not used for the timed simulation.
+ */
+public final class NetlistOptimizer {
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private NetlistOptimizer() {}
+
+    /**
+     * Creates the simplified version of the netlist. The inputs and outputs keep their index.
+     *
+     * @param netlist   netlist to simplify
+     * @return          the simplified netlist
+     */
+    public static Netlist optimize(Netlist netlist) {
+        Rewriter rewriter = new Rewriter(netlist);
+        int[] outputs = new int[netlist.outputs.length];
+        for(int i = 0; i < outputs.length; i++) outputs[i] = rewriter.replacement[netlist.outputs[i]];
+        return rewriter.removeDeadNodes(outputs);
+    }
+
+    /**
+     * Builds the simplified nodes in level order. Every original node is replaced
+     * by a new node, or by an already existing one if it turned out to be the same signal.
+     */
+    private static class Rewriter {
+        /**
+         * The original netlist.
+         */
+        private final Netlist netlist;
+        /**
+         * New node of every original node.
+         */
+        private final int[] replacement;
+        /**
+         * Type code of the new nodes.
+         */
+        private byte[] types;
+        /**
+         * Start of the fanin of the new nodes, plus one closing element.
+         */
+        private int[] faninStart;
+        /**
+         * Driver nodes of the new node inputs.
+         */
+        private int[] fanin;
+        /**
+         * Number of new nodes.
+         */
+        private int size;
+        /**
+         * New node of the constant 1 signal, or -1 if it isn't created yet.
+         */
+        private int one;
+
+        /**
+         * Constructor to simplify every node of the netlist.
+         *
+         * @param netlist the original netlist
+         */
+        Rewriter(Netlist netlist) {
+            this.netlist = netlist;
+            this.replacement = new int[netlist.size()];
+            this.types = new byte[netlist.size() + 1];
+            this.faninStart = new int[types.length + 1];
+            this.fanin = new int[netlist.fanin.length];
+            this.size = 0;
+            this.one = -1;
+
+            add(Netlist.ZERO);
+            for(int i = 1; i <= netlist.inputCount; i++) replacement[i] = add(Netlist.INPUT);
+            for(int node = netlist.inputCount + 1; node < netlist.size(); node++) replacement[node] = rewrite(node);
+
+            // flip-flops can be driven by later nodes, so their fanin is translated at the end
+            for(int node = 0; node < size; node++) {
+                if(types[node] != Netlist.DFF) continue;
+                for(int k = faninStart[node]; k < faninStart[node + 1]; k++) fanin[k] = replacement[fanin[k]];
+            }
+        }
+
+        /**
+         * Creates the simplified version of an original node.
+         *
+         * @param node  index of the original node
+         * @return      new node with the same signal
+         */
+        private int rewrite(int node) {
+            byte type = netlist.types[node];
+            int from = netlist.faninStart[node];
+            int to = netlist.faninStart[node + 1];
+            switch(type) {
+                case Netlist.ONE:
+                    return constant(true);
+                case Netlist.DFF:
+                    return add(Netlist.DFF, Arrays.copyOfRange(netlist.fanin, from, to));
+                case Netlist.BUFFER:
+                    return from == to ? 0 : replacement[netlist.fanin[from]];
+                case Netlist.NOT:
+                    return not(from == to ? 0 : replacement[netlist.fanin[from]]);
+                case Netlist.AND:
+                case Netlist.NAND:
+                case Netlist.OR:
+                case Netlist.NOR:
+                    return gate(type, from, to);
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * Creates a simplified AND, NAND, OR or NOR gate. Constant inputs are folded,
+         * repeated inputs are used once, and gates with a single input become a wire or an inverter.
+         *
+         * @param type  type code of the original gate
+         * @param from  start of the original fanin
+         * @param to    end of the original fanin (exclusive)
+         * @return      new node with the same signal
+         */
+        private int gate(byte type, int from, int to) {
+            boolean isAnd = type == Netlist.AND || type == Netlist.NAND;
+            boolean inverted = type == Netlist.NAND || type == Netlist.NOR;
+            int[] drivers = new int[to - from];
+            int count = 0;
+            for(int k = from; k < to; k++) {
+                int driver = replacement[netlist.fanin[k]];
+                if(isConstant(driver)) {
+                    // 0 decides an AND, 1 decides an OR, the other constant doesn't matter
+                    if(isOne(driver) != isAnd) return inverted ? constant(isAnd) : driver;
+                    continue;
+                }
+                boolean repeated = false;
+                for(int i = 0; i < count; i++) repeated |= drivers[i] == driver;
+                if(!repeated) drivers[count++] = driver;
+            }
+
+            if(count == 0) return constant(isAnd != inverted);
+            if(count == 1) return inverted ? not(drivers[0]) : drivers[0];
+            return add(type, Arrays.copyOf(drivers, count));
+        }
+
+        /**
+         * Creates the negation of a new node. Constants are folded, and the negation
+         * of an inverter is the input of the inverter.
+         *
+         * @param driver    new node to negate
+         * @return          new node with the negated signal
+         */
+        private int not(int driver) {
+            if(isConstant(driver)) return constant(!isOne(driver));
+            if(types[driver] == Netlist.NOT) return fanin[faninStart[driver]];
+            return add(Netlist.NOT, driver);
+        }
+
+        /**
+         * Returns the new node of a constant signal.
+         *
+         * @param value the constant
+         * @return      node of the constant
+         */
+        private int constant(boolean value) {
+            if(!value) return 0;
+            if(one == -1) one = add(Netlist.ONE);
+            return one;
+        }
+
+        /**
+         * Checks whether a new node is a constant.
+         *
+         * @param node  index of the new node
+         * @return      true if the node is always 0 or always 1
+         */
+        private boolean isConstant(int node) {
+            return types[node] == Netlist.ZERO || types[node] == Netlist.ONE;
+        }
+
+        /**
+         * Checks whether a new node is the constant 1 signal.
+         *
+         * @param node  index of the new node
+         * @return      true if the node is always 1
+         */
+        private boolean isOne(int node) {
+            return types[node] == Netlist.ONE;
+        }
+
+        /**
+         * Adds a new node.
+         *
+         * @param type      type code of the node
+         * @param drivers   nodes which drive the node inputs
+         * @return          index of the node
+         */
+        private int add(byte type, int... drivers) {
+            if(size == types.length) {
+                types = Arrays.copyOf(types, 2 * types.length);
+                faninStart = Arrays.copyOf(faninStart, types.length + 1);
+            }
+            int start = faninStart[size];
+            if(start + drivers.length > fanin.length) {
+                fanin = Arrays.copyOf(fanin, Math.max(2 * fanin.length, start + drivers.length));
+            }
+            System.arraycopy(drivers, 0, fanin, start, drivers.length);
+            types[size] = type;
+            faninStart[size + 1] = start + drivers.length;
+            return size++;
+        }
+
+        /**
+         * Creates the netlist from the new nodes which affect the outputs or a used flip-flop.
+         * The constant and the input nodes are always kept.
+         *
+         * @param outputs   new nodes of the primary outputs
+         * @return          the simplified netlist
+         */
+        Netlist removeDeadNodes(int[] outputs) {
+            boolean[] live = new boolean[size];
+            int[] stack = new int[size];
+            int top = 0;
+            for(int node = 0; node <= netlist.inputCount; node++) live[node] = true;
+            for(int output : outputs) {
+                if(!live[output]) {
+                    live[output] = true;
+                    stack[top++] = output;
+                }
+            }
+            while(top > 0) {
+                int node = stack[--top];
+                for(int k = faninStart[node]; k < faninStart[node + 1]; k++) {
+                    if(!live[fanin[k]]) {
+                        live[fanin[k]] = true;
+                        stack[top++] = fanin[k];
+                    }
+                }
+            }
+
+            int[] index = new int[size];
+            int liveCount = 0;
+            for(int node = 0; node < size; node++) if(live[node]) index[node] = liveCount++;
+            byte[] liveTypes = new byte[liveCount];
+            int[] liveStart = new int[liveCount + 1];
+            int[] liveFanin = new int[faninStart[size]];
+            for(int node = 0; node < size; node++) {
+                if(!live[node]) continue;
+                int i = index[node];
+                liveTypes[i] = types[node];
+                liveStart[i + 1] = liveStart[i];
+                for(int k = faninStart[node]; k < faninStart[node + 1]; k++) liveFanin[liveStart[i + 1]++] = index[fanin[k]];
+            }
+            int[] liveOutputs = new int[outputs.length];
+            for(int i = 0; i < outputs.length; i++) liveOutputs[i] = index[outputs[i]];
+
+            return Netlist.of(liveTypes, liveStart, Arrays.copyOf(liveFanin, liveStart[liveCount]),
+                    netlist.inputCount, liveOutputs, null);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.errors.FeedbackLoopException;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Bit-parallel simulator which evaluates the wide levels of the netlist on multiple cores.<br>
+ * Nodes of the same level don't depend on each other, so a level is split into chunks
+ * which are evaluated on a ForkJoinPool. The next level only starts after every chunk
+ * of the previous one is done. Levels narrower than the threshold are evaluated
+ * on the calling thread, so small circuits don't pay for the task handling.
+ * If no level is wide enough, the simulator works like the sequential one,
+ * including the generated code.
+ */
+public class ParallelSimulator extends BitParallelSimulator {
+    /**
+     * Default minimum number of nodes in a level to evaluate it in parallel.
+     */
+    public static final int DEFAULT_THRESHOLD = 4096;
+    /**
+     * Chunk boundaries are multiples of this many nodes, so adjacent chunks share
+     * at most one cache line of the value array. The array header shifts the elements,
+     * so the boundaries themselves are not aligned to cache lines.
+     */
+    private static final int ALIGNMENT = 64;
+
+    /**
+     * Pool which runs the chunks.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * Minimum number of nodes in a level to evaluate it in parallel.
+     */
+    private int threshold;
+    /**
+     * Maximum number of nodes in a chunk.
+     */
+    private int chunkSize;
+    /**
+     * Whether any level is evaluated in parallel.
+     */
+    private boolean parallel;
+
+    /**
+     * Constructor to simulate the netlist on the common pool with the default threshold.
+     *
+     * @param netlist netlist which will be simulated
+     */
+    public ParallelSimulator(Netlist netlist) {
+        this(netlist, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructor to simulate the netlist on the given pool.
+     *
+     * @param netlist   netlist which will be simulated
+     * @param pool      pool which runs the chunks
+     * @param threshold minimum number of nodes in a level to evaluate it in parallel
+     */
+    public ParallelSimulator(Netlist netlist, ForkJoinPool pool, int threshold) {
+        super(netlist);
+        this.pool = pool;
+        setThreshold(threshold);
+    }
+
+    /**
+     * Constructor to compile and simulate the given box on the common pool.
+     *
+     * @param box                       box which will be simulated
+     * @throws FeedbackLoopException    If the box contains a feedback loop.
+     */
+    public ParallelSimulator(CircuitBox box) throws FeedbackLoopException {
+        this(NetlistCompiler.compile(box));
+    }
+
+    /**
+     * Evaluates the gates level by level. Wide levels are split into chunks
+     * and evaluated by the pool, the call returns when the whole level is done.
+     */
+    @Override
+    void evaluateGates() {
+        if(!parallel) {
+            super.evaluateGates();
+            return;
+        }
+        Netlist netlist = getNetlist();
+        int[] levelStart = netlist.levelStart;
+        for(int level = 0; level < levelStart.length - 1; level++) {
+            int from = Math.max(levelStart[level], netlist.inputCount + 1);
+            int to = levelStart[level + 1];
+            if(to - from < threshold || pool.getParallelism() == 1) evaluateRange(from, to);
+            else pool.invoke(new Chunk(from, to));
+        }
+    }
+
+    /**
+     * Returns the minimum number of nodes in a level to evaluate it in parallel.
+     *
+     * @return the threshold
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets the minimum number of nodes in a level to evaluate it in parallel.
+     * The chunks are sized so every thread of the pool gets a few of them.
+     *
+     * @param threshold the new threshold, at least 1
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = Math.max(1, threshold);
+        this.chunkSize = Math.max(ALIGNMENT, this.threshold / (4 * pool.getParallelism()));
+
+        int[] levelStart = getNetlist().levelStart;
+        this.parallel = false;
+        for(int level = 0; level < levelStart.length - 1; level++) {
+            int width = levelStart[level + 1] - Math.max(levelStart[level], getNetlist().inputCount + 1);
+            if(width >= this.threshold && pool.getParallelism() > 1) this.parallel = true;
+        }
+    }
+
+    /**
+     * Returns the pool which runs the chunks.
+     *
+     * @return the pool
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Task which evaluates a range of nodes from the same level,
+     * splitting it in halves until the range is small enough.
+     */
+    private class Chunk extends RecursiveAction {
+        /**
+         * First node of the range.
+         */
+        private final int from;
+        /**
+         * End of the range (exclusive).
+         */
+        private final int to;
+
+        /**
+         * Constructor to create a task for the given range.
+         *
+         * @param from  first node of the range
+         * @param to    end of the range (exclusive)
+         */
+        Chunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int middle = (from + to) >>> 1 & -ALIGNMENT;
+            if(to - from <= chunkSize || middle <= from) {
+                evaluateRange(from, to);
+                return;
+            }
+            invokeAll(new Chunk(from, middle), new Chunk(middle, to));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.Device;
+import hu.erik.digitalcircuits.devices.Pin;
+
+import java.util.Collection;
+
+/**
+ * Interface to represent the signal propagation strategies.
+ * Every device sends its output through the currently selected engine.
+ * Engines only forward signals which changed, so an unchanged output
+ * doesn't update the devices behind it.
+ */
+public interface PropagationEngine {
+    /**
+     * Sends all of the output pin values of the given device
+     * to the connected pins. Updates the whole connected circuit.
+     *
+     * @param source device which output pins have to be sent
+     */
+    void propagate(Device source);
+
+    /**
+     * Sends the value of the given output pin to the connected pin.
+     * Updates the whole connected circuit.
+     *
+     * @param outputPin output pin you want to transfer the value from
+     */
+    void propagate(Pin outputPin);
+
+    /**
+     * Sends all of the output pin values of the given devices
+     * to the connected pins in one propagation. Devices affected by more
+     * than one source are updated once, after every source is sent.
+     *
+     * @param sources devices which output pins have to be sent
+     */
+    void propagate(Collection<? extends Device> sources);
+
+    /**
+     * Notifies the engine about a new cable between the given devices.
+     * Called after the topology version was increased for the new cable.
+     *
+     * @param driver    device of the output pin
+     * @param target    device of the input pin
+     */
+    void connected(Device driver, Device target);
+
+    /**
+     * Returns the number of device evaluations (calcOutput calls)
+     * during the last propagation.
+     *
+     * @return number of evaluations
+     */
+    long getEvaluations();
+
+    /**
+     * Returns the number of device evaluations which were skipped during the
+     * last propagation, because none of the device inputs changed.
+     *
+     * @return number of suppressed evaluations
+     */
+    long getSuppressedEvaluations();
+
+    /**
+     * Returns the number of input pins which received a changed signal
+     * during the last propagation.
+     *
+     * @return number of changed pins
+     */
+    long getTransfers();
+
+    /**
+     * Returns the depth of the last propagation: the number of steps
+     * in which the engine evaluated devices, one after the other.
+     *
+     * @return number of evaluated levels
+     */
+    int getDepth();
+
+    /**
+     * Returns the name of the engine. This will be shown in the cli.
+     *
+     * @return the name of the engine
+     */
+    String getName();
+}
@@ -0,0 +1,183 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.Device;
+import hu.erik.digitalcircuits.utils.Printer;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * Holds the propagation engine which is used by every device
+ * to send its signals through the circuit, and the other simulation settings.
+ */
+public final class Simulation {
+    /**
+     * Currently selected propagation engine.
+     */
+    private static PropagationEngine engine = new WorklistEngine();
+    /**
+     * Increased on every connection change, so compiled circuit
+     * representations can tell whether they are outdated or not.
+     */
+    private static long topologyVersion = 0;
+    /**
+     * Finds the user given name of a device, used in the messages about the circuit.
+     * Returns null if the device doesn't have a name.
+     */
+    private static Function<Device, String> nameResolver = device -> null;
+    /**
+     * Delays of the device types, used by the timed simulations.
+     */
+    private static final DelayModel delayModel = new DelayModel();
+    /**
+     * Records the pin changes into a waveform file, null if nothing is recorded.
+     */
+    private static VcdRecorder recorder = null;
+    /**
+     * Cost of the propagations since the last reset.
+     */
+    private static final SimulationMetrics metrics = new SimulationMetrics();
+
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private Simulation() {}
+
+    /**
+     * Returns the currently selected propagation engine.
+     *
+     * @return the propagation engine
+     */
+    public static PropagationEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Selects the propagation engine which will be used by the devices.
+     *
+     * @param engine the new propagation engine
+     */
+    public static void setEngine(PropagationEngine engine) {
+        Simulation.engine = engine;
+    }
+
+    /**
+     * Returns the delays of the device types which are used by the timed simulations.
+     *
+     * @return the delay model of the session
+     */
+    public static DelayModel getDelayModel() {
+        return delayModel;
+    }
+
+    /**
+     * Returns the active waveform recorder.
+     *
+     * @return the recorder, or null if nothing is recorded
+     */
+    public static VcdRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Sets the waveform recorder which the propagation engines report to.
+     *
+     * @param recorder the new recorder, or null to stop reporting
+     */
+    public static void setRecorder(VcdRecorder recorder) {
+        Simulation.recorder = recorder;
+    }
+
+    /**
+     * Returns the cost of the propagations of every engine since the last reset.
+     *
+     * @return the metrics
+     */
+    public static SimulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Reports an evaluated device to the recorder, if there is one.
+     * Called by the propagation engines.
+     *
+     * @param device the evaluated device
+     */
+    static void deviceUpdated(Device device) {
+        if(recorder != null) recorder.update(device);
+    }
+
+    /**
+     * Adds the counters of the finished propagation to the metrics, and reports the end of
+     * the propagation to the recorder, if there is one. If the file can't be written, the recording
+     * is stopped. Called by the propagation engines.
+     *
+     * @param engine    engine which finished the propagation
+     * @param nanos     wall time of the propagation
+     */
+    static void propagationFinished(PropagationEngine engine, long nanos) {
+        metrics.record(engine, nanos);
+        if(recorder == null) return;
+        try {
+            recorder.step();
+        } catch (IOException err) {
+            Printer.printErr("Something went wrong with the waveform file, recording stopped!");
+            try {
+                recorder.close();
+            } catch (IOException ignored) {
+                // the file is already broken
+            }
+            recorder = null;
+        }
+    }
+
+    /**
+     * Has to be called after every connection change in the circuit.
+     */
+    public static void circuitChanged() {
+        topologyVersion++;
+    }
+
+    /**
+     * Has to be called after a cable was connected between the given devices,
+     * instead of circuitChanged. The engine can update its compiled data
+     * with the new cable instead of compiling the circuit again.
+     *
+     * @param driver    device of the output pin
+     * @param target    device of the input pin
+     */
+    public static void circuitConnected(Device driver, Device target) {
+        topologyVersion++;
+        engine.connected(driver, target);
+    }
+
+    /**
+     * Returns the current version of the circuit connections.
+     *
+     * @return the topology version
+     */
+    public static long getTopologyVersion() {
+        return topologyVersion;
+    }
+
+    /**
+     * Sets the function which finds the user given name of a device.
+     * The function should return null for devices without a name.
+     *
+     * @param nameResolver function from device to name
+     */
+    public static void setNameResolver(Function<Device, String> nameResolver) {
+        Simulation.nameResolver = nameResolver;
+    }
+
+    /**
+     * Returns the name of the device or its type if it doesn't have a name.
+     *
+     * @param device    device whose name is required
+     * @return          name of the device
+     */
+    public static String nameOf(Device device) {
+        String name = nameResolver.apply(device);
+        return name != null ? name : device.toString();
+    }
+}
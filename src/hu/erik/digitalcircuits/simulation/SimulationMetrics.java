@@ -0,0 +1,256 @@
+package hu.erik.digitalcircuits.simulation;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the cost of the propagations: device evaluations (calcOutput calls), changed pins,
+ * depth and wall time, with histograms of the cone size and the latency of a propagation.<br>
+ * The engines count in their own fields during a propagation, and only the totals of a finished
+ * propagation are added here, so the instrumentation costs a few striped increments per propagation
+ * instead of per device. The counters can be read and reset from any thread.
+ */
+public class SimulationMetrics {
+    /**
+     * Number of finished propagations.
+     */
+    private final LongAdder propagations;
+    /**
+     * Number of device evaluations.
+     */
+    private final LongAdder evaluations;
+    /**
+     * Number of suppressed device evaluations.
+     */
+    private final LongAdder suppressed;
+    /**
+     * Number of pins which received a changed signal.
+     */
+    private final LongAdder transfers;
+    /**
+     * Sum of the propagation depths.
+     */
+    private final LongAdder depths;
+    /**
+     * Largest propagation depth.
+     */
+    private final LongAccumulator maxDepth;
+    /**
+     * Number of device evaluations per propagation.
+     */
+    private final Histogram coneSizes;
+    /**
+     * Wall time of the propagations in nanoseconds.
+     */
+    private final Histogram latencies;
+    /**
+     * Time of the last reset, from System.nanoTime.
+     */
+    private volatile long resetTime;
+
+    /**
+     * Constructor to create empty metrics.
+     */
+    public SimulationMetrics() {
+        this.propagations = new LongAdder();
+        this.evaluations = new LongAdder();
+        this.suppressed = new LongAdder();
+        this.transfers = new LongAdder();
+        this.depths = new LongAdder();
+        this.maxDepth = new LongAccumulator(Math::max, 0);
+        this.coneSizes = new Histogram();
+        this.latencies = new Histogram();
+        this.resetTime = System.nanoTime();
+    }
+
+    /**
+     * Adds the counters of the last propagation of the engine.
+     *
+     * @param engine    engine which finished a propagation
+     * @param nanos     wall time of the propagation
+     */
+    void record(PropagationEngine engine, long nanos) {
+        long evaluated = engine.getEvaluations();
+        propagations.increment();
+        evaluations.add(evaluated);
+        suppressed.add(engine.getSuppressedEvaluations());
+        transfers.add(engine.getTransfers());
+        depths.add(engine.getDepth());
+        maxDepth.accumulate(engine.getDepth());
+        coneSizes.record(evaluated);
+        latencies.record(nanos);
+    }
+
+    /**
+     * Clears every counter and starts a new measurement period.
+     */
+    public void reset() {
+        propagations.reset();
+        evaluations.reset();
+        suppressed.reset();
+        transfers.reset();
+        depths.reset();
+        maxDepth.reset();
+        coneSizes.reset();
+        latencies.reset();
+        resetTime = System.nanoTime();
+    }
+
+    /**
+     * Returns the current values of the counters.
+     *
+     * @return copy of the counters
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Copy of the metrics at a point of time.
+     */
+    public static class Snapshot {
+        /**
+         * Number of finished propagations.
+         */
+        private final long propagations;
+        /**
+         * Number of device evaluations.
+         */
+        private final long evaluations;
+        /**
+         * Number of suppressed device evaluations.
+         */
+        private final long suppressed;
+        /**
+         * Number of pins which received a changed signal.
+         */
+        private final long transfers;
+        /**
+         * Sum of the propagation depths.
+         */
+        private final long depths;
+        /**
+         * Largest propagation depth.
+         */
+        private final long maxDepth;
+        /**
+         * Number of device evaluations per propagation.
+         */
+        private final Histogram.Snapshot coneSizes;
+        /**
+         * Wall time of the propagations in nanoseconds.
+         */
+        private final Histogram.Snapshot latencies;
+        /**
+         * Time since the last reset in nanoseconds.
+         */
+        private final long elapsedNanos;
+
+        /**
+         * Constructor to copy the counters.
+         *
+         * @param metrics the metrics to copy
+         */
+        private Snapshot(SimulationMetrics metrics) {
+            this.propagations = metrics.propagations.sum();
+            this.evaluations = metrics.evaluations.sum();
+            this.suppressed = metrics.suppressed.sum();
+            this.transfers = metrics.transfers.sum();
+            this.depths = metrics.depths.sum();
+            this.maxDepth = metrics.maxDepth.get();
+            this.coneSizes = metrics.coneSizes.snapshot();
+            this.latencies = metrics.latencies.snapshot();
+            this.elapsedNanos = System.nanoTime() - metrics.resetTime;
+        }
+
+        /**
+         * Returns the number of finished propagations.
+         *
+         * @return number of propagations
+         */
+        public long getPropagations() {
+            return propagations;
+        }
+
+        /**
+         * Returns the number of device evaluations (calcOutput calls).
+         *
+         * @return number of evaluations
+         */
+        public long getEvaluations() {
+            return evaluations;
+        }
+
+        /**
+         * Returns the number of device evaluations which were skipped, because none of the device inputs changed.
+         *
+         * @return number of suppressed evaluations
+         */
+        public long getSuppressedEvaluations() {
+            return suppressed;
+        }
+
+        /**
+         * Returns the number of pins which received a changed signal.
+         *
+         * @return number of changed pins
+         */
+        public long getTransfers() {
+            return transfers;
+        }
+
+        /**
+         * Returns the average depth of the propagations.
+         *
+         * @return average number of evaluated levels, 0 without propagations
+         */
+        public double getMeanDepth() {
+            return propagations == 0 ? 0 : (double) depths / propagations;
+        }
+
+        /**
+         * Returns the largest depth of the propagations.
+         *
+         * @return largest number of evaluated levels
+         */
+        public long getMaxDepth() {
+            return maxDepth;
+        }
+
+        /**
+         * Returns the histogram of the number of device evaluations per propagation.
+         *
+         * @return the cone sizes
+         */
+        public Histogram.Snapshot getConeSizes() {
+            return coneSizes;
+        }
+
+        /**
+         * Returns the histogram of the wall time of the propagations.
+         *
+         * @return the latencies in nanoseconds
+         */
+        public Histogram.Snapshot getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * Returns the total wall time of the propagations.
+         *
+         * @return time spent propagating in nanoseconds
+         */
+        public long getWallNanos() {
+            return latencies.getSum();
+        }
+
+        /**
+         * Returns the time since the last reset.
+         *
+         * @return length of the measurement period in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.Switch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch of switch changes which are applied together.<br>
+ * Every switch is set first, then the circuit is updated with one propagation,
+ * so a wide input word doesn't cost a separate propagation for every bit.
+ */
+public class Stimulus {
+    /**
+     * Required state of the switches in the order they were added.
+     * A switch added twice keeps its last state.
+     */
+    private final Map<Switch, Boolean> changes;
+
+    /**
+     * Default constructor to create an empty batch.
+     */
+    public Stimulus() {
+        this.changes = new LinkedHashMap<>();
+    }
+
+    /**
+     * Adds a switch change to the batch. Nothing happens until the batch is applied.
+     *
+     * @param target    switch to change
+     * @param status    required state of the switch
+     * @return          this batch, so the calls can be chained
+     */
+    public Stimulus set(Switch target, boolean status) {
+        changes.put(target, status);
+        return this;
+    }
+
+    /**
+     * Returns the number of switches in the batch.
+     *
+     * @return number of switches
+     */
+    public int size() {
+        return changes.size();
+    }
+
+    /**
+     * Sets every switch of the batch, then updates the circuit with one propagation.
+     * Switches which already have the required state are not propagated.
+     * The batch is empty afterwards.
+     *
+     * @return number of switches which changed
+     */
+    public int apply() {
+        List<Switch> changed = new ArrayList<>(changes.size());
+        for(Map.Entry<Switch, Boolean> change : changes.entrySet()) {
+            Switch target = change.getKey();
+            if(target.isOn() == change.getValue()) continue;
+            target.setStatus(change.getValue());
+            changed.add(target);
+        }
+        changes.clear();
+        if(!changed.isEmpty()) Simulation.getEngine().propagate(changed);
+        return changed.size();
+    }
+}
@@ -0,0 +1,359 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.devices.Device;
+import hu.erik.digitalcircuits.devices.MappedCircuitFile;
+import hu.erik.digitalcircuits.errors.FeedbackLoopException;
+import hu.erik.digitalcircuits.errors.VectorFormatException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Discrete-event simulator with propagation delays, built on a netlist.<br>
+ * Every node has its own delay in ticks. When an input of a node changes, the new output
+ * is calculated and scheduled at the current time plus the delay of the node (transport delay),
+ * so short pulses, glitches and hazards are visible.<br>
+ * Events are stored in a timing wheel: a ring of buckets with one bucket for every tick.
+ * Events are never scheduled further than the biggest delay, so the wheel never overflows
+ * and scheduling is O(1). Events of the same node at the same time are coalesced into one.
+ */
+public class TimedSimulator {
+    /**
+     * The simulated netlist.
+     */
+    private final Netlist netlist;
+    /**
+     * Delay of every node in ticks.
+     */
+    private final int[] delays;
+    /**
+     * Current signal of every node in a packed bitset.
+     */
+    private final long[] signals;
+    /**
+     * Signal of every node after all of its pending events, in a packed bitset.
+     */
+    private final long[] projected;
+    /**
+     * Nodes which drive a primary output, in a packed bitset.
+     */
+    private final long[] outputNodes;
+    /**
+     * Buckets of the timing wheel. An event is the node index shifted left by one,
+     * and the new signal in the lowest bit.
+     */
+    private final int[][] wheel;
+    /**
+     * Number of events in every bucket.
+     */
+    private final int[] bucketSize;
+    /**
+     * Time of the last scheduled event of every node, -1 if it doesn't have one.
+     */
+    private final long[] lastTime;
+    /**
+     * Position of the last scheduled event of every node in its bucket.
+     */
+    private final int[] lastIndex;
+    /**
+     * Current simulation time in ticks.
+     */
+    private long now;
+    /**
+     * Number of events in the wheel.
+     */
+    private long pending;
+    /**
+     * Time of the last signal change.
+     */
+    private long lastChange;
+    /**
+     * Number of signal changes since the simulator was created.
+     */
+    private long events;
+    /**
+     * Number of events which were merged into an already scheduled one.
+     */
+    private long coalesced;
+    /**
+     * Number of signal changes on the primary outputs.
+     */
+    private long outputTransitions;
+
+    /**
+     * Constructor to simulate the netlist with the given node delays.
+     * The initial state is the settled state with every input set to 0.
+     *
+     * @param netlist   netlist which will be simulated
+     * @param delays    delay of every node in ticks
+     * @throws IllegalArgumentException If a delay is negative, or the number of delays is wrong.
+     */
+    public TimedSimulator(Netlist netlist, int[] delays) {
+        if(delays.length != netlist.size()) throw new IllegalArgumentException("Every node must have a delay!");
+        int maxDelay = 1;
+        for(int delay : delays) {
+            if(delay < 0) throw new IllegalArgumentException("Delay can't be negative!");
+            maxDelay = Math.max(maxDelay, delay);
+        }
+
+        this.netlist = netlist;
+        this.delays = delays.clone();
+        this.signals = netlist.newSignals();
+        netlist.evaluate(signals);
+        this.projected = signals.clone();
+        this.outputNodes = netlist.newSignals();
+        for(int output : netlist.outputs) Netlist.setSignal(outputNodes, output, true);
+
+        int slots = Integer.highestOneBit(maxDelay) << 1;
+        this.wheel = new int[slots][16];
+        this.bucketSize = new int[slots];
+        this.lastTime = new long[netlist.size()];
+        Arrays.fill(lastTime, -1L);
+        this.lastIndex = new int[netlist.size()];
+        this.now = 0;
+        this.pending = 0;
+        this.lastChange = 0;
+        this.events = 0;
+        this.coalesced = 0;
+        this.outputTransitions = 0;
+    }
+
+    /**
+     * Compiles the box and takes the delay of every node from the delay model.
+     * Nodes inlined from the template of an instance get the delay of their node type.
+     * Templates are optimized, so removed inverter pairs and wires don't add delay inside an instance.
+     *
+     * @param box                       box which will be simulated
+     * @param model                     delay of the device types
+     * @return                          simulator of the box
+     * @throws FeedbackLoopException    If the box contains a feedback loop.
+     */
+    public static TimedSimulator of(CircuitBox box, DelayModel model) throws FeedbackLoopException {
+        List<Device> nodeDevices = new ArrayList<>();
+        Netlist netlist = NetlistCompiler.compile(box, nodeDevices);
+        int[] delays = new int[netlist.size()];
+        for(int node = 0; node < delays.length; node++) {
+            Device device = nodeDevices.get(node);
+            if(device instanceof CircuitInstance) delays[node] = model.nodeDelay(netlist.types[node]);
+            else if(device != null) delays[node] = model.delayOf(device);
+        }
+        return new TimedSimulator(netlist, delays);
+    }
+
+    /**
+     * Compiles the mapped circuit file without loading its devices,
+     * and takes the delay of every node from the delay model.
+     * Nodes inlined from the template of an instance get the delay of their node type.
+     *
+     * @param file                      the mapped circuit file
+     * @param model                     delay of the device types
+     * @return                          simulator of the saved box
+     * @throws FeedbackLoopException    If the box contains a feedback loop.
+     */
+    public static TimedSimulator of(MappedCircuitFile file, DelayModel model) throws FeedbackLoopException {
+        List<String> nodeTypes = new ArrayList<>();
+        Netlist netlist = NetlistCompiler.compile(file, nodeTypes);
+        int[] delays = new int[netlist.size()];
+        for(int node = 0; node < delays.length; node++) {
+            String type = nodeTypes.get(node);
+            delays[node] = type != null ? model.getDelay(type) : model.nodeDelay(netlist.types[node]);
+        }
+        return new TimedSimulator(netlist, delays);
+    }
+
+    /**
+     * Changes a primary input at the current time. The change is processed by the next run.
+     *
+     * @param input index of the input
+     * @param value new signal of the input
+     */
+    public void setInput(int input, boolean value) {
+        if(input < 0 || input >= netlist.inputCount) throw new IndexOutOfBoundsException("Input " + input + " doesn't exist!");
+        schedule(input + 1, value, now);
+    }
+
+    /**
+     * Processes the events until there aren't any left.
+     *
+     * @return number of signal changes
+     */
+    public long settle() {
+        return run(Long.MAX_VALUE);
+    }
+
+    /**
+     * Processes the events up to and including the given time.
+     * The current time stays at the last processed tick if the wheel becomes empty.
+     *
+     * @param until last tick to process
+     * @return      number of signal changes
+     */
+    public long run(long until) {
+        long before = events;
+        while(pending > 0 && now <= until) {
+            int slot = (int) (now & (wheel.length - 1));
+            for(int i = 0; i < bucketSize[slot]; i++) {
+                int event = wheel[slot][i];
+                int node = event >>> 1;
+                if(lastTime[node] == now && lastIndex[node] == i) lastTime[node] = -1;
+                pending--;
+                apply(node, (event & 1) == 1);
+            }
+            bucketSize[slot] = 0;
+            if(pending > 0) now++;
+        }
+        return events - before;
+    }
+
+    /**
+     * Changes the signal of a node and schedules the new outputs of its fanout.
+     *
+     * @param node  the changed node
+     * @param value new signal of the node
+     */
+    private void apply(int node, boolean value) {
+        if(Netlist.getSignal(signals, node) == value) return;
+        Netlist.setSignal(signals, node, value);
+        events++;
+        lastChange = now;
+        if(Netlist.getSignal(outputNodes, node)) outputTransitions++;
+
+        int[] fanout = netlist.fanout;
+        for(int k = netlist.fanoutStart[node]; k < netlist.fanoutStart[node + 1]; k++) {
+            int target = fanout[k];
+            schedule(target, netlist.evaluate(signals, target), now + delays[target]);
+        }
+    }
+
+    /**
+     * Schedules a new signal for a node. If the node already has an event at the same time,
+     * that event gets the new signal. Nothing is scheduled if the signal doesn't change anything.
+     *
+     * @param node  node to change
+     * @param value new signal of the node
+     * @param time  time of the change
+     */
+    private void schedule(int node, boolean value, long time) {
+        int slot = (int) (time & (wheel.length - 1));
+        int event = node << 1 | (value ? 1 : 0);
+        if(lastTime[node] == time) {
+            wheel[slot][lastIndex[node]] = event;
+            Netlist.setSignal(projected, node, value);
+            coalesced++;
+            return;
+        }
+        if(Netlist.getSignal(projected, node) == value) return;
+
+        if(bucketSize[slot] == wheel[slot].length) wheel[slot] = Arrays.copyOf(wheel[slot], 2 * bucketSize[slot]);
+        lastIndex[node] = bucketSize[slot];
+        wheel[slot][bucketSize[slot]++] = event;
+        lastTime[node] = time;
+        Netlist.setSignal(projected, node, value);
+        pending++;
+    }
+
+    /**
+     * Reads input vectors line by line, applies them one after the other and waits until
+     * the circuit settles. For every vector it writes the output vector, the number of ticks
+     * until the last change and the number of output transitions. More transitions than
+     * changed outputs mean glitches. Empty lines and lines starting with # are skipped.
+     *
+     * @param in                        source of the input vectors
+     * @param out                       destination of the results
+     * @param sourceName                name of the input, used in error messages
+     * @return                          number of simulated vectors
+     * @throws IOException              If reading or writing fails.
+     * @throws VectorFormatException    If an input line is not a valid vector.
+     */
+    public long simulateVectors(BufferedReader in, Writer out, String sourceName) throws IOException, VectorFormatException {
+        int inputCount = netlist.inputCount;
+        long lineNumber = 0;
+        long vectors = 0;
+        out.write("# inputs outputs settle-ticks output-transitions\n");
+
+        String text;
+        while((text = in.readLine()) != null) {
+            lineNumber++;
+            String vector = text.strip();
+            if(vector.isEmpty() || vector.startsWith("#")) continue;
+            if(vector.length() != inputCount || !vector.matches("[01]*")) {
+                throw new VectorFormatException(sourceName, lineNumber, inputCount);
+            }
+
+            long start = now;
+            long transitions = outputTransitions;
+            for(int i = 0; i < inputCount; i++) setInput(i, vector.charAt(i) == '1');
+            settle();
+
+            StringBuilder line = new StringBuilder(vector).append(' ');
+            for(int i = 0; i < netlist.getOutputCount(); i++) line.append(getOutput(i) ? '1' : '0');
+            line.append(' ').append(Math.max(0, lastChange - start));
+            line.append(' ').append(outputTransitions - transitions).append('\n');
+            out.write(line.toString());
+            vectors++;
+        }
+        out.flush();
+        return vectors;
+    }
+
+    /**
+     * Returns the current signal of a primary output.
+     *
+     * @param output    index of the output
+     * @return          signal of the output
+     */
+    public boolean getOutput(int output) {
+        return Netlist.getSignal(signals, netlist.outputs[output]);
+    }
+
+    /**
+     * Returns the current signal of a node.
+     *
+     * @param node  index of the node
+     * @return      signal of the node
+     */
+    public boolean getSignal(int node) {
+        return Netlist.getSignal(signals, node);
+    }
+
+    /**
+     * Returns the current simulation time.
+     *
+     * @return time in ticks
+     */
+    public long getTime() {
+        return now;
+    }
+
+    /**
+     * Returns the number of signal changes since the simulator was created.
+     *
+     * @return number of processed events
+     */
+    public long getEventCount() {
+        return events;
+    }
+
+    /**
+     * Returns the number of events which were merged into an already scheduled one.
+     *
+     * @return number of coalesced events
+     */
+    public long getCoalescedCount() {
+        return coalesced;
+    }
+
+    /**
+     * Returns the simulated netlist.
+     *
+     * @return the netlist
+     */
+    public Netlist getNetlist() {
+        return netlist;
+    }
+}
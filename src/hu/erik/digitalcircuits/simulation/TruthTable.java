@@ -0,0 +1,151 @@
+package hu.erik.digitalcircuits.simulation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Exhaustive truth table of a netlist.<br>
+ * The 2^n input combinations are enumerated in counting order, 64 of them in one
+ * bit-parallel pass. The table is split into segments which are rendered on a
+ * ForkJoinPool, and written in order as soon as they are ready. Only a few segments
+ * are in memory at once, so the size of the table is only limited by the output.<br>
+ * Every row is the input bits, a space and the output bits. The first input is the
+ * most significant bit of the combination.
+ */
+public class TruthTable {
+    /**
+     * Maximum number of inputs. The table of a bigger circuit could never be written.
+     */
+    public static final int MAX_INPUTS = 32;
+    /**
+     * Number of 64 row blocks in a segment.
+     */
+    private static final int BLOCKS_PER_SEGMENT = 256;
+    /**
+     * Value of the 6 lowest combination bits on the 64 lanes.
+     */
+    private static final long[] LANE_PATTERNS = {
+            0xAAAAAAAAAAAAAAAAL,
+            0xCCCCCCCCCCCCCCCCL,
+            0xF0F0F0F0F0F0F0F0L,
+            0xFF00FF00FF00FF00L,
+            0xFFFF0000FFFF0000L,
+            0xFFFFFFFF00000000L
+    };
+
+    /**
+     * The enumerated netlist.
+     */
+    private final Netlist netlist;
+    /**
+     * Pool which renders the segments.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * Simulators which are not used by any segment right now.
+     */
+    private final Queue<BitParallelSimulator> simulators;
+
+    /**
+     * Constructor to enumerate the netlist on the common pool.
+     *
+     * @param netlist netlist to enumerate
+     */
+    public TruthTable(Netlist netlist) {
+        this(netlist, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor to enumerate the netlist on the given pool.
+     *
+     * @param netlist   netlist to enumerate
+     * @param pool      pool which renders the segments
+     * @throws IllegalArgumentException If the netlist has more than MAX_INPUTS inputs.
+     */
+    public TruthTable(Netlist netlist, ForkJoinPool pool) {
+        if(netlist.getInputCount() > MAX_INPUTS) {
+            throw new IllegalArgumentException("Truth table can't be created for more than " + MAX_INPUTS + " inputs!");
+        }
+        this.netlist = netlist;
+        this.pool = pool;
+        this.simulators = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Returns the number of rows in the table.
+     *
+     * @return 2 to the power of the input count
+     */
+    public long getRowCount() {
+        return 1L << netlist.getInputCount();
+    }
+
+    /**
+     * Writes every row of the table. A few segments are rendered in parallel,
+     * while the finished ones are written in order.
+     *
+     * @param out           destination of the rows
+     * @return              number of written rows
+     * @throws IOException  If the writing fails.
+     */
+    public long write(Writer out) throws IOException {
+        long blocks = (getRowCount() + 63) >>> 6;
+        long segments = (blocks + BLOCKS_PER_SEGMENT - 1) / BLOCKS_PER_SEGMENT;
+        int window = 2 * pool.getParallelism();
+        ArrayDeque<ForkJoinTask<char[]>> rendering = new ArrayDeque<>();
+
+        for(long segment = 0; segment < segments; segment++) {
+            if(rendering.size() == window) out.write(rendering.poll().join());
+            long first = segment * BLOCKS_PER_SEGMENT;
+            long last = Math.min(blocks, first + BLOCKS_PER_SEGMENT);
+            rendering.add(pool.submit(() -> render(first, last)));
+        }
+        while(!rendering.isEmpty()) out.write(rendering.poll().join());
+        out.flush();
+        return getRowCount();
+    }
+
+    /**
+     * Renders the rows of the given 64 row blocks.
+     *
+     * @param first first block
+     * @param last  end of the blocks (exclusive)
+     * @return      text of the rows
+     */
+    private char[] render(long first, long last) {
+        BitParallelSimulator simulator = simulators.poll();
+        if(simulator == null) simulator = new BitParallelSimulator(netlist);
+
+        int inputCount = netlist.getInputCount();
+        int outputCount = netlist.getOutputCount();
+        int lanes = (int) Math.min(BitParallelSimulator.LANES, getRowCount());
+        int rowLength = inputCount + outputCount + 2;
+        char[] text = new char[(int) (last - first) * lanes * rowLength];
+        long[] inputs = new long[inputCount];
+
+        int position = 0;
+        for(long block = first; block < last; block++) {
+            for(int i = 0; i < inputCount; i++) {
+                int bit = inputCount - 1 - i;
+                if(bit < LANE_PATTERNS.length) inputs[i] = LANE_PATTERNS[bit];
+                else inputs[i] = (block >>> (bit - LANE_PATTERNS.length) & 1L) == 1L ? -1L : 0L;
+            }
+            long[] results = simulator.simulate(inputs);
+
+            for(int lane = 0; lane < lanes; lane++) {
+                for(long input : inputs) text[position++] = (input >>> lane & 1L) == 1L ? '1' : '0';
+                text[position++] = ' ';
+                for(long result : results) text[position++] = (result >>> lane & 1L) == 1L ? '1' : '0';
+                text[position++] = '\n';
+            }
+        }
+
+        simulators.add(simulator);
+        return text;
+    }
+}
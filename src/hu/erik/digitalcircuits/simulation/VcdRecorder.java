@@ -0,0 +1,334 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.devices.Device;
+import hu.erik.digitalcircuits.devices.Pin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the pin signals of the watched devices into a Value Change Dump (VCD) file.<br>
+ * The propagation engines report every device they evaluate, and the end of every propagation.
+ * One propagation is one time step, and only the pins which changed during the step are written,
+ * with a short printable identifier. Steps without a change are not written at all.
+ * The output is collected in a large buffer and written to a file channel, so recording
+ * doesn't slow the propagation down with small writes.
+ */
+public class VcdRecorder implements Closeable {
+    /**
+     * Size of the output buffer in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Number of the printable characters used in the identifiers.
+     */
+    private static final int ID_BASE = 94;
+
+    /**
+     * Path of the VCD file.
+     */
+    private final Path file;
+    /**
+     * The VCD file.
+     */
+    private final FileChannel channel;
+    /**
+     * Bytes not written to the file yet.
+     */
+    private final byte[] buffer;
+    /**
+     * Number of bytes in the buffer.
+     */
+    private int position;
+    /**
+     * Index of every watched device.
+     */
+    private final Map<Device, Integer> deviceIndexes;
+    /**
+     * Id of the first pin of every watched device, plus one closing element.
+     */
+    private final int[] pinStart;
+    /**
+     * Every recorded pin by its id.
+     */
+    private final Pin[] pins;
+    /**
+     * Last written signal of every pin in a packed bitset.
+     */
+    private final long[] written;
+    /**
+     * Pins which may have changed in the current step, in a packed bitset.
+     */
+    private final long[] dirty;
+    /**
+     * Ids of the dirty pins.
+     */
+    private int[] dirtyPins;
+    /**
+     * Number of dirty pins.
+     */
+    private int dirtyCount;
+    /**
+     * Current time step.
+     */
+    private long time;
+    /**
+     * Number of written value changes, without the initial values.
+     */
+    private long changes;
+
+    /**
+     * Constructor to create the file, and write the header and the initial values.
+     * Boxes are not recorded themselves, their pins belong to the devices inside them.
+     * A name can be a "box/inner" path, then the device is written into the scope of the box.
+     *
+     * @param file          the VCD file
+     * @param devices       devices to record by their name, in the order of the scopes
+     * @throws IOException  If the file can't be created or written.
+     */
+    public VcdRecorder(Path file, Map<String, Device> devices) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.buffer = new byte[BUFFER_SIZE];
+        this.position = 0;
+        this.deviceIndexes = new IdentityHashMap<>();
+
+        List<String> names = new ArrayList<>();
+        List<Pin> recorded = new ArrayList<>();
+        int[] starts = new int[devices.size() + 1];
+        int[] inputEnds = new int[devices.size()];
+        for(Map.Entry<String, Device> entry : devices.entrySet()) {
+            Device device = entry.getValue();
+            if(device instanceof CircuitBox || deviceIndexes.containsKey(device)) continue;
+            deviceIndexes.put(device, names.size());
+            names.add(entry.getKey());
+            for(Pin pin : device.inputPins()) if(pin.getParentDevice() == device) recorded.add(pin);
+            inputEnds[names.size() - 1] = recorded.size();
+            for(Pin pin : device.outputPins()) if(pin.getParentDevice() == device) recorded.add(pin);
+            starts[names.size()] = recorded.size();
+        }
+        this.pinStart = Arrays.copyOf(starts, names.size() + 1);
+        this.pins = recorded.toArray(new Pin[0]);
+        this.written = new long[(pins.length + 63) >>> 6];
+        this.dirty = new long[written.length];
+        this.dirtyPins = new int[64];
+        this.time = 0;
+        this.changes = 0;
+
+        try {
+            writeHeader(names, inputEnds);
+        } catch (IOException err) {
+            channel.close();
+            throw err;
+        }
+    }
+
+    /**
+     * Writes the declarations of the pins, then the initial value of every pin at time 0.
+     *
+     * @param names         name of every recorded device
+     * @param inputEnds     id after the last input pin of every recorded device
+     * @throws IOException  If the write fails.
+     */
+    private void writeHeader(List<String> names, int[] inputEnds) throws IOException {
+        write("$date " + LocalDateTime.now().withNano(0) + " $end\n");
+        write("$version digital-circuits-simulator $end\n");
+        write("$comment One time step is one propagation. $end\n");
+        write("$timescale 1ns $end\n");
+        write("$scope module circuit $end\n");
+        String openBox = null;
+        for(int device = 0; device < names.size(); device++) {
+            String name = names.get(device);
+            int separator = name.indexOf(CircuitHierarchy.SEPARATOR);
+            String box = separator > 0 ? name.substring(0, separator) : null;
+            if(openBox != null && !openBox.equals(box)) write("$upscope $end\n");
+            if(box != null && !box.equals(openBox)) write("$scope module " + box + " $end\n");
+            openBox = box;
+
+            write("$scope module " + name.substring(separator + 1) + " $end\n");
+            for(int id = pinStart[device]; id < pinStart[device + 1]; id++) {
+                boolean input = id < inputEnds[device];
+                write("$var wire 1 ");
+                writeId(id);
+                write(input ? " in" + (id - pinStart[device]) : " out" + (id - inputEnds[device]));
+                write(" $end\n");
+            }
+            write("$upscope $end\n");
+        }
+        if(openBox != null) write("$upscope $end\n");
+        write("$upscope $end\n$enddefinitions $end\n#0\n$dumpvars\n");
+        for(int id = 0; id < pins.length; id++) {
+            boolean signal = pins[id].getSignal();
+            if(signal) written[id >>> 6] |= 1L << id;
+            writeChange(id, signal);
+        }
+        write("$end\n");
+    }
+
+    /**
+     * Notes that the pins of the device may have changed. Called by the propagation
+     * engines for every evaluated device, so it only marks the pins, the changes are
+     * written at the end of the step.
+     *
+     * @param device the evaluated device
+     */
+    void update(Device device) {
+        Integer index = deviceIndexes.get(device);
+        if(index == null) return;
+        for(int id = pinStart[index]; id < pinStart[index + 1]; id++) {
+            if((dirty[id >>> 6] & (1L << id)) != 0) continue;
+            dirty[id >>> 6] |= 1L << id;
+            if(dirtyCount == dirtyPins.length) dirtyPins = Arrays.copyOf(dirtyPins, dirtyCount * 2);
+            dirtyPins[dirtyCount++] = id;
+        }
+    }
+
+    /**
+     * Ends the current time step: writes the pins which are different from their last written
+     * value, then starts the next step. The time is only written if something changed.
+     *
+     * @throws IOException If the write fails.
+     */
+    void step() throws IOException {
+        time++;
+        boolean timeWritten = false;
+        for(int i = 0; i < dirtyCount; i++) {
+            int id = dirtyPins[i];
+            dirty[id >>> 6] &= ~(1L << id);
+            boolean signal = pins[id].getSignal();
+            if(signal == ((written[id >>> 6] & (1L << id)) != 0)) continue;
+            if(!timeWritten) {
+                write("#" + time + "\n");
+                timeWritten = true;
+            }
+            written[id >>> 6] ^= 1L << id;
+            writeChange(id, signal);
+            changes++;
+        }
+        dirtyCount = 0;
+    }
+
+    /**
+     * Writes a value change: the value, then the identifier of the pin.
+     *
+     * @param id            id of the pin
+     * @param signal        new signal of the pin
+     * @throws IOException  If the write fails.
+     */
+    private void writeChange(int id, boolean signal) throws IOException {
+        if(buffer.length - position < 16) drain();
+        buffer[position++] = (byte) (signal ? '1' : '0');
+        writeId(id);
+        buffer[position++] = '\n';
+    }
+
+    /**
+     * Writes the identifier of a pin, its id in base 94 with the printable ASCII characters.
+     *
+     * @param id            id of the pin
+     * @throws IOException  If the write fails.
+     */
+    private void writeId(int id) throws IOException {
+        if(buffer.length - position < 8) drain();
+        if(id < ID_BASE) {
+            buffer[position++] = (byte) ('!' + id);
+            return;
+        }
+        do {
+            buffer[position++] = (byte) ('!' + id % ID_BASE);
+            id /= ID_BASE;
+        } while(id > 0);
+    }
+
+    /**
+     * Writes a string into the buffer.
+     *
+     * @param text          text to write
+     * @throws IOException  If the write fails.
+     */
+    private void write(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        if(buffer.length - position < bytes.length) drain();
+        if(bytes.length > buffer.length) {
+            ByteBuffer direct = ByteBuffer.wrap(bytes);
+            while(direct.hasRemaining()) channel.write(direct);
+            return;
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * Writes the buffered bytes to the file.
+     *
+     * @throws IOException If the write fails.
+     */
+    private void drain() throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, position);
+        while(bytes.hasRemaining()) channel.write(bytes);
+        position = 0;
+    }
+
+    /**
+     * Returns the path of the VCD file.
+     *
+     * @return the file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the current time step.
+     *
+     * @return number of recorded propagations
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the number of written value changes, without the initial values.
+     *
+     * @return number of value changes
+     */
+    public long getChangeCount() {
+        return changes;
+    }
+
+    /**
+     * Returns the number of recorded pins.
+     *
+     * @return number of pins
+     */
+    public int getPinCount() {
+        return pins.length;
+    }
+
+    /**
+     * Writes the buffered changes with the last time step, and closes the file.
+     *
+     * @throws IOException If the write or the close fails.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            write("#" + (time + 1) + "\n");
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package hu.erik.digitalcircuits.simulation;
+
+import hu.erik.digitalcircuits.devices.Device;
+import hu.erik.digitalcircuits.devices.Pin;
+import hu.erik.digitalcircuits.utils.Printer;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Propagation engine which pushes the pins to be sent onto an explicit queue
+ * and evaluates the devices iteratively. Stack usage does not depend on the
+ * depth of the circuit, so very long chains of devices can be updated as well.
+ */
+public class WorklistEngine implements PropagationEngine {
+    /**
+     * Default number of signal transfers that can happen during one propagation.
+     */
+    public static final long DEFAULT_TRANSFER_LIMIT = 10_000_000L;
+
+    /**
+     * Output pins which values have to be sent to the connected pins.
+     */
+    private final ArrayDeque<Pin> queue;
+    /**
+     * Maximum number of signal transfers during one propagation: input pins which received
+     * a changed value. If a propagation exceeds it, the circuit is considered oscillating.
+     */
+    private long transferLimit;
+    /**
+     * Whether a propagation is running right now or not.
+     * Propagation requests during a running propagation are only queued.
+     */
+    private boolean running;
+    /**
+     * Number of device evaluations during the last propagation.
+     */
+    private long evaluations;
+    /**
+     * Number of suppressed device evaluations during the last propagation.
+     */
+    private long suppressed;
+    /**
+     * Number of pins which received a changed value during the last propagation.
+     */
+    private long transfers;
+    /**
+     * Number of queue waves with a device evaluation during the last propagation.
+     */
+    private int depth;
+
+    /**
+     * Default constructor to create an engine with the default transfer limit.
+     */
+    public WorklistEngine() {
+        this(DEFAULT_TRANSFER_LIMIT);
+    }
+
+    /**
+     * Constructor to create an engine with the given transfer limit.
+     *
+     * @param transferLimit maximum number of signal transfers during one propagation
+     */
+    public WorklistEngine(long transferLimit) {
+        this.queue = new ArrayDeque<>();
+        this.transferLimit = transferLimit;
+        this.running = false;
+        this.evaluations = 0;
+        this.suppressed = 0;
+        this.transfers = 0;
+        this.depth = 0;
+    }
+
+    /**
+     * Queues all of the device output pins, then updates the circuit.
+     *
+     * @param source device which output pins have to be sent
+     */
+    @Override
+    public void propagate(Device source) {
+        Simulation.deviceUpdated(source);
+        Collections.addAll(queue, source.outputPins());
+        run();
+    }
+
+    /**
+     * Queues the given output pin, then updates the circuit.
+     *
+     * @param outputPin output pin you want to transfer the value from
+     */
+    @Override
+    public void propagate(Pin outputPin) {
+        Simulation.deviceUpdated(outputPin.getParentDevice());
+        queue.add(outputPin);
+        run();
+    }
+
+    /**
+     * Sends the output pins of every given device first, then evaluates each
+     * affected device once and updates the rest of the circuit.
+     *
+     * @param sources devices which output pins have to be sent
+     */
+    @Override
+    public void propagate(Collection<? extends Device> sources) {
+        for(Device source : sources) Simulation.deviceUpdated(source);
+        if(running) {
+            for(Device source : sources) Collections.addAll(queue, source.outputPins());
+            return;
+        }
+        long start = start();
+        try {
+            Set<Device> targets = new LinkedHashSet<>();
+            for(Device source : sources) {
+                for(Pin outputPin : source.outputPins()) {
+                    Device target = transfer(outputPin);
+                    if(target != null) targets.add(target);
+                }
+            }
+            for(Device target : targets) evaluate(target);
+            if(evaluations > 0) depth = 1;
+            drain();
+        } finally {
+            running = false;
+            Simulation.propagationFinished(this, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * The worklist engine doesn't compile the circuit, so a new cable needs no update.
+     *
+     * @param driver    device of the output pin
+     * @param target    device of the input pin
+     */
+    @Override
+    public void connected(Device driver, Device target) {}
+
+    /**
+     * Transfers the queued pin values until the queue becomes empty.
+     */
+    private void run() {
+        if(running) return;
+        long start = start();
+        try {
+            drain();
+        } finally {
+            running = false;
+            Simulation.propagationFinished(this, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Starts a propagation: clears the counters of the last one.
+     *
+     * @return start time of the propagation, from System.nanoTime
+     */
+    private long start() {
+        running = true;
+        evaluations = 0;
+        suppressed = 0;
+        transfers = 0;
+        depth = 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * Transfers the queued pin values until the queue becomes empty.
+     * Every device which receives a changed value recalculates its output, and
+     * its changed output pins will be queued as well. Unchanged values are not
+     * forwarded.<br>
+     * The pins queued before a pin is taken form a wave, which is one level deeper than the
+     * previous wave, so the depth is the number of waves which evaluated a device.
+     */
+    private void drain() {
+        int wave = queue.size();
+        long waveStart = evaluations;
+        while(!queue.isEmpty()) {
+            if(wave-- == 0) {
+                if(evaluations > waveStart) depth++;
+                waveStart = evaluations;
+                wave = queue.size() - 1;
+            }
+            Device device = transfer(queue.poll());
+            if(device != null) evaluate(device);
+
+            if(transfers > transferLimit) {
+                queue.clear();
+                Printer.printErr("Oscillation occurred in your circuit. Signal transfers are stopped!");
+                Printer.printErr("Please fix your circuit!");
+            }
+        }
+        if(evaluations > waveStart) depth++;
+    }
+
+    /**
+     * Transfers the value of the output pin to the connected pin if it changed.
+     *
+     * @param outputPin output pin to send
+     * @return          the device which received a changed value, or null
+     */
+    private Device transfer(Pin outputPin) {
+        if(outputPin.isFree()) return null;
+        Pin connectedPin = outputPin.getConnectionCable().getOtherPin(outputPin);
+        if(connectedPin.getSignal() == outputPin.getSignal()) {
+            suppressed++;
+            return null;
+        }
+        connectedPin.setSignal(outputPin.getSignal());
+        transfers++;
+        return connectedPin.getParentDevice();
+    }
+
+    /**
+     * Recalculates the output of the device and queues its changed output pins.
+     * Feedback loops are settled as a whole, then the pins leading out of the loop are queued.
+     *
+     * @param device device which received a changed value
+     */
+    private void evaluate(Device device) {
+        FeedbackLoop loop = FeedbackLoops.loopOf(device);
+        if(loop == null) {
+            long before = LevelizedEngine.outputSignals(device);
+            device.calcOutput();
+            evaluations++;
+            Simulation.deviceUpdated(device);
+            queueChanged(device.outputPins(), before ^ LevelizedEngine.outputSignals(device));
+        } else {
+            boolean settled = loop.settle();
+            evaluations += loop.getEvaluations();
+            for(Device member : loop.getMembers()) Simulation.deviceUpdated(member);
+            if(settled) queue.addAll(loop.exitPins());
+            else reportOscillation(loop);
+        }
+    }
+
+    /**
+     * Queues the output pins which changed. Pins after the 64th can't be
+     * tracked in the mask, so they are always queued.
+     *
+     * @param outputPins    output pins of an evaluated device
+     * @param changed       mask of the changed output pins
+     */
+    private void queueChanged(Pin[] outputPins, long changed) {
+        for(int i = 0; i < outputPins.length; i++) {
+            if(i >= Long.SIZE || (changed & (1L << i)) != 0) queue.add(outputPins[i]);
+        }
+    }
+
+    /**
+     * Prints an error about the loop which didn't settle.
+     *
+     * @param loop the oscillating loop
+     */
+    static void reportOscillation(FeedbackLoop loop) {
+        Printer.printErr("Oscillation occurred in loop: " + loop.describe());
+        Printer.printErr("Signal transfers are stopped in this loop. Please fix your circuit!");
+    }
+
+    /**
+     * Returns the maximum number of signal transfers during one propagation.
+     *
+     * @return the transfer limit
+     */
+    public long getTransferLimit() {
+        return transferLimit;
+    }
+
+    /**
+     * Sets the maximum number of signal transfers during one propagation.
+     *
+     * @param transferLimit the new transfer limit
+     */
+    public void setTransferLimit(long transferLimit) {
+        this.transferLimit = transferLimit;
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    @Override
+    public long getSuppressedEvaluations() {
+        return suppressed;
+    }
+
+    @Override
+    public long getTransfers() {
+        return transfers;
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public String getName() {
+        return "worklist";
+    }
+}
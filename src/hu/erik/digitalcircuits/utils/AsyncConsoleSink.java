@@ -0,0 +1,210 @@
+package hu.erik.digitalcircuits.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Sink which puts the lines into a bounded ring buffer, and writes them to the console
+ * in a background thread, so the commands and the propagation don't wait for the console.<br>
+ * The writer is only woken up by the first line after an idle period. Then it waits a few
+ * milliseconds to collect more lines, takes every waiting line at once, writes them into a
+ * large buffer, and only flushes the standard output when the ring is empty or somebody
+ * waits for a flush.
+ * The caller only waits if the ring is full, because the console can't keep up with it.
+ * The lines which are still in the ring are written out when the application exits.
+ */
+public class AsyncConsoleSink implements ConsoleSink {
+    /**
+     * Default number of lines in the ring.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+    /**
+     * Size of the standard output buffer of the writer in bytes.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+    /**
+     * How long the writer waits for more lines before writing a batch, in milliseconds.
+     */
+    private static final long LINGER_MILLIS = 5;
+
+    /**
+     * Buffered stream of the standard output. Only used by the writer thread.
+     */
+    private final PrintStream out;
+    /**
+     * Stream of the errors. Only used by the writer thread.
+     */
+    private final PrintStream err;
+    /**
+     * The ring of lines waiting to be written.
+     */
+    private final String[] lines;
+    /**
+     * Determines whether the line at the same position of the ring is an error or not.
+     */
+    private final boolean[] errors;
+    /**
+     * Number of the lines taken from the ring by the writer.
+     */
+    private long head;
+    /**
+     * Number of the lines put into the ring.
+     */
+    private long tail;
+    /**
+     * Number of the lines which are written and flushed to the console.
+     */
+    private long flushed;
+    /**
+     * Number of the threads waiting for a flush.
+     */
+    private int flushWaiters;
+    /**
+     * Determines whether the writer waits for the first line after an idle period or not.
+     */
+    private boolean writerSleeping;
+    /**
+     * Determines whether the writer waits for more lines before writing a batch or not.
+     */
+    private boolean writerLingering;
+
+    /**
+     * Constructor to create the ring with the default capacity and to start the writer thread.
+     *
+     * @param out   stream of the standard output
+     * @param err   stream of the errors
+     */
+    public AsyncConsoleSink(PrintStream out, PrintStream err) {
+        this(out, err, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor to create the ring and to start the writer thread.
+     *
+     * @param out       stream of the standard output
+     * @param err       stream of the errors
+     * @param capacity  number of lines in the ring, rounded up to a power of two
+     */
+    public AsyncConsoleSink(PrintStream out, PrintStream err, int capacity) {
+        int size = 1;
+        while(size < capacity) size <<= 1;
+        this.out = new PrintStream(new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE), false);
+        this.err = err;
+        this.lines = new String[size];
+        this.errors = new boolean[size];
+
+        Thread writer = new Thread(this::write, "console-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "console-flush"));
+    }
+
+    @Override
+    public void print(String line) {
+        put(line, false);
+    }
+
+    @Override
+    public void printErr(String line) {
+        put(line, true);
+    }
+
+    /**
+     * Puts a line into the ring. Waits while the ring is full.
+     *
+     * @param line  the line
+     * @param error determines whether the line is an error or not
+     */
+    private synchronized void put(String line, boolean error) {
+        boolean interrupted = false;
+        while(tail - head == lines.length) {
+            try {
+                wait();
+            } catch (InterruptedException err) {
+                interrupted = true;
+            }
+        }
+        int index = (int) tail & (lines.length - 1);
+        lines[index] = line;
+        errors[index] = error;
+        tail++;
+        if(writerSleeping || (writerLingering && tail - head >= lines.length / 2)) notifyAll();
+        if(interrupted) Thread.currentThread().interrupt();
+    }
+
+    @Override
+    public synchronized void flush() {
+        long target = tail;
+        if(flushed >= target) return;
+        boolean interrupted = false;
+        flushWaiters++;
+        notifyAll();
+        try {
+            while(flushed < target) {
+                try {
+                    wait();
+                } catch (InterruptedException err) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            flushWaiters--;
+        }
+        if(interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Body of the writer thread. Takes the waiting lines from the ring, and writes them
+     * out in a batch.
+     */
+    private void write() {
+        String[] batch = new String[lines.length];
+        boolean[] batchErrors = new boolean[lines.length];
+        while(true) {
+            int count;
+            long end;
+            synchronized(this) {
+                try {
+                    writerSleeping = true;
+                    while(head == tail) wait();
+                    writerSleeping = false;
+                    writerLingering = true;
+                    if(flushWaiters == 0 && tail - head < lines.length / 2) wait(LINGER_MILLIS);
+                    writerLingering = false;
+                } catch (InterruptedException err) {
+                    return;
+                }
+                count = (int) (tail - head);
+                for(int i = 0; i < count; i++) {
+                    int index = (int) (head + i) & (lines.length - 1);
+                    batch[i] = lines[index];
+                    batchErrors[i] = errors[index];
+                    lines[index] = null;
+                }
+                head = tail;
+                end = tail;
+                notifyAll();
+            }
+
+            for(int i = 0; i < count; i++) {
+                if(batchErrors[i]) {
+                    out.flush();
+                    err.println(batch[i]);
+                } else {
+                    out.println(batch[i]);
+                }
+                batch[i] = null;
+            }
+
+            synchronized(this) {
+                if(head != tail && flushWaiters == 0) continue;
+            }
+            out.flush();
+            err.flush();
+            synchronized(this) {
+                flushed = end;
+                notifyAll();
+            }
+        }
+    }
+}
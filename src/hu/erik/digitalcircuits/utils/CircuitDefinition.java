@@ -0,0 +1,92 @@
+package hu.erik.digitalcircuits.utils;
+
+import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.devices.CircuitCopier;
+import hu.erik.digitalcircuits.errors.FeedbackLoopException;
+import hu.erik.digitalcircuits.simulation.CircuitTemplate;
+
+import java.io.IOException;
+
+/**
+ * Parsed content of a saved box file. The loaded box is never connected to anything,
+ * it is only used as the original of the copies and the template of the instances.
+ */
+public class CircuitDefinition {
+    /**
+     * Name of the box.
+     */
+    private final String name;
+    /**
+     * Modification time of the file the box was loaded from.
+     */
+    private final long lastModified;
+    /**
+     * The loaded box, never changed.
+     */
+    private final CircuitBox original;
+    /**
+     * Shared template of the instances, null until the first instance.
+     */
+    private CircuitTemplate template;
+
+    /**
+     * Constructor to initialize every field.
+     *
+     * @param name          name of the box
+     * @param lastModified  modification time of the box file
+     * @param original      the loaded box
+     */
+    public CircuitDefinition(String name, long lastModified, CircuitBox original) {
+        this.name = name;
+        this.lastModified = lastModified;
+        this.original = original;
+        this.template = null;
+    }
+
+    /**
+     * Creates a new, independent box with the same devices and connections. The devices
+     * are copied directly. If the box contains a device which can't be copied, the file
+     * is deserialized again.
+     *
+     * @return                          a new box
+     * @throws IOException              If the file has to be loaded, and the load fails.
+     * @throws ClassNotFoundException   If the file has to be loaded, and a class doesn't exist.
+     */
+    public CircuitBox newBox() throws IOException, ClassNotFoundException {
+        try {
+            return CircuitCopier.copy(original);
+        } catch (IllegalArgumentException err) {
+            return FileHandler.loadCircuit(name);
+        }
+    }
+
+    /**
+     * Returns the shared template of the box. It is compiled at the first call.
+     *
+     * @return                          the template
+     * @throws FeedbackLoopException    If the box contains a feedback loop.
+     * @throws IllegalArgumentException If the box contains flip-flops.
+     */
+    public synchronized CircuitTemplate getTemplate() throws FeedbackLoopException {
+        if(template == null) template = CircuitTemplate.of(original);
+        return template;
+    }
+
+    /**
+     * Returns the name of the box.
+     *
+     * @return name of the box
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the modification time of the file the box was loaded from.
+     *
+     * @return modification time in milliseconds since the epoch
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,27 @@
+package hu.erik.digitalcircuits.utils;
+
+/**
+ * Interface to represent the destination of the Printer's lines.
+ * The lines must be written in the order they arrived, the standard output
+ * and the errors together.
+ */
+public interface ConsoleSink {
+    /**
+     * Writes a line to the standard output.
+     *
+     * @param line line without the line separator
+     */
+    void print(String line);
+
+    /**
+     * Writes a line to the standard error.
+     *
+     * @param line line without the line separator
+     */
+    void printErr(String line);
+
+    /**
+     * Waits until every line given so far is written out to the console.
+     */
+    void flush();
+}
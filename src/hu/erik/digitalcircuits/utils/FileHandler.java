@@ -1,15 +1,21 @@
 package hu.erik.digitalcircuits.utils;
 
 import hu.erik.digitalcircuits.devices.CircuitBox;
+import hu.erik.digitalcircuits.devices.CircuitReader;
+import hu.erik.digitalcircuits.devices.CircuitWriter;
+import hu.erik.digitalcircuits.devices.MappedCircuitFile;
 
 import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * Class to handle file interactions.<br>
- * Can load and save CircuitBoxes.<br>
+ * Can load and save CircuitBoxes, and import the old serialized ones.<br>
  * Can load command help pages.
  */
 public final class FileHandler {
@@ -19,30 +25,103 @@ public final class FileHandler {
     private FileHandler() {}
 
     /**
-     * Loads a circuit from file if there is any .ser file with the given name.
+     * Extension of the circuit files in the binary format.
+     */
+    public static final String CIRCUIT_EXTENSION = ".dcb";
+    /**
+     * Extension of the circuit files saved by Java serialization, only imported.
+     */
+    public static final String SERIALIZED_EXTENSION = ".ser";
+    /**
+     * Stack size of the import thread. Java serialization recurses along the
+     * cables, so deep circuits don't fit into the default stack.
+     */
+    private static final long IMPORT_STACK_SIZE = 512L * 1024 * 1024;
+
+    /**
+     * Loads a circuit from file. The binary .dcb file is used if it exists,
+     * otherwise an old .ser file with the given name is imported.
      *
      * @param circuitName               name of the circuit which will be loaded
      * @return                          loaded circuit
      * @throws IOException              If the load fails.
-     * @throws ClassNotFoundException   If the class doesn't exists in the classpath.
+     * @throws ClassNotFoundException   If the class of a serialized device doesn't exists in the classpath.
      */
     public static CircuitBox loadCircuit(String circuitName) throws IOException, ClassNotFoundException {
-        ObjectInputStream inputStream = new ObjectInputStream(new FileInputStream(circuitName + ".ser"));
-        CircuitBox box = (CircuitBox) inputStream.readObject();
-        inputStream.close();
-        return box;
+        Path file = Paths.get(circuitName + CIRCUIT_EXTENSION);
+        if(!Files.exists(file)) return importSerialized(Paths.get(circuitName + SERIALIZED_EXTENSION));
+        try (CircuitReader reader = new CircuitReader(Files.newInputStream(file))) {
+            return reader.read();
+        }
+    }
+
+    /**
+     * Maps a circuit file in the binary format into memory, without creating its devices.
+     * Used to compile circuits which are too large to load.
+     *
+     * @param circuitName   name of the circuit which will be mapped
+     * @return              the mapped file
+     * @throws IOException  If the file doesn't exist, it can't be mapped, or it's not a valid circuit file.
+     */
+    public static MappedCircuitFile mapCircuit(String circuitName) throws IOException {
+        return MappedCircuitFile.map(Paths.get(circuitName + CIRCUIT_EXTENSION));
+    }
+
+    /**
+     * Imports a circuit saved by Java serialization. The import runs on its own thread
+     * with a large stack, so deep circuits can be imported too.
+     *
+     * @param file                      the .ser file
+     * @return                          loaded circuit
+     * @throws IOException              If the load fails.
+     * @throws ClassNotFoundException   If the class of a serialized device doesn't exists in the classpath.
+     */
+    private static CircuitBox importSerialized(Path file) throws IOException, ClassNotFoundException {
+        FutureTask<CircuitBox> task = new FutureTask<>(() -> {
+            try (ObjectInputStream inputStream = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                return (CircuitBox) inputStream.readObject();
+            }
+        });
+        Thread thread = new Thread(null, task, "circuit-import", IMPORT_STACK_SIZE);
+        thread.start();
+        try {
+            return task.get();
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Circuit import interrupted!");
+        } catch (ExecutionException err) {
+            Throwable cause = err.getCause();
+            if(cause instanceof IOException) throw (IOException) cause;
+            if(cause instanceof ClassNotFoundException) throw (ClassNotFoundException) cause;
+            if(cause instanceof ClassCastException) throw new IOException(file + " doesn't contain a circuit!", cause);
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException("Circuit import failed!", cause);
+        }
+    }
+
+    /**
+     * Returns the last modification time of a saved circuit, the one which loadCircuit would load.
+     *
+     * @param circuitName   name of the circuit
+     * @return              modification time in milliseconds since the epoch
+     * @throws IOException  If the file doesn't exist or can't be read.
+     */
+    public static long lastModified(String circuitName) throws IOException {
+        Path file = Paths.get(circuitName + CIRCUIT_EXTENSION);
+        if(!Files.exists(file)) file = Paths.get(circuitName + SERIALIZED_EXTENSION);
+        return Files.getLastModifiedTime(file).toMillis();
     }
 
     /**
-     * Saves a circuit to a file.
+     * Saves a circuit to a file in the binary format.
      *
      * @param box           CircuitBox which will be saved
      * @throws IOException  If the save fails.
      */
     public static void saveCircuit(CircuitBox box) throws IOException {
-        ObjectOutputStream outputStream = new ObjectOutputStream(new FileOutputStream(box.getName() + ".ser"));
-        outputStream.writeObject(box);
-        outputStream.close();
+        try (CircuitWriter writer = new CircuitWriter(Files.newOutputStream(Paths.get(box.getName() + CIRCUIT_EXTENSION)))) {
+            writer.write(box);
+        }
     }
 
     /**
@@ -1,7 +1,10 @@
 package hu.erik.digitalcircuits.utils;
 
 /**
- * Util class to print nice looking messages to the console.
+ * Util class to print nice looking messages to the console.<br>
+ * The lines are written through a pluggable sink, which writes them immediately by default.
+ * In batch mode the standard output can be suppressed, and the errors show the line of
+ * the script which caused them.
  */
 public final class Printer {
     /**
@@ -12,6 +15,31 @@ public final class Printer {
      */
     private static final int CONSOLEWIDTH = 120;
 
+    /**
+     * Destination of the printed lines.
+     */
+    private static volatile ConsoleSink sink = new StreamSink(System.out, System.err);
+    /**
+     * Determines whether the standard output is suppressed or not.
+     */
+    private static boolean quiet = false;
+    /**
+     * Name of the running script, or null if the commands are typed in.
+     */
+    private static String source = null;
+    /**
+     * Number of the currently running line of the script. Counting starts at 1.
+     */
+    private static long line = 0;
+    /**
+     * Number of the script lines which printed an error.
+     */
+    private static long errorLines = 0;
+    /**
+     * The last script line which printed an error.
+     */
+    private static long lastErrorLine = 0;
+
     /**
      * Private constructor to prevent instance creation.
      */
@@ -23,7 +51,18 @@ public final class Printer {
      * @param text text which will be printed to the console
      */
     public static void println(String text) {
-        System.out.println(">> " + text);
+        if(quiet) return;
+        sink.print(">> " + text);
+    }
+
+    /**
+     * Prints text to the console indented by a tab, without prefix.
+     *
+     * @param text text which will be printed to the console
+     */
+    public static void printIndented(String text) {
+        if(quiet) return;
+        sink.print("\t" + text);
     }
 
     /**
@@ -35,7 +74,8 @@ public final class Printer {
     public static void printTitle(String title) {
         int remainingWidth = CONSOLEWIDTH - title.length() - 2;
         String side = lineBuilder("-", remainingWidth/2);
-        System.out.println(side + " " + title + " " + side);
+        if(quiet) return;
+        sink.print(side + " " + title + " " + side);
     }
 
     /**
@@ -44,7 +84,7 @@ public final class Printer {
      * @param e exception which will be printed
      */
     public static void printErr(Exception e) {
-        System.err.println(">> " + e.getMessage());
+        printErr(e.getMessage());
     }
 
     /**
@@ -53,7 +93,15 @@ public final class Printer {
      * @param msg error message which will be printed
      */
     public static void printErr(String msg) {
-        System.err.println(">> " + msg);
+        if(source == null) {
+            sink.printErr(">> " + msg);
+            return;
+        }
+        if(line != lastErrorLine) {
+            lastErrorLine = line;
+            errorLines++;
+        }
+        sink.printErr(">> In file: " + source + ", line " + line + ": " + msg);
     }
 
     /**
@@ -64,7 +112,62 @@ public final class Printer {
      * @param material material of the line
      */
     public static void printSeparatorLine(String material) {
-        System.out.println(lineBuilder(material, CONSOLEWIDTH));
+        if(quiet) return;
+        sink.print(lineBuilder(material, CONSOLEWIDTH));
+    }
+
+    /**
+     * Replaces the destination of the printed lines. The lines given to the old sink are flushed.
+     *
+     * @param newSink the new destination
+     */
+    public static void setSink(ConsoleSink newSink) {
+        ConsoleSink old = sink;
+        sink = newSink;
+        old.flush();
+    }
+
+    /**
+     * Waits until every printed line is written out to the console.
+     * Should be called before waiting for the user.
+     */
+    public static void flush() {
+        sink.flush();
+    }
+
+    /**
+     * Switches to batch mode: the standard output can be suppressed,
+     * and the errors are prefixed with the name and the line of the script.
+     *
+     * @param script    name of the script file
+     * @param silent    suppress everything except the errors
+     */
+    public static void startBatch(String script, boolean silent) {
+        quiet = silent;
+        source = script;
+        line = 0;
+        errorLines = 0;
+        lastErrorLine = 0;
+    }
+
+    /**
+     * Sets the line of the script which is running now. The errors will point to this line.
+     *
+     * @param number number of the line, counting starts at 1
+     */
+    public static void setLine(long number) {
+        line = number;
+    }
+
+    /**
+     * Switches back to the normal console output.
+     *
+     * @return number of the script lines which printed an error
+     */
+    public static long endBatch() {
+        quiet = false;
+        source = null;
+        return errorLines;
     }
 
     /**
@@ -0,0 +1,45 @@
+package hu.erik.digitalcircuits.utils;
+
+import java.io.PrintStream;
+
+/**
+ * Sink which writes every line immediately to the given streams, in the caller's thread.
+ */
+public class StreamSink implements ConsoleSink {
+    /**
+     * Stream of the standard output.
+     */
+    private final PrintStream out;
+    /**
+     * Stream of the errors.
+     */
+    private final PrintStream err;
+
+    /**
+     * Constructor to initialize the streams.
+     *
+     * @param out   stream of the standard output
+     * @param err   stream of the errors
+     */
+    public StreamSink(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    @Override
+    public void print(String line) {
+        out.println(line);
+    }
+
+    @Override
+    public void printErr(String line) {
+        out.flush();
+        err.println(line);
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+        err.flush();
+    }
+}
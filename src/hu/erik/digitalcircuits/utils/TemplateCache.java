@@ -0,0 +1,156 @@
+package hu.erik.digitalcircuits.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Bounded cache of the loaded box files, so a box is only deserialized once while its file
+ * doesn't change. The entries are keyed by the box name, and they are only used if the
+ * modification time of the file is still the same. When the cache is full, the least
+ * recently used box is evicted.
+ */
+public class TemplateCache {
+    /**
+     * Default number of cached boxes.
+     */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * Cached definitions in access order, the least recently used first.
+     */
+    private final LinkedHashMap<String, CircuitDefinition> definitions;
+    /**
+     * Maximum number of cached boxes.
+     */
+    private int capacity;
+    /**
+     * Number of requests served from the cache.
+     */
+    private long hits;
+    /**
+     * Number of requests which loaded the file.
+     */
+    private long misses;
+    /**
+     * Number of definitions removed because the cache was full.
+     */
+    private long evictions;
+
+    /**
+     * Constructor to create a cache with the default capacity.
+     */
+    public TemplateCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor to create a cache with the given capacity.
+     *
+     * @param capacity maximum number of cached boxes
+     */
+    public TemplateCache(int capacity) {
+        this.definitions = new LinkedHashMap<>(16, 0.75f, true);
+        setCapacity(capacity);
+        this.hits = 0;
+        this.misses = 0;
+        this.evictions = 0;
+    }
+
+    /**
+     * Returns the definition of a saved box. The file is only loaded if the box
+     * is not cached yet, or the file was modified since it was cached.
+     *
+     * @param name                      name of the box
+     * @return                          definition of the box
+     * @throws IOException              If the load fails.
+     * @throws ClassNotFoundException   If the class doesn't exists in the classpath.
+     */
+    public synchronized CircuitDefinition get(String name) throws IOException, ClassNotFoundException {
+        long lastModified = FileHandler.lastModified(name);
+        CircuitDefinition definition = definitions.get(name);
+        if(definition != null && definition.getLastModified() == lastModified) {
+            hits++;
+            return definition;
+        }
+
+        misses++;
+        definition = new CircuitDefinition(name, lastModified, FileHandler.loadCircuit(name));
+        definitions.put(name, definition);
+        evict();
+        return definition;
+    }
+
+    /**
+     * Sets the maximum number of cached boxes. Evicts the least recently used boxes if needed.
+     *
+     * @param capacity the new capacity, at least 1
+     */
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        evict();
+    }
+
+    /**
+     * Removes every cached box. The statistics are kept.
+     */
+    public synchronized void clear() {
+        definitions.clear();
+    }
+
+    /**
+     * Removes the least recently used boxes until the size is within the capacity.
+     */
+    private void evict() {
+        while(definitions.size() > capacity) {
+            definitions.remove(definitions.keySet().iterator().next());
+            evictions++;
+        }
+    }
+
+    /**
+     * Returns the names of the cached boxes.
+     *
+     * @return names from the least to the most recently used
+     */
+    public synchronized List<String> getNames() {
+        return new ArrayList<>(definitions.keySet());
+    }
+
+    /**
+     * Returns the maximum number of cached boxes.
+     *
+     * @return the capacity
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of requests served from the cache.
+     *
+     * @return number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of requests which loaded the file.
+     *
+     * @return number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of boxes removed because the cache was full.
+     *
+     * @return number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}